@@ -0,0 +1,61 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+/// <summary>
+/// The workloads of the Connect4 benchmarks (benchmarks.Connect4Benchmarks runs them under JMH): full moves on a fixed set of positions,
+/// the utility and move generation methods on their own, and a headless game on Connect4Board.
+/// </summary>
+public class Connect4Benchmark {
+
+    // Fixed positions (6 rows of 7, top row first), each with O (the agent) to move.
+    private static final String OPENING    = "______________________________________X___";
+    private static final String MIDDLEGAME = "______________________O______XO___XXOX_O_X";
+    private static final String CROWDED    = "_____________O______O____X_XO___OXOOXXOXXX";
+    private static final String ENDGAME    = "_______O____X_X____X_O____OXOXX__XXXOOOXOO";
+
+    /// <summary>
+    /// The named workload, with the agent or board it uses built once up front. Its result is consumed so the JIT cannot remove the work.
+    /// Each move starts from a fresh search: move forgets the previous one because the position does not continue it.
+    /// </summary>
+    public static Callable<Object> workload(String name)
+    {
+        return switch (name)
+          { case "move.opening" -> move(new minmaxag(6, 7, 4), OPENING);
+            case "move.middlegame" -> move(new minmaxag(6, 7, 4), MIDDLEGAME);
+            case "move.crowded" -> move(new minmaxag(6, 7, 4), CROWDED);
+            case "move.endgame" -> move(new minmaxag(6, 7, 4), ENDGAME);
+            case "monteCarlo.20000iterations.middlegame" ->
+              { minmaxag agent = new minmaxag(6, 7, 4).setEngine(minmaxag.Engine.MONTE_CARLO);
+                agent.getMonteCarloSearch().setThreadCount(1).setIterationLimit(20_000).setTimeBudgetMillis(60_000).setSeed(1);
+                yield () -> agent.newGame().move(MIDDLEGAME); }
+            case "loadBoard.middlegame" ->
+              { minmaxag agent = new minmaxag(6, 7, 4);
+                yield () -> { agent.loadBoard(MIDDLEGAME); return agent; }; }
+            case "utility.middlegame" ->
+              { minmaxag agent = new minmaxag(6, 7, 4);
+                agent.loadBoard(MIDDLEGAME);
+                yield () -> agent.utility(); }
+            case "generateMoves.middlegame" ->
+              { minmaxag agent = new minmaxag(6, 7, 4);
+                agent.loadBoard(MIDDLEGAME);
+                int[] moveBuffer = new int[7];
+                yield () -> agent.generateMoves(moveBuffer); }
+            case "board.randomGame" ->
+              { Connect4Board board = new Connect4Board();
+                yield () -> playRandomGame(board, new SplittableRandom(1)); }
+            default -> throw new IllegalArgumentException("Unknown Connect4 workload: " + name); };
+    }
+
+    private static Callable<Object> move(minmaxag agent, String position) { return () -> agent.move(position); }
+
+    // Plays random columns on the headless board until the game ends. Returns the winner, so that the game cannot be optimized away.
+    private static char playRandomGame(Connect4Board board, SplittableRandom random)
+    {
+        board.reset();
+        while (!board.isGameOver())
+          { int column = random.nextInt(board.getNumCols());
+            if (board.isPlayable(column))
+                board.play(column); }
+        return board.getWinner();
+    }
+}
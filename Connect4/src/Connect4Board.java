@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/// <summary>
+/// A headless Connect4 board: the game state and rules without any UI, so that games can be played, tested and benchmarked without a display.
+/// Pieces are dropped into columns, and each drop only checks the lines through the new piece for a win, in O(win length) rather than rescanning the board.
+/// The board is also a CharSequence in the state string format of minmaxag ('X', 'O' and '_' tiles, top row first), so it can be handed to the agent directly.
+/// </summary>
+public final class Connect4Board implements CharSequence {
+
+    // Constants
+    public static final int NUM_ROWS = 6;
+    public static final int NUM_COLS = 7;
+    public static final int WIN_SEQUENCE_LENGTH = 4;
+    public static final char EMPTY_TILE = '_';
+    private static final int[][] DIRECTIONS = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };  // Row & column steps: right, down, down-right, down-left.
+
+    // Attributes
+    private final int numRows;
+    private final int numCols;
+    private final int winSequenceLength;
+    private final char[] tiles;
+    private final int[] columnHeights;  // Number of pieces in each column.
+    private int pieceCount;
+    private int lastTile = -1;
+    private char winner = EMPTY_TILE;
+
+    // Constructors
+    public Connect4Board() { this(NUM_ROWS, NUM_COLS, WIN_SEQUENCE_LENGTH); }
+    public Connect4Board(int numRows, int numCols, int winSequenceLength)
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.winSequenceLength = winSequenceLength;
+        this.tiles = new char[numRows * numCols];
+        this.columnHeights = new int[numCols];
+        reset();
+    }
+
+    // #region Game Methods
+    // Empties the board for a new game. Returns the board, making it possible to chain if necessary.
+    public Connect4Board reset()
+    {
+        Arrays.fill(tiles, EMPTY_TILE);
+        Arrays.fill(columnHeights, 0);
+        pieceCount = 0;
+        lastTile = -1;
+        winner = EMPTY_TILE;
+        return this;
+    }
+
+    /// <summary>
+    /// Drops the piece of the player whose turn it is into the input column, and checks whether it won the game.
+    /// </summary>
+    /// <return> Returns the tile the piece landed on. </return>
+    public int play(int column)
+    {
+        if (isGameOver())
+            throw new IllegalStateException("The game is over.");
+        if (!isPlayable(column))
+            throw new IllegalArgumentException("Column " + column + " cannot be played.");
+
+        int tile = landingTile(column);
+        char player = getPlayerTurn();
+        tiles[tile] = player;
+        columnHeights[column]++;
+        pieceCount++;
+        lastTile = tile;
+        if (completesLine(tile))
+            winner = player;
+        return tile;
+    }
+
+    /// <summary>
+    /// Checks the four lines through the input tile for a winning sequence of its player's pieces.
+    /// Only the tiles within winSequenceLength - 1 of it are looked at.
+    /// </summary>
+    private boolean completesLine(int tile)
+    {
+        int row = tile / numCols, column = tile % numCols;
+        for (int[] direction : DIRECTIONS)
+            if (1 + countFrom(row, column, direction[0], direction[1]) + countFrom(row, column, -direction[0], -direction[1]) >= winSequenceLength)
+                return true;
+        return false;
+    }
+
+    // Helper method for completesLine: the number of the tile's player's pieces in a row from it (excluding it) in one direction.
+    private int countFrom(int row, int column, int rowStep, int columnStep)
+    {
+        char player = tiles[row * numCols + column];
+        int count = 0;
+        for (int r = row + rowStep, c = column + columnStep; count < winSequenceLength - 1 && r >= 0 && r < numRows && c >= 0 && c < numCols && tiles[r * numCols + c] == player; r += rowStep, c += columnStep)
+            count++;
+        return count;
+    }
+    // #endregion
+
+    // #region State Methods
+    // Since 'X' always begins the game, an even number of pieces on the board means it is 'X's turn.
+    public char getPlayerTurn() { return (pieceCount % 2 == 0 ? 'X' : 'O'); }
+
+    public boolean isPlayable(int column) { return column >= 0 && column < numCols && columnHeights[column] < numRows; }
+
+    // The tile a piece dropped into the column would land on, or -1 if the column is full.
+    public int landingTile(int column) { return (columnHeights[column] < numRows ? (numRows - 1 - columnHeights[column]) * numCols + column : -1); }
+
+    public boolean isGameOver() { return winner != EMPTY_TILE || pieceCount == tiles.length; }
+    public boolean isDraw() { return winner == EMPTY_TILE && pieceCount == tiles.length; }
+
+    // The player who won the game ('X' or 'O'), or EMPTY_TILE if nobody has won (yet).
+    public char getWinner() { return winner; }
+
+    public char getTile(int tile) { return tiles[tile]; }
+    public int getLastTile() { return lastTile; }
+    public int getPieceCount() { return pieceCount; }
+    public int getNumRows() { return numRows; }
+    public int getNumCols() { return numCols; }
+    // #endregion
+
+    // #region CharSequence Methods
+    @Override public int length() { return tiles.length; }
+    @Override public char charAt(int index) { return tiles[index]; }
+    @Override public CharSequence subSequence(int start, int end) { return new String(tiles, start, end - start); }
+    @Override public String toString() { return new String(tiles); }
+    // #endregion
+}
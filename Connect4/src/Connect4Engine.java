@@ -0,0 +1,176 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// <summary>
+/// A headless engine serving Connect4 moves to many concurrent game sessions, without any UI.
+/// Each session has its own minmaxag (board, history scores and principal variation), and all of them share one large transposition table.
+///
+/// The CPU budget is fixed: a set number of search threads serve every session's move requests. Scheduling is fair by search time.
+/// The waiting request of the session that has used the least search time so far goes first. Each search's time budget shrinks as more
+/// requests wait, so that a move's latency (waiting plus searching) stays near the target however many sessions are playing.
+/// </summary>
+public class Connect4Engine {
+
+    // Constants
+    public static final int NUM_ROWS = 6;
+    public static final int NUM_COLS = 7;
+    public static final int WIN_SEQUENCE_LENGTH = 4;
+    private static final int DEFAULT_TABLE_SIZE_BITS = 22;     // 4M entries (64 MB), shared by all sessions.
+    private static final long MIN_MOVE_MILLIS = 1;
+
+    // Attributes
+    private final TranspositionTable sharedTable;
+    private final int searchThreadCount;
+    private final long targetLatencyMillis;
+    private final PriorityBlockingQueue<MoveRequest> requests = new PriorityBlockingQueue<>();
+    private final AtomicLong requestSequence = new AtomicLong();
+    private final AtomicLong sessionSequence = new AtomicLong();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private Thread[] searchThreads;
+    private volatile boolean running;
+
+    // Constructors
+    public Connect4Engine() { this(Runtime.getRuntime().availableProcessors(), 100, DEFAULT_TABLE_SIZE_BITS); }
+    public Connect4Engine(int searchThreadCount, long targetLatencyMillis, int tableSizeBits)
+    {
+        this.searchThreadCount = searchThreadCount;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.sharedTable = new TranspositionTable(tableSizeBits);
+    }
+
+    // #region Engine Methods
+    // Starts the search threads. Returns the engine, making it possible to chain if necessary.
+    public Connect4Engine start()
+    {
+        running = true;
+        searchThreads = new Thread[searchThreadCount];
+        for (int i = 0; i < searchThreadCount; i++)
+          { searchThreads[i] = new Thread(this::runSearchThread, "connect4-search-" + i);
+            searchThreads[i].setDaemon(true);
+            searchThreads[i].start(); }
+        return this;
+    }
+
+    // Stops the search threads. Requests still waiting are never answered.
+    public void stop()
+    {
+        running = false;
+        for (Thread searchThread : searchThreads)
+            searchThread.interrupt();
+    }
+
+    public Session openSession() { return new Session(sessionSequence.incrementAndGet(), new minmaxag(NUM_ROWS, NUM_COLS, WIN_SEQUENCE_LENGTH, sharedTable)); }
+
+    /// <summary>
+    /// Queues a request for the session's move ('O') on the input state string, in the format of minmaxag.move.
+    /// A session is one game at a time, so it may only have one request outstanding.
+    /// </summary>
+    /// <return> Returns a future completed with the search result once a search thread has served the request. </return>
+    public CompletableFuture<minmaxag.SearchResult> requestMove(Session session, String stringState)
+    {
+        if (!session.pending.compareAndSet(false, true))
+            throw new IllegalStateException("Session " + session.id + " already has a move request outstanding.");
+        MoveRequest request = new MoveRequest(session, stringState, session.searchNanos, requestSequence.incrementAndGet());
+        requests.add(request);
+        return request.result;
+    }
+
+    // The number of requests waiting for a search thread.
+    public int getQueuedRequests() { return requests.size(); }
+    // #endregion
+
+    // #region Scheduling Methods
+    /// <summary>
+    /// The time budget of the next search. With W requests waiting and T search threads, a new request waits for about W / T searches
+    /// before its own, so budgets of targetLatency * T / (W + T) keep the latency near the target.
+    /// </summary>
+    private long nextTimeBudgetMillis()
+    {
+        long budget = targetLatencyMillis * searchThreadCount / (requests.size() + searchThreadCount);
+        return Math.max(MIN_MOVE_MILLIS, budget);
+    }
+
+    private void runSearchThread()
+    {
+        boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+        while (running)
+          { MoveRequest request;
+            try { request = requests.take(); }
+            catch (InterruptedException e) { return; }
+
+            Session session = request.session;
+            long start = (cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime());
+            try
+              { minmaxag.SearchResult result = session.agent.setTimeBudgetMillis(nextTimeBudgetMillis()).search(request.stringState);
+                finish(session, start, cpuTimeSupported);
+                request.result.complete(result); }
+            catch (RuntimeException e)
+              { finish(session, start, cpuTimeSupported);
+                request.result.completeExceptionally(e); }}
+    }
+
+    // Helper method: charges the session for its search and allows its next request. The future's completion publishes both to the session's owner.
+    private void finish(Session session, long start, boolean cpuTimeSupported)
+    {
+        session.searchNanos += (cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+        session.movesPlayed++;
+        session.pending.set(false);
+    }
+    // #endregion
+
+    //#region Helper Classes
+
+    // One game being played against the engine. Only ever searched by one search thread at a time.
+    public static class Session
+    {
+        // Attributes
+        private final long id;
+        private final minmaxag agent;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private long searchNanos;       // Search time used so far, the key of the fair scheduling.
+        private int movesPlayed;
+
+        // Constructors
+        private Session(long id, minmaxag agent)
+        {
+            this.id = id;
+            this.agent = agent;
+        }
+
+        // Getters: read them once the last requested move has completed.
+        public long getId() { return id; }
+        public double getSearchMillis() { return searchNanos / 1e6; }
+        public int getMovesPlayed() { return movesPlayed; }
+    }
+
+    // A queued move request, ordered by its session's search time at the time of the request, then by arrival.
+    private static class MoveRequest implements Comparable<MoveRequest>
+    {
+        // Attributes
+        final Session session;
+        final String stringState;
+        final long sessionSearchNanos;
+        final long sequence;
+        final CompletableFuture<minmaxag.SearchResult> result = new CompletableFuture<>();
+
+        // Constructors
+        MoveRequest(Session session, String stringState, long sessionSearchNanos, long sequence)
+        {
+            this.session = session;
+            this.stringState = stringState;
+            this.sessionSearchNanos = sessionSearchNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(MoveRequest other)
+        {
+            int bySearchTime = Long.compare(sessionSearchNanos, other.sessionSearchNanos);
+            return (bySearchTime != 0 ? bySearchTime : Long.compare(sequence, other.sequence));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/// <summary>
+/// A local load test of Connect4Engine: each session is played by a client (a virtual thread) making random 'X' moves and asking the engine
+/// for every 'O' move, starting a new game whenever one ends. At the end it reports moves per second, latency percentiles, the mean depth
+/// the searches completed and how evenly the search time was shared between the sessions.
+///
+/// Run with: java Connect4LoadTest [-sessions 1000] [-seconds 10] [-threads cores] [-latency 100]
+/// </summary>
+public class Connect4LoadTest {
+
+    // Constants
+    private static final int NUM_ROWS = Connect4Engine.NUM_ROWS, NUM_COLS = Connect4Engine.NUM_COLS, WIN_SEQUENCE_LENGTH = Connect4Engine.WIN_SEQUENCE_LENGTH;
+
+    public static void main(String[] args) throws Exception
+    {
+        int sessions = 1000, seconds = 10, threads = Runtime.getRuntime().availableProcessors();
+        long latency = 100;
+        for (int i = 0; i < args.length; i++)
+            switch (args[i])
+              { case "-sessions" -> sessions = Integer.parseInt(args[++i]);
+                case "-seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-latency" -> latency = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]); }
+
+        Connect4Engine engine = new Connect4Engine(threads, latency, 22).start();
+        Connect4Engine.Session[] engineSessions = new Connect4Engine.Session[sessions];
+        ClientResults[] results = new ClientResults[sessions];
+        long endNanos = System.nanoTime() + seconds * 1_000_000_000L;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor())
+          { for (int s = 0; s < sessions; s++)
+              { Connect4Engine.Session session = engineSessions[s] = engine.openSession();
+                ClientResults sessionResults = results[s] = new ClientResults();
+                long seed = s;
+                clients.submit(() -> runClient(engine, session, seed, endNanos, sessionResults)); }}
+        engine.stop();
+
+        report(engineSessions, results, seconds, threads, latency);
+    }
+
+    // #region Client Methods
+    // Plays games against the engine until the end time, recording the latency of each engine move.
+    private static Void runClient(Connect4Engine engine, Connect4Engine.Session session, long seed, long endNanos, ClientResults results)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        Connect4Board board = new Connect4Board(NUM_ROWS, NUM_COLS, WIN_SEQUENCE_LENGTH);
+        while (System.nanoTime() < endNanos)
+          { board.play(randomColumn(board, random));
+            if (board.isGameOver())
+              { newGame(board, results);
+                continue; }
+
+            long start = System.nanoTime();
+            minmaxag.SearchResult result;
+            try { result = engine.requestMove(session, board.toString()).join(); }
+            catch (RuntimeException e)
+              { results.errors++;
+                newGame(board, results);
+                continue; }
+            results.record(System.nanoTime() - start, result.statistics.getCompletedDepth());
+
+            int tile = result.action;
+            if (tile < 0 || tile >= board.length() || board.landingTile(tile % NUM_COLS) != tile)
+              { results.errors++;     // Not a legal move.
+                newGame(board, results); }
+            else
+              { board.play(tile % NUM_COLS);
+                if (board.isGameOver())
+                    newGame(board, results); }}
+        return null;
+    }
+
+    private static void newGame(Connect4Board board, ClientResults results)
+    {
+        board.reset();
+        results.games++;
+    }
+
+    private static int randomColumn(Connect4Board board, SplittableRandom random)
+    {
+        int column;
+        do { column = random.nextInt(NUM_COLS); }
+        while (!board.isPlayable(column));
+        return column;
+    }
+    // #endregion
+
+    // #region Report Methods
+    private static void report(Connect4Engine.Session[] sessions, ClientResults[] results, int seconds, int threads, long latency)
+    {
+        // Combine the clients' results only now, so that the clients never contend for them.
+        ClientResults total = new ClientResults();
+        for (ClientResults clientResults : results)
+            total.add(clientResults);
+        long[] latencies = Arrays.copyOf(total.latencies, total.count);
+        Arrays.sort(latencies);
+
+        double minSearch = Double.MAX_VALUE, maxSearch = 0, sumSearch = 0;
+        for (Connect4Engine.Session session : sessions)
+          { minSearch = Math.min(minSearch, session.getSearchMillis());
+            maxSearch = Math.max(maxSearch, session.getSearchMillis());
+            sumSearch += session.getSearchMillis(); }
+
+        System.out.printf("%d sessions, %d search thread(s), %d ms target latency, %d s%n", sessions.length, threads, latency, seconds);
+        System.out.printf("moves: %d (%.1f/s), games finished: %d, errors: %d%n", total.count, total.count / (double) seconds, total.games, total.errors);
+        if (latencies.length > 0)
+          { System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                              percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+            System.out.printf("mean completed depth: %.2f%n", total.depthSum / (double) total.count); }
+        System.out.printf("search ms per session: min %.1f, mean %.1f, max %.1f%n", minSearch, sumSearch / sessions.length, maxSearch);
+    }
+
+    private static double percentile(long[] sortedNanos, double fraction) { return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.floor(fraction * sortedNanos.length))] / 1e6; }
+    // #endregion
+
+    // #region Helper Classes
+    // The results of one client, only touched by that client's thread until the report.
+    private static class ClientResults
+    {
+        // Attributes
+        long[] latencies = new long[64];
+        int count;
+        long depthSum;
+        int games, errors;
+
+        // Methods
+        void record(long latencyNanos, int completedDepth)
+        {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latencyNanos;
+            depthSum += completedDepth;
+        }
+
+        void add(ClientResults other)
+        {
+            if (count + other.count > latencies.length)
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            depthSum += other.depthSum;
+            games += other.games;
+            errors += other.errors;
+        }
+    }
+    // #endregion
+}
@@ -0,0 +1,327 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// <summary>
+/// A headless self-play tournament between agent configurations, so that a faster configuration that plays worse is caught.
+/// Every pair of configurations plays the input number of games. Each random opening is played twice, once with each configuration moving first.
+/// Games run in parallel, one per worker thread. At the end it reports, per pairing, wins, draws and losses with an Elo difference
+/// and its 95% error bars. Per configuration it reports the score against the field and the average time and nodes per move.
+///
+/// Run with: java Connect4Tournament [-games 200] [-threads cores] [-openings 2] [-seed 1] config...
+/// A config is a comma-separated list of settings, e.g. depth=5,budget=20 or engine=montecarlo,budget=50 or heuristic=winonly:
+///  - depth: maximum alpha-beta search depth (default 7)
+///  - budget: time budget per move in milliseconds (default none for alpha-beta, 1000 for Monte Carlo)
+///  - engine: alphabeta or montecarlo
+///  - heuristic: consecutive or winonly
+///  - iterations: Monte Carlo iteration limit
+/// Without configs, depth=7, depth=5 and heuristic=winonly play each other.
+/// </summary>
+public class Connect4Tournament {
+
+    // Constants
+    private static final int NUM_ROWS = 6, NUM_COLS = 7, WIN_SEQUENCE_LENGTH = 4;
+    private static final char EMPTY_TILE = Connect4Board.EMPTY_TILE;
+    private static final String[] DEFAULT_CONFIGS = { "depth=7", "depth=5", "heuristic=winonly" };
+
+    public static void main(String[] args) throws Exception
+    {
+        int games = 200, threads = Runtime.getRuntime().availableProcessors(), openingPlies = 2;
+        long seed = 1;
+        List<Config> configs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+            switch (args[i])
+              { case "-games" -> games = Integer.parseInt(args[++i]);
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-openings" -> openingPlies = Integer.parseInt(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                default -> configs.add(Config.parse(args[i])); }
+        if (configs.isEmpty())
+            for (String spec : DEFAULT_CONFIGS)
+                configs.add(Config.parse(spec));
+        if (configs.size() < 2)
+            throw new IllegalArgumentException("A tournament needs at least two configs.");
+
+        // Openings shorter than 2k - 1 plies can never end the game.
+        int plies = Math.max(0, Math.min(openingPlies, 2 * WIN_SEQUENCE_LENGTH - 2));
+        int gamesPerPairing = games + (games % 2);   // Every opening is played with both colors.
+        Tournament tournament = new Tournament(configs, gamesPerPairing, plies, seed);
+
+        long start = System.nanoTime();
+        WorkerResults[] results = new WorkerResults[threads];
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++)
+          { WorkerResults workerResults = results[w] = new WorkerResults(configs.size());
+            workers[w] = new Thread(() -> tournament.runWorker(workerResults), "tournament-worker-" + w);
+            workers[w].start(); }
+        for (Thread worker : workers)
+            worker.join();
+
+        // Each worker counted into its own results; they are only combined once all have finished.
+        WorkerResults total = new WorkerResults(configs.size());
+        for (WorkerResults workerResults : results)
+            total.add(workerResults);
+        report(configs, total, gamesPerPairing, plies, threads, (System.nanoTime() - start) / 1e9);
+    }
+
+    // #region Game Methods
+    // The games of all pairings, handed out to the workers one at a time.
+    private static class Tournament
+    {
+        // Attributes
+        final List<Config> configs;
+        final int[][] pairings;
+        final int gamesPerPairing;
+        final int openingPlies;
+        final long seed;
+        final AtomicInteger nextGame = new AtomicInteger();
+
+        // Constructors
+        Tournament(List<Config> configs, int gamesPerPairing, int openingPlies, long seed)
+        {
+            this.configs = configs;
+            this.gamesPerPairing = gamesPerPairing;
+            this.openingPlies = openingPlies;
+            this.seed = seed;
+            List<int[]> pairingList = new ArrayList<>();
+            for (int a = 0; a < configs.size(); a++)
+                for (int b = a + 1; b < configs.size(); b++)
+                    pairingList.add(new int[] { a, b });
+            this.pairings = pairingList.toArray(new int[0][]);
+        }
+
+        // Plays games until all have been handed out. Each worker has its own agent per config, reset between games.
+        void runWorker(WorkerResults results)
+        {
+            minmaxag[] agents = new minmaxag[configs.size()];
+            Connect4Board board = new Connect4Board(NUM_ROWS, NUM_COLS, WIN_SEQUENCE_LENGTH);
+            for (int game = nextGame.getAndIncrement(); game < pairings.length * gamesPerPairing; game = nextGame.getAndIncrement())
+              { int[] pairing = pairings[game / gamesPerPairing];
+                int round = game % gamesPerPairing;
+                int xConfig = pairing[round % 2], oConfig = pairing[1 - round % 2];
+                for (int config : pairing)
+                    if (agents[config] == null)
+                        agents[config] = configs.get(config).createAgent();
+
+                // Both games of a round start from the same opening, the same for every pairing.
+                playOpening(board, new SplittableRandom(seed * 1_000_003 + round / 2), openingPlies);
+                char winner = playGame(board, agents[xConfig].newGame(), agents[oConfig].newGame(), xConfig, oConfig, results);
+                results.recordGame(game / gamesPerPairing, pairing, (winner == EMPTY_TILE ? 0.5 : (winner == 'X') == (xConfig == pairing[0]) ? 1 : 0)); }
+        }
+    }
+
+    // Clears the board and plays the input number of random plies on it.
+    private static void playOpening(Connect4Board board, SplittableRandom random, int plies)
+    {
+        board.reset();
+        for (int ply = 0; ply < plies && !board.isGameOver(); ply++)
+          { int column;
+            do { column = random.nextInt(NUM_COLS); }
+            while (!board.isPlayable(column));
+            board.play(column); }
+    }
+
+    /// <summary>
+    /// Plays the game on from the input board, each agent choosing its own moves, and records every move's time and nodes.
+    /// An illegal move loses the game.
+    /// </summary>
+    /// <return> Returns the winner ('X' or 'O'), or EMPTY_TILE for a draw. </return>
+    private static char playGame(Connect4Board board, minmaxag xAgent, minmaxag oAgent, int xConfig, int oConfig, WorkerResults results)
+    {
+        while (!board.isGameOver())
+          { char player = board.getPlayerTurn();
+            long start = System.nanoTime();
+            minmaxag.SearchResult result = (player == 'X' ? xAgent : oAgent).search(board);
+            results.recordMove(player == 'X' ? xConfig : oConfig, System.nanoTime() - start, result.statistics.getNodes());
+
+            int tile = result.action;
+            if (tile < 0 || tile >= board.length() || board.landingTile(tile % NUM_COLS) != tile)
+              { results.illegalMoves++;
+                return (player == 'X' ? 'O' : 'X'); }
+            board.play(tile % NUM_COLS); }
+        return board.getWinner();
+    }
+    // #endregion
+
+    // #region Report Methods
+    private static void report(List<Config> configs, WorkerResults total, int gamesPerPairing, int plies, int threads, double seconds)
+    {
+        System.out.printf("%d configs, %d games per pairing, %d-ply random openings, %d thread(s), %.1f s%n", configs.size(), gamesPerPairing, plies, threads, seconds);
+        if (total.illegalMoves > 0)
+            System.out.println("illegal moves (lost games): " + total.illegalMoves);
+
+        System.out.println();
+        System.out.printf("%-28s %-28s %6s %6s %6s %7s  %s%n", "config A", "config B", "wins", "draws", "losses", "score", "Elo A-B (95%)");
+        int pairing = 0;
+        for (int a = 0; a < configs.size(); a++)
+            for (int b = a + 1; b < configs.size(); b++, pairing++)
+              { Score score = total.pairingScores[pairing];
+                System.out.printf("%-28s %-28s %6d %6d %6d %6.1f%%  %s%n", configs.get(a).name, configs.get(b).name, score.wins, score.draws, score.losses, 100 * score.mean(), score.eloInterval()); }
+
+        System.out.println();
+        System.out.printf("%-28s %7s %7s  %-26s %10s %12s%n", "config", "games", "score", "Elo vs field (95%)", "ms/move", "nodes/move");
+        for (int c = 0; c < configs.size(); c++)
+          { Score score = total.fieldScores[c];
+            long moves = Math.max(1, total.moves[c]);
+            System.out.printf("%-28s %7d %6.1f%%  %-26s %10.2f %12.0f%n", configs.get(c).name, score.games(), 100 * score.mean(), score.eloInterval(),
+                              total.moveNanos[c] / 1e6 / moves, total.moveNodes[c] / (double) moves); }
+    }
+    // #endregion
+
+    // #region Helper Classes
+    // One agent configuration, parsed from its command line spec.
+    private static class Config
+    {
+        // Attributes
+        final String name;
+        int depth;                  // Zero for the agent's default.
+        long budgetMillis;          // Zero for none (alpha-beta) or the default (Monte Carlo).
+        int iterations;             // Zero for no Monte Carlo iteration limit.
+        minmaxag.Engine engine = minmaxag.Engine.ALPHA_BETA;
+        minmaxag.Heuristic heuristic = minmaxag.Heuristic.CONSECUTIVE_TILES;
+
+        // Constructors
+        private Config(String name) { this.name = name; }
+
+        static Config parse(String spec)
+        {
+            Config config = new Config(spec);
+            for (String setting : spec.split(","))
+              { String[] keyValue = setting.split("=", 2);
+                if (keyValue.length != 2)
+                    throw new IllegalArgumentException("Expected key=value in config " + spec + ": " + setting);
+                String value = keyValue[1].trim().toLowerCase();
+                switch (keyValue[0].trim().toLowerCase())
+                  { case "depth" -> config.depth = Integer.parseInt(value);
+                    case "budget" -> config.budgetMillis = Long.parseLong(value);
+                    case "iterations" -> config.iterations = Integer.parseInt(value);
+                    case "engine" -> config.engine = switch (value)
+                      { case "alphabeta" -> minmaxag.Engine.ALPHA_BETA;
+                        case "montecarlo", "mcts" -> minmaxag.Engine.MONTE_CARLO;
+                        default -> throw new IllegalArgumentException("Unknown engine: " + value); };
+                    case "heuristic" -> config.heuristic = switch (value)
+                      { case "consecutive" -> minmaxag.Heuristic.CONSECUTIVE_TILES;
+                        case "winonly" -> minmaxag.Heuristic.WIN_ONLY;
+                        default -> throw new IllegalArgumentException("Unknown heuristic: " + value); };
+                    default -> throw new IllegalArgumentException("Unknown config setting: " + keyValue[0]); }}
+            return config;
+        }
+
+        minmaxag createAgent()
+        {
+            minmaxag agent = new minmaxag(NUM_ROWS, NUM_COLS, WIN_SEQUENCE_LENGTH).setEngine(engine).setHeuristic(heuristic).setTimeBudgetMillis(budgetMillis);
+            if (depth > 0)
+                agent.setSearchDepth(depth);
+            if (engine == minmaxag.Engine.MONTE_CARLO)
+              { MonteCarloSearch monteCarloSearch = agent.getMonteCarloSearch().setThreadCount(1);     // The games already run in parallel.
+                if (budgetMillis > 0)
+                    monteCarloSearch.setTimeBudgetMillis(budgetMillis);
+                if (iterations > 0)
+                    monteCarloSearch.setIterationLimit(iterations); }
+            return agent;
+        }
+    }
+
+    /// <summary>
+    /// Game results from one side's point of view (1 for a win, 0.5 for a draw, 0 for a loss).
+    /// The Elo difference follows from the mean score, and its error bars from the standard error of the mean over the games.
+    /// </summary>
+    private static class Score
+    {
+        // Attributes
+        int wins, draws, losses;
+
+        // Methods
+        void record(double score)
+        {
+            if (score == 1) wins++;
+            else if (score == 0) losses++;
+            else draws++;
+        }
+
+        void add(Score other)
+        {
+            wins += other.wins;
+            draws += other.draws;
+            losses += other.losses;
+        }
+
+        int games() { return wins + draws + losses; }
+        double mean() { return (games() == 0 ? 0.5 : (wins + 0.5 * draws) / games()); }
+
+        String eloInterval()
+        {
+            int games = games();
+            if (games == 0)
+                return "-";
+            double mean = mean();
+            double variance = (wins * Math.pow(1 - mean, 2) + draws * Math.pow(0.5 - mean, 2) + losses * Math.pow(mean, 2)) / games;
+            double margin = 1.96 * Math.sqrt(variance / games);
+            double elo = elo(mean);
+            return String.format("%s [%s, %s]", format(elo), format(elo(mean - margin)), format(elo(mean + margin)));
+        }
+
+        // Helper method: the Elo difference expected to produce the input mean score.
+        private static double elo(double mean)
+        {
+            if (mean <= 0) return Double.NEGATIVE_INFINITY;
+            if (mean >= 1) return Double.POSITIVE_INFINITY;
+            return -400 * Math.log10(1 / mean - 1);
+        }
+
+        private static String format(double elo) { return (Double.isInfinite(elo) ? (elo > 0 ? "+inf" : "-inf") : String.format("%+.0f", elo + 0.0)); }   // + 0.0 turns -0 into 0.
+    }
+
+    // The results of one worker, only touched by that worker's thread until the report.
+    private static class WorkerResults
+    {
+        // Attributes
+        final Score[] pairingScores;    // From the first config's point of view, by pairing.
+        final Score[] fieldScores;      // By config, against all others.
+        final long[] moves, moveNanos, moveNodes;
+        int illegalMoves;
+
+        // Constructors
+        WorkerResults(int configCount)
+        {
+            pairingScores = new Score[configCount * (configCount - 1) / 2];
+            for (int p = 0; p < pairingScores.length; p++)
+                pairingScores[p] = new Score();
+            fieldScores = new Score[configCount];
+            for (int c = 0; c < configCount; c++)
+                fieldScores[c] = new Score();
+            moves = new long[configCount];
+            moveNanos = new long[configCount];
+            moveNodes = new long[configCount];
+        }
+
+        // Methods
+        void recordMove(int config, long nanos, long nodes)
+        {
+            moves[config]++;
+            moveNanos[config] += nanos;
+            moveNodes[config] += nodes;
+        }
+
+        void recordGame(int pairingIndex, int[] pairing, double firstScore)
+        {
+            pairingScores[pairingIndex].record(firstScore);
+            fieldScores[pairing[0]].record(firstScore);
+            fieldScores[pairing[1]].record(1 - firstScore);
+        }
+
+        void add(WorkerResults other)
+        {
+            for (int p = 0; p < pairingScores.length; p++)
+                pairingScores[p].add(other.pairingScores[p]);
+            for (int c = 0; c < fieldScores.length; c++)
+              { fieldScores[c].add(other.fieldScores[c]);
+                moves[c] += other.moves[c];
+                moveNanos[c] += other.moveNanos[c];
+                moveNodes[c] += other.moveNodes[c]; }
+            illegalMoves += other.illegalMoves;
+        }
+    }
+    // #endregion
+}
@@ -0,0 +1,516 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/// <summary>
+/// A Monte Carlo tree search engine (UCT) for the games played by minmaxag, selectable as an alternative to the alpha-beta search.
+/// Instead of a depth-limited search with a heuristic, it repeatedly descends the tree by the UCT formula, plays the game out to the end
+/// and backs the result up the path, so it can be stopped after any time budget and scales to boards alpha-beta cannot search deeply.
+///
+/// - The tree is stored as parallel arrays indexed by node number. The children of a node are contiguous, so a node only needs
+///   the index of its first child and the number of children.
+/// - Playouts run on a byte array board with an O(1) random move and a win check from the last move only.
+/// - Several worker threads share one tree. Selection, expansion and backup happen under a single lock, playouts outside of it.
+///   Each node on a worker's path carries a virtual loss until its result is backed up, steering the other workers to different lines.
+///   The workers (their playout boards and paths) and the helper threads running them are kept from move to move; helper threads
+///   that sit idle for HELPER_KEEP_ALIVE_SECONDS, e.g. once the game is over, end, and are started again by the next move.
+/// - Consecutive move() calls of the same game keep the subtree of the position reached after the agent's move and the opponent's reply.
+/// </summary>
+public class MonteCarloSearch {
+
+    // Constants
+    private static final int DEFAULT_NODE_CAPACITY = 1 << 20;
+    private static final long HELPER_KEEP_ALIVE_SECONDS = 30;
+    private static final int VIRTUAL_LOSS = 1;              // Visits added to each node on a worker's path until its playout result is backed up.
+    private static final int WIN_REWARD = 2;                // Rewards are counted in half-points so that draws stay integral.
+    private static final int DRAW_REWARD = 1;
+    private static final byte EMPTY = 0, X = 1, O = 2;
+    private static final byte NOT_TERMINAL = 0, TERMINAL_WIN = 1, TERMINAL_DRAW = 2;   // TERMINAL_WIN: the move into the node won the game.
+
+    public enum PlayoutPolicy
+    {
+        RANDOM,         // Every playout move is chosen uniformly at random.
+        WIN_OR_BLOCK    // Take an immediate win if there is one, otherwise block the opponent's immediate win, otherwise play at random.
+    }
+
+    // Game Attributes
+    private final int numRows;
+    private final int numCols;
+    private final int winSequenceLength;
+    private final boolean gravity;      // True for Connect4-style games, where a move is the lowest empty tile of a column.
+
+    // Settings
+    private double explorationConstant = Math.sqrt(2);
+    private PlayoutPolicy playoutPolicy = PlayoutPolicy.WIN_OR_BLOCK;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long timeBudgetMillis = 1000;
+    private int iterationLimit = Integer.MAX_VALUE;
+    private long seed = System.nanoTime();
+
+    // Tree Attributes: node i is described by the i-th element of each array.
+    private final int[] nodeMove;           // The tile played to reach the node.
+    private final int[] nodeFirstChild;
+    private final int[] nodeChildCount;     // Zero until the node is expanded.
+    private final int[] nodeVisits;         // Includes virtual losses of playouts that are still running.
+    private final int[] nodeScore;          // Half-points won by the player who moved into the node.
+    private final byte[] nodeTerminal;
+    private int nodeCount;
+    private int rootNode;
+    private final byte[] rootBoard;         // The position at the root node.
+    private final byte[] positionBoard;     // The position being searched, read by prepareRoot before it becomes the root.
+    private byte rootPlayer;                // The player to move at the root node.
+    private int iterations;
+    private SearchStatistics statistics = new SearchStatistics();  // The combined statistics of the workers of the last move.
+    private final Object treeLock = new Object();
+
+    // Worker Attributes: the calling thread runs workers[0], and helper threads the others.
+    private Worker[] workers = new Worker[0];
+    private Future<?>[] helperRuns = new Future<?>[0];
+    private ThreadPoolExecutor helperPool;      // Null until a move needs helpers.
+    private long deadline;                      // System.nanoTime() at which the workers of the current move stop.
+
+    // Constructors
+    public MonteCarloSearch(int numRows, int numCols, int winSequenceLength, boolean gravity) { this(numRows, numCols, winSequenceLength, gravity, DEFAULT_NODE_CAPACITY); }
+    public MonteCarloSearch(int numRows, int numCols, int winSequenceLength, boolean gravity, int nodeCapacity)
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.winSequenceLength = winSequenceLength;
+        this.gravity = gravity;
+
+        this.nodeMove = new int[nodeCapacity];
+        this.nodeFirstChild = new int[nodeCapacity];
+        this.nodeChildCount = new int[nodeCapacity];
+        this.nodeVisits = new int[nodeCapacity];
+        this.nodeScore = new int[nodeCapacity];
+        this.nodeTerminal = new byte[nodeCapacity];
+        this.rootBoard = new byte[numRows * numCols];
+        this.positionBoard = new byte[numRows * numCols];
+    }
+
+    // Setter methods. Each returns the engine, making it possible to chain if necessary.
+    public MonteCarloSearch setExplorationConstant(double explorationConstant) { this.explorationConstant = explorationConstant; return this; }
+    public MonteCarloSearch setPlayoutPolicy(PlayoutPolicy playoutPolicy) { this.playoutPolicy = playoutPolicy; return this; }
+    public MonteCarloSearch setThreadCount(int threadCount) { this.threadCount = Math.max(1, threadCount); return this; }
+    public MonteCarloSearch setTimeBudgetMillis(long timeBudgetMillis) { this.timeBudgetMillis = timeBudgetMillis; return this; }
+    public MonteCarloSearch setIterationLimit(int iterationLimit) { this.iterationLimit = iterationLimit; return this; }
+    public MonteCarloSearch setSeed(long seed) { this.seed = seed; return this; }
+
+    // #region Primary Methods
+    /// <summary>
+    /// Searches the input state string ('X', 'O' and '_' tiles, X moving first) until the time budget or iteration limit runs out.
+    /// </summary>
+    /// <return> Returns the most visited action from the root, or -1 if there is none. </return>
+    public int move(CharSequence stringState)
+    {
+        prepareRoot(stringState);
+
+        // Run the workers: the calling thread is one of them. Submitting a helper's run publishes the fields set before it.
+        iterations = 0;
+        deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+        prepareWorkers();
+        for (int i = 1; i < workers.length; i++)
+          { workers[i].prepare(seed + i);
+            helperRuns[i] = helperPool.submit(workers[i]); }
+        workers[0].prepare(seed);
+        workers[0].run();
+        boolean interrupted = false;
+        for (int i = 1; i < workers.length; i++)
+            while (true)
+              { try
+                  { helperRuns[i].get();
+                    break; }
+                catch (InterruptedException e) { interrupted = true; }
+                catch (ExecutionException e) { throw new IllegalStateException("A Monte Carlo worker failed.", e.getCause()); }}
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        // Each worker counted into its own statistics; they are only combined once all have finished.
+        statistics = workers[0].statistics;
+        for (int i = 1; i < workers.length; i++)
+            statistics.add(workers[i].statistics);
+
+        // Play the most visited child of the root; it is the most robust choice.
+        int choiceAction = -1;
+        int mostVisits = -1;
+        for (int child = nodeFirstChild[rootNode]; child < nodeFirstChild[rootNode] + nodeChildCount[rootNode]; child++)
+            if (nodeVisits[child] > mostVisits)
+              { mostVisits = nodeVisits[child];
+                choiceAction = nodeMove[child]; }
+        return choiceAction;
+    }
+
+    // Returns the number of iterations run by the last call to move.
+    public int getIterations() { return iterations; }
+
+    // Returns the statistics of the last call to move: tree nodes visited (summed over iterations), playouts, and the deepest tree path.
+    public SearchStatistics getStatistics() { return statistics; }
+
+    // Discards the tree, so that the next move starts from scratch even if it continues the previous game.
+    public void clearTree() { nodeCount = 0; }
+
+    // Helper method for move: one worker per thread, built (and the helper pool sized) only when the thread count changes.
+    private void prepareWorkers()
+    {
+        if (workers.length != threadCount)
+          { Worker[] resized = Arrays.copyOf(workers, threadCount);
+            for (int i = workers.length; i < threadCount; i++)
+                resized[i] = new Worker();
+            workers = resized;
+            helperRuns = new Future<?>[threadCount]; }
+        int helperCount = threadCount - 1;
+        if (helperCount == 0 || (helperPool != null && helperPool.getMaximumPoolSize() == helperCount))
+            return;
+        if (helperPool != null)
+            helperPool.shutdown();
+        helperPool = new ThreadPoolExecutor(helperCount, helperCount, HELPER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+          { Thread helper = new Thread(runnable, "mcts-worker");
+            helper.setDaemon(true);
+            return helper; });
+        helperPool.allowCoreThreadTimeOut(true);
+    }
+    // #endregion
+
+    // #region Tree Methods
+    /// <summary>
+    /// Moves the root to the input position. If it is the previous root plus the agent's move and the opponent's reply, the matching grandchild
+    /// becomes the new root and its statistics are kept. Otherwise, or once the node pool is mostly used, the tree is cleared.
+    /// </summary>
+    private void prepareRoot(CharSequence stringState)
+    {
+        byte[] board = positionBoard;
+        int pieceCount = 0;
+        for (int tile = 0; tile < board.length; tile++)
+          { board[tile] = switch (stringState.charAt(tile)) { case 'X' -> X; case 'O' -> O; default -> EMPTY; };
+            if (board[tile] != EMPTY)
+                pieceCount++; }
+        byte playerTurn = (pieceCount % 2 == 0 ? X : O);
+
+        if (nodeCount > 0 && playerTurn == rootPlayer && nodeCount < nodeMove.length * 3 / 4 && advanceRoot(board))
+            return;
+
+        // Start a new tree with only the root node.
+        System.arraycopy(board, 0, rootBoard, 0, board.length);
+        rootPlayer = playerTurn;
+        rootNode = 0;
+        nodeCount = 0;
+        createNode(-1);
+    }
+
+    // Helper method for prepareRoot: follows the two new stones on the board down the tree.
+    private boolean advanceRoot(byte[] board)
+    {
+        int ownTile = -1;
+        int opponentTile = -1;
+        for (int tile = 0; tile < board.length; tile++)
+          { if (board[tile] == rootBoard[tile])
+                continue;
+            if (rootBoard[tile] != EMPTY)
+                return false;                                       // A stone disappeared, so this is a different game.
+            if (board[tile] == rootPlayer && ownTile < 0)
+                ownTile = tile;
+            else if (board[tile] != rootPlayer && opponentTile < 0)
+                opponentTile = tile;
+            else
+                return false; }                                     // More than one stone per player was added.
+
+        if (ownTile < 0 && opponentTile < 0)
+            return true;                                            // The same position is being searched again.
+        if (ownTile < 0 || opponentTile < 0)
+            return false;
+
+        int child = findChild(rootNode, ownTile);
+        int grandchild = (child < 0 ? -1 : findChild(child, opponentTile));
+        if (grandchild < 0)
+            return false;
+
+        rootNode = grandchild;
+        System.arraycopy(board, 0, rootBoard, 0, board.length);
+        return true;
+    }
+
+    private int findChild(int node, int move)
+    {
+        for (int child = nodeFirstChild[node]; child < nodeFirstChild[node] + nodeChildCount[node]; child++)
+            if (nodeMove[child] == move)
+                return child;
+        return -1;
+    }
+
+    private int createNode(int move)
+    {
+        int node = nodeCount++;
+        nodeMove[node] = move;
+        nodeFirstChild[node] = 0;
+        nodeChildCount[node] = 0;
+        nodeVisits[node] = 0;
+        nodeScore[node] = 0;
+        nodeTerminal[node] = NOT_TERMINAL;
+        return node;
+    }
+
+    /// <summary>
+    /// The worker loop: select a path under the tree lock, play it out without the lock, then back the result up under the lock again.
+    /// </summary>
+    private void runWorker(Worker worker)
+    {
+        SearchStatistics workerStatistics = worker.statistics;
+        PlayoutBoard playoutBoard = worker.playoutBoard;
+        int[] path = worker.path;
+        workerStatistics.start();
+
+        while (System.nanoTime() < deadline)
+          { int pathLength;
+            synchronized (treeLock)
+              { if (iterations >= iterationLimit)
+                    break;
+                iterations++;
+                playoutBoard.copyFrom(rootBoard);
+                pathLength = select(playoutBoard, path); }
+
+            // Either the selected node already ended the game, or the game is played out from it.
+            int leaf = path[pathLength - 1];
+            byte winner = switch (nodeTerminal[leaf])
+              { case TERMINAL_WIN -> moverAtDepth(pathLength - 1);
+                case TERMINAL_DRAW -> EMPTY;
+                default -> playoutBoard.playout(); };
+
+            synchronized (treeLock) { backup(path, pathLength, winner); }
+            workerStatistics.nodes += pathLength;
+            workerStatistics.leafNodes++;
+            workerStatistics.maxDepth = Math.max(workerStatistics.maxDepth, pathLength - 1); }
+        workerStatistics.stop();
+    }
+
+    /// <summary>
+    /// Descends from the root by the UCT formula, playing each move on the input board and adding a virtual loss to each node on the way.
+    /// A leaf that has been visited before is expanded first, as long as the node pool has room for its children.
+    /// </summary>
+    /// <return> Returns the length of the path written to the input array. </return>
+    private int select(PlayoutBoard playoutBoard, int[] path)
+    {
+        int node = rootNode;
+        int pathLength = 0;
+        path[pathLength++] = node;
+        nodeVisits[node] += VIRTUAL_LOSS;
+
+        while (nodeTerminal[node] == NOT_TERMINAL)
+          { if (nodeChildCount[node] == 0)
+              { boolean visitedBefore = (node == rootNode || nodeVisits[node] > VIRTUAL_LOSS);
+                if (!visitedBefore || nodeCount + playoutBoard.openSlotCount > nodeMove.length)
+                    break;
+                expand(node, playoutBoard);
+                if (nodeChildCount[node] == 0)
+                    break; }
+
+            node = selectChild(node);
+            boolean won = playoutBoard.play(nodeMove[node]);
+            nodeTerminal[node] = (won ? TERMINAL_WIN : playoutBoard.isFull() ? TERMINAL_DRAW : NOT_TERMINAL);
+            path[pathLength++] = node;
+            nodeVisits[node] += VIRTUAL_LOSS; }
+
+        return pathLength;
+    }
+
+    // Helper method for select: creates one child per legal move of the board.
+    private void expand(int node, PlayoutBoard playoutBoard)
+    {
+        nodeFirstChild[node] = nodeCount;
+        for (int slot = 0; slot < playoutBoard.openSlotCount; slot++)
+            createNode(playoutBoard.slotTile(playoutBoard.openSlots[slot]));
+        nodeChildCount[node] = nodeCount - nodeFirstChild[node];
+    }
+
+    // Helper method for select: the child with the highest upper confidence bound; unvisited children are taken first.
+    private int selectChild(int node)
+    {
+        double logParentVisits = Math.log(Math.max(1, nodeVisits[node]));
+        int bestChild = nodeFirstChild[node];
+        double bestBound = Double.NEGATIVE_INFINITY;
+        for (int child = nodeFirstChild[node]; child < nodeFirstChild[node] + nodeChildCount[node]; child++)
+          { if (nodeVisits[child] == 0)
+                return child;
+            double bound = nodeScore[child] / (2.0 * nodeVisits[child]) + explorationConstant * Math.sqrt(logParentVisits / nodeVisits[child]);
+            if (bound > bestBound)
+              { bestBound = bound;
+                bestChild = child; }}
+        return bestChild;
+    }
+
+    /// <summary>
+    /// Replaces the virtual loss on each node of the path with the real visit, crediting the player who moved into the node.
+    /// </summary>
+    private void backup(int[] path, int pathLength, byte winner)
+    {
+        for (int depth = 0; depth < pathLength; depth++)
+          { int node = path[depth];
+            nodeVisits[node] += 1 - VIRTUAL_LOSS;
+            if (winner == EMPTY)
+                nodeScore[node] += DRAW_REWARD;
+            else if (winner == moverAtDepth(depth))
+                nodeScore[node] += WIN_REWARD; }
+    }
+
+    // The player who made the move into a node at the given depth below the root.
+    private byte moverAtDepth(int depth) { return (depth % 2 == 1 ? rootPlayer : opponent(rootPlayer)); }
+
+    private static byte opponent(byte player) { return (player == X ? O : X); }
+    // #endregion
+
+    //#region Helper Classes
+
+    // The state one thread searches with, kept across moves: its playout board and path, and the statistics and random stream of the current move.
+    private final class Worker implements Runnable
+    {
+        // Attributes
+        final PlayoutBoard playoutBoard = new PlayoutBoard();
+        final int[] path = new int[rootBoard.length + 1];
+        SearchStatistics statistics;
+
+        // Methods
+        void prepare(long workerSeed)
+        {
+            playoutBoard.random = new SplittableRandom(workerSeed);
+            statistics = new SearchStatistics();        // Handed out with the move's statistics, so not reused.
+        }
+
+        @Override
+        public void run() { runWorker(this); }
+    }
+
+    // A fast board for playouts. The open slots are the non-full columns (with gravity) or the empty tiles (without),
+    // kept in an array with swap-removal so that a random legal move is O(1).
+    private final class PlayoutBoard
+    {
+        // Attributes
+        final byte[] tiles = new byte[numRows * numCols];
+        final int[] columnHeights = new int[numCols];
+        final int[] openSlots = new int[numRows * numCols];
+        final int[] slotPositions = new int[numRows * numCols];    // Position of each slot in openSlots.
+        int openSlotCount;
+        int pieceCount;
+        byte playerTurn;
+        SplittableRandom random;
+
+        // Methods
+        void copyFrom(byte[] source)
+        {
+            System.arraycopy(source, 0, tiles, 0, tiles.length);
+            pieceCount = 0;
+            openSlotCount = 0;
+            for (int tile = 0; tile < tiles.length; tile++)
+                if (tiles[tile] != EMPTY)
+                    pieceCount++;
+                else if (!gravity)
+                    addSlot(tile);
+
+            if (gravity)
+                for (int column = 0; column < numCols; column++)
+                  { columnHeights[column] = 0;
+                    while (columnHeights[column] < numRows && tiles[(numRows - 1 - columnHeights[column]) * numCols + column] != EMPTY)
+                        columnHeights[column]++;
+                    if (columnHeights[column] < numRows)
+                        addSlot(column); }
+
+            playerTurn = (pieceCount % 2 == 0 ? X : O);
+        }
+
+        private void addSlot(int slot)
+        {
+            slotPositions[slot] = openSlotCount;
+            openSlots[openSlotCount++] = slot;
+        }
+
+        private void removeSlot(int slot)
+        {
+            int position = slotPositions[slot];
+            int lastSlot = openSlots[--openSlotCount];
+            openSlots[position] = lastSlot;
+            slotPositions[lastSlot] = position;
+        }
+
+        // The tile a move into the given slot lands on.
+        int slotTile(int slot) { return gravity ? (numRows - 1 - columnHeights[slot]) * numCols + slot : slot; }
+
+        boolean isFull() { return openSlotCount == 0; }
+
+        /// <summary>
+        /// Places the stone of the player on turn on the input tile.
+        /// </summary>
+        /// <return> Returns true if the move won the game. </return>
+        boolean play(int tile)
+        {
+            tiles[tile] = playerTurn;
+            pieceCount++;
+            if (gravity)
+              { int column = tile % numCols;
+                if (++columnHeights[column] == numRows)
+                    removeSlot(column); }
+            else
+                removeSlot(tile);
+
+            playerTurn = opponent(playerTurn);
+            return isWinningTile(tile);
+        }
+
+        // Checks each line through the tile for winSequenceLength consecutive stones of the tile's player.
+        boolean isWinningTile(int tile)
+        {
+            byte player = tiles[tile];
+            int row = tile / numCols;
+            int column = tile % numCols;
+            return lineLength(row, column, 0, 1, player) + lineLength(row, column, 0, -1, player) >= winSequenceLength - 1
+                || lineLength(row, column, 1, 0, player) + lineLength(row, column, -1, 0, player) >= winSequenceLength - 1
+                || lineLength(row, column, 1, 1, player) + lineLength(row, column, -1, -1, player) >= winSequenceLength - 1
+                || lineLength(row, column, 1, -1, player) + lineLength(row, column, -1, 1, player) >= winSequenceLength - 1;
+        }
+
+        // Number of consecutive stones of the player starting next to (row, column) in the given direction.
+        private int lineLength(int row, int column, int rowStep, int columnStep, byte player)
+        {
+            int length = 0;
+            for (row += rowStep, column += columnStep; row >= 0 && row < numRows && column >= 0 && column < numCols; row += rowStep, column += columnStep)
+              { if (tiles[row * numCols + column] != player)
+                    break;
+                length++; }
+            return length;
+        }
+
+        // Checks if the player would win by placing a stone on the (empty) tile.
+        private boolean winsWith(int tile, byte player)
+        {
+            tiles[tile] = player;
+            boolean won = isWinningTile(tile);
+            tiles[tile] = EMPTY;
+            return won;
+        }
+
+        /// <summary>
+        /// Plays the game out to the end with the configured playout policy.
+        /// </summary>
+        /// <return> Returns the winning player, or EMPTY for a draw. </return>
+        byte playout()
+        {
+            while (openSlotCount > 0)
+              { int tile = -1;
+                if (playoutPolicy == PlayoutPolicy.WIN_OR_BLOCK)
+                  { for (int i = 0; i < openSlotCount && tile < 0; i++)
+                        if (winsWith(slotTile(openSlots[i]), playerTurn))
+                            tile = slotTile(openSlots[i]);
+                    for (int i = 0; i < openSlotCount && tile < 0; i++)
+                        if (winsWith(slotTile(openSlots[i]), opponent(playerTurn)))
+                            tile = slotTile(openSlots[i]); }
+                if (tile < 0)
+                    tile = slotTile(openSlots[random.nextInt(openSlotCount)]);
+
+                byte mover = playerTurn;
+                if (play(tile))
+                    return mover; }
+            return EMPTY;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+/// <summary>
+/// Counters describing one search: nodes and leaves visited, nodes per second, effective branching factor, where in the move order
+/// the cutoffs happened, the transposition table hit rate and the deepest ply reached.
+/// An instance is only ever written by the one thread running the search, with plain increments, so keeping the counters costs next to nothing.
+/// Searches split over several threads give each thread its own instance and combine them with add once the threads have finished.
+/// </summary>
+public class SearchStatistics {
+
+    // Constants
+    public static final int CUTOFF_BUCKETS = 8;     // Cutoffs by the 8th or a later move of a node share the last bucket.
+
+    // Counters: written directly by the search, read through the getters below.
+    long nodes;                 // Every node visited, leaves included.
+    long leafNodes;             // Nodes evaluated by the utility function or as game over (for Monte Carlo search, playouts).
+    long tableProbes;
+    long tableHits;             // Probes that found the position, whether or not the entry was deep enough to answer it.
+    final long[] cutoffHistogram = new long[CUTOFF_BUCKETS];   // Cutoffs by the index of the move (in search order) that caused them.
+    int maxDepth;               // The deepest ply below the root that was visited.
+    int completedDepth;         // The depth of the last completed iterative deepening iteration.
+    long lastIterationNodes;    // Nodes visited by the last completed iteration, and by the one before it.
+    long previousIterationNodes;
+    long elapsedNanos;
+
+    private long startNanos;
+    private long iterationStartNodes;
+
+    // Methods
+    void start() { startNanos = System.nanoTime(); }
+    void stop() { elapsedNanos = System.nanoTime() - startNanos; }
+    void startIteration() { iterationStartNodes = nodes; }
+    void completeIteration(int depth)
+    {
+        previousIterationNodes = lastIterationNodes;
+        lastIterationNodes = nodes - iterationStartNodes;
+        completedDepth = depth;
+    }
+    void recordCutoff(int moveIndex) { cutoffHistogram[Math.min(moveIndex, CUTOFF_BUCKETS - 1)]++; }
+
+    /// <summary>
+    /// Adds the counters of another thread's statistics of the same search. The threads run concurrently, so the elapsed time is the longest of the two.
+    /// </summary>
+    /// <return> Returns this instance, making it possible to chain if necessary. </return>
+    public SearchStatistics add(SearchStatistics other)
+    {
+        nodes += other.nodes;
+        leafNodes += other.leafNodes;
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        for (int bucket = 0; bucket < CUTOFF_BUCKETS; bucket++)
+            cutoffHistogram[bucket] += other.cutoffHistogram[bucket];
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        completedDepth = Math.max(completedDepth, other.completedDepth);
+        lastIterationNodes += other.lastIterationNodes;
+        previousIterationNodes += other.previousIterationNodes;
+        elapsedNanos = Math.max(elapsedNanos, other.elapsedNanos);
+        return this;
+    }
+
+    // Getters
+    public long getNodes() { return nodes; }
+    public long getLeafNodes() { return leafNodes; }
+    public int getMaxDepth() { return maxDepth; }
+    public int getCompletedDepth() { return completedDepth; }
+    public double getElapsedMillis() { return elapsedNanos / 1e6; }
+    public double getNodesPerSecond() { return (elapsedNanos > 0 ? nodes * 1e9 / elapsedNanos : 0); }
+    public double getTableHitRate() { return (tableProbes > 0 ? (double) tableHits / tableProbes : 0); }
+    public long[] getCutoffHistogram() { return cutoffHistogram.clone(); }
+
+    // The fraction of cutoffs caused by the first move searched, a measure of move ordering quality.
+    public double getFirstMoveCutoffRate()
+    {
+        long cutoffs = Arrays.stream(cutoffHistogram).sum();
+        return (cutoffs > 0 ? (double) cutoffHistogram[0] / cutoffs : 0);
+    }
+
+    /// <summary>
+    /// The effective branching factor: how many times more nodes the last completed iteration visited than the one before it.
+    /// </summary>
+    /// <return> Returns the ratio, or 0 if fewer than two iterations completed. </return>
+    public double getEffectiveBranchingFactor() { return (previousIterationNodes > 0 ? (double) lastIterationNodes / previousIterationNodes : 0); }
+
+    @Override
+    public String toString()
+    {
+        return String.format("nodes %d (leaves %d), %.0f nodes/s, %.1f ms, depth %d (max %d), branching factor %.2f, first-move cutoffs %.0f%%, table hits %.0f%%, cutoffs by move %s",
+                             nodes, leafNodes, getNodesPerSecond(), getElapsedMillis(), completedDepth, maxDepth, getEffectiveBranchingFactor(),
+                             100 * getFirstMoveCutoffRate(), 100 * getTableHitRate(), Arrays.toString(cutoffHistogram));
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/// <summary>
+/// A fixed-size transposition table for minmaxag's alpha-beta search, keyed by 64-bit Zobrist hashes of the board.
+/// Each entry is two longs: the packed entry data, and the hash XOR the data. A probe only accepts an entry whose two halves agree,
+/// so an entry torn by two writers racing on the same slot is rejected instead of misread, and no locking is needed.
+/// </summary>
+public class TranspositionTable {
+
+    // Constants
+    public static final long NO_ENTRY = 0;
+    public static final int EXACT = 0;          // The stored score is the node's exact value.
+    public static final int LOWER_BOUND = 1;    // The search failed high: the node's value is at least the stored score.
+    public static final int UPPER_BOUND = 2;    // The search failed low: the node's value is at most the stored score.
+    private static final int DEFAULT_SIZE_BITS = 20;
+    private static final long VALID_BIT = 1L << 63;    // Keeps every packed entry distinct from NO_ENTRY.
+
+    // Attributes
+    private final long[] keys;
+    private final long[] entries;
+    private final int indexMask;
+
+    // Constructors
+    public TranspositionTable() { this(DEFAULT_SIZE_BITS); } // Default Constructor with 2^20 entries (16 MB).
+    public TranspositionTable(int sizeBits)
+    {
+        this.keys = new long[1 << sizeBits];
+        this.entries = new long[1 << sizeBits];
+        this.indexMask = (1 << sizeBits) - 1;
+    }
+
+    // Methods
+    /// <summary>
+    /// Stores a search result for the position with the input hash, replacing whatever occupied its slot.
+    /// </summary>
+    public void store(long hash, int score, int depth, int bound, int bestMove)
+    {
+        long entry = VALID_BIT
+                   | (score & 0xFFFFFFFFL)
+                   | ((long) Math.min(depth, 0xFF) << 32)
+                   | ((long) bound << 40)
+                   | ((long) (bestMove + 1) & 0xFFFF) << 42;     // Shifted by one so that "no move" (-1) is stored as 0.
+        int index = (int) hash & indexMask;
+        entries[index] = entry;
+        keys[index] = hash ^ entry;
+    }
+
+    /// <summary>
+    /// Looks up the position with the input hash.
+    /// </summary>
+    /// <return> Returns the packed entry (read with the static accessors below), or NO_ENTRY if the position is not stored. </return>
+    public long probe(long hash)
+    {
+        int index = (int) hash & indexMask;
+        long entry = entries[index];
+        return ((keys[index] ^ entry) == hash ? entry : NO_ENTRY);
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+
+    // Entry accessors.
+    public static int scoreOf(long entry) { return (int) entry; }
+    public static int depthOf(long entry) { return (int) (entry >>> 32) & 0xFF; }
+    public static int boundOf(long entry) { return (int) (entry >>> 40) & 0x3; }
+    public static int bestMoveOf(long entry) { return ((int) (entry >>> 42) & 0xFFFF) - 1; }
+}
@@ -1,59 +1,181 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 
 public class minmaxag {
 
+    // Constants
+    private static final int DEFAULT_SEARCH_DEPTH = 7;  // Number of moves searched ahead of the root before falling back to the utility estimate, unless set otherwise.
+    private static final char EMPTY_TILE = '_';
+    private static final int WIN_SCORE = Integer.MAX_VALUE - 1;    // The utility of a won board; see utility.
+    private static final long ZOBRIST_SEED = 0x6D696E6D61786167L;  // Fixed so that agents for the same board size hash positions identically.
+
     // Attributes
     private int numRows;
     private int numCols;
     private int winSequenceLength;
+    private int[] lineStarts;       // Every row, column and diagonal of the board, for the utility method. See buildLines.
+    private int[] lineSteps;
+    private int[] lineLengths;
+
+    // Search Buffers: allocated once per agent and reused by every search, so no node of the search tree allocates.
+    private char[] board;           // The board being searched. Actions are made and undone in place rather than copied into successor states.
+    private int pieceCount;         // Number of occupied tiles, kept up to date by makeMove/undoMove for the O(1) board-full check.
+    private int[][] moveStacks;     // One preallocated move buffer per ply. generateMoves fills the buffer belonging to the current depth.
+    private int[][] orderingScores; // One preallocated score buffer per ply, used by orderMoves.
+    private int iterationDepth;     // The depth limit of the current iterative deepening iteration.
+    private SearchStatistics statistics = new SearchStatistics();  // A new instance per search, written only by the thread running it.
+
+    // Search Knowledge: kept between consecutive moves of the same game, and forgotten when move is called on an unrelated position.
+    private TranspositionTable transpositionTable;  // Values and best actions of positions searched before, keyed by the canonical board hash.
+    private boolean sharedTranspositionTable;       // Set if the table was passed in to be shared with other agents, in which case newGame leaves it alone.
+    private long[][] zobristKeys;                   // A random key per player and tile. The board hash is the XOR of the keys of all placed tiles.
+    private int[][] symmetries;                     // Tile maps of the board's symmetries (symmetries[0] is the identity), and their inverses.
+    private int[][] inverseSymmetries;
+    private long[] boardHashes;                     // The board hash under each symmetry, kept up to date by makeMove/undoMove. boardHashes[0] is the board's own.
+    private int[][] historyScores;                  // Per player and tile, how often (weighted by depth) the action caused a cutoff.
+    private int[][] principalVariation;             // Triangular table: row d holds the best line found from depth d.
+    private int[] principalVariationLength;
+    private int[] completedVariation;               // The root's line from the last completed iteration, restored if the next one is stopped.
+    private int completedVariationLength;
+    private char[] previousBoard;                   // The root board of the previous move, used to recognize a continuing game.
+    private int previousAction = -1;                // The action returned by the previous move.
+    private int expectedAction = -1;                // The principal variation's reply to the opponent's move, tried first at the next root.
+    private int[] lastPrincipalVariation = new int[0];  // A copy of the principal variation returned by the last move, safe to read while pondering.
+
+    // Engine Attributes
+    public enum Engine { ALPHA_BETA, MONTE_CARLO }
+    private Engine engine = Engine.ALPHA_BETA;
+    public enum Heuristic { CONSECUTIVE_TILES, WIN_ONLY }   // WIN_ONLY scores every leaf that is not won as 0, e.g. to measure what the heuristic is worth.
+    private Heuristic heuristic = Heuristic.CONSECUTIVE_TILES;
+    private int searchDepth = DEFAULT_SEARCH_DEPTH;
+    private MonteCarloSearch monteCarloSearch;     // Created on first use, and kept so that its tree is reused between moves of the same game.
+
+    // Pondering Attributes: after replying, the agent keeps searching on the opponent's time, assuming the opponent plays the predicted move.
+    private boolean ponderingEnabled;
+    private Thread ponderThread;                // Runs minimax on the ponder board; the search buffers belong to it until it is joined.
+    private char[] ponderBoard;                 // The previous root plus the agent's reply and the predicted opponent move.
+    private int ponderAction = -1;              // The ponder search's result, valid once the thread has been joined.
+    private volatile boolean stopRequested;     // Makes a running search unwind as quickly as possible, e.g. when the ponder prediction was wrong.
+
+    // Time Budget Attributes: a search stops once its budget is used up, returning the action of the deepest completed iteration.
+    private long timeBudgetMillis;              // Zero for no budget: every move is searched searchDepth moves deep.
+    private volatile long searchDeadline;       // System.nanoTime() at which the running search runs out of time, or zero for none. Set by move during a ponder hit.
+    private boolean outOfTime;
 
     // Constructors
-    public minmaxag(){} // Default Constructor
-    public minmaxag(int numRows, int numCols, int winSequenceLength)
+    public minmaxag() { this(6, 7, 4); } // Default Constructor: the standard board, 6 rows of 7 columns, four in a row to win.
+    public minmaxag(int numRows, int numCols, int winSequenceLength) { this(numRows, numCols, winSequenceLength, null); }
+
+    /// <summary>
+    /// Creates an agent that uses the input transposition table, e.g. one table shared by many agents searching in parallel (see Connect4Engine).
+    /// The table is lockless, and all agents for the same board size hash positions identically, so they can safely share what they learn.
+    /// A null table gives the agent a table of its own.
+    /// </summary>
+    public minmaxag(int numRows, int numCols, int winSequenceLength, TranspositionTable transpositionTable)
     {
         this.numRows = numRows;
         this.numCols = numCols;
         this.winSequenceLength = winSequenceLength;
+
+        this.board = new char[numRows * numCols];
+
+        this.sharedTranspositionTable = (transpositionTable != null);
+        this.transpositionTable = (sharedTranspositionTable ? transpositionTable : new TranspositionTable());
+        this.zobristKeys = new long[2][board.length];
+        Random zobristRandom = new Random(ZOBRIST_SEED);
+        for (long[] playerKeys : zobristKeys)
+            for (int tile = 0; tile < board.length; tile++)
+                playerKeys[tile] = zobristRandom.nextLong();
+        this.historyScores = new int[2][board.length];
+        allocateSearchBuffers();
+        this.previousBoard = new char[board.length];
+        buildLines();
+        buildSymmetries();
+    }
+
+    // Helper method: sizes the per-ply buffers for searchDepth plies.
+    private void allocateSearchBuffers()
+    {
+        this.moveStacks = new int[searchDepth + 1][numCols];
+        this.orderingScores = new int[searchDepth + 1][numCols];
+        this.principalVariation = new int[searchDepth + 2][searchDepth + 2];
+        this.principalVariationLength = new int[searchDepth + 2];
+        this.completedVariation = new int[searchDepth + 2];
+    }
+
+    // Engine methods. setEngine returns the agent, making it possible to chain if necessary.
+    public minmaxag setEngine(Engine engine) { this.engine = engine; return this; }
+    public minmaxag setHeuristic(Heuristic heuristic) { this.heuristic = heuristic; return this; }
+    public minmaxag setSearchDepth(int searchDepth) { finishPondering(null); this.searchDepth = Math.max(1, searchDepth); allocateSearchBuffers(); return this; }
+    public minmaxag setPondering(boolean ponderingEnabled) { this.ponderingEnabled = ponderingEnabled; return this; }
+    public minmaxag setTimeBudgetMillis(long timeBudgetMillis) { this.timeBudgetMillis = timeBudgetMillis; return this; }
+    public MonteCarloSearch getMonteCarloSearch()
+    {
+        if (monteCarloSearch == null)
+            monteCarloSearch = new MonteCarloSearch(numRows, numCols, winSequenceLength, true);
+        return monteCarloSearch;
     }
 
     // #region State Methods
     /// <summary>
-    /// Given a current state, determines whose turn it is.
+    /// Determines whose turn it is on the board being searched.
+    /// Since 'X' always begins the game, an even number of pieces on the board means it must be 'X's turn.
     /// </summary>
     /// <return> A single character denoting the player whose turn it is: X or O </return>
-    private char getPlayerTurn(State state)
+    private char getPlayerTurn() { return (pieceCount % 2 == 0 ? 'X' : 'O'); }
+
+    // Helper method: the index of a player's row in the zobristKeys and historyScores tables.
+    private static int playerIndex(char player) { return (player == 'X' ? 0 : 1); }
+
+    /// <summary>
+    /// Copies the input state (a string, or a Connect4Board, in the same format) into the search board, counting the pieces already played.
+    /// Package-private, as are utility and generateMoves, so that the benchmarks can call them directly.
+    /// </summary>
+    void loadBoard(CharSequence stringState)
     {
-        int xCount = 0;
-        int oCount = 0;
-        
-        // Iterate through each board position, tracking the total occurences of each player.
-        for (char boardPosition : state.stringState.toCharArray())
-            switch (boardPosition) 
-              { case 'X' -> xCount++;
-                case 'O' -> oCount++; }
+        for (int tile = 0; tile < board.length; tile++)
+            board[tile] = stringState.charAt(tile);
+
+        pieceCount = 0;
+        Arrays.fill(boardHashes, 0);
+        for (int tile = 0; tile < board.length; tile++)
+            if (board[tile] != EMPTY_TILE)
+              { pieceCount++;
+                toggleTileHash(tile, board[tile]); }
+    }
 
-        // Since 'X' always begins the game, if the totals are equal, it must be 'X's turn.
-        return (xCount == oCount ? 'X' : 'O');
+    /// <summary>
+    /// Takes the input action on the search board, placing the tile of the player whose turn it is.
+    /// Every makeMove is paired with an undoMove once the resulting subtree has been searched.
+    /// </summary>
+    private void makeMove(int actionNo)
+    {
+        board[actionNo] = getPlayerTurn();
+        toggleTileHash(actionNo, board[actionNo]);
+        pieceCount++;
     }
 
     /// <summary>
-    /// Given a state and corresponding action, determine the resultant state if that action were taken.
+    /// Reverts an action previously taken by makeMove.
     /// </summary>
-    /// <return> Returns the successor state </return>
-    private State getSuccessorState(State state, Action action)
+    private void undoMove(int actionNo)
     {
-        char[] result = state.stringState.toCharArray(); // Decompose the input state string into a character array,
-        result[action.actionNo] = getPlayerTurn(state);  // Determine the player whose turn it would be, and given the input action, set the corresponding tile to that player.
-        return new State(new String(result));   // Recompose the character array as a string and output as a state.
+        toggleTileHash(actionNo, board[actionNo]);
+        board[actionNo] = EMPTY_TILE;
+        pieceCount--;
     }
 
     /// <summary>
-    /// Determines if the input state is terminal, i.e. the game has been one by either player, or there are no more possible actions.
+    /// Determines if the search board has no empty tiles left. Every empty tile is eventually playable, so this is equivalent to there being no possible actions.
+    /// </summary>
+    private boolean isBoardFull() { return pieceCount >= board.length; }
+
+    /// <summary>
+    /// Determines if the search board is terminal, i.e. the game has been one by either player, or there are no more possible actions.
     /// Note: Inside the utility function, the terminalStateCheck flag is set so that it does not return a state desirability score if there is not an absolute winner.
     /// </summary>
-    /// <return> A boolean (True/False) if the state is terminal. </return>
-    private boolean isTerminalState(State state) { return utility(state, true) != 0 || getAllActions(state).size() <= 0;}
+    /// <return> A boolean (True/False) if the search board is terminal. </return>
+    private boolean isTerminalState() { return utility(true) != 0 || isBoardFull(); }
 
     // Helper method for the utility method (SEE BELOW).
     private int updateCheckSum(int checkSum, char current_character)
@@ -72,81 +194,20 @@ public class minmaxag {
     /// <summary>
     /// Determines the desirability of a given state, based on a consecutive-tile heuristic.
     /// </summary>
-    /// <return> Returns the desirability score of the input state. </return>
-    private int utility(State state) {return utility(state, false);}
-    private int utility(State state, boolean terminalStateCheck)
-    {
-        int totalUtilityEvaluation = 0;  // Holds the desirability score for the input state.
-        int checkSum = 0;   // An intermediate value that is used for each row, column, and diagonal.
-
-        // Check each row for a winning/patterned sequence.
-        for (int row = 0; row < numRows; row ++, checkSum = 0)
-            for(int column = 0; column < numCols; column++)
-            {   // See above helper function for explanation.
-                int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt(Coordinate.flattenCoordinates(column, row, numCols)));
-                
-                // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                    totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                checkSum = updatedCheckSum;
-
-                // Check if there is an absolute win.
-                if (Math.abs(checkSum) >= winSequenceLength) 
-                    return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-            }
-        
-        // Check each column for a winning sequence.
-        checkSum = 0;
-        for (int column = 0; column < numCols; column++, checkSum = 0)
-            for(int row = 0; row < numRows; row++)
-            {   // See above helper function for explanation.
-                int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt(Coordinate.flattenCoordinates(column, row, numCols)));
-                
-                // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                    totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                checkSum = updatedCheckSum;
-
-                // Check if there is an absolute win.
-                if (Math.abs(checkSum) >= winSequenceLength) 
-                    return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-            }
-
-        // Check each top-left to bottom-right diagonal for a winning sequence.
-        checkSum = 0;
-        for (int row = 0; row < numRows; row++)
-            for (int column = 0; column < numCols; column++, checkSum = 0)
-                for (int diagonalStep = 0; diagonalStep + row < numRows && diagonalStep + column < numCols; diagonalStep++)
-                  { // See above helper function for explanation. With each diagonal step iteration, move down and right once.
-                    int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt((row + diagonalStep) * numCols + column + diagonalStep));
-                    
-                    // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                    if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                        totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                    checkSum = updatedCheckSum;
-
-                    // Check if there is an absolute win.
-                    if (Math.abs(checkSum) >= winSequenceLength) 
-                        return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-                    }
-        
-        // Check the bottom-left to top-right diagonal for a winning sequence.
-        checkSum = 0;
-        for (int row = numRows - 1; row >= 0; row--)
-            for (int column = 0; column < numCols; column++, checkSum = 0)
-                for (int diagonalStep = 0; row - diagonalStep >= 0 && diagonalStep + column < numCols; diagonalStep++)
-                  { // See above helper function for explanation. With each diagonal step iteration, move up and right once.
-                    int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt((row - diagonalStep) * numCols + column + diagonalStep));
-                    
-                    // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                    if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                        totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                    checkSum = updatedCheckSum;
-
-                    // Check if there is an absolute win.
-                    if (Math.abs(checkSum) >= winSequenceLength) 
-                        return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-                    }
+    /// <return> Returns the desirability score of the search board. </return>
+    int utility() {return utility(false);}
+    private int utility(boolean terminalStateCheck)
+    {
+        int totalUtilityEvaluation = 0;  // Holds the desirability score for the search board.
+
+        // Check each row, column, and diagonal for a winning/patterned sequence.
+        for (int line = 0; line < lineStarts.length; line++)
+          { int lineScore = scanLine(lineStarts[line], lineSteps[line], lineLengths[line]);
+
+            // Check if there is an absolute win. If so, return immediately the largest possible desirability score.
+            if (Math.abs(lineScore) == WIN_SCORE)
+                return lineScore;
+            totalUtilityEvaluation += lineScore; }
 
         // If no winning sequence found & terminalStateCheck is set, return 0, which means draw or game is not over yet.
         if (terminalStateCheck)
@@ -154,108 +215,545 @@ public class minmaxag {
         return totalUtilityEvaluation;  // Otherwise return the calculated desirability score.
     }
 
+    /// <summary>
+    /// Helper method for the utility method: scans the tiles of one row, column or diagonal, from start in steps of step.
+    /// </summary>
+    /// <return> Returns the desirability score of the line's patterns, or the win score (positive for O) if it holds a winning sequence. </return>
+    private int scanLine(int start, int step, int length)
+    {
+        int lineScore = 0;
+        int checkSum = 0;   // An intermediate value that is used for the line.
+        for (int i = 0, tile = start; i < length; i++, tile += step)
+          { // See above helper function for explanation.
+            int updatedCheckSum = updateCheckSum(checkSum, board[tile]);
+
+            // If the new checksum's sign is different from the previous, a pattern of consecutive same-type tiles has ended: add it to the desirability score.
+            if (Math.signum(updatedCheckSum) != Math.signum(checkSum))
+                lineScore += patternValue(checkSum);
+            checkSum = updatedCheckSum;
+
+            if (Math.abs(checkSum) >= winSequenceLength)
+                return (int) Math.signum(checkSum) * WIN_SCORE; }
+        return lineScore + patternValue(checkSum);  // A pattern reaching the edge of the board counts as well.
+    }
+
+    // Helper method: the desirability of a pattern of 2 or more consecutive same-type tiles (10^(n-1), positive for O and negative for X), 0 for a single tile.
+    private static int patternValue(int checkSum) { return (Math.abs(checkSum) < 2 ? 0 : (int) Math.signum(checkSum) * (int) Math.pow(10, Math.abs(checkSum) - 1)); }
+
+    /// <summary>
+    /// Lists every row, column and diagonal of the board as a start tile, step and length, for the utility method.
+    /// Each line is listed once, starting from the edge of the board, so that mirrored or rotated boards have equal utilities.
+    /// </summary>
+    private void buildLines()
+    {
+        int lineCount = numRows + numCols + 2 * (numRows + numCols - 1);
+        lineStarts = new int[lineCount];
+        lineSteps = new int[lineCount];
+        lineLengths = new int[lineCount];
+        int line = 0;
+        for (int row = 0; row < numRows; row++, line++)
+          { lineStarts[line] = row * numCols;  lineSteps[line] = 1;  lineLengths[line] = numCols; }
+        for (int column = 0; column < numCols; column++, line++)
+          { lineStarts[line] = column;  lineSteps[line] = numCols;  lineLengths[line] = numRows; }
+
+        // Top-left to bottom-right diagonals start on the top row or the left column; bottom-left to top-right diagonals on the bottom row or the left column.
+        for (int row = numRows - 1, column = 0; column < numCols; line++)
+          { lineStarts[line] = row * numCols + column;  lineSteps[line] = numCols + 1;  lineLengths[line] = Math.min(numRows - row, numCols - column);
+            if (row > 0) row--; else column++; }
+        for (int row = 0, column = 0; column < numCols; line++)
+          { lineStarts[line] = row * numCols + column;  lineSteps[line] = 1 - numCols;  lineLengths[line] = Math.min(row + 1, numCols - column);
+            if (row < numRows - 1) row++; else column++; }
+    }
+
+    // Helper method: the value of a leaf under the selected heuristic. Without the heuristic, only won boards score.
+    private int evaluate() { return (heuristic == Heuristic.CONSECUTIVE_TILES ? utility() : utility(true)); }
+
+    /// <summary>
+    /// Lists the board's symmetries as tile maps: symmetries[s][tile] is where symmetry s moves the tile. Symmetry 0 is the identity.
+    /// Gravity leaves a Connect4 board a single other symmetry, its mirror image about the center column.
+    /// </summary>
+    private void buildSymmetries()
+    {
+        symmetries = new int[2][board.length];
+        for (int tile = 0; tile < board.length; tile++)
+          { int row = tile / numCols, column = tile % numCols;
+            symmetries[0][tile] = tile;
+            symmetries[1][tile] = row * numCols + (numCols - 1 - column); }
+
+        inverseSymmetries = new int[symmetries.length][board.length];
+        for (int s = 0; s < symmetries.length; s++)
+            for (int tile = 0; tile < board.length; tile++)
+                inverseSymmetries[s][symmetries[s][tile]] = tile;
+        boardHashes = new long[symmetries.length];
+    }
+
+    // Helper method: places or removes (XOR is its own inverse) a player's tile in the board hash under every symmetry.
+    private void toggleTileHash(int tile, char player)
+    {
+        long[] playerKeys = zobristKeys[playerIndex(player)];
+        for (int s = 0; s < symmetries.length; s++)
+            boardHashes[s] ^= playerKeys[symmetries[s][tile]];
+    }
+
+    /// <summary>
+    /// Picks the symmetry whose board hash is the smallest. All symmetric equivalents of a position pick the same mapped board,
+    /// its canonical form, so they share a single transposition table entry.
+    /// </summary>
+    /// <return> Returns the index of the canonical symmetry. </return>
+    private int canonicalSymmetry()
+    {
+        int canonical = 0;
+        for (int s = 1; s < boardHashes.length; s++)
+            if (boardHashes[s] < boardHashes[canonical])
+                canonical = s;
+        return canonical;
+    }
+
+    /// <summary>
+    /// Removes the root actions that a symmetry of the board maps onto another action: while the board is symmetric, such actions lead to
+    /// equivalent positions. Of each group of equivalent actions, only the smallest tile is kept.
+    /// </summary>
+    /// <return> Returns the number of actions kept at the front of the buffer. </return>
+    private int pruneSymmetricActions(int[] moveBuffer, int moveCount)
+    {
+        // The symmetries leaving the board unchanged, as a bit set. The boards are compared directly rather than trusting the hashes.
+        int boardSymmetries = 0;
+        for (int s = 1; s < symmetries.length; s++)
+          { boolean symmetric = true;
+            for (int tile = 0; tile < board.length && symmetric; tile++)
+                symmetric = (board[symmetries[s][tile]] == board[tile]);
+            if (symmetric)
+                boardSymmetries |= 1 << s; }
+        if (boardSymmetries == 0)
+            return moveCount;
+
+        int keptCount = 0;
+        for (int i = 0; i < moveCount; i++)
+          { int action = moveBuffer[i];
+            boolean smallest = true;
+            for (int s = 1; s < symmetries.length && smallest; s++)
+                smallest = ((boardSymmetries & (1 << s)) == 0 || symmetries[s][action] >= action);
+            if (smallest)
+                moveBuffer[keptCount++] = action; }
+        return keptCount;
+    }
+
     // #region Action Methods
     /// <summary>
-    /// Determines all of the possible actions given the input state.
+    /// Determines all of the possible actions on the search board, writing them into the input move buffer.
     /// </summary>
-    /// <return> Returns a list of actions to take. </return>
-    private List<Action> getAllActions(State state)
+    /// <return> Returns the number of actions written to the buffer. </return>
+    int generateMoves(int[] moveBuffer)
     {
-        // Create a list to hold all actions.
-        List<Action> result = new ArrayList<>();
+        int moveCount = 0;
         for (int column = 0; column < numCols; column++)
           { for (int row = 0; row < numRows; row++)
-                  { if (state.stringState.charAt(Coordinate.flattenCoordinates(column, row, numCols)) == '_')
+                  { if (board[Coordinate.flattenCoordinates(column, row, numCols)] == EMPTY_TILE)
                         continue;
                     if (row != 0)
-                        result.add(new Action(Coordinate.flattenCoordinates(column, row-1, numCols)));
+                        moveBuffer[moveCount++] = Coordinate.flattenCoordinates(column, row-1, numCols);
                     break; }
-                if (state.stringState.charAt(Coordinate.flattenCoordinates(column, numRows-1, numCols)) == '_')
-                    result.add(new Action(Coordinate.flattenCoordinates(column, numRows-1, numCols))); }
-        return result;
+                if (board[Coordinate.flattenCoordinates(column, numRows-1, numCols)] == EMPTY_TILE)
+                    moveBuffer[moveCount++] = Coordinate.flattenCoordinates(column, numRows-1, numCols); }
+        return moveCount;
+    }
+
+    /// <summary>
+    /// Orders the actions in a move buffer for alpha-beta: the input first action (the best action known from the transposition table
+    /// or the previous iteration) comes first, followed by the others in order of their history scores.
+    /// </summary>
+    private void orderMoves(int[] moveBuffer, int moveCount, int firstAction, int depth)
+    {
+        int[] scores = orderingScores[depth];
+        int[] playerHistory = historyScores[playerIndex(getPlayerTurn())];
+        for (int i = 0; i < moveCount; i++)
+            scores[i] = (moveBuffer[i] == firstAction ? Integer.MAX_VALUE : playerHistory[moveBuffer[i]]);
+
+        // Insertion sort by descending score; move buffers hold a handful of actions.
+        for (int i = 1; i < moveCount; i++)
+          { int action = moveBuffer[i];
+            int score = scores[i];
+            int position = i;
+            for (; position > 0 && scores[position - 1] < score; position--)
+              { moveBuffer[position] = moveBuffer[position - 1];
+                scores[position] = scores[position - 1]; }
+            moveBuffer[position] = action;
+            scores[position] = score; }
+    }
+
+    // Helper method: credits an action that caused a cutoff, halving every score once they grow large.
+    private void recordCutoff(int actionNo, int remainingDepth)
+    {
+        int[] playerHistory = historyScores[playerIndex(getPlayerTurn())];
+        playerHistory[actionNo] += remainingDepth * remainingDepth;
+        if (playerHistory[actionNo] > (1 << 28))
+            ageHistory();
+    }
+
+    private void ageHistory()
+    {
+        for (int[] playerHistory : historyScores)
+            for (int tile = 0; tile < playerHistory.length; tile++)
+                playerHistory[tile] /= 2;
+    }
+
+    // Helper method: the best line from depth is the input action followed by the best line from depth + 1.
+    private void updatePrincipalVariation(int depth, int actionNo)
+    {
+        principalVariation[depth][depth] = actionNo;
+        for (int next = depth + 1; next < principalVariationLength[depth + 1]; next++)
+            principalVariation[depth][next] = principalVariation[depth + 1][next];
+        principalVariationLength[depth] = Math.max(depth + 1, principalVariationLength[depth + 1]);
     }
 
     // #region Minimax Methods
     /// <summary>
     /// A helper method for the minimax method that is recursively called. Flip-flops between max & min appropriately to capture both the AI & opponent player's perspective.
+    /// Positions already searched deeply enough are answered from the transposition table; otherwise its best action is tried first.
     /// </summary>
     /// <return> Returns the best utility value for the initial potential action. </return>
-    private int minimaxValue(State state, boolean minToggle, int alpha, int beta, int depth)
+    private int minimaxValue(boolean minToggle, int alpha, int beta, int depth)
     {
-        // Base case: After searching 7 moves ahead or reaching a terminal state, return the state's utility value.
-        if (depth > 7 || isTerminalState(state))
-            return utility(state);  // If cut off by depth, utility provides an estimated desirability score.
+        principalVariationLength[depth] = depth;
+        statistics.nodes++;
+        if (depth > statistics.maxDepth)
+            statistics.maxDepth = depth;
+        if (searchStopped())
+            return 0;   // The search is being abandoned, so the value no longer matters.
+
+        // Base case: After searching iterationDepth moves ahead or reaching a terminal state, return the board's utility value.
+        if (depth > iterationDepth || isTerminalState())
+          { statistics.leafNodes++;
+            return evaluate(); } // If cut off by depth, the heuristic provides an estimated desirability score.
+
+        // Check the transposition table. A stored bound only answers the node if it falls outside the alpha-beta window.
+        // Entries are stored for the canonical form of the board, so the stored best action is mapped back from it.
+        int remainingDepth = iterationDepth - depth + 1;
+        int tableAction = -1;
+        int symmetry = canonicalSymmetry();
+        long entry = transpositionTable.probe(boardHashes[symmetry]);
+        statistics.tableProbes++;
+        if (entry != TranspositionTable.NO_ENTRY)
+          { statistics.tableHits++;
+            int canonicalAction = TranspositionTable.bestMoveOf(entry);
+            tableAction = (canonicalAction < 0 ? -1 : inverseSymmetries[symmetry][canonicalAction]);
+            int tableScore = TranspositionTable.scoreOf(entry);
+            if (TranspositionTable.depthOf(entry) >= remainingDepth)
+                switch (TranspositionTable.boundOf(entry))
+                  { case TranspositionTable.EXACT -> { return tableScore; }
+                    case TranspositionTable.LOWER_BOUND -> { if (tableScore >= beta) return tableScore; }
+                    case TranspositionTable.UPPER_BOUND -> { if (tableScore <= alpha) return tableScore; } }}
+        int alphaOriginal = alpha;
+        int betaOriginal = beta;
     
-        // Determine all possible actions from this state.
-        List<Action> possibleActions = getAllActions(state);
+        // Determine all possible actions from this board, using the move buffer reserved for this depth.
+        int[] possibleActions = moveStacks[depth];
+        int actionCount = generateMoves(possibleActions);
+        orderMoves(possibleActions, actionCount, tableAction, depth);
+        int bestValue;
+        int bestAction = -1;
         
         // If in the minimizing stage, attempt to find the lowest possible value.
         if (minToggle)
-          { int minValue = Integer.MAX_VALUE;   // Start with the highest possible value to ensure minimization.
+          { bestValue = Integer.MAX_VALUE;   // Start with the highest possible value to ensure minimization.
             
             // Iterate over each possible action.
-            for (Action action : possibleActions)
-              { // Recursively evaluate the resulting state, switching to the maximizing stage.
-                minValue = Math.min(minValue, minimaxValue(getSuccessorState(state, action), false, alpha, beta, depth + 1));
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board, switching to the maximizing stage.
+                makeMove(possibleActions[i]);
+                int value = minimaxValue(false, alpha, beta, depth + 1);
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                    return 0;   // Never store the value of an abandoned search.
+                if (value < bestValue)
+                  { bestValue = value;
+                    bestAction = possibleActions[i];
+                    updatePrincipalVariation(depth, bestAction); }
                 
                 // Alpha-beta pruning: If the value is less than or equal to alpha, prune this branch.
-                if (minValue <= alpha)
-                    return minValue;
+                if (bestValue <= alpha)
+                  { recordCutoff(possibleActions[i], remainingDepth);
+                    statistics.recordCutoff(i);
+                    break; }
                 
                 // Update beta to track the best minimum value found so far.
-                beta = Math.min(beta, minValue); }
-            
-            return minValue; 
+                beta = Math.min(beta, bestValue); }
           }
         
         // Otherwise, in the maximizing stage, attempt to find the highest possible value.
         else
-          { int maxValue = Integer.MIN_VALUE;   // Start with the lowest possible value to ensure maximization.
+          { bestValue = Integer.MIN_VALUE;   // Start with the lowest possible value to ensure maximization.
             
             // Iterate over each possible action.
-            for (Action action : possibleActions)
-              { // Recursively evaluate the resulting state, switching to the minimizing stage.
-                maxValue = Math.max(maxValue, minimaxValue(getSuccessorState(state, action), true, alpha, beta, depth + 1));
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board, switching to the minimizing stage.
+                makeMove(possibleActions[i]);
+                int value = minimaxValue(true, alpha, beta, depth + 1);
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                    return 0;   // Never store the value of an abandoned search.
+                if (value > bestValue)
+                  { bestValue = value;
+                    bestAction = possibleActions[i];
+                    updatePrincipalVariation(depth, bestAction); }
                 
                 // Alpha-beta pruning: If the value is greater than or equal to beta, prune this branch.
-                if (maxValue >= beta)
-                    return maxValue;
+                if (bestValue >= beta)
+                  { recordCutoff(possibleActions[i], remainingDepth);
+                    statistics.recordCutoff(i);
+                    break; }
                 
                 // Update alpha to track the best maximum value found so far.
-                alpha = Math.max(alpha, maxValue); }
-            
-            return maxValue; 
+                alpha = Math.max(alpha, bestValue); }
           }
+
+        // A value outside the original window is only a bound on the node's true value.
+        int bound = (bestValue >= betaOriginal ? TranspositionTable.LOWER_BOUND : bestValue <= alphaOriginal ? TranspositionTable.UPPER_BOUND : TranspositionTable.EXACT);
+        transpositionTable.store(boardHashes[symmetry], bestValue, remainingDepth, bound, (bestAction < 0 ? -1 : symmetries[symmetry][bestAction]));
+        return bestValue;
+    }
+
+    /// <summary>
+    /// Checks if the running search has to stop: because it was asked to, or because its time budget ran out.
+    /// The clock is only read every 1024 nodes, and never during the first iteration, so that there is always an action to return.
+    /// </summary>
+    private boolean searchStopped()
+    {
+        if ((statistics.nodes & 1023) == 0 && iterationDepth > 1 && searchDeadline != 0 && System.nanoTime() - searchDeadline > 0)
+            outOfTime = true;
+        return stopRequested || outOfTime;
     }
 
     /// <summary>
-    /// The primary minimax function. Given the initial state, determine the optimal action to take.
+    /// The primary minimax function. Given the loaded search board, determine the optimal action to take.
+    /// The search is iteratively deepened: each iteration searches one move deeper than the last, trying the previous iteration's
+    /// best action first and reusing the transposition table and history scores it filled.
+    /// If the search is stopped, the action chosen by the last completed iteration is returned, along with its principal variation.
     /// </summary>
     /// <return> Returns the optimal action to take (as opposed to a utility value the helper function returns). </return>
-    private Action minimax(State state)
+    private int minimax()
     {
-        // Determine all possible actions from this state.
-        List<Action> possibleActions = getAllActions(state);
+        // Determine all possible actions from the root board, leaving out those equivalent to another by symmetry.
+        int[] possibleActions = moveStacks[0];
+        int actionCount = pruneSymmetricActions(possibleActions, generateMoves(possibleActions));
 
-        // Create an action that will store the to-be-chosen action.
-        Action choiceAction = new Action();
+        // Holds the to-be-chosen action. Before the first iteration, that is the reply the previous principal variation expected.
+        int choiceAction = expectedAction;
+        completedVariationLength = 0;
+
+        // Utilities are scored for 'O', so the root maximizes when it is 'O's turn and minimizes when it is 'X's, letting the agent play either side.
+        boolean maximizing = (getPlayerTurn() == 'O');
         
-        // Iterate through each possible action:
-        int maximumDesirability = Integer.MIN_VALUE;
-        for (Action action : possibleActions)
-          { // Recursively evaluate the resulting state of the current state and action.
-            action.desirability = minimaxValue(getSuccessorState(state, action), true, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
-            
-            // If the value is larger than any seen thus far, set it to the maximum and its corresponding action to the choice action.
-            if (action.desirability > maximumDesirability)
-              { maximumDesirability = action.desirability;
-                choiceAction = action; } }
+        for (iterationDepth = 1; iterationDepth <= searchDepth; iterationDepth++)
+          { orderMoves(possibleActions, actionCount, choiceAction, 0);
+            principalVariationLength[0] = 0;
+            statistics.startIteration();
+            statistics.nodes++;     // The root.
+
+            // Iterate through each possible action:
+            int bestDesirability = (maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+            int iterationAction = -1;
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board of the current board and action. Actions that cannot beat the best so far are only bounded.
+                makeMove(possibleActions[i]);
+                int desirability = (maximizing ? minimaxValue(true, bestDesirability, Integer.MAX_VALUE, 1)
+                                               : minimaxValue(false, Integer.MIN_VALUE, bestDesirability, 1));
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                  { // The stopped iteration's line is incomplete: report the one that goes with the returned action.
+                    System.arraycopy(completedVariation, 0, principalVariation[0], 0, completedVariationLength);
+                    principalVariationLength[0] = completedVariationLength;
+                    return choiceAction; }
+                
+                // If the value is better for the player on turn than any seen thus far, keep it and its corresponding action as the choice action.
+                if (maximizing ? desirability > bestDesirability : desirability < bestDesirability)
+                  { bestDesirability = desirability;
+                    iterationAction = possibleActions[i];
+                    updatePrincipalVariation(0, iterationAction); } }
+            choiceAction = iterationAction;
+            completedVariationLength = principalVariationLength[0];
+            System.arraycopy(principalVariation[0], 0, completedVariation, 0, completedVariationLength);
+
+            statistics.completeIteration(iterationDepth);
+
+            // A forced win cannot be improved on by searching deeper.
+            if (maximizing ? bestDesirability >= WIN_SCORE : bestDesirability <= -WIN_SCORE)
+                break; }
 
         return choiceAction;
     }
 
     // The main method called by the referencing program.
-    public int move(String stringState) { return minimax(new State(stringState)).actionNo; }
+    public int move(CharSequence stringState) { return search(stringState).action; }
+
+    /// <summary>
+    /// Chooses an action for the input state string exactly like move, additionally reporting how the search went.
+    /// On a ponder hit the statistics are those of the ponder search, which started on the opponent's time.
+    /// </summary>
+    /// <return> Returns the chosen action with its principal variation and search statistics. </return>
+    public SearchResult search(CharSequence stringState)
+    {
+        if (engine == Engine.MONTE_CARLO)
+          { int choiceAction = getMonteCarloSearch().move(stringState);
+            return new SearchResult(choiceAction, new int[0], monteCarloSearch.getStatistics()); }
+
+        // The move's time budget starts now. On a ponder hit, the answer has already been (or is being) searched, and gets what is left of it.
+        long moveDeadline = deadlineAfter(timeBudgetMillis);
+        int choiceAction = finishPondering(stringState, moveDeadline);
+        if (choiceAction < 0)
+          { loadBoard(stringState);
+            if (!continuesPreviousMove())
+                newGame();
+            choiceAction = timedMinimax(moveDeadline); }
+        SearchStatistics searchStatistics = statistics;
+
+        // The next move's search, pondered or not, starts from the aged history scores (newGame clears them if it does not continue this one).
+        System.arraycopy(board, 0, previousBoard, 0, board.length);
+        previousAction = choiceAction;
+        lastPrincipalVariation = Arrays.copyOf(principalVariation[0], principalVariationLength[0]);
+        ageHistory();
+        if (ponderingEnabled)
+            startPondering(choiceAction);
+        return new SearchResult(choiceAction, lastPrincipalVariation.clone(), searchStatistics);
+    }
+
+    // Helper method: runs minimax on the loaded board until the input deadline (zero for none).
+    private int timedMinimax(long deadline)
+    {
+        searchDeadline = deadline;
+        int choiceAction = runMinimax();
+        searchDeadline = 0;
+        return choiceAction;
+    }
+
+    // Helper method: runs minimax on the loaded board until searchDeadline, with a new statistics instance so that earlier results are left untouched.
+    // The deadline is left to the caller, because a ponder hit sets it from the agent's thread while the ponder thread searches.
+    private int runMinimax()
+    {
+        statistics = new SearchStatistics();
+        statistics.start();
+        outOfTime = false;
+        int choiceAction = minimax();
+        statistics.stop();
+        return choiceAction;
+    }
+
+    // Helper method: the System.nanoTime() at which a search starting now runs out of the input budget, or zero for no budget.
+    private static long deadlineAfter(long budgetMillis) { return (budgetMillis > 0 ? Math.max(1, System.nanoTime() + budgetMillis * 1_000_000L) : 0); }
+
+    // #region Pondering Methods
+    /// <summary>
+    /// Starts searching, on a background thread, the position after the input action and the opponent's reply predicted by the principal variation.
+    /// Nothing is pondered if the action ends the game or there is no predicted reply.
+    /// </summary>
+    private void startPondering(int choiceAction)
+    {
+        if (choiceAction < 0 || principalVariationLength[0] < 2 || principalVariation[0][0] != choiceAction)
+            return;
+
+        makeMove(choiceAction);
+        if (isTerminalState())
+          { undoMove(choiceAction);
+            return; }
+        makeMove(principalVariation[0][1]);
+        continuesPreviousMove();        // The same bookkeeping as move on the predicted board: its principal variation's next action is tried first.
+
+        // The search buffers now hold the ponder board, and belong to the ponder thread until finishPondering joins it.
+        // It has no deadline until the opponent moves: a hit gives it the rest of the move's budget.
+        if (ponderBoard == null)
+            ponderBoard = new char[board.length];
+        System.arraycopy(board, 0, ponderBoard, 0, board.length);
+        ponderAction = -1;
+        searchDeadline = 0;
+        ponderThread = new Thread(() -> ponderAction = runMinimax(), "minmaxag-ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /// <summary>
+    /// Ends pondering once the opponent has moved. On a ponder hit (the input state is the pondered board), waits for the ponder search to finish,
+    /// stopping it at the input deadline (zero for none) like any other move's search; on a miss (or a null state), stops it at once.
+    /// Either way the transposition table it filled is kept.
+    /// </summary>
+    /// <return> Returns the ponder search's action on a hit, or -1 if the position still has to be searched. </return>
+    private int finishPondering(CharSequence stringState) { return finishPondering(stringState, 0); }
+    private int finishPondering(CharSequence stringState, long deadline)
+    {
+        if (ponderThread == null)
+            return -1;
+
+        boolean ponderHit = (stringState != null);
+        for (int tile = 0; tile < ponderBoard.length && ponderHit; tile++)
+            ponderHit = (stringState.charAt(tile) == ponderBoard[tile]);
+        if (!ponderHit)
+            stopRequested = true;
+        else
+            searchDeadline = deadline;
+
+        // The thread must have finished before the search buffers are touched again. An interrupt turns a hit into a miss.
+        boolean interrupted = false;
+        while (ponderThread.isAlive())
+          { try { ponderThread.join(); }
+            catch (InterruptedException e)
+              { interrupted = true;
+                stopRequested = true;
+                ponderHit = false; }}
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        stopRequested = false;
+        searchDeadline = 0;
+        ponderThread = null;
+        return (ponderHit ? ponderAction : -1);
+    }
+    // #endregion
+
+    /// <summary>
+    /// Forgets everything learned in previous moves: the transposition table (unless it is shared), history scores, principal variation and Monte Carlo tree.
+    /// move calls this itself whenever the board it receives does not continue the previous one.
+    /// </summary>
+    public minmaxag newGame()
+    {
+        finishPondering(null);
+        if (!sharedTranspositionTable)
+            transpositionTable.clear();     // A shared table also serves other games. Its entries describe positions rather than games, so they stay valid.
+        for (int[] playerHistory : historyScores)
+            Arrays.fill(playerHistory, 0);
+        principalVariationLength[0] = 0;
+        previousAction = -1;
+        expectedAction = -1;
+        if (monteCarloSearch != null)
+            monteCarloSearch.clearTree();
+        return this;
+    }
+
+    /// <summary>
+    /// Checks if the loaded board is the previous root board plus the previously returned action and one reply by the opponent.
+    /// If so, the search knowledge is kept, and if the reply is the one the principal variation predicted, its next action is tried first.
+    /// </summary>
+    private boolean continuesPreviousMove()
+    {
+        expectedAction = -1;
+        if (previousAction < 0 || board[previousAction] == EMPTY_TILE || previousBoard[previousAction] != EMPTY_TILE)
+            return false;
+
+        int replyAction = -1;
+        for (int tile = 0; tile < board.length; tile++)
+          { if (board[tile] == previousBoard[tile] || tile == previousAction)
+                continue;
+            if (previousBoard[tile] != EMPTY_TILE || replyAction >= 0 || board[tile] == board[previousAction])
+                return false;
+            replyAction = tile; }
+        if (replyAction < 0)
+            return false;
+
+        if (principalVariationLength[0] > 2 && principalVariation[0][0] == previousAction && principalVariation[0][1] == replyAction)
+            expectedAction = principalVariation[0][2];
+        return true;
+    }
+
+    // Returns the best line of play found by the last move, starting with the chosen action.
+    public int[] getPrincipalVariation() { return lastPrincipalVariation.clone(); }
 
     //#region Helper Classes
 
@@ -287,6 +785,22 @@ public class minmaxag {
         }
     }
 
+    public static class SearchResult
+    {
+        // Attributes
+        public int action;                      // The chosen action, or -1 if there is none.
+        public int[] principalVariation;        // The best line of play found, starting with the chosen action (empty for Monte Carlo search).
+        public SearchStatistics statistics;
+
+        // Constructors
+        public SearchResult(int action, int[] principalVariation, SearchStatistics statistics)
+        {
+            this.action = action;
+            this.principalVariation = principalVariation;
+            this.statistics = statistics;
+        }
+    }
+
     public static class Action
     {
         // Single attribute.
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The board's rules: four in a row in each direction wins, a full column takes no more pieces, and nothing is played once the game is over.
+/// </summary>
+class Connect4BoardTest {
+
+    // Plays the columns in turn, X first, checking that only the last move ends the game.
+    private static Connect4Board play(int... columns)
+    {
+        Connect4Board board = new Connect4Board();
+        for (int column : columns)
+          { assertFalse(board.isGameOver(), board.toString());
+            board.play(column); }
+        return board;
+    }
+
+    @Test
+    void winsInEachDirection()
+    {
+        Connect4Board horizontal = play(0, 0, 1, 1, 2, 2, 3);
+        assertEquals('X', horizontal.getWinner());
+        assertEquals(5 * 7 + 3, horizontal.getLastTile());
+        assertEquals('X', play(0, 1, 0, 1, 0, 1, 0).getWinner());             // Vertical.
+        assertEquals('X', play(0, 1, 1, 2, 2, 3, 2, 3, 3, 6, 3).getWinner()); // Rising from the bottom left.
+        assertEquals('X', play(6, 5, 5, 4, 4, 3, 4, 3, 3, 0, 3).getWinner()); // Rising from the bottom right.
+        Connect4Board second = play(6, 0, 0, 1, 1, 2, 2, 3);                  // O's four in the bottom row, under three of X's.
+        assertEquals('O', second.getWinner());
+        assertTrue(second.isGameOver());
+        assertFalse(second.isDraw());
+    }
+
+    @Test
+    void fullColumnTakesNoMorePieces()
+    {
+        Connect4Board board = play(0, 0, 0, 0, 0, 0);
+        for (int row = 0; row < 6; row++)
+            assertEquals(row % 2 == 0 ? 'O' : 'X', board.getTile(row * 7), board.toString());
+        assertFalse(board.isPlayable(0));
+        assertEquals(-1, board.landingTile(0));
+        assertThrows(IllegalArgumentException.class, () -> board.play(0));
+        assertEquals(6, board.getPieceCount());
+        assertEquals('X', board.getPlayerTurn());
+        assertTrue(board.isPlayable(1));
+        assertEquals(5 * 7 + 1, board.play(1));
+    }
+
+    @Test
+    void nothingIsPlayedOnceTheGameIsOver()
+    {
+        Connect4Board board = play(0, 0, 1, 1, 2, 2, 3);
+        String finalBoard = board.toString();
+        assertThrows(IllegalStateException.class, () -> board.play(4));
+        assertEquals(finalBoard, board.toString());
+        assertEquals(7, board.getPieceCount());
+        assertEquals("_".repeat(42), board.reset().toString());
+        assertEquals(5 * 7 + 4, board.play(4));
+    }
+}
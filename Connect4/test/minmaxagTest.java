@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The agent takes an immediate win and blocks an immediate loss, both as its first move and later in a game it has been playing,
+/// and pondering returns the pondered search on a hit and stops it before searching again on a miss.
+/// </summary>
+class minmaxagTest {
+
+    // The landing tiles where the piece of the player would complete four in a row.
+    static int[] winningTiles(CharSequence state, char player)
+    {
+        int[] tiles = new int[7];
+        int count = 0;
+        for (int column = 0; column < 7; column++)
+          { int tile = column + 35;
+            while (tile >= 0 && state.charAt(tile) != '_')
+                tile -= 7;
+            if (tile >= 0 && completesFour(state, tile, player))
+                tiles[count++] = tile; }
+        return Arrays.copyOf(tiles, count);
+    }
+
+    private static boolean completesFour(CharSequence state, int tile, char player)
+    {
+        int row = tile / 7, column = tile % 7;
+        for (int[] step : new int[][] { {0, 1}, {1, 0}, {1, 1}, {1, -1} })
+          { int length = 1;
+            for (int sign = -1; sign <= 1; sign += 2)
+                for (int r = row + sign * step[0], c = column + sign * step[1];
+                     r >= 0 && r < 6 && c >= 0 && c < 7 && state.charAt(r * 7 + c) == player; r += sign * step[0], c += sign * step[1])
+                    length++;
+            if (length >= 4)
+                return true; }
+        return false;
+    }
+
+    private static boolean contains(int[] tiles, int tile) { return Arrays.stream(tiles).anyMatch(t -> t == tile); }
+
+    // The state after the tiles are played in turn by the player to move and the opponent.
+    private static String after(String state, int... tiles)
+    {
+        char[] board = state.toCharArray();
+        char player = (state.chars().filter(tile -> tile != '_').count() % 2 == 0 ? 'X' : 'O');
+        for (int tile : tiles)
+          { assertTrue(board[tile] == '_' && (tile + 7 >= board.length || board[tile + 7] != '_'), state + " " + Arrays.toString(tiles));
+            board[tile] = player;
+            player = (player == 'X' ? 'O' : 'X'); }
+        return new String(board);
+    }
+
+    // The number of ponder threads still running.
+    private static long ponderThreads() { return Thread.getAllStackTraces().keySet().stream().filter(thread -> thread.getName().equals("minmaxag-ponder")).count(); }
+
+    @Test
+    void takesTheWinBeforeBlocking()
+    {
+        // X to move with three in column 0, while O threatens the bottom row at column 4.
+        assertEquals(2 * 7, new minmaxag().move("_".repeat(21) + "X______" + "X______" + "XOOO___"));
+    }
+
+    @Test
+    void blocksTheOnlyThreat()
+    {
+        // X to move; O's three in the bottom row can only be completed at column 4.
+        assertEquals(5 * 7 + 4, new minmaxag().move("_".repeat(28) + "_XX____" + "XOOO___"));
+        // O to move against X's three in column 6.
+        assertEquals(2 * 7 + 6, new minmaxag().move("_".repeat(21) + "______X" + "______X" + "OO____X"));
+    }
+
+    // A game against an opponent that takes its own wins and otherwise plays at random: whenever the agent can win, it must,
+    // and whenever the opponent threatens a single win, the agent must block it. The agent keeps its search knowledge between the moves.
+    @Test
+    void takesWinsAndBlocksThreatsThroughoutAGame()
+    {
+        minmaxag agent = new minmaxag();
+        SplittableRandom random = new SplittableRandom(41);
+        int wins = 0, blocks = 0;
+        for (int game = 0; game < 30; game++)
+          { Connect4Board board = new Connect4Board();
+            while (!board.isGameOver())
+              { if (board.getPlayerTurn() == 'X')
+                  { int[] opponentWins = winningTiles(board, 'X');
+                    int column;
+                    do column = (opponentWins.length > 0 ? opponentWins[0] % 7 : random.nextInt(7));
+                    while (!board.isPlayable(column));
+                    board.play(column);
+                    continue; }
+                int[] ownWins = winningTiles(board, 'O');
+                int[] threats = winningTiles(board, 'X');
+                String state = board.toString();
+                int action = agent.move(state);
+                if (ownWins.length > 0)
+                  { assertTrue(contains(ownWins, action), state + " " + action);
+                    wins++; }
+                else if (threats.length == 1)
+                  { assertEquals(threats[0], action, state);
+                    blocks++; }
+                assertEquals(action, board.play(action % 7), state); }}
+        assertTrue(wins > 0 && blocks > 0, wins + " wins, " + blocks + " blocks");
+    }
+
+    // #region Pondering
+    // X opened in the centre. With the whole game's search knowledge the same, the pondered search is the search
+    // a non-pondering agent makes once the opponent has moved: the same action, line and node count.
+    private static final String PONDER_OPENING = "_".repeat(38) + "X___";
+
+    @Test
+    void ponderHitReturnsThePonderedSearch()
+    {
+        minmaxag pondering = new minmaxag().setPondering(true);
+        minmaxag twin = new minmaxag();
+        minmaxag.SearchResult first = pondering.search(PONDER_OPENING);
+        assertEquals(twin.move(PONDER_OPENING), first.action);
+        assertTrue(first.principalVariation.length >= 2);
+
+        String hit = after(PONDER_OPENING, first.action, first.principalVariation[1]);
+        minmaxag.SearchResult pondered = pondering.search(hit);
+        minmaxag.SearchResult searched = twin.search(hit);
+        assertEquals(searched.action, pondered.action);
+        assertArrayEquals(searched.principalVariation, pondered.principalVariation);
+        assertEquals(searched.statistics.getNodes(), pondered.statistics.getNodes());
+        assertEquals(searched.statistics.getCompletedDepth(), pondered.statistics.getCompletedDepth());
+        pondering.newGame();
+        assertEquals(0, ponderThreads());
+    }
+
+    // Unbounded until the opponent moves, the ponder search gets what is left of the move's budget on a hit.
+    @Test
+    void ponderHitKeepsToTheMoveBudget() throws InterruptedException
+    {
+        minmaxag pondering = new minmaxag().setSearchDepth(30).setTimeBudgetMillis(100).setPondering(true);
+        minmaxag.SearchResult first = pondering.search(PONDER_OPENING);
+        Thread.sleep(200);
+        String hit = after(PONDER_OPENING, first.action, first.principalVariation[1]);
+        long start = System.nanoTime();
+        minmaxag.SearchResult pondered = pondering.search(hit);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L, "The ponder hit took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        after(hit, pondered.principalVariation);
+        assertEquals(pondered.principalVariation[0], pondered.action);
+        pondering.newGame();
+        assertEquals(0, ponderThreads());
+    }
+
+    // On a miss the ponder thread, which had no deadline, has to stop before the position played is searched,
+    // and that search must not be disturbed by it: a legal line within the budget, taking wins and blocking single threats.
+    @Test
+    void ponderMissStopsThePonderSearchAndSearchesAgain() throws InterruptedException
+    {
+        String opening = "_".repeat(28) + "X__O__X" + "XO_O__X";   // X's twos in columns 0 and 6 and O's pieces along the bottom row leave several replies forcing.
+        int forcedMoves = 0;
+        for (int column = 0; column < 7; column++)
+          { minmaxag pondering = new minmaxag().setSearchDepth(30).setTimeBudgetMillis(100).setPondering(true);
+            minmaxag.SearchResult first = pondering.search(opening);
+            String played = after(opening, first.action);
+            int reply = 35 + column;
+            while (reply >= 0 && played.charAt(reply) != '_')
+                reply -= 7;
+            if (reply < 0 || reply == first.principalVariation[1])
+              { pondering.newGame();
+                continue; }
+            Thread.sleep(100);
+            assertEquals(1, ponderThreads());
+
+            String miss = after(played, reply);
+            int[] ownWins = winningTiles(miss, 'O');
+            int[] threats = winningTiles(miss, 'X');
+            long start = System.nanoTime();
+            minmaxag.SearchResult searched = pondering.search(miss);
+            assertTrue(System.nanoTime() - start < 1_000_000_000L, "The ponder miss took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            assertTrue(ponderThreads() <= 1, miss);     // At most the one pondering the new move.
+            after(miss, searched.principalVariation);
+            assertEquals(searched.principalVariation[0], searched.action, miss);
+            if (ownWins.length > 0)
+              { assertTrue(contains(ownWins, searched.action), miss);
+                forcedMoves++; }
+            else if (threats.length == 1)
+              { assertEquals(threats[0], searched.action, miss);
+                forcedMoves++; }
+            pondering.newGame(); }
+        assertEquals(0, ponderThreads());
+        assertTrue(forcedMoves > 0);
+    }
+    // #endregion
+}
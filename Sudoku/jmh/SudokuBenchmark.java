@@ -0,0 +1,137 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/// <summary>
+/// The workloads of the Sudoku benchmarks (benchmarks.SudokuBenchmarks runs them under JMH): SudokuSolver over the easy, hard and pathological
+/// sets of SudokuPuzzles, larger grids, variants, and the SAT, parallel, portfolio and batch solvers. One operation solves every puzzle of a set.
+/// Solve prints its grid for debugging; that output is discarded while measuring so the terminal does not dominate the timings.
+/// The pathological set takes tens of seconds per operation with the baseline solver, so run it on its own,
+/// e.g. ./gradlew :Sudoku:jmh -Pworkload=solve.pathological
+/// </summary>
+public class SudokuBenchmark {
+
+    // Puzzle sets beyond the fixed ones of SudokuPuzzles.
+    // 64 random equivalents of the easy set, back to back as ASCII bytes, for comparing batched and one-by-one solving.
+    static final byte[] EASY_BATCH = SudokuPuzzles.variantBatch(SudokuPuzzles.EASY, 64, 1);
+    // Larger grids, generated from a fixed seed.
+    static final String[] GRID_16X16 = { SudokuPuzzles.patternPuzzle(4, 0.35, 1), SudokuPuzzles.patternPuzzle(4, 0.35, 2), SudokuPuzzles.patternPuzzle(4, 0.35, 3) };
+    static final String[] GRID_25X25 = { SudokuPuzzles.patternPuzzle(5, 0.35, 1), SudokuPuzzles.patternPuzzle(5, 0.35, 2), SudokuPuzzles.patternPuzzle(5, 0.35, 3) };
+    // Variants (see SudokuVariant): X-Sudoku puzzles with givens kept from a solution, and killer Sudoku with cages drawn on solutions of the hard set.
+    static final SudokuVariant X_SUDOKU = SudokuVariant.parse("name X-Sudoku\ndiagonals");
+    static final String[] X_SUDOKU_SET = { SudokuPuzzles.variantPuzzle(X_SUDOKU, 0.25, 1), SudokuPuzzles.variantPuzzle(X_SUDOKU, 0.25, 2), SudokuPuzzles.variantPuzzle(X_SUDOKU, 0.25, 3) };
+    static final SudokuVariant[] KILLER_SET = { SudokuPuzzles.killerVariant(SudokuPuzzles.HARD[0], 1), SudokuPuzzles.killerVariant(SudokuPuzzles.HARD[1], 2),
+                                                SudokuPuzzles.killerVariant(SudokuPuzzles.HARD[2], 3) };
+
+    private static final char[] SOLUTION_BUFFER = new char[25 * 25];
+    private static final byte[] BATCH_SOLUTIONS = new byte[EASY_BATCH.length];
+    private static final String EMPTY_GRID = "_".repeat(81);
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    /// <summary>
+    /// The named workload, with the solvers it uses built once up front. Its result is consumed so the JIT cannot remove the work.
+    /// </summary>
+    public static Callable<Object> workload(String name)
+    {
+        return switch (name)
+          { case "solve.easy" -> () -> solveAll(SudokuPuzzles.EASY);
+            case "solve.hard" -> () -> solveAll(SudokuPuzzles.HARD);
+            case "solve.pathological" -> () -> solveAll(SudokuPuzzles.PATHOLOGICAL);
+            case "solveInto.reused.easy" -> () -> solveAllInto(SudokuPuzzles.EASY);
+            case "solveInto.reused.hard" -> () -> solveAllInto(SudokuPuzzles.HARD);
+            case "solveInto.pairwise.hard" -> solvingInto(new SudokuSolver().setPropagation(SudokuSolver.Propagation.PAIRWISE), SudokuPuzzles.HARD);
+            case "solveInto.16x16" -> solvingInto(new SudokuSolver(4), GRID_16X16);
+            case "solveInto.25x25" -> solvingInto(new SudokuSolver(5), GRID_25X25);
+            case "solveInto.parallel.pathological" -> solvingInto(new SudokuSolver().setPool(ForkJoinPool.commonPool()), SudokuPuzzles.PATHOLOGICAL);
+            case "solveInto.parallel.25x25" -> solvingInto(new SudokuSolver(5).setPool(ForkJoinPool.commonPool()), GRID_25X25);
+            case "solveInto.sat.hard" -> solvingInto(new SudokuSolver().setEngine(SudokuSolver.Engine.SAT), SudokuPuzzles.HARD);
+            case "solveInto.sat.pathological" -> solvingInto(new SudokuSolver().setEngine(SudokuSolver.Engine.SAT), SudokuPuzzles.PATHOLOGICAL);
+            case "solveInto.sat.25x25" -> solvingInto(new SudokuSolver(5).setEngine(SudokuSolver.Engine.SAT), GRID_25X25);
+            case "solveInto.portfolio.hard" -> solvingInto(new SudokuSolver().setPortfolio(portfolioThreads()), SudokuPuzzles.HARD);
+            case "solveInto.portfolio.25x25" -> solvingInto(new SudokuSolver(5).setPortfolio(portfolioThreads()), GRID_25X25);
+            case "solveInto.xSudoku" -> solvingInto(new SudokuSolver(X_SUDOKU), X_SUDOKU_SET);
+            case "solveInto.killer" -> solveKillers(KILLER_SET);
+            case "solveInto.reused.easyBatch" -> () -> solveBatchInto(EASY_BATCH);
+            case "solveBatch.easyBatch" -> solveBatch(EASY_BATCH);
+            case "canonicalize.easy" -> () -> canonicalizeAll(SudokuPuzzles.EASY);
+            case "canonicalize.hard" -> () -> canonicalizeAll(SudokuPuzzles.HARD);
+            default -> throw new IllegalArgumentException("Unknown Sudoku workload: " + name); };
+    }
+
+    // Solves each puzzle of the set with a new solver, as SudokuGrid does, with the debug output discarded.
+    static Object solveAll(String[] puzzles)
+    {
+        PrintStream report = System.out;
+        System.setOut(DISCARD);
+        try
+          { int checksum = 0;
+            for (String puzzle : puzzles)
+                checksum += new SudokuSolver().Solve(puzzle).hashCode();
+            return checksum; }
+        finally { System.setOut(report); }
+    }
+
+    // Solves each puzzle of the set with the thread's reused solver into a reused buffer, the allocation-free path for batch callers.
+    static Object solveAllInto(String[] puzzles) { return solveAllInto(SudokuSolver.forCurrentThread(), puzzles); }
+    static Object solveAllInto(SudokuSolver solver, String[] puzzles)
+    {
+        int solved = 0;
+        for (String puzzle : puzzles)
+            solved += (solver.solveInto(puzzle, 0, SOLUTION_BUFFER, 0) ? 1 : 0);
+        return solved + SOLUTION_BUFFER[0];
+    }
+
+    // The same with a solver configured for the workload, built once and reused across operations.
+    static Callable<Object> solvingInto(SudokuSolver solver, String[] puzzles) { return () -> solveAllInto(solver, puzzles); }
+
+    // Solves each killer variant's empty grid, which only the cages constrain.
+    static Callable<Object> solveKillers(SudokuVariant[] variants)
+    {
+        SudokuSolver[] solvers = new SudokuSolver[variants.length];
+        for (int i = 0; i < variants.length; i++)
+            solvers[i] = new SudokuSolver(variants[i]);
+        return () ->
+          { int solved = 0;
+            for (SudokuSolver solver : solvers)
+                solved += (solver.solveInto(EMPTY_GRID, 0, SOLUTION_BUFFER, 0) ? 1 : 0);
+            return solved + SOLUTION_BUFFER[0]; };
+    }
+
+    // Solves each puzzle of a batch in turn, the one-by-one baseline of solveBatch.
+    static Object solveBatchInto(byte[] puzzles)
+    {
+        SudokuSolver solver = SudokuSolver.forCurrentThread();
+        int solved = 0;
+        for (int offset = 0; offset < puzzles.length; offset += 81)
+            solved += (solver.solveInto(puzzles, offset, BATCH_SOLUTIONS, offset) ? 1 : 0);
+        return solved;
+    }
+
+    static Callable<Object> solveBatch(byte[] puzzles)
+    {
+        SudokuBatchSolver batchSolver = new SudokuBatchSolver();
+        return () -> batchSolver.solveBatch(puzzles, 0, puzzles.length / 81, BATCH_SOLUTIONS, 0, null);
+    }
+
+    // Finds the minlex form of each puzzle of the set, the price of a result cache lookup.
+    static Object canonicalizeAll(String[] puzzles)
+    {
+        SudokuCanonicalizer canonicalizer = SudokuCanonicalizer.forCurrentThread();
+        int checksum = 0;
+        for (String puzzle : puzzles)
+            checksum += canonicalizer.canonicalize(puzzle, 0).hashCode();
+        return checksum;
+    }
+
+    // A thread for each default strategy of the portfolio, so that they race; daemons, so that they do not keep the benchmark's JVM alive.
+    static ExecutorService portfolioThreads()
+    {
+        return Executors.newFixedThreadPool(SudokuPortfolio.defaultStrategies().size(), runnable ->
+          { Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread; });
+    }
+}
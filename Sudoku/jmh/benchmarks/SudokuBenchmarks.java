@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// <summary>
+/// Runs each workload of SudokuBenchmark under JMH, in throughput mode with the GC profiler (see build.gradle).
+/// JMH refuses benchmark classes in the default package, where the solver lives, so this class looks its workload up by name, once per trial.
+/// Run with: ./gradlew :Sudoku:jmh [-Pworkload=solveInto.reused.hard,solveInto.sat.hard]
+/// </summary>
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SudokuBenchmarks {
+
+    @Param({ "solve.easy", "solve.hard", "solve.pathological", "solveInto.reused.easy", "solveInto.reused.hard", "solveInto.pairwise.hard",
+             "solveInto.16x16", "solveInto.25x25", "solveInto.parallel.pathological", "solveInto.parallel.25x25",
+             "solveInto.sat.hard", "solveInto.sat.pathological", "solveInto.sat.25x25", "solveInto.portfolio.hard", "solveInto.portfolio.25x25",
+             "solveInto.xSudoku", "solveInto.killer", "solveInto.reused.easyBatch", "solveBatch.easyBatch", "canonicalize.easy", "canonicalize.hard" })
+    public String workload;
+
+    private Callable<?> operation;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        operation = (Callable<?>) Class.forName("SudokuBenchmark").getMethod("workload", String.class).invoke(null, workload);
+    }
+
+    @Benchmark
+    public Object run() throws Exception { return operation.call(); }
+}
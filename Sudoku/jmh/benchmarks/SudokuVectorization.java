@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// <summary>
+/// Checks that C2 compiles SudokuBatchSolver's Vector API loops to vector instructions: the same batch workload with the Vector API intrinsics
+/// on (vectorized) and off (scalar, where each operation runs the API's plain Java fallback on boxed vectors). If the loops vectorize,
+/// vectorized is many times faster; if a change to them (e.g. a vector that escapes, or an unsupported operation) stops C2 from compiling
+/// them to vector instructions, the two scores meet.
+/// Run with: ./gradlew :Sudoku:jmh -Pworkload=solveBatch.easyBatch
+/// </summary>
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SudokuVectorization {
+
+    @Param({ "solveBatch.easyBatch" })
+    public String workload;
+
+    private Callable<?> operation;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        operation = (Callable<?>) Class.forName("SudokuBenchmark").getMethod("workload", String.class).invoke(null, workload);
+    }
+
+    @Benchmark
+    public Object vectorized() throws Exception { return operation.call(); }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = { "-XX:+UnlockExperimentalVMOptions", "-XX:-EnableVectorSupport" })
+    public Object scalar() throws Exception { return operation.call(); }
+}
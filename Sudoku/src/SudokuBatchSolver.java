@@ -0,0 +1,248 @@
+// #region Required Libraries
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+// #endregion
+
+/// <summary>
+/// Solves batches of 9x9 puzzles side by side, for the easy and medium puzzles that most traffic is made of and that propagation alone solves.
+/// The puzzles of a batch are laid out as a structure of arrays: each tile (and each unit mask) has one int per puzzle, the puzzle's lane, so
+/// that every propagation step is the same loop over the lanes, with no branches, written with the Vector API so that each instruction takes a
+/// vector of lanes (benchmarks.SudokuVectorization checks that C2 compiles it to vector instructions). Each pass:
+/// - ORs the values of each row, column and box into its used mask, flagging a lane whose unit has a value twice;
+/// - computes the candidates of every empty tile, the complement of its three units' masks, flagging a lane with an empty tile and none;
+/// - finds the hidden singles of each unit (values that are candidates of exactly one of its tiles), flagging a lane with a value that fits nowhere
+///   or a tile that is the only place of two values;
+/// - assigns the hidden and naked singles (tiles with one candidate).
+/// Passes repeat until no lane changes. The lanes propagation did not finish, or found a contradiction in, are handed to the thread's
+/// SudokuSolver, from the propagated grid or (for a contradiction, to report it the same way) from the puzzle.
+///
+/// The Vector API is the incubator module jdk.incubator.vector in Java 21, so compiling and running this class needs --add-modules jdk.incubator.vector
+/// (the Gradle build passes it). C2's automatic vectorization of the same loops written on plain int arrays ran slower than with it turned off.
+///
+/// Run with: java --add-modules jdk.incubator.vector SudokuBatchSolver < puzzles.txt > solutions.txt, one 81-character puzzle per line; each
+/// solution line is in the format of solveInto's buffer. The counts are reported on standard error.
+/// </summary>
+public final class SudokuBatchSolver {
+
+    // #region Constants
+    public static final int DEFAULT_LANES = 64;
+    private static final int SIZE = SudokuSolver.NUM_ROWS;
+    private static final int TILES = SIZE * SIZE;
+    private static final int UNITS = 3 * SIZE;
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;    // 16 lanes with AVX-512, 8 with AVX2.
+    private static final int FULL = 0b11_1111_1110;                 // Values are bitmasks, as in SudokuTile domains: bit v for value v.
+    private static final int[][] UNIT_TILES = new int[UNITS][SIZE];  // Rows, then columns, then boxes.
+    private static final int[][] TILE_UNITS = new int[TILES][3];
+
+    static
+    {
+        for (int tile = 0; tile < TILES; tile++)
+          { int row = tile / SIZE, column = tile % SIZE, box = row / 3 * 3 + column / 3;
+            TILE_UNITS[tile] = new int[] { row, SIZE + column, 2 * SIZE + box };
+            UNIT_TILES[row][column] = tile;
+            UNIT_TILES[SIZE + column][row] = tile;
+            UNIT_TILES[2 * SIZE + box][row % 3 * 3 + column % 3] = tile; }
+    }
+    // #endregion
+
+    // #region Attributes
+    private final int lanes;
+    private final int[] values;             // [tile * lanes + lane]: the tile's value as a bitmask, 0 if empty.
+    private final int[] candidates;         // [tile * lanes + lane]: the values an empty tile can still take.
+    private final int[] used;               // [unit * lanes + lane]: the values placed in the unit.
+    private final int[] contradictions;     // [lane]: nonzero once the lane's grid has a contradiction.
+    private final byte[] tailPuzzle = new byte[TILES];
+
+    // Counters
+    private long batchedPuzzles;
+    private long propagated;                // Solved by propagation alone.
+    private long tails;                     // Handed to the backtracking solver.
+    // #endregion
+
+    // #region Constructors
+    public SudokuBatchSolver() { this(DEFAULT_LANES); }
+    public SudokuBatchSolver(int lanes)     // Rounded up to a whole number of vectors.
+    {
+        this.lanes = Math.ceilDiv(lanes, SPECIES.length()) * SPECIES.length();
+        values = new int[TILES * this.lanes];
+        candidates = new int[TILES * this.lanes];
+        used = new int[UNITS * this.lanes];
+        contradictions = new int[this.lanes];
+    }
+    // #endregion
+
+    public static void main(String[] args) throws IOException
+    {
+        SudokuBatchSolver batchSolver = new SudokuBatchSolver();
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        PrintWriter output = new PrintWriter(System.out, false, StandardCharsets.US_ASCII);
+        byte[] batch = new byte[DEFAULT_LANES * TILES], solutions = new byte[DEFAULT_LANES * TILES];
+        boolean[] solved = new boolean[DEFAULT_LANES];
+        int count = 0, invalid = 0, solvedCount = 0;
+        for (String line = input.readLine(); ; line = input.readLine())
+          { if (line != null)
+              { line = line.strip();
+                if (line.isEmpty())
+                    continue;
+                if (line.length() != TILES)
+                  { invalid++;
+                    continue; }
+                System.arraycopy(line.getBytes(StandardCharsets.US_ASCII), 0, batch, count++ * TILES, TILES); }
+            if (count == DEFAULT_LANES || (line == null && count > 0))
+              { solvedCount += batchSolver.solveBatch(batch, 0, count, solutions, 0, solved);
+                for (int i = 0; i < count; i++)
+                    output.println(new String(solutions, i * TILES, TILES, StandardCharsets.US_ASCII));
+                count = 0; }
+            if (line == null)
+                break; }
+        output.flush();
+        System.err.printf("%d puzzles, %d solved, %d by propagation alone, %d invalid lines%n",
+                          batchSolver.getPuzzles(), solvedCount, batchSolver.getPropagated(), invalid);
+    }
+
+    // #region Primary Methods
+    /// <summary>
+    /// Solves count puzzles of 81 ASCII characters each, stored back to back from puzzleOffset, in the formats solveInto accepts, writing their
+    /// solutions back to back from solutionOffset as solveInto would, and whether each was solved into the solved array (if not null).
+    /// Puzzles are solved lanes at a time.
+    /// </summary>
+    /// <return> Returns the number of puzzles solved. </return>
+    public int solveBatch(byte[] puzzles, int puzzleOffset, int count, byte[] solutions, int solutionOffset, boolean[] solved)
+    {
+        int solvedCount = 0;
+        batchedPuzzles += count;
+        for (int first = 0; first < count; first += lanes)
+          { int batchSize = Math.min(lanes, count - first);
+            load(puzzles, puzzleOffset + first * TILES, batchSize);
+            propagate();
+            for (int lane = 0; lane < batchSize; lane++)
+              { int puzzle = first + lane;
+                boolean laneSolved = finish(lane, puzzles, puzzleOffset + puzzle * TILES, solutions, solutionOffset + puzzle * TILES);
+                if (solved != null)
+                    solved[puzzle] = laneSolved;
+                solvedCount += (laneSolved ? 1 : 0); }}
+        return solvedCount;
+    }
+
+    // Loads the puzzles into the lanes; unused lanes are left full of zeros, which propagate to nothing.
+    private void load(byte[] puzzles, int offset, int batchSize)
+    {
+        Arrays.fill(values, 0);
+        Arrays.fill(contradictions, 0);
+        for (int lane = 0; lane < batchSize; lane++)
+            for (int tile = 0; tile < TILES; tile++)
+              { int character = puzzles[offset + lane * TILES + tile];
+                values[tile * lanes + lane] = (character >= '1' && character <= '9' ? 1 << (character - '0') : 0); }
+    }
+
+    /// <summary>
+    /// Runs propagation passes over every lane until a pass assigns nothing. Each loop below takes the lanes a vector (SPECIES lanes) at a time,
+    /// with the unit's masks held in registers while its nine tiles are read, and selects with masks where the scalar code would branch.
+    /// </summary>
+    private void propagate()
+    {
+        boolean changed = true;
+        while (changed)
+          { changed = false;
+
+            // The used mask of each unit, flagging a value placed twice.
+            for (int unit = 0; unit < UNITS; unit++)
+              { int unitBase = unit * lanes;
+                for (int lane = 0; lane < lanes; lane += SPECIES.length())
+                  { IntVector unitUsed = IntVector.zero(SPECIES), twice = IntVector.zero(SPECIES);
+                    for (int tile : UNIT_TILES[unit])
+                      { IntVector value = IntVector.fromArray(SPECIES, values, tile * lanes + lane);
+                        twice = twice.or(unitUsed.and(value));
+                        unitUsed = unitUsed.or(value); }
+                    unitUsed.intoArray(used, unitBase + lane);
+                    IntVector.fromArray(SPECIES, contradictions, lane).or(twice).intoArray(contradictions, lane); }}
+
+            // The candidates of each empty tile, flagging an empty tile without any.
+            for (int tile = 0; tile < TILES; tile++)
+              { int tileBase = tile * lanes;
+                int rowBase = TILE_UNITS[tile][0] * lanes, columnBase = TILE_UNITS[tile][1] * lanes, boxBase = TILE_UNITS[tile][2] * lanes;
+                for (int lane = 0; lane < lanes; lane += SPECIES.length())
+                  { VectorMask<Integer> empty = IntVector.fromArray(SPECIES, values, tileBase + lane).compare(VectorOperators.EQ, 0);
+                    IntVector taken = IntVector.fromArray(SPECIES, used, rowBase + lane)
+                                               .or(IntVector.fromArray(SPECIES, used, columnBase + lane))
+                                               .or(IntVector.fromArray(SPECIES, used, boxBase + lane));
+                    IntVector candidate = taken.not().and(FULL).blend(0, empty.not());
+                    candidate.intoArray(candidates, tileBase + lane);
+                    IntVector.fromArray(SPECIES, contradictions, lane)
+                             .lanewise(VectorOperators.OR, 1, empty.and(candidate.compare(VectorOperators.EQ, 0)))
+                             .intoArray(contradictions, lane); }}
+
+            // Hidden singles: a value that is a candidate of exactly one tile of a unit goes there. A value that is neither placed nor a
+            // candidate anywhere in the unit is a contradiction, and so is a tile that is the only place of two values.
+            for (int unit = 0; unit < UNITS; unit++)
+              { int unitBase = unit * lanes;
+                for (int lane = 0; lane < lanes; lane += SPECIES.length())
+                  { IntVector once = IntVector.zero(SPECIES), twice = IntVector.zero(SPECIES);
+                    for (int tile : UNIT_TILES[unit])
+                      { IntVector candidate = IntVector.fromArray(SPECIES, candidates, tile * lanes + lane);
+                        twice = twice.or(once.and(candidate));
+                        once = once.or(candidate); }
+                    IntVector contradiction = IntVector.fromArray(SPECIES, contradictions, lane)
+                                                       .or(once.or(IntVector.fromArray(SPECIES, used, unitBase + lane)).not().and(FULL));
+                    once = once.and(twice.not());                                               // Now the hidden singles.
+                    for (int tile : UNIT_TILES[unit])
+                      { IntVector candidate = IntVector.fromArray(SPECIES, candidates, tile * lanes + lane);
+                        IntVector hidden = candidate.and(once);
+                        contradiction = contradiction.or(hidden.and(hidden.sub(1)));
+                        candidate.blend(hidden, hidden.compare(VectorOperators.NE, 0)).intoArray(candidates, tile * lanes + lane); }
+                    contradiction.intoArray(contradictions, lane); }}
+
+            // Naked singles, including the tiles hidden singles left with one candidate.
+            IntVector assigned = IntVector.zero(SPECIES);
+            for (int tile = 0; tile < TILES; tile++)
+              { int tileBase = tile * lanes;
+                for (int lane = 0; lane < lanes; lane += SPECIES.length())
+                  { IntVector candidate = IntVector.fromArray(SPECIES, candidates, tileBase + lane);
+                    IntVector single = candidate.blend(0, candidate.and(candidate.sub(1)).compare(VectorOperators.NE, 0));   // The candidate if it is the only one.
+                    IntVector value = IntVector.fromArray(SPECIES, values, tileBase + lane).or(single);
+                    value.intoArray(values, tileBase + lane);
+                    IntVector.fromArray(SPECIES, contradictions, lane).or(value.and(value.sub(1))).intoArray(contradictions, lane);
+                    assigned = assigned.or(single); }}
+            changed = assigned.compare(VectorOperators.NE, 0).anyTrue(); }
+    }
+
+    // Writes the lane's solution, from the lanes if propagation solved it, otherwise from the backtracking solver.
+    private boolean finish(int lane, byte[] puzzles, int puzzleOffset, byte[] solutions, int solutionOffset)
+    {
+        boolean complete = true;
+        for (int tile = 0; tile < TILES && complete; tile++)
+          { int value = values[tile * lanes + lane];
+            complete = (value != 0 && (value & (value - 1)) == 0); }
+        if (contradictions[lane] == 0 && complete)
+          { for (int tile = 0; tile < TILES; tile++)
+                solutions[solutionOffset + tile] = (byte) ('0' + Integer.numberOfTrailingZeros(values[tile * lanes + lane]));
+            propagated++;
+            return true; }
+
+        tails++;
+        SudokuSolver solver = SudokuSolver.forCurrentThread();
+        if (contradictions[lane] != 0)
+            return solver.solveInto(puzzles, puzzleOffset, solutions, solutionOffset);
+        for (int tile = 0; tile < TILES; tile++)
+          { int value = values[tile * lanes + lane];
+            tailPuzzle[tile] = (byte) (value != 0 ? '0' + Integer.numberOfTrailingZeros(value) : '_'); }
+        return solver.solveInto(tailPuzzle, 0, solutions, solutionOffset)
+               || solver.solveInto(puzzles, puzzleOffset, solutions, solutionOffset);          // Unsolvable: reported from the puzzle's own givens.
+    }
+    // #endregion
+
+    // #region Statistics Methods
+    public long getPuzzles() { return batchedPuzzles; }
+    public long getPropagated() { return propagated; }
+    public long getTails() { return tails; }
+    public int getLanes() { return lanes; }
+    // #endregion
+}
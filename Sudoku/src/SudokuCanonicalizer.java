@@ -0,0 +1,352 @@
+// #region Required Libraries
+import java.util.SplittableRandom;
+// #endregion
+
+/// <summary>
+/// Puts Sudoku puzzles in a canonical form: the smallest of all the puzzles equivalent to it under the Sudoku symmetries, which preserve
+/// solvability and map solutions to solutions:
+///  - transposition,
+///  - permuting the three bands (groups of three rows), and the three rows within each band,
+///  - permuting the three stacks (groups of three columns), and the three columns within each stack,
+///  - relabelling the digits.
+/// Two puzzles have the same form exactly when one is a transformed copy of the other, so it keys caches and duplicate filters.
+///
+/// Forms are 81 digits, row by row with '0' for empty tiles, compared in a minlex order that looks at the pattern of givens first: the form has
+/// the lexicographically smallest pattern (empty before given), and among the transforms with that pattern, the smallest digits, labelled
+/// 1, 2, 3... in the order they first appear. Comparing the pattern first keeps the search small. A row's pattern is a 9-bit mask, and for
+/// each of the 2 * 1,296 transpositions and column orders, the best row order is found by sorting: the rows within each band, then the bands.
+/// Only the few column orders that tie on the smallest pattern have their digits compared. (Comparing digits and pattern together, the
+/// textbook minlex order, ties on every order of the empty columns, which makes the search hundreds of times slower.)
+/// Patterns with many symmetries, such as a nearly empty grid, tie on too many transforms; the search gives up after SEARCH_BUDGET tiles,
+/// and canonicalize returns null.
+///
+/// A canonicalizer keeps its buffers and the transform of the last puzzle between calls, so each thread needs its own (see forCurrentThread).
+/// </summary>
+public final class SudokuCanonicalizer {
+
+    // #region Constants
+    private static final int SIZE = SudokuSolver.NUM_ROWS;            // 9 rows, columns and digits.
+    private static final int TILES = SIZE * SIZE;
+    private static final int ORDERS = 6 * 6 * 6 * 6;                   // Column (or row) orders: the stacks' order, then the columns' within each stack.
+    private static final long SEARCH_BUDGET = 200_000;                 // Tiles whose digits are compared before giving up.
+    private static final int[][] PERMUTATIONS_OF_3 = { {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0} };
+    private static final int[][] PERMUTED_TRIPLES = new int[6][8];     // A 3-bit stack pattern (first column in the high bit) with its columns permuted.
+
+    static
+    {
+        for (int permutation = 0; permutation < 6; permutation++)
+            for (int triple = 0; triple < 8; triple++)
+                for (int position = 0; position < 3; position++)
+                    if ((triple & (4 >> PERMUTATIONS_OF_3[permutation][position])) != 0)
+                        PERMUTED_TRIPLES[permutation][triple] |= 4 >> position;
+    }
+    // #endregion
+
+    // #region Attributes
+    private static final ThreadLocal<SudokuCanonicalizer> THREAD_CANONICALIZERS = ThreadLocal.withInitial(SudokuCanonicalizer::new);
+
+    private final int[][] grids = new int[2][TILES];        // The puzzle's digits (0 for empty tiles), as given and transposed.
+    private final int[][] rowPatterns = new int[2][SIZE];   // Each row's givens as a 9-bit mask, the first column in the high bit.
+
+    // Pattern search: the smallest pattern, as its three bands (each three sorted row patterns packed in 27 bits), and the column orders giving it.
+    private final int[] bestBands = new int[3];
+    private final int[] bestPattern = new int[SIZE];
+    private final int[] tiedOrders = new int[2 * ORDERS];  // transposed * ORDERS + column order, see permutePattern.
+    private final int[] firstStacks = new int[SIZE];        // The row patterns' first stack, then first two stacks, under the orders being tried.
+    private final int[] secondStacks = new int[SIZE];
+    private int tiedOrderCount;
+
+    // Digit search, over the tied column orders and the row orders that give the smallest pattern.
+    private final int[] rowOrder = new int[SIZE];           // Source row of each row of the form.
+    private final int[] columnOrder = new int[SIZE];        // Source column of each column of the form.
+    private final int[] orderPatterns = new int[SIZE];      // Each source row's pattern under the column order being tried,
+    private final int[] orderBands = new int[3];            // and each source band's, packed like bestBands.
+    private final int[] labels = new int[SIZE + 1];         // Label of each digit, 0 while it has none (and always for 0, the empty tile).
+    private final int[] labelledDigits = new int[SIZE + 1];
+    private int nextLabel;
+
+    // The best form so far. Only its first bestLength tiles are valid; past them, any tile value counts as an improvement.
+    private final int[] best = new int[TILES];
+    private int bestLength;
+    private long budget;
+
+    // The transform of the best form: canonical tile i holds source tile sourceTiles[i], and digit d becomes label digitLabels[d].
+    private final int[] sourceTiles = new int[TILES];
+    private final int[] digitLabels = new int[SIZE + 1];
+    private final int[] labelDigits = new int[SIZE + 1];
+    // #endregion
+
+    // Returns the calling thread's canonicalizer, created on its first use.
+    public static SudokuCanonicalizer forCurrentThread() { return THREAD_CANONICALIZERS.get(); }
+
+    // #region Primary Methods
+    /// <summary>
+    /// Finds the canonical form of the 81-character puzzle starting at offset, in the formats SudokuSolver.solveInto accepts ('1' to '9' are givens,
+    /// anything else is empty). The transform to the form is kept for toCanonical and fromCanonical until the next call.
+    /// </summary>
+    /// <return> Returns the form as 81 digits, '0' for empty tiles, or null if the search ran out of budget. </return>
+    public String canonicalize(CharSequence puzzle, int offset)
+    {
+        for (int tile = 0; tile < TILES; tile++)
+            loadTile(tile, puzzle.charAt(offset + tile));
+        return canonicalize();
+    }
+    public String canonicalize(byte[] puzzle, int offset)
+    {
+        for (int tile = 0; tile < TILES; tile++)
+            loadTile(tile, (char) puzzle[offset + tile]);
+        return canonicalize();
+    }
+
+    // Writes the solution (81 ASCII digits at offset) of the last puzzle in the canonical frame, as one digit value per tile.
+    public byte[] toCanonical(byte[] solution, int offset)
+    {
+        byte[] canonicalSolution = new byte[TILES];
+        for (int tile = 0; tile < TILES; tile++)
+            canonicalSolution[tile] = (byte) digitLabels[solution[offset + sourceTiles[tile]] - '0'];
+        return canonicalSolution;
+    }
+
+    // The inverse of toCanonical: writes a canonical solution back in the frame of the last puzzle, as 81 ASCII digits at offset.
+    public void fromCanonical(byte[] canonicalSolution, byte[] solution, int offset)
+    {
+        for (int tile = 0; tile < TILES; tile++)
+            solution[offset + sourceTiles[tile]] = (byte) ('0' + labelDigits[canonicalSolution[tile]]);
+    }
+    // #endregion
+
+    // #region Search Methods
+    private void loadTile(int tile, char character)
+    {
+        int digit = (character >= '1' && character <= '9' ? character - '0' : 0);
+        int row = tile / SIZE, column = tile % SIZE;
+        grids[0][tile] = digit;
+        grids[1][column * SIZE + row] = digit;
+        int bit = (digit != 0 ? 1 : 0);
+        rowPatterns[0][row] = (rowPatterns[0][row] << 1 & 0x1FF) | bit;        // Shifted in column by column, so that the first column ends up highest.
+        rowPatterns[1][column] = (rowPatterns[1][column] << 1 & 0x1FF) | bit;  // A transposed row is filled over 9 source rows, in order as well.
+    }
+
+    private String canonicalize()
+    {
+        findSmallestPattern();
+
+        bestLength = 0;
+        budget = SEARCH_BUDGET;
+        nextLabel = 1;
+        for (int tied = 0; tied < tiedOrderCount && budget >= 0; tied++)
+          { int transposed = tiedOrders[tied] / ORDERS;
+            setColumnOrder(tiedOrders[tied] % ORDERS);
+            for (int row = 0; row < SIZE; row++)
+                orderPatterns[row] = permutePattern(rowPatterns[transposed][row], tiedOrders[tied] % ORDERS);
+            for (int band = 0; band < 3; band++)
+                orderBands[band] = sortedBand(orderPatterns[band * 3], orderPatterns[band * 3 + 1], orderPatterns[band * 3 + 2]);
+            chooseRow(transposed, 0, 0, false); }
+        if (budget < 0)
+            return null;
+
+        // Digits that never appear get the remaining labels, in increasing order, so that solutions can be mapped too.
+        int label = 1;
+        for (int digit = 1; digit <= SIZE; digit++)
+            if (digitLabels[digit] != 0)
+                label++;
+        for (int digit = 1; digit <= SIZE; digit++)
+            if (digitLabels[digit] == 0)
+                digitLabels[digit] = label++;
+        for (int digit = 1; digit <= SIZE; digit++)
+            labelDigits[digitLabels[digit]] = digit;
+
+        char[] form = new char[TILES];
+        for (int tile = 0; tile < TILES; tile++)
+            form[tile] = (char) ('0' + best[tile]);
+        return new String(form);
+    }
+
+    /// <summary>
+    /// Finds the smallest pattern of givens, and every transposition and column order that gives it. For a column order, the smallest row order
+    /// sorts the row patterns within each band and then the bands by their sorted patterns, so only the column orders need to be tried.
+    /// </summary>
+    private void findSmallestPattern()
+    {
+        tiedOrderCount = 0;
+        bestBands[0] = Integer.MAX_VALUE;
+        int[] permuted = orderPatterns;
+        for (int transposed = 0; transposed < 2; transposed++)
+          { int[] patterns = rowPatterns[transposed];
+            // The rows' patterns are built a stack at a time, so that each stack's permutation is applied once for all the orders sharing it.
+            // The smallest row pattern comes first, so once its first stacks are larger than the best pattern's first row, no order sharing them can tie.
+            for (int stacks = 0; stacks < 6; stacks++)
+              { int shift0 = 6 - 3 * PERMUTATIONS_OF_3[stacks][0], shift1 = 6 - 3 * PERMUTATIONS_OF_3[stacks][1], shift2 = 6 - 3 * PERMUTATIONS_OF_3[stacks][2];
+                for (int columns0 = 0; columns0 < 6; columns0++)
+                  { int smallest = Integer.MAX_VALUE;
+                    for (int row = 0; row < SIZE; row++)
+                        smallest = Math.min(smallest, firstStacks[row] = PERMUTED_TRIPLES[columns0][patterns[row] >> shift0 & 7] << 6);
+                    if (smallest > (bestBands[0] >> 18 & 0x1C0))
+                        continue;
+                    for (int columns1 = 0; columns1 < 6; columns1++)
+                      { smallest = Integer.MAX_VALUE;
+                        for (int row = 0; row < SIZE; row++)
+                            smallest = Math.min(smallest, secondStacks[row] = firstStacks[row] | PERMUTED_TRIPLES[columns1][patterns[row] >> shift1 & 7] << 3);
+                        if (smallest > (bestBands[0] >> 18 & 0x1F8))
+                            continue;
+                        for (int columns2 = 0; columns2 < 6; columns2++)
+                          { for (int row = 0; row < SIZE; row++)
+                                permuted[row] = secondStacks[row] | PERMUTED_TRIPLES[columns2][patterns[row] >> shift2 & 7];
+                            compareBands(transposed * ORDERS + stacks * 216 + columns2 * 36 + columns1 * 6 + columns0, permuted); }}}}}
+
+        for (int row = 0; row < SIZE; row++)
+            bestPattern[row] = bestBands[row / 3] >> (18 - 9 * (row % 3)) & 0x1FF;
+    }
+
+    // Helper method for findSmallestPattern: sorts the bands of the input row patterns and compares them with the smallest pattern so far.
+    private void compareBands(int order, int[] patterns)
+    {
+        int band0 = sortedBand(patterns[0], patterns[1], patterns[2]), band1 = sortedBand(patterns[3], patterns[4], patterns[5]), band2 = sortedBand(patterns[6], patterns[7], patterns[8]);
+        int low = Math.min(band0, Math.min(band1, band2)), high = Math.max(band0, Math.max(band1, band2));
+        int middle = band0 ^ band1 ^ band2 ^ low ^ high;
+        int comparison = (low != bestBands[0] ? Integer.compare(low, bestBands[0]) : middle != bestBands[1] ? Integer.compare(middle, bestBands[1]) : Integer.compare(high, bestBands[2]));
+        if (comparison > 0)
+            return;
+        if (comparison < 0)
+          { bestBands[0] = low;
+            bestBands[1] = middle;
+            bestBands[2] = high;
+            tiedOrderCount = 0; }
+        tiedOrders[tiedOrderCount++] = order;
+    }
+
+    // A band's three row patterns, sorted and packed into 27 bits, the smallest first (highest).
+    private static int sortedBand(int a, int b, int c)
+    {
+        int low = Math.min(a, Math.min(b, c)), high = Math.max(a, Math.max(b, c));
+        return low << 18 | (a ^ b ^ c ^ low ^ high) << 9 | high;
+    }
+
+    // A row pattern with its columns in the input order: stack order order / 216, then the order of each stack's columns in base 6.
+    private static int permutePattern(int pattern, int order)
+    {
+        int[] stacks = PERMUTATIONS_OF_3[order / 216];
+        int permuted = 0;
+        for (int stack = 0, columns = order % 216; stack < 3; stack++, columns /= 6)
+          { int sourceStack = stacks[stack];
+            permuted |= PERMUTED_TRIPLES[columns % 6][pattern >> (6 - 3 * sourceStack) & 7] << (6 - 3 * stack); }
+        return permuted;
+    }
+
+    private void setColumnOrder(int order)
+    {
+        int[] stacks = PERMUTATIONS_OF_3[order / 216];
+        for (int stack = 0, columns = order % 216; stack < 3; stack++, columns /= 6)
+            for (int position = 0; position < 3; position++)
+                columnOrder[stack * 3 + position] = stacks[stack] * 3 + PERMUTATIONS_OF_3[columns % 6][position];
+    }
+
+    // Chooses the source row of each row of the form among those with the smallest pattern's row: within the same band as the previous row or,
+    // at a band boundary, from a new band with the smallest pattern's band. Every choice can then be completed, which the overwriting of best relies on.
+    private void chooseRow(int transposed, int row, int usedRows, boolean smaller)
+    {
+        if (row == SIZE)
+          { if (smaller)
+                recordTransform(transposed);
+            return; }
+
+        int firstCandidate = (row % 3 == 0 ? 0 : rowOrder[row - 1] / 3 * 3);
+        int lastCandidate = (row % 3 == 0 ? SIZE : firstCandidate + 3);
+        for (int candidate = firstCandidate; candidate < lastCandidate && budget >= 0; candidate++)
+          { if ((usedRows & (1 << candidate)) != 0 || (row % 3 == 0 && ((usedRows & (0b111 << candidate / 3 * 3)) != 0 || orderBands[candidate / 3] != bestBands[row / 3])) || orderPatterns[candidate] != bestPattern[row])
+                continue;
+            rowOrder[row] = candidate;
+            int savedLabel = nextLabel;
+            boolean rowSmaller = smaller;
+            int column = 0;
+            for (; column < SIZE; column++)
+              { int comparison = compare(row * SIZE + column, label(grids[transposed][candidate * SIZE + columnOrder[column]]), rowSmaller);
+                if (comparison < 0)
+                    break;
+                rowSmaller = (comparison > 0); }
+            if (column == SIZE)
+                chooseRow(transposed, row + 1, usedRows | (1 << candidate), rowSmaller);
+            unlabel(savedLabel);
+            smaller = false; }      // A smaller branch has just been written to best, so the next one has to beat it rather than the prefix's old best.
+    }
+
+    /// <summary>
+    /// Compares a tile of the form being built with the best form's. A branch that is already smaller overwrites the best form as it goes.
+    /// </summary>
+    /// <return> Returns -1 if the branch is now larger, 0 if still equal and 1 if smaller. </return>
+    private int compare(int position, int value, boolean smaller)
+    {
+        budget--;
+        if (smaller || position >= bestLength || value < best[position])
+          { best[position] = value;
+            bestLength = position + 1;
+            return 1; }
+        return (value == best[position] ? 0 : -1);
+    }
+
+    // Labels a digit of the tile order being tried, giving it the next label the first time it appears.
+    private int label(int digit)
+    {
+        if (digit != 0 && labels[digit] == 0)
+          { labels[digit] = nextLabel;
+            labelledDigits[nextLabel++] = digit; }
+        return labels[digit];
+    }
+
+    // Removes the labels given since nextLabel was savedLabel.
+    private void unlabel(int savedLabel)
+    {
+        while (nextLabel > savedLabel)
+            labels[labelledDigits[--nextLabel]] = 0;
+    }
+
+    private void recordTransform(int transposed)
+    {
+        for (int tile = 0; tile < TILES; tile++)
+          { int row = rowOrder[tile / SIZE], column = columnOrder[tile % SIZE];
+            sourceTiles[tile] = (transposed == 0 ? row * SIZE + column : column * SIZE + row); }
+        System.arraycopy(labels, 0, digitLabels, 0, labels.length);
+    }
+    // #endregion
+
+    // #region Helper Methods
+    /// <summary>
+    /// A random equivalent of the input puzzle (81 characters, '_' for empty tiles): transposed or not, with its bands, rows, stacks and columns
+    /// shuffled and its digits relabelled. For benchmarks and load tests of the result cache.
+    /// </summary>
+    public static String randomVariant(CharSequence puzzle, SplittableRandom random)
+    {
+        int[] rows = randomLinePermutation(random), columns = randomLinePermutation(random);
+        int[] digits = randomPermutation(SIZE, random);
+        boolean transposed = random.nextBoolean();
+        char[] variant = new char[TILES];
+        for (int tile = 0; tile < TILES; tile++)
+          { int row = rows[tile / SIZE], column = columns[tile % SIZE];
+            char character = puzzle.charAt(transposed ? column * SIZE + row : row * SIZE + column);
+            variant[tile] = (character >= '1' && character <= '9' ? (char) ('1' + digits[character - '1']) : '_'); }
+        return new String(variant);
+    }
+
+    // A permutation of the 9 rows (or columns) that keeps bands (or stacks) together: shuffled bands, each with its rows shuffled.
+    private static int[] randomLinePermutation(SplittableRandom random)
+    {
+        int[] bands = randomPermutation(3, random);
+        int[] lines = new int[SIZE];
+        for (int band = 0; band < 3; band++)
+          { int[] withinBand = randomPermutation(3, random);
+            for (int line = 0; line < 3; line++)
+                lines[band * 3 + line] = bands[band] * 3 + withinBand[line]; }
+        return lines;
+    }
+
+    private static int[] randomPermutation(int length, SplittableRandom random)
+    {
+        int[] permutation = new int[length];
+        for (int i = 0; i < length; i++)
+          { int j = random.nextInt(i + 1);
+            permutation[i] = permutation[j];
+            permutation[j] = i; }
+        return permutation;
+    }
+    // #endregion
+}
@@ -0,0 +1,75 @@
+// #region Required Libraries
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+// #endregion
+
+/// <summary>
+/// A duplicate filter for batches of puzzles: a puzzle passes the first time its minlex form (see SudokuCanonicalizer) is seen, so transformed
+/// copies of a puzzle already in the batch are dropped before any solving. Thread-safe; each thread canonicalizes with its own canonicalizer.
+/// A puzzle whose canonicalization runs out of budget is keyed by its own text instead, so only exact copies of it are dropped.
+///
+/// Run with: java SudokuDedupFilter < puzzles.txt > unique.txt, one 81-character puzzle per line. The counts are reported on standard error.
+/// </summary>
+public final class SudokuDedupFilter {
+
+    // #region Constants
+    private static final int PUZZLE_LENGTH = SudokuSolver.NUM_ROWS * SudokuSolver.NUM_COLUMNS;
+    // #endregion
+
+    // #region Attributes
+    private final Set<String> seenForms = ConcurrentHashMap.newKeySet();
+    private final LongAdder puzzles = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    // #endregion
+
+    public static void main(String[] args) throws IOException
+    {
+        SudokuDedupFilter filter = new SudokuDedupFilter();
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        PrintWriter output = new PrintWriter(System.out, false, StandardCharsets.US_ASCII);
+        int invalid = 0;
+        for (String line = input.readLine(); line != null; line = input.readLine())
+          { line = line.strip();
+            if (line.isEmpty())
+                continue;
+            if (line.length() != PUZZLE_LENGTH)
+                invalid++;
+            else if (filter.firstSeen(line))
+                output.println(line); }
+        output.flush();
+        System.err.printf("%d puzzles, %d unique, %d duplicates (%.1f%%), %d invalid lines%n",
+                          filter.getPuzzles(), filter.getPuzzles() - filter.getDuplicates(), filter.getDuplicates(), 100 * filter.getDuplicateRate(), invalid);
+    }
+
+    // #region Primary Methods
+    // Returns true the first time a puzzle (81 characters at offset) or any transformed copy of it is seen.
+    public boolean firstSeen(CharSequence puzzle, int offset)
+    {
+        String form = SudokuCanonicalizer.forCurrentThread().canonicalize(puzzle, offset);
+        if (form == null)
+            form = "raw:" + puzzle.subSequence(offset, offset + PUZZLE_LENGTH);     // Cannot collide with a form, which is all digits.
+        boolean first = seenForms.add(form);
+        puzzles.increment();
+        if (!first)
+            duplicates.increment();
+        return first;
+    }
+    public boolean firstSeen(CharSequence puzzle) { return firstSeen(puzzle, 0); }
+    // #endregion
+
+    // #region Statistics Methods
+    public long getPuzzles() { return puzzles.sum(); }
+    public long getDuplicates() { return duplicates.sum(); }
+    public double getDuplicateRate()
+    {
+        long puzzleCount = puzzles.sum();
+        return (puzzleCount == 0 ? 0 : duplicates.sum() / (double) puzzleCount);
+    }
+    // #endregion
+}
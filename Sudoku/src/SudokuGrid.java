@@ -1,11 +1,18 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.nio.CharBuffer;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 public class SudokuGrid extends JPanel
 {
+   private static final long serialVersionUID = 1L;
    
    JTextField[] textField = new JTextField[81];
+   //the puzzle as typed so far, kept propagated so conflicts and candidates show while editing
+   transient SudokuLiveGrid liveGrid = new SudokuLiveGrid();
+   transient SudokuSolver solver = new SudokuSolver();
    
    public SudokuGrid(){
        setLayout(new GridLayout(10,10));
@@ -13,8 +20,11 @@ public class SudokuGrid extends JPanel
        setBorder(BorderFactory.createLineBorder(Color.gray, 3));
        for(int i = 0; i < 81; i++){
            textField[i] = new JTextField(1);
+           textField[i].getDocument().addDocumentListener(new CellListener(i));
            add(textField[i]);
         }
+       for(int i = 0; i < 81; i++)
+           showTile(i);
        
        
         JButton b1 = new JButton ("Solve");
@@ -33,28 +43,68 @@ public class SudokuGrid extends JPanel
         b3.addActionListener(listenerB);
        
    }
+   //one character per textfield, "_" for the empty ones
+   private char[] readState(){
+       char[] state = new char[81];
+       for(int i = 0; i < 81; i++){
+           String text = textField[i].getText();
+           state[i] = text.isEmpty() ? '_' : text.charAt(0);
+       }
+       return state;
+   }
+   
+   //one edit changes only the tile and its peers, so only those are recolored
+   private void cellEdited(int tile){
+       String text = textField[tile].getText();
+       if(!liveGrid.setTile(tile, text.isEmpty() ? '_' : text.charAt(0)))
+           return;
+       showTile(tile);
+       for(int peer : liveGrid.getPeers(tile))
+           showTile(peer);
+   }
+   
+   //conflicts in pink, and the candidates of an empty tile as its tooltip
+   private void showTile(int tile){
+       textField[tile].setBackground(liveGrid.isConflicting(tile) ? Color.pink : Color.white);
+       if(liveGrid.getValue(tile) != 0){
+           textField[tile].setToolTipText(null);
+           return;
+       }
+       StringBuilder tip = new StringBuilder("Candidates:");
+       for(int value = 1; value <= liveGrid.getSize(); value++)
+           if((liveGrid.getCandidates(tile) & (1 << value)) != 0)
+               tip.append(' ').append(SudokuSolver.tileCharacter(value));
+       textField[tile].setToolTipText(tip.toString());
+   }
+   
+   //fill in the textfields that were empty
+   private void showAnswer(char[] state, char[] answer){
+       for(int i = 0; i < 81; i++)
+           if(state[i] == '_'){
+               textField[i].setForeground(Color.blue);
+               textField[i].setText(String.valueOf(answer[i]));
+           }
+   }
+   
    private class ButtonListener implements ActionListener
    {
        public void actionPerformed(ActionEvent event){
             //collect the text from textfields
-           String State = "";
-           for(int i = 0; i < 81; i++){
-               if(textField[i].getText().isEmpty())
-                   State +="_";
-               else
-                   State += textField[i].getText();
+           char[] state = readState();
+            //call the solver, starting from the candidates kept while typing
+           if(!solver.reset(liveGrid).solve()){
+               //say why: the conflict that rules the puzzle out, or that the search found no solution
+               SudokuValidator.Result validation = solver.getValidation();
+               String reason = validation.isValid() ? "This puzzle has no solution." : "This puzzle cannot be solved: " + validation;
+               JOptionPane.showMessageDialog(SudokuGrid.this, reason, "Solve", JOptionPane.WARNING_MESSAGE);
+               return;
            }
-            //call the solver
-           SudokuSolver sudoku = new SudokuSolver();
            //receive the answer from the solver
-           String answer = sudoku.Solve(State);
+           char[] answer = new char[81];
+           solver.writeSolution(answer, 0);
            
            //update the textfields.
-           for(int i = 0; i < answer.length(); i++)
-               if(State.charAt(i) == '_'){
-                   textField[i].setForeground(Color.blue);
-                   textField[i].setText(answer.substring(i,i+1));
-               }
+           showAnswer(state, answer);
        }
    }
     private class ButtonListener2 implements ActionListener
@@ -72,22 +122,24 @@ public class SudokuGrid extends JPanel
     {
         public void actionPerformed(ActionEvent event){
             //collect the text from textfields
-            String State = "";
-            for(int i = 0; i < 81; i++){
-                if(textField[i].getText().isEmpty())
-                    State +="_";
-                else
-                    State += textField[i].getText();
-            }
+            char[] state = readState();
             //call the solver
             SudokuSolver sudoku = new SudokuSolver();
-            String answer = sudoku.Solve(State);
-            for(int i = 0; i < answer.length(); i++)
-                if(State.charAt(i) == '_'){
-                    textField[i].setForeground(Color.blue);
-                    textField[i].setText(answer.substring(i,i+1));
-                }
+            char[] answer = new char[81];
+            sudoku.solveInto(CharBuffer.wrap(state), 0, answer, 0);
+            showAnswer(state, answer);
         }
     }
+    //tells the grid about every change to one textfield
+    private class CellListener implements DocumentListener
+    {
+        private final int tile;
+        
+        CellListener(int tile){ this.tile = tile; }
+        
+        public void insertUpdate(DocumentEvent event){ cellEdited(tile); }
+        public void removeUpdate(DocumentEvent event){ cellEdited(tile); }
+        public void changedUpdate(DocumentEvent event){}
+    }
     
 }
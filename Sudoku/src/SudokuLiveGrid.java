@@ -0,0 +1,189 @@
+// #region Required Libraries
+import java.util.Arrays;
+// #endregion
+
+/// <summary>
+/// A puzzle being edited, kept propagated as it changes, for SudokuGrid to show conflicts and candidates while the user types.
+/// Each unit of the variant (row, column, box or region, and any extra unit; see SudokuVariant) counts how many of its tiles hold each value,
+/// and a tile's candidates are the values none of its units hold. Killer cages are left to the solve.
+/// Setting or clearing one tile only changes the counts of its own units, so only the tile and its peers (the tiles sharing a unit with it)
+/// are updated, and an edit can be undone in any order, unlike the search's trail. A tile is conflicting if its value is held by another tile
+/// of one of its units, if it is empty with no candidates left, or if its character is neither a value nor empty.
+///
+/// SudokuSolver.reset(SudokuLiveGrid) loads the grid with these domains, so that a solve starts from them instead of from the characters.
+/// </summary>
+public final class SudokuLiveGrid {
+
+    // #region Constants
+    private static final int BAD_CHARACTER = -1;   // The value of a tile whose character is neither a value nor empty.
+    // #endregion
+
+    // #region Attributes
+    private final SudokuVariant variant;
+    private final int size;
+    private final int tileCount;
+    private final int fullDomain;
+    private final int[][] tileUnits;        // The variant's units of each tile.
+    private final int[][] peers;            // The other tiles of each tile's units (and cages), each once.
+
+    private final int[] values;             // Each tile's value, 0 if empty, BAD_CHARACTER if neither.
+    private final int[] valueCounts;        // [unit * (size + 1) + value]: the tiles of the unit holding the value.
+    private final int[] used;               // Each unit's values held by at least one tile, as a bitmask.
+    private final int[] candidates;         // Each tile's domain: the bit of its value, or the values its units leave an empty tile.
+    private final boolean[] conflicting;
+    private int conflictCount;
+    private int givens;
+    // #endregion
+
+    // #region Constructors
+    public SudokuLiveGrid() { this(SudokuSolver.BOX_SIZE); }
+    public SudokuLiveGrid(int boxSize) { this(SudokuVariant.classic(boxSize)); }
+    public SudokuLiveGrid(SudokuVariant variant)
+    {
+        this.variant = variant;
+        this.size = variant.size;
+        this.tileCount = variant.tileCount;
+        this.fullDomain = (1 << (size + 1)) - 2;
+        tileUnits = variant.tileUnits;
+        peers = variant.peers;
+
+        values = new int[tileCount];
+        valueCounts = new int[variant.units.length * (size + 1)];
+        used = new int[variant.units.length];
+        candidates = new int[tileCount];
+        Arrays.fill(candidates, fullDomain);
+        conflicting = new boolean[tileCount];
+    }
+    // #endregion
+
+    // #region Primary Methods
+    /// <summary>
+    /// Sets the tile (index, row by row) to the value of the input character: a given as solveInto reads it, empty for '_', '.', '0' or
+    /// a space, and a bad character for anything else. Its units' counts are updated, then the candidates and conflicts of the tile and its peers.
+    /// </summary>
+    /// <return> Returns true if the tile's value changed. </return>
+    public boolean setTile(int tile, char character)
+    {
+        boolean empty = (character == '_' || character == '.' || character == '0' || character == ' ');
+        int value = (empty ? 0 : SudokuSolver.tileValue(character, size));
+        return setValue(tile, (empty || value != 0 ? value : BAD_CHARACTER));
+    }
+
+    // Empties the tile, as setTile does with '_'.
+    public boolean clearTile(int tile) { return setValue(tile, 0); }
+
+    // Empties every tile.
+    public void clear()
+    {
+        for (int tile = 0; tile < tileCount; tile++)
+            setValue(tile, 0);
+    }
+    // #endregion
+
+    // #region Getter Methods
+    public int getSize() { return size; }
+    public SudokuVariant getVariant() { return variant; }
+    public int getGivens() { return givens; }
+    public int getValue(int tile) { return Math.max(values[tile], 0); }          // 0 for an empty tile or a bad character.
+    public int getCandidates(int tile) { return candidates[tile]; }             // As a bitmask, bit v for value v.
+    public boolean isConflicting(int tile) { return conflicting[tile]; }
+    public boolean hasConflicts() { return conflictCount > 0; }
+    public int[] getPeers(int tile) { return peers[tile].clone(); }
+
+    /// <summary>
+    /// The checks of SudokuValidator that the counts answer at once: bad characters, then duplicated values, then empty tiles without candidates.
+    /// A value that no empty tile of a unit can take is left to the solve, which finds it while propagating.
+    /// </summary>
+    /// <return> Returns VALID, or the reason and offending tiles. </return>
+    public SudokuValidator.Result getValidation()
+    {
+        if (conflictCount == 0)
+            return SudokuValidator.VALID;
+        int[] offending = new int[conflictCount];
+        for (SudokuValidator.Reason reason : new SudokuValidator.Reason[] { SudokuValidator.Reason.BAD_CHARACTER,
+                                                                           SudokuValidator.Reason.DUPLICATE_GIVEN,
+                                                                           SudokuValidator.Reason.EMPTY_DOMAIN })
+          { int offendingCount = 0, value = 0;
+            for (int tile = 0; tile < tileCount; tile++)
+                if (conflicting[tile] && reasonOf(tile) == reason)
+                  { offending[offendingCount++] = tile;
+                    value = (reason == SudokuValidator.Reason.DUPLICATE_GIVEN ? values[tile] : value); }    // The last one's, as the validator reports it.
+            if (offendingCount > 0)
+                return new SudokuValidator.Result(reason == SudokuValidator.Reason.BAD_CHARACTER ? SudokuValidator.Status.INVALID : SudokuValidator.Status.UNSOLVABLE,
+                                                  reason, value, Arrays.copyOf(offending, offendingCount)); }
+        return SudokuValidator.VALID;
+    }
+
+    // The grid in the snapshot format of SudokuCSP.saveState: each tile's domain, with ASSIGNED set for the givens.
+    public int[] saveState()
+    {
+        int[] state = new int[tileCount];
+        for (int tile = 0; tile < tileCount; tile++)
+            state[tile] = candidates[tile] | (values[tile] > 0 ? SudokuSolver.SudokuCSP.ASSIGNED : 0);
+        return state;
+    }
+
+    // The puzzle as solveInto reads it, '_' for the empty tiles (and bad characters).
+    @Override
+    public String toString()
+    {
+        char[] puzzle = new char[tileCount];
+        for (int tile = 0; tile < tileCount; tile++)
+            puzzle[tile] = (values[tile] > 0 ? SudokuSolver.tileCharacter(values[tile]) : '_');
+        return new String(puzzle);
+    }
+    // #endregion
+
+    // #region Helper Methods
+    private boolean setValue(int tile, int value)
+    {
+        int previous = values[tile];
+        if (value == previous)
+            return false;
+        if (previous > 0)
+          { givens--;
+            for (int unit : tileUnits[tile])
+                if (--valueCounts[unit * (size + 1) + previous] == 0)
+                    used[unit] &= ~(1 << previous); }
+        if (value > 0)
+          { givens++;
+            for (int unit : tileUnits[tile])
+              { valueCounts[unit * (size + 1) + value]++;
+                used[unit] |= 1 << value; }}
+        values[tile] = value;
+
+        update(tile);                               // Only these tiles have a unit whose counts changed.
+        for (int peer : peers[tile])
+            update(peer);
+        return true;
+    }
+
+    // Recomputes the tile's candidates and whether it is conflicting from its units' counts.
+    private void update(int tile)
+    {
+        int value = values[tile];
+        int[] units = tileUnits[tile];
+        boolean conflict;
+        if (value > 0)
+          { candidates[tile] = 1 << value;
+            conflict = false;
+            for (int unit : units)
+                conflict |= valueCounts[unit * (size + 1) + value] > 1; }
+        else
+          { int domain = fullDomain;
+            for (int unit : units)
+                domain &= ~used[unit];
+            candidates[tile] = domain;
+            conflict = (value == BAD_CHARACTER || candidates[tile] == 0); }
+        if (conflict != conflicting[tile])
+          { conflicting[tile] = conflict;
+            conflictCount += (conflict ? 1 : -1); }
+    }
+
+    private SudokuValidator.Reason reasonOf(int tile)
+    {
+        return (values[tile] == BAD_CHARACTER ? SudokuValidator.Reason.BAD_CHARACTER
+                : values[tile] > 0 ? SudokuValidator.Reason.DUPLICATE_GIVEN : SudokuValidator.Reason.EMPTY_DOMAIN);
+    }
+    // #endregion
+}
@@ -0,0 +1,166 @@
+// #region Required Libraries
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+// #endregion
+
+/// <summary>
+/// A closed-loop load generator for SudokuService: each client (a virtual thread) sends a request, waits for the response and sends the next,
+/// cycling through the easy and hard puzzles of SudokuPuzzles. At the end it reports throughput, status codes, per-puzzle results and
+/// latency percentiles.
+///
+/// Run with: java SudokuLoadGenerator [-url http://localhost:8080/solve | -local] [-clients 64] [-seconds 10] [-batch 1] [-deadline 1000] [-variants]
+/// With -local, a SudokuService is started in the same process on a free port, so the whole test runs on localhost with one command, and its
+/// result cache statistics are reported too. With -variants, every request sends fresh random equivalents of its puzzles (relabelled,
+/// transposed, rows and columns permuted; see SudokuCanonicalizer.randomVariant), which only the canonical result cache recognizes.
+/// </summary>
+public class SudokuLoadGenerator {
+
+    // #region Attributes
+    private static final String[] PUZZLES = concatenate(SudokuPuzzles.EASY, SudokuPuzzles.HARD);
+    // #endregion
+
+    public static void main(String[] args) throws Exception
+    {
+        String url = "http://localhost:8080/solve";
+        int clients = 64, seconds = 10, batch = 1;
+        long deadline = 1000;
+        boolean local = false, variants = false;
+        for (int i = 0; i < args.length; i++)
+            switch (args[i])
+              { case "-url" -> url = args[++i];
+                case "-local" -> local = true;
+                case "-clients" -> clients = Integer.parseInt(args[++i]);
+                case "-seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "-batch" -> batch = Integer.parseInt(args[++i]);
+                case "-deadline" -> deadline = Long.parseLong(args[++i]);
+                case "-variants" -> variants = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]); }
+
+        SudokuService service = null;
+        if (local)
+          { service = new SudokuService().start(0);
+            url = "http://localhost:" + service.getPort() + "/solve"; }
+
+        URI uri = URI.create(url + "?deadline=" + deadline);
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        ClientResults[] results = new ClientResults[clients];
+        long endNanos = System.nanoTime() + seconds * 1_000_000_000L;
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor())
+          { for (int c = 0; c < clients; c++)
+              { ClientResults clientResults = results[c] = new ClientResults();
+                int clientIndex = c, clientBatch = batch;
+                boolean randomVariants = variants;
+                clientThreads.submit(() -> runClient(client, uri, clientIndex, clientBatch, randomVariants, endNanos, clientResults)); }}
+
+        report(results, seconds, clients, batch);
+        if (service != null)
+          { if (service.getResultCache() != null)
+                System.out.println("service cache: " + service.getResultCache());
+            service.stop(); }
+    }
+
+    // #region Client Methods
+    // Sends the same request (or, with variants, a new variant of it each time) over and over until the end time, recording each response.
+    private static Void runClient(HttpClient client, URI uri, int c, int batch, boolean variants, long endNanos, ClientResults results)
+    {
+        SplittableRandom random = new SplittableRandom(c);
+        HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(requestBody(c, batch, null))).build();
+        while (System.nanoTime() < endNanos)
+          { if (variants)
+                request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(requestBody(c, batch, random))).build();
+            long start = System.nanoTime();
+            try
+              { HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                results.record(response.statusCode(), System.nanoTime() - start);
+                if (response.statusCode() == 200)
+                    for (String line : response.body().split("\n"))
+                        results.recordLine(line.length() == 81 ? "solved" : line.split(" ", 2)[0]);   // A rejection's reason and tiles follow its status.
+                else if (response.statusCode() == 503)
+                    Thread.sleep(10);   // Back off a little, as Retry-After asks (in milliseconds rather than seconds, to keep the load up).
+              }
+            catch (InterruptedException e) { return null; }
+            catch (Exception e) { results.record(-1, System.nanoTime() - start); }}
+        return null;
+    }
+
+    // The puzzles of client c's requests: batch consecutive puzzles of the set, starting at a different one for each client, as given or as random variants.
+    private static String requestBody(int c, int batch, SplittableRandom random)
+    {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < batch; i++)
+          { String puzzle = PUZZLES[(c + i) % PUZZLES.length];
+            body.append(random != null ? SudokuCanonicalizer.randomVariant(puzzle, random) : puzzle).append('\n'); }
+        return body.toString();
+    }
+    // #endregion
+
+    // #region Report Methods
+    private static void report(ClientResults[] results, int seconds, int clients, int batch)
+    {
+        // Combine the clients' results only now, so that the clients never contend for them.
+        ClientResults total = new ClientResults();
+        for (ClientResults clientResults : results)
+            total.add(clientResults);
+        long[] latencies = Arrays.copyOf(total.latencies, total.count);
+        Arrays.sort(latencies);
+
+        long puzzles = total.lineCounts.values().stream().mapToLong(Long::longValue).sum();
+        System.out.printf("%d clients, %d puzzle(s) per request, %d s%n", clients, batch, seconds);
+        System.out.printf("requests: %d (%.1f/s), puzzles answered: %d (%.1f/s)%n", total.count, total.count / (double) seconds, puzzles, puzzles / (double) seconds);
+        System.out.println("status codes: " + total.statusCounts + " (-1 = connection error)");
+        System.out.println("puzzle results: " + total.lineCounts);
+        if (latencies.length > 0)
+            System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                              percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sortedNanos, double fraction) { return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.floor(fraction * sortedNanos.length))] / 1e6; }
+
+    private static String[] concatenate(String[] first, String[] second)
+    {
+        String[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+    // #endregion
+
+    // #region Helper Classes
+    // The results of one client, only touched by that client's thread until the report.
+    private static class ClientResults
+    {
+        // Attributes
+        long[] latencies = new long[1024];
+        int count;
+        TreeMap<Integer, Long> statusCounts = new TreeMap<>();
+        TreeMap<String, Long> lineCounts = new TreeMap<>();
+
+        // Methods
+        void record(int status, long latencyNanos)
+        {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latencyNanos;
+            statusCounts.merge(status, 1L, Long::sum);
+        }
+
+        void recordLine(String result) { lineCounts.merge(result, 1L, Long::sum); }
+
+        void add(ClientResults other)
+        {
+            if (count + other.count > latencies.length)
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statusCounts.forEach((status, n) -> statusCounts.merge(status, n, Long::sum));
+            other.lineCounts.forEach((result, n) -> lineCounts.merge(result, n, Long::sum));
+        }
+    }
+    // #endregion
+}
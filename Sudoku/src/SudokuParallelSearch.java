@@ -0,0 +1,169 @@
+// #region Required Libraries
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+// #endregion
+
+/// <summary>
+/// A work-stealing parallel search of a single puzzle on a ForkJoinPool (see SudokuSolver.setPool), for puzzles whose search is long enough
+/// to keep several cores busy. The top levels of the search tree are split into tasks: a task loads its state into a CSP of its own, branches
+/// on the tile with the fewest values left, and forks a task for each value that propagates without a contradiction, each with a copy of the
+/// resulting state. Tasks stop splitting below splitDepth levels, or once their worker has enough queued tasks for the idle ones to steal,
+/// and run the sequential backTrackSearch instead. The first task to find a solution publishes it, and every other task stops at its next
+/// deadline check.
+///
+/// A state is one int per tile (see SudokuCSP.saveState), so a task's copy is 81 ints on 9x9 grids. CSPs are borrowed from a pool only while a
+/// task works, not while it waits for its children, and are kept for the next puzzle.
+/// </summary>
+public final class SudokuParallelSearch {
+
+    // #region Constants
+    private static final int SURPLUS_QUEUED_TASKS = 3;     // Stop splitting once a worker has this many more queued tasks than idle workers.
+    // #endregion
+
+    // #region Attributes
+    private final SudokuSolver.SudokuCSP mainCSP;
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+    private final ConcurrentLinkedQueue<SudokuSolver.SudokuCSP> idleCSPs = new ConcurrentLinkedQueue<>();
+
+    // The current search.
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile int[] solution;
+    private volatile boolean timedOut;
+    private final LongAdder assignments = new LongAdder();
+    private final LongAdder backtracks = new LongAdder();
+    private final LongAdder unitsPropagated = new LongAdder();
+    private final LongAdder valuesPruned = new LongAdder();
+    private final LongAdder tasks = new LongAdder();
+    // #endregion
+
+    // #region Constructors
+    public SudokuParallelSearch(SudokuSolver.SudokuCSP mainCSP, ForkJoinPool pool)
+    {
+        this.mainCSP = mainCSP;
+        this.pool = pool;
+        this.splitDepth = 32 - Integer.numberOfLeadingZeros(8 * pool.getParallelism());    // Enough levels for about 8 tasks per worker at 2 values per tile.
+    }
+    // #endregion
+
+    // #region Primary Methods
+    /// <summary>
+    /// Searches from the main CSP's current state (set and propagated), and on success sets its tiles to the solution. The main CSP's
+    /// counters get the totals of every task, and its deadline, if set, applies to every task.
+    /// </summary>
+    /// <return> Returns true if a solution was found. </return>
+    public boolean search()
+    {
+        finished.set(false);
+        solution = null;
+        timedOut = false;
+        pool.invoke(new SearchTask(mainCSP.saveState(), 0));
+
+        int[] result = solution;
+        if (result != null)
+            mainCSP.loadState(result);
+        mainCSP.timedOut = (result == null && timedOut);
+        mainCSP.assignments += assignments.sumThenReset();
+        mainCSP.backtracks += backtracks.sumThenReset();
+        mainCSP.unitsPropagated += unitsPropagated.sumThenReset();
+        mainCSP.propagatedValuesRemoved += valuesPruned.sumThenReset();
+        mainCSP.parallelTasks += tasks.sumThenReset();
+        return result != null;
+    }
+    // #endregion
+
+    // #region Helper Methods
+    private SudokuSolver.SudokuCSP borrowCSP()
+    {
+        SudokuSolver.SudokuCSP csp = idleCSPs.poll();
+        if (csp == null)
+            csp = new SudokuSolver.SudokuCSP(mainCSP.variant);
+        csp.propagation = mainCSP.propagation;
+        csp.hasDeadline = mainCSP.hasDeadline;
+        csp.deadlineNanos = mainCSP.deadlineNanos;
+        csp.stopSignal = finished;
+        return csp;
+    }
+
+    // Moves the CSP's counters to the search's, and returns it to the pool.
+    private void releaseCSP(SudokuSolver.SudokuCSP csp)
+    {
+        assignments.add(csp.assignments);
+        backtracks.add(csp.backtracks);
+        unitsPropagated.add(csp.unitsPropagated);
+        valuesPruned.add(csp.propagatedValuesRemoved);
+        csp.reset();
+        idleCSPs.add(csp);
+    }
+
+    // Publishes the CSP's grid as the solution, unless another task already has, and stops every other task.
+    private void publish(SudokuSolver.SudokuCSP csp)
+    {
+        int[] state = csp.saveState();
+        if (finished.compareAndSet(false, true))
+            solution = state;
+    }
+    // #endregion
+
+    // #region Helper Classes
+    // One subtree of the search: the state after the assignments leading to it.
+    private final class SearchTask extends RecursiveAction
+    {
+        // Constants
+        private static final long serialVersionUID = 1L;
+
+        // Attributes
+        final int[] state;
+        final int depth;
+
+        // Constructors
+        SearchTask(int[] state, int depth)
+        {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        // Methods
+        @Override
+        protected void compute()
+        {
+            if (finished.get())
+                return;
+            tasks.increment();
+            List<SearchTask> children = new ArrayList<>();
+            SudokuSolver.SudokuCSP csp = borrowCSP();
+            try
+              { csp.loadState(state);
+                if (depth >= splitDepth || getSurplusQueuedTaskCount() > SURPLUS_QUEUED_TASKS)
+                  { if (csp.backTrackSearch(csp.fullAssignment) != SudokuSolver.TileAssignment.NULL_ASSIGNMENT)
+                        publish(csp);
+                    else if (csp.timedOut)
+                      { timedOut = true;
+                        finished.set(true); }
+                    return; }
+
+                SudokuSolver.SudokuTile tile = csp.selectUnassignedTile(csp.fullAssignment);
+                if (tile == null)
+                  { publish(csp);
+                    return; }
+                int domain = tile.tileDomain;
+                int trailMark = csp.trailSize;
+                for (int remaining = domain; remaining != 0; remaining &= remaining - 1)      // The same branching as backTrackSearch.
+                  { tile.setTileValue(Integer.numberOfTrailingZeros(remaining));
+                    csp.assignments++;
+                    if (csp.isConsistentAssignment(tile))
+                        children.add(new SearchTask(csp.saveState(), depth + 1));
+                    csp.undoTrail(trailMark); }
+                if (children.isEmpty())
+                    csp.backtracks++; }
+            finally { releaseCSP(csp); }
+            invokeAll(children);
+        }
+    }
+    // #endregion
+}
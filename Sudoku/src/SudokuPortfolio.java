@@ -0,0 +1,221 @@
+// #region Required Libraries
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+// #endregion
+
+/// <summary>
+/// A portfolio of search strategies raced on each puzzle (see SudokuSolver.setPortfolio), against the heavy-tailed runtimes of backtracking:
+/// on a hard puzzle, one unlucky first choice can cost a thousand times the work of another, and a strategy that chooses differently, or
+/// starts over with different choices, is unlikely to be unlucky the same way. A strategy is a tile choice (see SudokuSolver.TileChoice),
+/// optionally with random tie-breaking and value order from a seed, and Luby-scheduled restarts; or the SAT engine, which restarts on its own.
+///
+/// Each strategy runs on its own CSP, as a task of the input executor, from the state AC_3 left. The first to solve the puzzle, or to prove it
+/// unsolvable, wins: the others see the stop signal at their next deadline check and give up. The winner of each puzzle is reported
+/// (SudokuSolver.getWinningStrategy, and the PortfolioSearch event), and getWins counts the wins of each strategy, to tune the defaults from.
+///
+/// The strategies only race if they run at the same time, so the executor needs a thread per strategy, e.g. Executors.newFixedThreadPool.
+/// </summary>
+public final class SudokuPortfolio {
+
+    // #region Attributes
+    private final SudokuSolver.SudokuCSP mainCSP;
+    private final ExecutorService executor;
+    private final Strategy[] strategies;
+    private final SudokuSolver.SudokuCSP[] strategyCSPs;       // One per strategy, created on first use and kept for the next puzzle.
+    private final AtomicLongArray wins;
+
+    // The current search.
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile int winner;
+    private volatile int[] solution;                            // The winner's grid, or null if it proved the puzzle unsolvable.
+    // #endregion
+
+    // #region Constructors
+    public SudokuPortfolio(SudokuSolver.SudokuCSP mainCSP, ExecutorService executor, List<Strategy> strategies)
+    {
+        if (strategies.isEmpty())
+            throw new IllegalArgumentException("A portfolio needs at least one strategy.");
+        this.mainCSP = mainCSP;
+        this.executor = executor;
+        this.strategies = strategies.toArray(new Strategy[0]);
+        this.strategyCSPs = new SudokuSolver.SudokuCSP[this.strategies.length];
+        this.wins = new AtomicLongArray(this.strategies.length);
+    }
+
+    /// <summary>
+    /// The default portfolio: the solver's own strategy (fewest values first, in grid order), the same with random tie-breaking and restarts,
+    /// the tile with the most unassigned peers among those with the fewest values with other random choices and restarts, and the SAT engine.
+    /// </summary>
+    public static List<Strategy> defaultStrategies()
+    {
+        return List.of(new Strategy("fewest-values", SudokuSolver.Engine.BACKTRACKING, SudokuSolver.TileChoice.FEWEST_VALUES, 0, 0),
+                       new Strategy("fewest-values-random-restarts", SudokuSolver.Engine.BACKTRACKING, SudokuSolver.TileChoice.FEWEST_VALUES, 1, 64),
+                       new Strategy("most-peers-random-restarts", SudokuSolver.Engine.BACKTRACKING, SudokuSolver.TileChoice.FEWEST_VALUES_MOST_PEERS, 2, 64),
+                       new Strategy("sat", SudokuSolver.Engine.SAT, SudokuSolver.TileChoice.FEWEST_VALUES, 0, 0));
+    }
+    // #endregion
+
+    // #region Primary Methods
+    /// <summary>
+    /// Races the strategies from the main CSP's current state (set and arc consistent), and on success sets its tiles to the winner's solution.
+    /// The main CSP's counters get the totals of every strategy, its deadline, if set, applies to each, and its winningStrategy is set.
+    /// </summary>
+    /// <return> Returns true if a solution was found. </return>
+    public boolean search()
+    {
+        finished.set(false);
+        winner = -1;
+        solution = null;
+        int[] state = mainCSP.saveState();
+        List<Future<?>> runs = new ArrayList<>(strategies.length);
+        for (int i = 0; i < strategies.length; i++)
+          { int strategy = i;
+            runs.add(executor.submit(() -> run(strategy, state))); }
+
+        // Every run ends soon after the winner's, so waiting for all of them is short, and leaves their CSPs free for the next puzzle.
+        boolean interrupted = false;
+        for (Future<?> run : runs)
+            while (true)
+              { try
+                  { run.get();
+                    break; }
+                catch (InterruptedException e)
+                  { interrupted = true;
+                    finished.set(true); }
+                catch (ExecutionException e)
+                  { finished.set(true);
+                    throw new IllegalStateException("A portfolio strategy failed.", e.getCause()); }}
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        boolean timedOut = false;
+        for (SudokuSolver.SudokuCSP csp : strategyCSPs)
+          { mainCSP.assignments += csp.assignments;
+            mainCSP.backtracks += csp.backtracks;
+            mainCSP.unitsPropagated += csp.unitsPropagated;
+            mainCSP.propagatedValuesRemoved += csp.propagatedValuesRemoved;
+            mainCSP.restarts += csp.restarts;
+            timedOut |= csp.timedOut || (csp.satSolver != null && csp.satSolver.hasTimedOut()); }
+        int[] result = solution;
+        if (winner >= 0)
+          { wins.incrementAndGet(winner);
+            mainCSP.winningStrategy = strategies[winner].name; }
+        if (result != null)
+            mainCSP.loadState(result);
+        mainCSP.timedOut = (winner < 0 && timedOut);
+        return result != null;
+    }
+
+    public int getStrategyCount() { return strategies.length; }
+
+    // How many puzzles each strategy has won, by name, in the portfolio's order.
+    public Map<String, Long> getWins()
+    {
+        Map<String, Long> winCounts = new LinkedHashMap<>();
+        for (int i = 0; i < strategies.length; i++)
+            winCounts.put(strategies[i].name, wins.get(i));
+        return winCounts;
+    }
+
+    @Override
+    public String toString() { return "portfolio wins: " + getWins(); }
+    // #endregion
+
+    // #region Helper Methods
+    // One strategy's attempt at the puzzle, publishing its result if it finishes first.
+    private void run(int strategy, int[] state)
+    {
+        Strategy configuration = strategies[strategy];
+        SudokuSolver.SudokuCSP csp = strategyCSPs[strategy];
+        if (csp == null)
+            csp = strategyCSPs[strategy] = new SudokuSolver.SudokuCSP(mainCSP.variant);
+        csp.reset();
+        csp.loadState(state);
+        csp.hasDeadline = mainCSP.hasDeadline;
+        csp.deadlineNanos = mainCSP.deadlineNanos;
+        csp.stopSignal = finished;
+        csp.tileChoice = configuration.tileChoice;
+        csp.random = (configuration.seed != 0 ? new SplittableRandom(configuration.seed) : null);
+        if (finished.get())
+            return;
+
+        if (configuration.engine == SudokuSolver.Engine.SAT)
+          { SudokuSatSolver satSolver = csp.getSatSolver().setStopSignal(finished);
+            boolean solved = false;
+            if (csp.propagateAllUnits() && csp.encode(satSolver))
+              { solved = (csp.hasDeadline ? satSolver.solve(csp.deadlineNanos) : satSolver.solve());
+                if (!solved && (satSolver.hasTimedOut() || satSolver.hasStopped()))
+                    return;
+                if (solved)
+                    csp.decode(satSolver); }
+            publish(strategy, solved ? csp.saveState() : null);
+            return; }
+
+        if (!csp.propagateAllUnits())
+          { publish(strategy, null);
+            return; }
+        for (int restart = 0; ; restart++)
+          { csp.backtrackLimit = (configuration.restartBacktracks > 0
+                                  ? csp.backtracks + configuration.restartBacktracks * SudokuSatSolver.luby(restart) : Long.MAX_VALUE);
+            csp.restartDue = false;
+            if (csp.backTrackSearch(csp.fullAssignment) != SudokuSolver.TileAssignment.NULL_ASSIGNMENT)
+              { publish(strategy, csp.saveState());
+                return; }
+            if (csp.timedOut || csp.stopped)
+                return;
+            if (!csp.restartDue)
+              { publish(strategy, null);                                // The whole tree was searched: unsolvable.
+                return; }
+            csp.restarts++; }                                           // The search unwound to the root state, to start over with new random choices.
+    }
+
+    // Publishes a strategy's result (a solved grid, or null for unsolvable), unless another strategy already has, and stops the others.
+    private void publish(int strategy, int[] state)
+    {
+        if (finished.compareAndSet(false, true))
+          { solution = state;
+            winner = strategy; }
+    }
+    // #endregion
+
+    // #region Helper Classes
+    /// <summary>
+    /// One member of a portfolio: the engine, and for backtracking, how tiles are chosen, the seed of its random choices (0 for none: ties go
+    /// to the first tile in grid order and values are tried in increasing order), and the backtracks before the first restart (0 for no restarts),
+    /// multiplied by the Luby sequence 1, 1, 2, 1, 1, 2, 4, ... for each following one.
+    /// </summary>
+    public static final class Strategy
+    {
+        // Attributes
+        final String name;
+        final SudokuSolver.Engine engine;
+        final SudokuSolver.TileChoice tileChoice;
+        final long seed;
+        final int restartBacktracks;
+
+        // Constructors
+        public Strategy(String name, SudokuSolver.Engine engine, SudokuSolver.TileChoice tileChoice, long seed, int restartBacktracks)
+        {
+            this.name = name;
+            this.engine = engine;
+            this.tileChoice = tileChoice;
+            this.seed = seed;
+            this.restartBacktracks = restartBacktracks;
+        }
+
+        // Methods
+        public String getName() { return name; }
+
+        @Override
+        public String toString() { return name; }
+    }
+    // #endregion
+}
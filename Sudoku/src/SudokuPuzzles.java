@@ -0,0 +1,100 @@
+// #region Required Libraries
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+// #endregion
+
+/// <summary>
+/// Fixed puzzle sets and seeded puzzle generators, shared by the benchmarks (jmh/SudokuBenchmark.java), SudokuLoadGenerator and the tests (test/SudokuCorpus.java).
+/// Puzzles are rows top to bottom, '_' for empty tiles.
+/// </summary>
+public final class SudokuPuzzles {
+
+    // #region Constants
+    public static final String[] EASY = {
+        "__3_2_6__9__3_5__1__18_64____81_29__7_______8__67_82____26_95__8__2_3__9__5_1_3__",
+        "2___8_3___6__7__84_3_5__2_9___1_54_8_________4_27_6___3_1__7_4_72__4__6___4_1___3",
+        "______9_7___42_18____7_5_261__9_4____5_____4____5_7__992_1_8____34_59___5_7______"
+    };
+    public static final String[] HARD = {
+        "8__________36______7__9_2___5___7_______457_____1___3___1____68__85___1__9____4__",
+        "__53_____8______2__7__1_5__4____53___1__7___6__32___8__6_5____9__4____3______97__",
+        "85___24__72______9__4_________1_7__23_5___9___4___________8__7__17__________36_4_"
+    };
+    // Takes the backtracking search seconds where the other sets take microseconds.
+    public static final String[] PATHOLOGICAL = {
+        "4_____8_5_3__________7______2_____6_____8_4______1_______6_3_7_5__2_____1_4______"
+    };
+    // #endregion
+
+    private SudokuPuzzles() {}     // Only static sets and generators.
+
+    // #region Generators
+    // A puzzle with boxSize^4 tiles: the pattern solution (row r is the first row shifted by boxSize * (r % boxSize) + r / boxSize) with
+    // relabelled values, keeping each tile as a given with the input probability. Not necessarily unique, but always solvable.
+    public static String patternPuzzle(int boxSize, double givenProbability, long seed)
+    {
+        int size = boxSize * boxSize;
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] labels = random.ints(0, size).distinct().limit(size).toArray();
+        StringBuilder puzzle = new StringBuilder(size * size);
+        for (int row = 0; row < size; row++)
+            for (int column = 0; column < size; column++)
+                puzzle.append(random.nextDouble() < givenProbability
+                              ? SudokuSolver.tileCharacter(labels[(boxSize * (row % boxSize) + row / boxSize + column) % size] + 1)
+                              : '_');
+        return puzzle.toString();
+    }
+
+    // A 9x9 puzzle of the variant: the solution of its empty grid, keeping each tile as a given with the input probability.
+    public static String variantPuzzle(SudokuVariant variant, double givenProbability, long seed)
+    {
+        char[] solution = new char[81];
+        new SudokuSolver(variant).solveInto("_".repeat(81), 0, solution, 0);
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder puzzle = new StringBuilder(81);
+        for (char value : solution)
+            puzzle.append(random.nextDouble() < givenProbability ? value : '_');
+        return puzzle.toString();
+    }
+
+    // A killer Sudoku drawn on the puzzle's solution: cages of 1 to 4 adjacent tiles with distinct values, grown from each uncaged tile in turn.
+    public static SudokuVariant killerVariant(String puzzle, long seed)
+    {
+        char[] solution = new char[81];
+        new SudokuSolver().solveInto(puzzle, 0, solution, 0);
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean[] caged = new boolean[81];
+        StringBuilder definition = new StringBuilder("name Killer " + seed + "\n");
+        for (int first = 0; first < 81; first++)
+          { if (caged[first])
+                continue;
+            int[] tiles = new int[4];
+            int tileCount = 0, values = 0, sum = 0, targetSize = 1 + random.nextInt(4);
+            for (int tile = first; tile >= 0 && tileCount < targetSize; )
+              { caged[tile] = true;
+                tiles[tileCount++] = tile;
+                values |= 1 << (solution[tile] - '0');
+                sum += solution[tile] - '0';
+                tile = -1;
+                for (int attempt = 0; attempt < 8 && tile < 0; attempt++)                  // A random uncaged neighbor of a random tile of the cage.
+                  { int from = tiles[random.nextInt(tileCount)], step = new int[] { 1, -1, 9, -9 }[random.nextInt(4)], next = from + step;
+                    if (next >= 0 && next < 81 && (step * step != 1 || next / 9 == from / 9) && !caged[next] && (values & (1 << (solution[next] - '0'))) == 0)
+                        tile = next; }}
+            definition.append("cage ").append(sum);
+            for (int i = 0; i < tileCount; i++)
+                definition.append(' ').append(tiles[i]);
+            definition.append('\n'); }
+        return SudokuVariant.parse(definition);
+    }
+
+    // Count random equivalents of the puzzles (see SudokuCanonicalizer.randomVariant), cycling through them, back to back as ASCII bytes.
+    public static byte[] variantBatch(String[] puzzles, int count, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder batch = new StringBuilder(count * 81);
+        for (int i = 0; i < count; i++)
+            batch.append(SudokuCanonicalizer.randomVariant(puzzles[i % puzzles.length], random));
+        return batch.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+    // #endregion
+}
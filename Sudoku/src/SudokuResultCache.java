@@ -0,0 +1,123 @@
+// #region Required Libraries
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+// #endregion
+
+/// <summary>
+/// A bounded, thread-safe cache of solved puzzles, keyed by their minlex form (see SudokuCanonicalizer), so that a puzzle is solved once
+/// however it is relabelled, transposed or has its rows and columns permuted. Values are solutions in the canonical frame, one digit value
+/// per tile, or UNSOLVABLE; the canonicalizer maps them back to the frame of each request.
+///
+/// The entries are split over SEGMENTS segments by the hash of their key, each a LinkedHashMap in access order under its own lock, so that
+/// threads rarely wait for each other. A segment evicts its least recently used entry once it holds more than its share of the capacity.
+/// </summary>
+public final class SudokuResultCache {
+
+    // #region Constants
+    public static final byte[] UNSOLVABLE = new byte[0];     // The value of a puzzle with no solution.
+    private static final int SEGMENTS = 16;
+    // #endregion
+
+    // #region Attributes
+    private final int capacity;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // #endregion
+
+    // #region Constructors
+    public SudokuResultCache(int capacity)
+    {
+        this.capacity = capacity;
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS));
+    }
+    // #endregion
+
+    // #region Primary Methods
+    /// <summary>
+    /// Looks up a canonical form, counting a hit or a miss.
+    /// </summary>
+    /// <return> Returns the canonical solution, UNSOLVABLE, or null if the form is not cached. </return>
+    public byte[] get(String canonicalForm)
+    {
+        Segment segment = segmentFor(canonicalForm);
+        byte[] result;
+        synchronized (segment) { result = segment.get(canonicalForm); }
+        (result != null ? hits : misses).increment();
+        return result;
+    }
+
+    // Caches the canonical solution (or UNSOLVABLE) of a canonical form. Timed out solves prove nothing and must not be cached.
+    public void put(String canonicalForm, byte[] canonicalSolution)
+    {
+        Segment segment = segmentFor(canonicalForm);
+        synchronized (segment) { segment.put(canonicalForm, canonicalSolution); }
+    }
+
+    private Segment segmentFor(String canonicalForm)
+    {
+        int hash = canonicalForm.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+    // #endregion
+
+    // #region Statistics Methods
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public double getHitRate()
+    {
+        long hitCount = hits.sum(), lookups = hitCount + misses.sum();
+        return (lookups == 0 ? 0 : hitCount / (double) lookups);
+    }
+    public long getEvictions()
+    {
+        long evictions = 0;
+        for (Segment segment : segments)
+            synchronized (segment) { evictions += segment.evictions; }
+        return evictions;
+    }
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+            synchronized (segment) { size += segment.size(); }
+        return size;
+    }
+    public int getCapacity() { return capacity; }
+
+    @Override
+    public String toString() { return String.format("hits %d, misses %d, hit rate %.1f%%, entries %d/%d, evictions %d", getHits(), getMisses(), 100 * getHitRate(), size(), capacity, getEvictions()); }
+    // #endregion
+
+    // #region Helper Classes
+    // One segment of the cache: a least recently used map, only used under its own lock.
+    private static class Segment extends LinkedHashMap<String, byte[]>
+    {
+        // Constants
+        private static final long serialVersionUID = 1L;
+
+        // Attributes
+        final int segmentCapacity;
+        long evictions;
+
+        // Constructors
+        Segment(int segmentCapacity)
+        {
+            super(16, 0.75f, true);     // Access order: get moves an entry to the end, so the eldest is the least recently used.
+            this.segmentCapacity = segmentCapacity;
+        }
+
+        // Methods
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest)
+        {
+            boolean evict = size() > segmentCapacity;
+            if (evict)
+                evictions++;
+            return evict;
+        }
+    }
+    // #endregion
+}
@@ -0,0 +1,584 @@
+// #region Required Libraries
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+// #endregion
+
+/// <summary>
+/// A self-contained conflict-driven clause learning (CDCL) SAT solver, the engine behind SudokuSolver.Engine.SAT (see SudokuCSP.encode for
+/// the CNF of a puzzle). It follows MiniSat's design:
+/// - Two watched literals per clause, so that an assignment only visits the clauses watching the literal it falsifies.
+/// - First-UIP conflict analysis, with the learned clause minimized against the reasons of its literals.
+/// - VSIDS: the variables of each conflict have their activity bumped, and the most active unassigned variable is decided next,
+///   with the polarity it last had (phase saving).
+/// - Restarts after a Luby sequence of conflicts, RESTART_UNIT times 1, 1, 2, 1, 1, 2, 4, ...
+/// - Learned clause deletion: once there are too many, the less useful half (highest LBD, i.e. spanning the most decision levels, then
+///   least active) is deleted, keeping those with an LBD of 2 or less and those that are the reason of a current assignment.
+///
+/// Variables are numbered from 0, and a literal is 2 * variable for the variable being true and 2 * variable + 1 for it being false.
+/// A solver is reset and reused for each formula, reusing its arrays when they are large enough.
+/// </summary>
+public final class SudokuSatSolver {
+
+    // #region Constants
+    private static final byte UNASSIGNED = 0, TRUE = 1, FALSE = -1;
+    private static final double VARIABLE_DECAY = 0.95;          // Activities decay by bumping by 1 / VARIABLE_DECAY more after each conflict.
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final int RESTART_UNIT = 100;                // Conflicts per unit of the Luby sequence.
+    private static final int DEADLINE_CHECK_INTERVAL = 256;     // Conflicts and decisions between two reads of the clock.
+    // #endregion
+
+    // #region Attributes
+    private int variableCount;
+    private final List<Clause> clauses = new ArrayList<>();
+    private final List<Clause> learnedClauses = new ArrayList<>();
+    private Clause[][] watches = new Clause[0][];      // The clauses watching each literal, i.e. to visit when it becomes false.
+    private int[] watchCounts = new int[0];
+    private boolean inconsistent;                      // An empty clause was added or derived at level 0.
+
+    // Assignment
+    private byte[] values = new byte[0];
+    private int[] levels = new int[0];
+    private Clause[] reasons = new Clause[0];
+    private int[] trail = new int[0];                  // Literals made true, in order.
+    private int trailSize;
+    private int[] trailLimits = new int[0];            // Trail size at the start of each decision level.
+    private int decisionLevel;
+    private int propagationHead;                       // Trail literals before this one have been propagated.
+
+    // VSIDS
+    private double[] activities = new double[0];
+    private double variableIncrement = 1;
+    private double clauseIncrement = 1;
+    private boolean[] phases = new boolean[0];         // Last value of each variable, which it is decided to again.
+    private int[] heap = new int[0];                   // Unassigned (and some assigned) variables, a max-heap on activity.
+    private int heapSize;
+    private int[] heapPositions = new int[0];          // Position of each variable in the heap, -1 if not in it.
+
+    // Analysis Buffers
+    private boolean[] seen = new boolean[0];
+    private int[] learned = new int[0];
+    private int[] clauseBuffer = new int[0];
+    private long[] levelStamps = new long[0];          // For the LBD: the last stamp a decision level was counted under.
+    private long stamp;
+    private double maxLearnedClauses;
+
+    // Deadline
+    private long deadlineNanos;
+    private boolean hasDeadline;
+    private boolean timedOut;
+    private int deadlineCountdown;
+    private AtomicBoolean stopSignal;               // When set, checked with the deadline: once it is true, the search gives up as on a timeout.
+    private boolean stopped;
+
+    // Counters
+    private long decisions;
+    private long propagations;
+    private long conflicts;
+    private long restarts;
+    private long deletedClauses;
+    // #endregion
+
+    // #region Formula Methods
+    // Clears the solver for a new formula over the input number of variables. Returns the solver, making it possible to chain if necessary.
+    public SudokuSatSolver reset(int variableCount)
+    {
+        this.variableCount = variableCount;
+        int literalCount = 2 * variableCount;
+        if (values.length < variableCount)
+          { values = new byte[variableCount];
+            levels = new int[variableCount];
+            reasons = new Clause[variableCount];
+            trail = new int[variableCount];
+            trailLimits = new int[variableCount + 1];
+            activities = new double[variableCount];
+            phases = new boolean[variableCount];
+            heap = new int[variableCount];
+            heapPositions = new int[variableCount];
+            seen = new boolean[variableCount];
+            learned = new int[variableCount + 1];
+            levelStamps = new long[variableCount + 1]; }
+        if (watches.length < literalCount)
+          { watches = Arrays.copyOf(watches, literalCount);
+            watchCounts = new int[literalCount]; }
+
+        clauses.clear();
+        learnedClauses.clear();
+        for (int literal = 0; literal < literalCount; literal++)
+          { watchCounts[literal] = 0;
+            if (watches[literal] == null)
+                watches[literal] = new Clause[4];
+            else
+                Arrays.fill(watches[literal], null); }
+        Arrays.fill(values, 0, variableCount, UNASSIGNED);
+        Arrays.fill(reasons, 0, variableCount, null);
+        Arrays.fill(activities, 0, variableCount, 0);
+        Arrays.fill(phases, 0, variableCount, false);
+        trailSize = 0;
+        decisionLevel = 0;
+        propagationHead = 0;
+        inconsistent = false;
+        variableIncrement = 1;
+        clauseIncrement = 1;
+        heapSize = 0;
+        for (int variable = 0; variable < variableCount; variable++)
+          { heap[heapSize] = variable;
+            heapPositions[variable] = heapSize++; }
+        decisions = propagations = conflicts = restarts = deletedClauses = 0;
+        timedOut = false;
+        return this;
+    }
+
+    public static int literal(int variable, boolean value) { return 2 * variable + (value ? 0 : 1); }
+
+    /// <summary>
+    /// Adds a clause: the first count literals of the array, of which at least one must be true. The array is copied, so it can be reused.
+    /// Literals false at level 0 are dropped and a clause with a true one is skipped, as are duplicate literals.
+    /// </summary>
+    /// <return> Returns false if the formula is now known to be unsatisfiable. </return>
+    public boolean addClause(int[] literals, int count)
+    {
+        if (inconsistent)
+            return false;
+        if (clauseBuffer.length < count)
+            clauseBuffer = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++)
+          { int literal = literals[i];
+            byte value = literalValue(literal);
+            if (value == TRUE || seenLiteral(literal ^ 1, size))
+                return true;                                    // Satisfied, or a tautology.
+            if (value == FALSE || seenLiteral(literal, size))
+                continue;
+            clauseBuffer[size++] = literal; }
+
+        if (size == 0)
+            return !(inconsistent = true);
+        if (size == 1)
+          { assign(clauseBuffer[0], null);
+            inconsistent = (propagate() != null);
+            return !inconsistent; }
+        Clause clause = new Clause(Arrays.copyOf(clauseBuffer, size), false);
+        clauses.add(clause);
+        attach(clause);
+        return true;
+    }
+    public boolean addClause(int... literals) { return addClause(literals, literals.length); }
+
+    private boolean seenLiteral(int literal, int size)
+    {
+        for (int i = 0; i < size; i++)
+            if (clauseBuffer[i] == literal)
+                return true;
+        return false;
+    }
+
+    // The value of a variable in the model found by the last successful solve.
+    public boolean value(int variable) { return values[variable] == TRUE; }
+    // #endregion
+
+    // #region Solving Methods
+    public boolean solve() { return search(); }
+
+    // Solves like solve, but gives up once System.nanoTime() passes the input deadline; hasTimedOut tells a timeout apart from unsatisfiable.
+    public boolean solve(long deadlineNanos)
+    {
+        this.deadlineNanos = deadlineNanos;
+        hasDeadline = true;
+        try { return search(); }
+        finally { hasDeadline = false; }
+    }
+
+    public boolean hasTimedOut() { return timedOut; }
+
+    // Makes the search give up once the input flag is set (null for none), e.g. by a portfolio member that finished first; hasStopped tells.
+    public SudokuSatSolver setStopSignal(AtomicBoolean stopSignal)
+    {
+        this.stopSignal = stopSignal;
+        return this;
+    }
+
+    public boolean hasStopped() { return stopped; }
+
+    private boolean search()
+    {
+        if (inconsistent || propagate() != null)
+            return false;
+        maxLearnedClauses = Math.max(clauses.size() / 3.0, 2000);
+        deadlineCountdown = DEADLINE_CHECK_INTERVAL;
+        stopped = false;
+        for (int restart = 0; ; restart++)
+          { byte result = searchUntil(RESTART_UNIT * luby(restart));
+            if (result != UNASSIGNED)
+                return result == TRUE;
+            if (timedOut || stopped)
+                return false;
+            restarts++; }
+    }
+
+    /// <summary>
+    /// The CDCL loop: propagate, and on a conflict learn a clause and backjump, otherwise decide the most active unassigned variable.
+    /// Gives up (to restart from level 0) after the input number of conflicts.
+    /// </summary>
+    /// <return> Returns TRUE for a model, FALSE for unsatisfiable, and UNASSIGNED when restarting or out of time. </return>
+    private byte searchUntil(long conflictLimit)
+    {
+        long conflictCount = 0;
+        while (true)
+          { Clause conflict = propagate();
+            if (conflict != null)
+              { conflicts++;
+                conflictCount++;
+                if (decisionLevel == 0)
+                    return FALSE;
+                learnClause(conflict);
+                variableIncrement /= VARIABLE_DECAY;
+                clauseIncrement /= CLAUSE_DECAY; }
+            else
+              { if (conflictCount >= conflictLimit || checkDeadline())
+                  { cancelUntil(0);
+                    return UNASSIGNED; }
+                if (learnedClauses.size() - trailSize >= maxLearnedClauses)
+                  { reduceLearnedClauses();
+                    maxLearnedClauses *= 1.1; }
+
+                int variable = nextDecisionVariable();
+                if (variable < 0)
+                    return TRUE;                                    // Every variable is assigned without a conflict: a model.
+                decisions++;
+                trailLimits[decisionLevel++] = trailSize;
+                assign(literal(variable, phases[variable]), null); }}
+    }
+
+    private boolean checkDeadline()
+    {
+        if ((hasDeadline || stopSignal != null) && --deadlineCountdown <= 0)
+          { deadlineCountdown = DEADLINE_CHECK_INTERVAL;
+            timedOut |= (hasDeadline && System.nanoTime() - deadlineNanos > 0);
+            stopped |= (stopSignal != null && stopSignal.get()); }
+        return timedOut || stopped;
+    }
+
+    // The i-th term of the Luby sequence: 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+    static long luby(int i)
+    {
+        int size = 1, exponent = 0;
+        while (size < i + 1)                                        // Find the finite subsequence (of size 2^k - 1) that contains term i.
+          { exponent++;
+            size = 2 * size + 1; }
+        while (size - 1 != i)
+          { size = (size - 1) / 2;
+            exponent--;
+            i %= size; }
+        return 1L << exponent;
+    }
+    // #endregion
+
+    // #region Propagation Methods
+    private byte literalValue(int literal)
+    {
+        byte value = values[literal >> 1];
+        return ((literal & 1) == 0 ? value : (byte) -value);
+    }
+
+    private void assign(int literal, Clause reason)
+    {
+        int variable = literal >> 1;
+        values[variable] = ((literal & 1) == 0 ? TRUE : FALSE);
+        levels[variable] = decisionLevel;
+        reasons[variable] = reason;
+        trail[trailSize++] = literal;
+    }
+
+    private void attach(Clause clause)
+    {
+        watch(clause.literals[0], clause);
+        watch(clause.literals[1], clause);
+    }
+
+    private void watch(int literal, Clause clause)
+    {
+        if (watchCounts[literal] == watches[literal].length)
+            watches[literal] = Arrays.copyOf(watches[literal], 2 * watchCounts[literal]);
+        watches[literal][watchCounts[literal]++] = clause;
+    }
+
+    /// <summary>
+    /// Unit propagation with two watched literals. The two watched literals of a clause are its first two, and a clause is only visited when
+    /// one of them becomes false: then it watches another literal that is not false instead if it has one, is satisfied if the other watched
+    /// literal is true, implies the other watched literal if it is unassigned, and is a conflict otherwise. Deleted clauses are dropped from
+    /// the watch lists as they are met.
+    /// </summary>
+    /// <return> Returns a clause with every literal false, or null. </return>
+    private Clause propagate()
+    {
+        while (propagationHead < trailSize)
+          { int falseLiteral = trail[propagationHead++] ^ 1;
+            Clause[] watchers = watches[falseLiteral];
+            int count = watchCounts[falseLiteral], kept = 0;
+            propagations++;
+            for (int i = 0; i < count; i++)
+              { Clause clause = watchers[i];
+                if (clause.deleted)
+                    continue;
+                int[] literals = clause.literals;
+                if (literals[0] == falseLiteral)                    // Keep the false literal second.
+                  { literals[0] = literals[1];
+                    literals[1] = falseLiteral; }
+                if (literalValue(literals[0]) == TRUE)
+                  { watchers[kept++] = clause;
+                    continue; }
+
+                boolean moved = false;
+                for (int k = 2; k < literals.length; k++)
+                    if (literalValue(literals[k]) != FALSE)
+                      { literals[1] = literals[k];
+                        literals[k] = falseLiteral;
+                        watch(literals[1], clause);
+                        moved = true;
+                        break; }
+                if (moved)
+                    continue;
+
+                watchers[kept++] = clause;
+                if (literalValue(literals[0]) == FALSE)
+                  { while (++i < count)                              // Conflict: keep the clauses not visited yet.
+                        watchers[kept++] = watchers[i];
+                    watchCounts[falseLiteral] = kept;
+                    propagationHead = trailSize;
+                    return clause; }
+                assign(literals[0], clause); }
+            Arrays.fill(watchers, kept, count, null);
+            watchCounts[falseLiteral] = kept; }
+        return null;
+    }
+
+    // Unassigns every variable above the input decision level, saving its phase and returning it to the decision heap.
+    private void cancelUntil(int level)
+    {
+        if (decisionLevel <= level)
+            return;
+        for (int i = trailSize - 1; i >= trailLimits[level]; i--)
+          { int variable = trail[i] >> 1;
+            phases[variable] = (values[variable] == TRUE);
+            values[variable] = UNASSIGNED;
+            reasons[variable] = null;
+            if (heapPositions[variable] < 0)
+                heapInsert(variable); }
+        trailSize = trailLimits[level];
+        propagationHead = trailSize;
+        decisionLevel = level;
+    }
+    // #endregion
+
+    // #region Learning Methods
+    /// <summary>
+    /// First-UIP analysis: resolves the conflict clause with the reasons of its literals assigned at the current level, in reverse trail order,
+    /// until a single literal of the current level is left. The learned clause is that literal's negation and the other levels' literals; it is
+    /// added after backjumping to the highest level among the latter, where it implies the negation.
+    /// </summary>
+    private void learnClause(Clause conflict)
+    {
+        int size = 1, pathCount = 0, literal = -1, index = trailSize - 1;
+        Clause clause = conflict;
+        do
+          { if (clause.learned)
+                bumpClause(clause);
+            int[] literals = clause.literals;
+            for (int k = (literal < 0 ? 0 : 1); k < literals.length; k++)      // A reason's first literal is the one it implied.
+              { int variable = literals[k] >> 1;
+                if (seen[variable] || levels[variable] == 0)
+                    continue;
+                seen[variable] = true;
+                bumpVariable(variable);
+                if (levels[variable] >= decisionLevel)
+                    pathCount++;
+                else
+                    learned[size++] = literals[k]; }
+            while (!seen[trail[index] >> 1])
+                index--;
+            literal = trail[index--];
+            clause = reasons[literal >> 1];
+            seen[literal >> 1] = false;
+            pathCount--; }
+        while (pathCount > 0);
+        learned[0] = literal ^ 1;
+
+        // Drop the literals implied by the others: those whose reason only has literals already in the clause (or assigned at level 0).
+        for (int i = 1; i < size; i++)
+            if (isRedundant(learned[i]))
+                learned[i] = ~learned[i];                                           // Marked, so that seen stays set for the other checks.
+        int kept = 1;
+        for (int i = 1; i < size; i++)
+            if (learned[i] >= 0)
+                learned[kept++] = learned[i];
+            else
+                seen[~learned[i] >> 1] = false;
+        for (int i = 1; i < kept; i++)
+            seen[learned[i] >> 1] = false;
+        size = kept;
+
+        // The second literal is one of the highest level, to backjump to and watch.
+        int backjumpLevel = 0;
+        for (int i = 1; i < size; i++)
+            if (levels[learned[i] >> 1] > backjumpLevel)
+              { backjumpLevel = levels[learned[i] >> 1];
+                int swapped = learned[1];
+                learned[1] = learned[i];
+                learned[i] = swapped; }
+
+        cancelUntil(backjumpLevel);
+        if (size == 1)
+          { assign(learned[0], null);
+            return; }
+        Clause learnedClause = new Clause(Arrays.copyOf(learned, size), true);
+        learnedClause.lbd = literalBlockDistance(learnedClause.literals);
+        bumpClause(learnedClause);
+        learnedClauses.add(learnedClause);
+        attach(learnedClause);
+        assign(learned[0], learnedClause);
+    }
+
+    private boolean isRedundant(int literal)
+    {
+        Clause reason = reasons[literal >> 1];
+        if (reason == null)
+            return false;
+        for (int k = 1; k < reason.literals.length; k++)
+          { int variable = reason.literals[k] >> 1;
+            if (!seen[variable] && levels[variable] > 0)
+                return false; }
+        return true;
+    }
+
+    // The number of distinct decision levels among the literals: clauses over few levels are the ones that keep propagating.
+    private int literalBlockDistance(int[] literals)
+    {
+        stamp++;
+        int distance = 0;
+        for (int literal : literals)
+          { int level = levels[literal >> 1];
+            if (levelStamps[level] != stamp)
+              { levelStamps[level] = stamp;
+                distance++; }}
+        return distance;
+    }
+
+    // Deletes the less useful half of the learned clauses that are not locked (the reason of a current assignment) and have an LBD above 2.
+    private void reduceLearnedClauses()
+    {
+        learnedClauses.sort((a, b) -> (a.lbd != b.lbd ? Integer.compare(b.lbd, a.lbd) : Double.compare(a.activity, b.activity)));
+        int target = learnedClauses.size() / 2, kept = 0;
+        for (int i = 0; i < learnedClauses.size(); i++)
+          { Clause clause = learnedClauses.get(i);
+            boolean locked = (reasons[clause.literals[0] >> 1] == clause && literalValue(clause.literals[0]) == TRUE);
+            if (i < target && clause.lbd > 2 && !locked)
+              { clause.deleted = true;
+                deletedClauses++; }
+            else
+                learnedClauses.set(kept++, clause); }
+        learnedClauses.subList(kept, learnedClauses.size()).clear();
+    }
+
+    private void bumpClause(Clause clause)
+    {
+        if ((clause.activity += clauseIncrement) > 1e20)
+          { for (Clause learnedClause : learnedClauses)
+                learnedClause.activity *= 1e-20;
+            clauseIncrement *= 1e-20; }
+    }
+    // #endregion
+
+    // #region VSIDS Methods
+    private void bumpVariable(int variable)
+    {
+        if ((activities[variable] += variableIncrement) > 1e100)
+          { for (int v = 0; v < variableCount; v++)
+                activities[v] *= 1e-100;
+            variableIncrement *= 1e-100; }
+        if (heapPositions[variable] >= 0)
+            siftUp(heapPositions[variable]);
+    }
+
+    // The most active unassigned variable, or -1 if every variable is assigned. Assigned variables met at the top of the heap are removed.
+    private int nextDecisionVariable()
+    {
+        while (heapSize > 0)
+          { int variable = heap[0];
+            heapPositions[variable] = -1;
+            heapSize--;
+            if (heapSize > 0)
+              { heap[0] = heap[heapSize];
+                heapPositions[heap[0]] = 0;
+                siftDown(0); }
+            if (values[variable] == UNASSIGNED)
+                return variable; }
+        return -1;
+    }
+
+    private void heapInsert(int variable)
+    {
+        heap[heapSize] = variable;
+        heapPositions[variable] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void siftUp(int position)
+    {
+        int variable = heap[position];
+        while (position > 0 && activities[heap[(position - 1) / 2]] < activities[variable])
+          { heap[position] = heap[(position - 1) / 2];
+            heapPositions[heap[position]] = position;
+            position = (position - 1) / 2; }
+        heap[position] = variable;
+        heapPositions[variable] = position;
+    }
+
+    private void siftDown(int position)
+    {
+        int variable = heap[position];
+        while (2 * position + 1 < heapSize)
+          { int child = 2 * position + 1;
+            if (child + 1 < heapSize && activities[heap[child + 1]] > activities[heap[child]])
+                child++;
+            if (activities[heap[child]] <= activities[variable])
+                break;
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child; }
+        heap[position] = variable;
+        heapPositions[variable] = position;
+    }
+    // #endregion
+
+    // #region Statistics Methods
+    public int getVariableCount() { return variableCount; }
+    public int getClauseCount() { return clauses.size(); }
+    public int getLearnedClauseCount() { return learnedClauses.size(); }
+    public long getDecisions() { return decisions; }
+    public long getPropagations() { return propagations; }
+    public long getConflicts() { return conflicts; }
+    public long getRestarts() { return restarts; }
+    public long getDeletedClauses() { return deletedClauses; }
+    // #endregion
+
+    // #region Helper Classes
+    private static final class Clause
+    {
+        // Attributes
+        final int[] literals;           // The first two are watched.
+        final boolean learned;
+        double activity;
+        int lbd;
+        boolean deleted;
+
+        // Constructors
+        Clause(int[] literals, boolean learned)
+        {
+            this.literals = literals;
+            this.learned = learned;
+        }
+    }
+    // #endregion
+}
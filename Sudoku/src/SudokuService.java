@@ -0,0 +1,384 @@
+// #region Required Libraries
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+// #endregion
+
+/// <summary>
+/// A small local HTTP service around SudokuSolver, built on the JDK's com.sun.net.httpserver.
+///
+/// POST /solve with one puzzle per line (81 characters each, in any format solveInto accepts; blank lines are skipped).
+/// The response has one line per puzzle, in order: the 81 digits of the solution, or "unsolvable", "timeout" or "invalid" (or "error" if solving
+/// it threw; the solver thread goes on with the next puzzle).
+/// Puzzles are checked by SudokuValidator as the request is parsed, and a malformed puzzle or one whose givens conflict is answered at once,
+/// without taking a queue slot, with the reason and offending tiles after its status, e.g. "unsolvable duplicate-given 5 at 0,4".
+/// The optional query parameter deadline=milliseconds overrides the default per-request deadline.
+///
+/// Requests are handled on virtual threads, which only parse, queue and wait. The solving is done by a fixed pool of solver threads,
+/// each with its own reused SudokuSolver. Every puzzle is a job on a shared queue, and a solver thread takes as many waiting jobs as it can
+/// (up to the batch size) at once, so that many small requests are solved in micro-batches. The queue is bounded: a request whose puzzles
+/// do not all fit is rejected at once with 503 and a Retry-After header, instead of waiting behind work it will not get to in time.
+/// Jobs whose request deadline has passed are skipped, and a solve in progress gives up at the deadline (see SudokuSolver.solve(long)).
+///
+/// Results are cached by the puzzle's minlex form (see SudokuResultCache), so a puzzle seen before, even relabelled, transposed or with its
+/// rows and columns permuted, is answered without solving. GET /stats reports the cache's hit rate, the number of puzzles rejected by the check, and the number that failed with an error.
+///
+/// Run with: java SudokuService [-port 8080] [-threads cores] [-queue 4096] [-batch 16] [-deadline 1000] [-cache 65536]
+/// </summary>
+public class SudokuService {
+
+    // #region Constants
+    private static final int PUZZLE_LENGTH = SudokuSolver.NUM_ROWS * SudokuSolver.NUM_COLUMNS;
+    private static final int MAX_PUZZLES_PER_REQUEST = 10_000;    // Requests are also limited to the queue capacity.
+    private static final long RESPONSE_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);   // How long past the deadline a handler waits for a solve that is giving up.
+    private static final byte SOLVED = 1, UNSOLVABLE = 2, TIMEOUT = 3, INVALID = 4, ERROR = 5;
+    private static final byte[][] STATUS_LINES = { null, null, "unsolvable\n".getBytes(StandardCharsets.US_ASCII), "timeout\n".getBytes(StandardCharsets.US_ASCII), "invalid\n".getBytes(StandardCharsets.US_ASCII),
+                                                   "error\n".getBytes(StandardCharsets.US_ASCII) };
+    // #endregion
+
+    // #region Attributes
+    private final int solverThreadCount;
+    private final int batchSize;
+    private final long defaultDeadlineMillis;
+    private final int queueCapacity;
+    private final Semaphore queuePermits;                                       // One permit per free queue slot: the backpressure bound.
+    private final SudokuResultCache resultCache;                                // Null when caching is off.
+    private final LinkedBlockingQueue<SolveJob> jobQueue = new LinkedBlockingQueue<>();
+    private final LongAdder rejectedPuzzles = new LongAdder();
+    private final LongAdder failedPuzzles = new LongAdder();                   // Puzzles whose solve threw.
+    private final List<Thread> solverThreads = new ArrayList<>();
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private volatile boolean running;
+    // #endregion
+
+    // #region Constructors
+    public SudokuService() { this(Runtime.getRuntime().availableProcessors(), 4096, 16, 1000, 65536); }
+    public SudokuService(int solverThreadCount, int queueCapacity, int batchSize, long defaultDeadlineMillis, int cacheCapacity)
+    {
+        this.solverThreadCount = solverThreadCount;
+        this.batchSize = batchSize;
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+        this.queueCapacity = queueCapacity;
+        this.queuePermits = new Semaphore(queueCapacity);
+        this.resultCache = (cacheCapacity > 0 ? new SudokuResultCache(cacheCapacity) : null);
+    }
+    // #endregion
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = 8080, threads = Runtime.getRuntime().availableProcessors(), queue = 4096, batch = 16, cache = 65536;
+        long deadline = 1000;
+        for (int i = 0; i < args.length; i++)
+            switch (args[i])
+              { case "-port" -> port = Integer.parseInt(args[++i]);
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-queue" -> queue = Integer.parseInt(args[++i]);
+                case "-batch" -> batch = Integer.parseInt(args[++i]);
+                case "-deadline" -> deadline = Long.parseLong(args[++i]);
+                case "-cache" -> cache = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]); }
+
+        SudokuService service = new SudokuService(threads, queue, batch, deadline, cache).start(port);
+        System.out.println("Sudoku service listening on http://localhost:" + service.getPort() + "/solve");
+    }
+
+    // #region Lifecycle Methods
+    /// <summary>
+    /// Starts the solver threads and the HTTP server on the loopback interface. Port 0 picks a free port (see getPort).
+    /// </summary>
+    /// <return> Returns the service, making it possible to chain if necessary. </return>
+    public SudokuService start(int port) throws IOException
+    {
+        running = true;
+        for (int i = 0; i < solverThreadCount; i++)
+          { Thread solverThread = new Thread(this::runSolver, "sudoku-solver-" + i);
+            solverThread.setDaemon(true);
+            solverThread.start();
+            solverThreads.add(solverThread); }
+
+        requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+        return this;
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    // The result cache, or null when caching is off.
+    public SudokuResultCache getResultCache() { return resultCache; }
+
+    public void stop()
+    {
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        running = false;
+        for (Thread solverThread : solverThreads)
+            solverThread.interrupt();
+    }
+    // #endregion
+
+    // #region Request Methods
+    private void handleSolve(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+          { if (!"POST".equals(exchange.getRequestMethod()))
+              { sendText(exchange, 405, "POST one puzzle per line.\n");
+                return; }
+
+            long deadlineMillis;
+            try { deadlineMillis = parseDeadline(exchange.getRequestURI().getQuery()); }
+            catch (NumberFormatException e)
+              { sendText(exchange, 400, "The deadline must be a number of milliseconds.\n");
+                return; }
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null)
+              { sendText(exchange, 413, "At most " + MAX_PUZZLES_PER_REQUEST + " puzzles per request.\n");
+                return; }
+
+            SolveRequest request = parseRequest(body, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+            if (request.jobCount == 0)
+              { sendText(exchange, 400, "No puzzles in the request body.\n");
+                return; }
+            if (request.jobCount > queueCapacity)
+              { sendText(exchange, 413, "At most " + queueCapacity + " puzzles per request.\n");
+                return; }
+
+            // Puzzles the check rejects are answered here; only the others are queued.
+            int admitted = request.validate();
+            rejectedPuzzles.add(request.jobCount - admitted);
+
+            // Backpressure: admit the whole request or none of it.
+            if (!queuePermits.tryAcquire(admitted))
+              { exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "The solver queue is full.\n");
+                return; }
+            for (int job = 0; job < request.jobCount; job++)
+                if (request.rejections[job] == null)
+                    jobQueue.add(new SolveJob(request, job));
+
+            // Wait for the jobs. They finish by the deadline (skipped or given up), so the grace period only covers a solve that is just giving up.
+            try { request.remaining.await(request.deadlineNanos - System.nanoTime() + RESPONSE_GRACE_NANOS, TimeUnit.NANOSECONDS); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+            byte[] response = request.responseBytes();
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response); }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+          { sendText(exchange, 200, "cache: " + (resultCache != null ? resultCache : "off") + "\n"
+                                    + "rejected: " + rejectedPuzzles.sum() + " puzzles\n"
+                                    + "failed: " + failedPuzzles.sum() + " puzzles\n"); }
+    }
+
+    private long parseDeadline(String query)
+    {
+        if (query != null)
+            for (String parameter : query.split("&"))
+                if (parameter.startsWith("deadline="))
+                    return Long.parseLong(parameter.substring("deadline=".length()));
+        return defaultDeadlineMillis;
+    }
+
+    // Reads the request body, or returns null if it is longer than MAX_PUZZLES_PER_REQUEST lines of Windows line endings could be.
+    private static byte[] readBody(InputStream requestBody) throws IOException
+    {
+        byte[] body = requestBody.readNBytes(MAX_PUZZLES_PER_REQUEST * (PUZZLE_LENGTH + 2) + 1);
+        return (body.length > MAX_PUZZLES_PER_REQUEST * (PUZZLE_LENGTH + 2) ? null : body);
+    }
+
+    // Splits the body into lines; each non-blank line becomes a job referring to its offset in the body, so no puzzle is copied.
+    private static SolveRequest parseRequest(byte[] body, long deadlineNanos)
+    {
+        SolveRequest request = new SolveRequest(body, deadlineNanos);
+        int lineStart = 0;
+        for (int i = 0; i <= body.length; i++)
+          { if (i < body.length && body[i] != '\n')
+                continue;
+            int lineEnd = (i > lineStart && body[i - 1] == '\r' ? i - 1 : i);
+            if (lineEnd > lineStart)
+                request.addJob(lineStart, lineEnd - lineStart);
+            lineStart = i + 1; }
+        request.finishParsing();
+        return request;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+    // #endregion
+
+    // #region Solver Methods
+    /// <summary>
+    /// The loop of each solver thread: wait for a job, take every other waiting job up to the batch size, and solve them in order.
+    /// Whatever a job's solve does, its queue slot is released and its request counted down, so that an exception costs that one puzzle
+    /// (answered "error") rather than the thread, the slots of its batch and the requests waiting on them.
+    /// </summary>
+    private void runSolver()
+    {
+        SudokuSolver solver = SudokuSolver.forCurrentThread();
+        SudokuCanonicalizer canonicalizer = SudokuCanonicalizer.forCurrentThread();
+        List<SolveJob> batch = new ArrayList<>(batchSize);
+        while (running)
+          { try { batch.add(jobQueue.take()); }
+            catch (InterruptedException e) { return; }
+            jobQueue.drainTo(batch, batchSize - 1);
+
+            for (SolveJob job : batch)
+              { try { solve(solver, canonicalizer, job); }
+                catch (RuntimeException e)
+                  { failedPuzzles.increment();
+                    job.request.setStatus(job.index, ERROR);
+                    System.err.println("Solving puzzle " + job.index + " of a request failed: " + e); }
+                finally
+                  { job.request.remaining.countDown();
+                    queuePermits.release(); }}
+            batch.clear(); }
+    }
+
+    private void solve(SudokuSolver solver, SudokuCanonicalizer canonicalizer, SolveJob job)
+    {
+        SolveRequest request = job.request;
+        int offset = request.puzzleOffsets[job.index];
+        int solutionOffset = job.index * PUZZLE_LENGTH;
+        byte status;
+        if (System.nanoTime() - request.deadlineNanos > 0)
+            status = TIMEOUT;       // Nobody is waiting for this answer anymore.
+        else
+          { // A cached result only needs mapping back from the canonical frame. A puzzle whose canonicalization ran out of budget skips the cache.
+            String canonicalForm = (resultCache != null ? canonicalizer.canonicalize(request.body, offset) : null);
+            byte[] cachedSolution = (canonicalForm != null ? resultCache.get(canonicalForm) : null);
+            if (cachedSolution == SudokuResultCache.UNSOLVABLE)
+                status = UNSOLVABLE;
+            else if (cachedSolution != null)
+              { canonicalizer.fromCanonical(cachedSolution, request.solutions, solutionOffset);
+                status = SOLVED; }
+            else
+              { boolean solved = solver.reset(request.body, offset).solve(request.deadlineNanos);
+                solver.writeSolution(request.solutions, solutionOffset);
+                status = (solved ? SOLVED : solver.hasTimedOut() ? TIMEOUT : UNSOLVABLE);
+                if (canonicalForm != null && status != TIMEOUT)
+                    resultCache.put(canonicalForm, solved ? canonicalizer.toCanonical(request.solutions, solutionOffset) : SudokuResultCache.UNSOLVABLE); }}
+
+        request.setStatus(job.index, status);
+    }
+    // #endregion
+
+    // #region Helper Classes
+    // One request: the puzzles' positions in its body, and a status and solution per puzzle, filled by the solver threads.
+    private static class SolveRequest
+    {
+        // Attributes
+        final byte[] body;
+        final long deadlineNanos;
+        int jobCount;
+        int[] puzzleOffsets = new int[16];
+        int[] puzzleLengths = new int[16];
+        byte[] statuses;
+        byte[] solutions;
+        SudokuValidator.Result[] rejections;    // Per puzzle: why the check rejected it, or null if it was queued.
+        CountDownLatch remaining;
+
+        // Constructors
+        SolveRequest(byte[] body, long deadlineNanos)
+        {
+            this.body = body;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // Methods
+        void addJob(int offset, int length)
+        {
+            if (jobCount == puzzleOffsets.length)
+              { puzzleOffsets = Arrays.copyOf(puzzleOffsets, jobCount * 2);
+                puzzleLengths = Arrays.copyOf(puzzleLengths, jobCount * 2); }
+            puzzleOffsets[jobCount] = offset;
+            puzzleLengths[jobCount] = length;
+            jobCount++;
+        }
+
+        void finishParsing()
+        {
+            statuses = new byte[jobCount];
+            solutions = new byte[jobCount * PUZZLE_LENGTH];
+            rejections = new SudokuValidator.Result[jobCount];
+            remaining = new CountDownLatch(jobCount);
+        }
+
+        // Checks every puzzle, answering the rejected ones (which no solver thread will see) straight away.
+        // Returns the number of puzzles that passed, which are the ones to queue.
+        int validate()
+        {
+            int admitted = 0;
+            for (int job = 0; job < jobCount; job++)
+              { SudokuValidator.Result validation = SudokuValidator.validate(body, puzzleOffsets[job], puzzleLengths[job], SudokuSolver.BOX_SIZE);
+                if (validation.isValid())
+                  { admitted++;
+                    continue; }
+                rejections[job] = validation;
+                setStatus(job, validation.status == SudokuValidator.Status.INVALID ? INVALID : UNSOLVABLE);
+                remaining.countDown(); }
+            return admitted;
+        }
+
+        // Statuses are set and read under the request's lock, which also publishes the solution written before the status.
+        synchronized void setStatus(int job, byte status) { statuses[job] = status; }
+
+        // One line per puzzle. A puzzle still unanswered after the grace period is reported as timed out.
+        synchronized byte[] responseBytes()
+        {
+            ByteArrayOutputStream response = new ByteArrayOutputStream(jobCount * (PUZZLE_LENGTH + 1));
+            for (int job = 0; job < jobCount; job++)
+                if (statuses[job] == SOLVED)
+                  { response.write(solutions, job * PUZZLE_LENGTH, PUZZLE_LENGTH);
+                    response.write('\n'); }
+                else if (rejections[job] != null)
+                    response.writeBytes((rejections[job] + "\n").getBytes(StandardCharsets.US_ASCII));
+                else
+                    response.writeBytes(STATUS_LINES[statuses[job] == 0 ? TIMEOUT : statuses[job]]);
+            return response.toByteArray();
+        }
+    }
+
+    // One puzzle of a request, as queued for the solver threads.
+    private static class SolveJob
+    {
+        // Attributes
+        final SolveRequest request;
+        final int index;
+
+        // Constructors
+        SolveJob(SolveRequest request, int index)
+        {
+            this.request = request;
+            this.index = index;
+        }
+    }
+    // #endregion
+}
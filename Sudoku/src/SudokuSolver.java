@@ -6,16 +6,17 @@
  */
 
 // #region Required Libraries
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 // #endregion
 
 public class SudokuSolver {
@@ -39,32 +40,363 @@ public class SudokuSolver {
      * - Write algorithm to enforce node & arc-consistency.
      * - Write backtracking algorithm.
      *      * Optimize w/ node-picking algorithms.
+     * - Generalized to N x N grids (N = boxSize^2, e.g. 16x16 or 25x25): values past 9 are written 'A', 'B', ...
+     *      * Each row, column and box is also an all-different constraint over N tiles and N values, propagated during the search.
      * 
      * For help understanding underlying principles of a CSP, see: https://youtube.com/watch?v=5NgNicANyqM&si=AnpDYiqBcbwV6STG&t=23100
      */
     // #endregion
     
     // #region Constant Variables
-    public static final int NUM_ROWS = 9;
+    public static final int NUM_ROWS = 9;       // The classic grid, used by default.
     public static final int NUM_COLUMNS = 9;
+    public static final int BOX_SIZE = 3;
+
+    // How the search propagates an assignment: by checking the tile against its neighbors' values (the original search, kept for comparison),
+    // or by enforcing generalized arc consistency on every row, column and box as an all-different constraint (see SudokuCSP.propagateUnit).
+    public enum Propagation { PAIRWISE, ALL_DIFFERENT }
+
+    // What solves the puzzle once it is loaded and propagated: the backtracking search, or a CDCL SAT solver on its CNF encoding
+    // (see SudokuSatSolver and SudokuCSP.encode), whose clause learning avoids the heavy-tailed runtimes of backtracking on large or adversarial grids.
+    public enum Engine { BACKTRACKING, SAT }
+
+    // How the propagating search chooses its next tile among those with the fewest values left: the first in grid order, or the one with the
+    // most unassigned neighbors. Portfolio strategies (see SudokuPortfolio) pick one, with optionally random tie-breaking.
+    public enum TileChoice { FEWEST_VALUES, FEWEST_VALUES_MOST_PEERS }
     // #endregion
     
+    // #region Attributes
+    private static final ThreadLocal<SudokuSolver> THREAD_SOLVERS = ThreadLocal.withInitial(SudokuSolver::new);
+    private final SudokuCSP mainCSP;    // Built once per solver (tiles, constraints, arcs and the AC_3 queue) and reset for every puzzle.
+    private final SudokuValidator.Scratch validationScratch;         // Reused by reset, so that checking a valid puzzle allocates nothing.
+    private SudokuValidator.Result validation = SudokuValidator.VALID;
+    // #endregion
+
+    // #region Constructors
+    public SudokuSolver() { this(BOX_SIZE); }
+    public SudokuSolver(int boxSize) { this(SudokuVariant.classic(boxSize)); }   // Solves grids of boxSize^2 rows and columns.
+    public SudokuSolver(SudokuVariant variant)      // Solves puzzles of a variant, e.g. X-Sudoku, jigsaw or killer.
+    {
+        mainCSP = constructCSP(variant);
+        validationScratch = new SudokuValidator.Scratch(variant);
+    }
+
+    // Returns the calling thread's solver, created on its first use. Worker threads solving a stream of puzzles should use this, or keep their own instance.
+    public static SudokuSolver forCurrentThread() { return THREAD_SOLVERS.get(); }
+    // #endregion
+
+    // Sets how the search propagates each assignment (ALL_DIFFERENT by default). Returns the solver, making it possible to chain if necessary.
+    public SudokuSolver setPropagation(Propagation propagation)
+    {
+        mainCSP.propagation = propagation;
+        return this;
+    }
+
+    public Propagation getPropagation() { return mainCSP.propagation; }
+
+    // Sets what solves the puzzles (BACKTRACKING by default). Returns the solver, making it possible to chain if necessary.
+    public SudokuSolver setEngine(Engine engine)
+    {
+        mainCSP.engine = engine;
+        return this;
+    }
+
+    public Engine getEngine() { return mainCSP.engine; }
+
+    /// <summary>
+    /// Searches each puzzle in parallel on the input pool (e.g. ForkJoinPool.commonPool()), or sequentially if it is null, the default.
+    /// Worth it for puzzles whose backtracking search takes long enough to split, e.g. on large grids; only the BACKTRACKING engine uses it.
+    /// </summary>
+    /// <return> Returns the solver, making it possible to chain if necessary. </return>
+    public SudokuSolver setPool(ForkJoinPool pool)
+    {
+        mainCSP.parallelSearch = (pool == null ? null : new SudokuParallelSearch(mainCSP, pool));
+        return this;
+    }
+    /// <summary>
+    /// Races several search strategies on each puzzle, as tasks of the input executor, which needs a thread per strategy for them to run at
+    /// the same time (see SudokuPortfolio). The first to finish wins and the others are stopped. Null turns the portfolio off, the default.
+    /// </summary>
+    /// <return> Returns the solver, making it possible to chain if necessary. </return>
+    public SudokuSolver setPortfolio(ExecutorService executor) { return setPortfolio(executor, SudokuPortfolio.defaultStrategies()); }
+    public SudokuSolver setPortfolio(ExecutorService executor, List<SudokuPortfolio.Strategy> strategies)
+    {
+        mainCSP.portfolio = (executor == null ? null : new SudokuPortfolio(mainCSP, executor, strategies));
+        return this;
+    }
+
+    public SudokuPortfolio getPortfolio() { return mainCSP.portfolio; }
+
+    // The name of the portfolio strategy that finished the last puzzle first, or null without a portfolio (or a puzzle that was not searched).
+    public String getWinningStrategy() { return mainCSP.winningStrategy; }
+
+    public int getSize() { return mainCSP.size; }     // Rows (and columns, and values) of the grids this solver solves.
+    public SudokuVariant getVariant() { return mainCSP.variant; }
+
     // #region Primary Method
     public String Solve(String stateString){
-       
-        SudokuCSP mainCSP = new SudokuCSP();                        // Instantiate the CSP, which creates a blank grid of tile objects and their constraints.
-        
-        State initialState = new State(stateString);                // Wrap the input into a state object (merely for conceptual abstraction).
-        mainCSP.setGrid(initialState);                              // Use the values from the input state to populate the grid.
-        
-        mainCSP.AC_3();                                             // From the initial values, reduce the domains of unknown tiles uses the AC_3 algorithm.
-        mainCSP.backTrackSearch(new TileAssignment(mainCSP.grid));  // Search for possible solutions. When one is found, the values are stored in mainCSP.grid.
-        mainCSP.printGrid();                                        // Output to CL for verification (DEBUG).
+        char[] solution = new char[mainCSP.tileCount];
+        solveInto(stateString, 0, solution, 0);                     // Solve straight into a character buffer, see below.
+
+        State resultantState = new State(new String(solution));    // The 1D string representation for the UI to interpret.
+        resultantState.printState(mainCSP.size);                    // Output to CL for verification (DEBUG).
+        return resultantState.stringState;
+    }
+
+    /// <summary>
+    /// Solves the 81-character puzzle starting at puzzleOffset of the input sequence, writing the 81 digits of the result into the
+    /// caller's buffer at solutionOffset. Tiles are read row by row; '1' to '9' are given values and '_', '.' or '0' are empty.
+    /// On larger grids, puzzles have N * N characters and values past 9 are the letters 'A', 'B', ... (see tileValue).
+    /// The puzzle is checked by SudokuValidator first, so that a malformed puzzle or one with conflicting givens is rejected without a search.
+    /// The solver's CSP is reset and reused, so once warmed up, solving a puzzle allocates nothing.
+    /// </summary>
+    /// <return> Returns true if a solution was found. Otherwise the buffer holds the givens, with '0' for every other tile, and getValidation
+    /// tells whether the puzzle was rejected before the search, and why. </return>
+    public boolean solveInto(CharSequence puzzle, int puzzleOffset, char[] solution, int solutionOffset)
+    {
+        SudokuSolverEvents.SolveEvent solveEvent = new SudokuSolverEvents.SolveEvent();
+        solveEvent.begin();
+        boolean solved = reset(puzzle, puzzleOffset).solve();
+        writeSolution(solution, solutionOffset);
+
+        if (solveEvent.shouldCommit())
+          { solveEvent.puzzle = puzzle.subSequence(puzzleOffset, Math.min(puzzle.length(), puzzleOffset + mainCSP.tileCount)).toString();
+            solveEvent.solved = solved;
+            solveEvent.commit(); }
+        return solved;
+    }
+
+    // The same as above for puzzles and solutions stored as ASCII bytes, e.g. straight from a file or network buffer.
+    public boolean solveInto(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset)
+    {
+        SudokuSolverEvents.SolveEvent solveEvent = new SudokuSolverEvents.SolveEvent();
+        solveEvent.begin();
+        boolean solved = reset(puzzle, puzzleOffset).solve();
+        writeSolution(solution, solutionOffset);
 
-        // Return the state representation.
-        return mainCSP.gridToStringState();                         // Convert the CSP grid back to a 1D string representation for UI to interpret.
+        if (solveEvent.shouldCommit())
+          { solveEvent.puzzle = new String(puzzle, puzzleOffset, Math.min(puzzle.length - puzzleOffset, mainCSP.tileCount), StandardCharsets.US_ASCII);
+            solveEvent.solved = solved;
+            solveEvent.commit(); }
+        return solved;
     }
 
+    // Step by step: reset checks a puzzle (in the formats described above) and loads it into the CSP, solve solves it, and writeSolution
+    // copies the grid out. A puzzle the check rejects is not solved; a puzzle too short to load leaves the grid empty.
+    // reset returns the solver, making it possible to chain if necessary.
+    public SudokuSolver reset(CharSequence puzzle) { return reset(puzzle, 0); }
+    public SudokuSolver reset(CharSequence puzzle, int offset)
+    {
+        SudokuSolverEvents.SetGridEvent setGridEvent = new SudokuSolverEvents.SetGridEvent();
+        setGridEvent.begin();
+        validation = SudokuValidator.validate(puzzle, offset, validationScratch);
+        mainCSP.reset();
+        if (validation.reason != SudokuValidator.Reason.WRONG_LENGTH)
+            mainCSP.setGrid(puzzle, offset);                        // Use the values from the input puzzle to populate the grid.
+        commit(setGridEvent, mainCSP, validation);
+        return this;
+    }
+    public SudokuSolver reset(byte[] puzzle, int offset)
+    {
+        SudokuSolverEvents.SetGridEvent setGridEvent = new SudokuSolverEvents.SetGridEvent();
+        setGridEvent.begin();
+        validation = SudokuValidator.validate(puzzle, offset, Math.min(puzzle.length - offset, mainCSP.tileCount), validationScratch);
+        mainCSP.reset();
+        if (validation.reason != SudokuValidator.Reason.WRONG_LENGTH)
+            mainCSP.setGrid(puzzle, offset);
+        commit(setGridEvent, mainCSP, validation);
+        return this;
+    }
+
+    /// <summary>
+    /// Loads a puzzle being edited (see SudokuLiveGrid) with the domains it keeps, so that the solve starts from them: AC_3 is skipped, and
+    /// the search goes straight to propagating the units. The grid's conflicts stand in for SudokuValidator's checks.
+    /// </summary>
+    /// <return> Returns the solver, making it possible to chain if necessary. </return>
+    public SudokuSolver reset(SudokuLiveGrid liveGrid)
+    {
+        if (liveGrid.getVariant() != mainCSP.variant)
+            throw new IllegalArgumentException("A " + liveGrid.getVariant() + " grid for a " + mainCSP.variant + " solver.");
+        SudokuSolverEvents.SetGridEvent setGridEvent = new SudokuSolverEvents.SetGridEvent();
+        setGridEvent.begin();
+        validation = liveGrid.getValidation();
+        mainCSP.reset();
+        mainCSP.loadState(liveGrid.saveState());
+        mainCSP.givens = liveGrid.getGivens();
+        mainCSP.domainsReduced = true;
+        commit(setGridEvent, mainCSP, validation);
+        return this;
+    }
+
+    // The result of checking the last puzzle loaded by reset: VALID, or why it was rejected and which tiles are at fault.
+    public SudokuValidator.Result getValidation() { return validation; }
+
+    public boolean solve() { return validation.isValid() && search(mainCSP); }
+
+    /// <summary>
+    /// Solves the loaded puzzle like solve, but gives up once System.nanoTime() passes the input deadline. The deadline is checked every
+    /// 1024 nodes of the backtracking search or units propagated, so the solver overshoots it by well under a millisecond.
+    /// </summary>
+    /// <return> Returns true if a solution was found in time; hasTimedOut tells a timeout apart from an unsolvable puzzle. </return>
+    public boolean solve(long deadlineNanos)
+    {
+        mainCSP.deadlineNanos = deadlineNanos;
+        mainCSP.hasDeadline = true;
+        try { return validation.isValid() && search(mainCSP); }
+        finally { mainCSP.hasDeadline = false; }
+    }
+
+    // Returns true if the last solve gave up because its deadline passed.
+    public boolean hasTimedOut() { return mainCSP.timedOut; }
+
+    public void writeSolution(char[] solution, int offset)
+    {
+        SudokuSolverEvents.GridToStringStateEvent writeEvent = new SudokuSolverEvents.GridToStringStateEvent();
+        writeEvent.begin();
+        mainCSP.writeGrid(solution, offset);                        // Convert the CSP grid back to its 1D representation.
+        commit(writeEvent, mainCSP);
+    }
+    public void writeSolution(byte[] solution, int offset)
+    {
+        SudokuSolverEvents.GridToStringStateEvent writeEvent = new SudokuSolverEvents.GridToStringStateEvent();
+        writeEvent.begin();
+        mainCSP.writeGrid(solution, offset);
+        commit(writeEvent, mainCSP);
+    }
+
+    // The value of a tile's character: '1' to '9', then 'A' for 10, 'B' for 11 and so on up to the grid size; 0 (empty) for anything else.
+    public static int tileValue(char character, int size)
+    {
+        if (character >= '1' && character <= '9' && character - '0' <= size)
+            return character - '0';
+        if (character >= 'A' && character - 'A' + 10 <= size)
+            return character - 'A' + 10;
+        return 0;
+    }
+
+    // The inverse of tileValue, with '0' for 0.
+    public static char tileCharacter(int value) { return (char) (value <= 9 ? '0' + value : 'A' + value - 10); }
+    // #endregion
+
+    // #region Phase Methods
+    // Each phase is wrapped in a Flight Recorder event (see SudokuSolverEvents), filled from the CSP's counters only if it is going to be recorded.
+
+    private static SudokuCSP constructCSP(SudokuVariant variant)
+    {
+        SudokuSolverEvents.CspConstructionEvent constructionEvent = new SudokuSolverEvents.CspConstructionEvent();
+        constructionEvent.begin();
+        SudokuCSP mainCSP = new SudokuCSP(variant);
+        if (constructionEvent.shouldCommit())
+          { constructionEvent.tiles = mainCSP.grid.size();
+            constructionEvent.arcs = mainCSP.allArcs.size();
+            constructionEvent.variant = variant.toString();
+            constructionEvent.commit(); }
+        return mainCSP;
+    }
+
+    // Runs AC_3 and, unless it finds the puzzle inconsistent, the backtracking search on a CSP whose grid has been set.
+    private static boolean search(SudokuCSP mainCSP)
+    {
+        SudokuSolverEvents.ArcConsistencyEvent arcConsistencyEvent = new SudokuSolverEvents.ArcConsistencyEvent();
+        arcConsistencyEvent.begin();
+        boolean consistent = mainCSP.domainsReduced || mainCSP.AC_3();    // From the initial values, reduce the domains of unknown tiles uses the AC_3 algorithm.
+        if (arcConsistencyEvent.shouldCommit())
+          { arcConsistencyEvent.arcsProcessed = mainCSP.arcsProcessed;
+            arcConsistencyEvent.revisions = mainCSP.domainRevisions;
+            arcConsistencyEvent.valuesRemoved = mainCSP.domainValuesRemoved;
+            arcConsistencyEvent.consistent = consistent;
+            arcConsistencyEvent.commit(); }
+        if (!consistent)
+            return false;
+
+        if (mainCSP.portfolio != null)
+            return portfolioSearch(mainCSP);
+        if (mainCSP.engine == Engine.SAT)
+            return satSearch(mainCSP);
+
+        SudokuSolverEvents.BacktrackSearchEvent backtrackEvent = new SudokuSolverEvents.BacktrackSearchEvent();
+        backtrackEvent.begin();
+        boolean solved = false;
+        if (mainCSP.propagation == Propagation.PAIRWISE || mainCSP.propagateAllUnits())        // Make every unit all-different consistent before the first choice.
+          { if (mainCSP.parallelSearch != null)
+                solved = mainCSP.parallelSearch.search();
+            else
+              { TileAssignment solution = mainCSP.backTrackSearch(mainCSP.fullAssignment);          // Search for possible solutions. When one is found, the values are stored in mainCSP.grid.
+                solved = (solution != TileAssignment.NULL_ASSIGNMENT); }}
+        if (backtrackEvent.shouldCommit())
+          { backtrackEvent.assignments = mainCSP.assignments;
+            backtrackEvent.backtracks = mainCSP.backtracks;
+            backtrackEvent.unitsPropagated = mainCSP.unitsPropagated;
+            backtrackEvent.valuesPruned = mainCSP.propagatedValuesRemoved;
+            backtrackEvent.parallelTasks = mainCSP.parallelTasks;
+            backtrackEvent.solved = solved;
+            backtrackEvent.timedOut = mainCSP.timedOut;
+            backtrackEvent.commit(); }
+        return solved;
+    }
+
+    // The SAT engine: propagates the units once (so that the encoding only has the values left in each domain), encodes the CSP as CNF,
+    // solves it, and reads the values of the model back into the grid.
+    private static boolean satSearch(SudokuCSP mainCSP)
+    {
+        SudokuSolverEvents.SatSearchEvent satEvent = new SudokuSolverEvents.SatSearchEvent();
+        satEvent.begin();
+        SudokuSatSolver satSolver = mainCSP.getSatSolver();
+        boolean solved = false;
+        if (mainCSP.propagateAllUnits() && mainCSP.encode(satSolver))
+          { solved = (mainCSP.hasDeadline ? satSolver.solve(mainCSP.deadlineNanos) : satSolver.solve());
+            mainCSP.timedOut = satSolver.hasTimedOut();
+            if (solved)
+                mainCSP.decode(satSolver); }
+        if (satEvent.shouldCommit())
+          { satEvent.variables = satSolver.getVariableCount();
+            satEvent.clauses = satSolver.getClauseCount();
+            satEvent.decisions = satSolver.getDecisions();
+            satEvent.conflicts = satSolver.getConflicts();
+            satEvent.propagations = satSolver.getPropagations();
+            satEvent.restarts = satSolver.getRestarts();
+            satEvent.learnedClauses = satSolver.getLearnedClauseCount();
+            satEvent.deletedClauses = satSolver.getDeletedClauses();
+            satEvent.solved = solved;
+            satEvent.timedOut = mainCSP.timedOut;
+            satEvent.commit(); }
+        return solved;
+    }
+
+    // The portfolio: every strategy from the arc consistent state, on its own CSP, until one finishes (see SudokuPortfolio).
+    private static boolean portfolioSearch(SudokuCSP mainCSP)
+    {
+        SudokuSolverEvents.PortfolioSearchEvent portfolioEvent = new SudokuSolverEvents.PortfolioSearchEvent();
+        portfolioEvent.begin();
+        boolean solved = mainCSP.portfolio.search();
+        if (portfolioEvent.shouldCommit())
+          { portfolioEvent.strategies = mainCSP.portfolio.getStrategyCount();
+            portfolioEvent.winner = mainCSP.winningStrategy;
+            portfolioEvent.assignments = mainCSP.assignments;
+            portfolioEvent.backtracks = mainCSP.backtracks;
+            portfolioEvent.restarts = mainCSP.restarts;
+            portfolioEvent.solved = solved;
+            portfolioEvent.timedOut = mainCSP.timedOut;
+            portfolioEvent.commit(); }
+        return solved;
+    }
+
+    private static void commit(SudokuSolverEvents.SetGridEvent setGridEvent, SudokuCSP mainCSP, SudokuValidator.Result validation)
+    {
+        if (setGridEvent.shouldCommit())
+          { setGridEvent.givens = mainCSP.givens;
+            setGridEvent.validation = validation.toString();
+            setGridEvent.commit(); }
+    }
+
+    private static void commit(SudokuSolverEvents.GridToStringStateEvent writeEvent, SudokuCSP mainCSP)
+    {
+        if (writeEvent.shouldCommit())
+          { writeEvent.length = mainCSP.tileCount;
+            writeEvent.commit(); }
+    }
+    // #endregion
+
     // #region Helper Classes
     
     // A wrapper class for a list of tiles and their current values.
@@ -88,8 +420,8 @@ public class SudokuSolver {
             if (this == TileAssignment.NULL_ASSIGNMENT)     // If somehow the null assignment Tile Assignment is passed through, do not attempt to iterate through its tiles.
                 return false;
             
-            for (SudokuTile tile : tiles)                   // Iterate through tiles...
-                if (tile.tileValue == 0)                    // If any's value is zero,
+            for (int i = 0; i < tiles.size(); i++)          // Iterate through tiles...
+                if (tiles.get(i).tileValue == 0)            // If any's value is zero,
                     return false;                           // then the assignment is incomplete.
             
             return true;                                    // Otherwise it is! 
@@ -100,173 +432,716 @@ public class SudokuSolver {
     public static class SudokuCSP
     {
         // Attributes
+        final SudokuVariant variant;                    // The layout of units and cages, shared with every CSP of the variant.
+        final int boxSize;                              // Rows (and columns) of a box; the grid has size = boxSize^2 rows, columns and values.
+        final int size;
+        final int tileCount;
+        final int fullDomain;                           // Every value from 1 to size.
+        Propagation propagation = Propagation.ALL_DIFFERENT;
+        Engine engine = Engine.BACKTRACKING;
+        SudokuSatSolver satSolver;                      // Created on first use of the SAT engine, and reset for every puzzle.
+        SudokuParallelSearch parallelSearch;            // Set by setPool; null to search sequentially.
+        int[] clauseLiterals;
         List<SudokuTile> grid;                          // Holds all of the tiles (variables) of the Sudoku (CSP) problem.
         Map<SudokuTile, List<SudokuTile>> constraints;  // Each tile (a key) has an associated list of other tiles. Each "other tile" is a tile "this tile" cannot match. 
         List<SudokuCSP_Arc> allArcs;                    // Contains all pairs of related tiles (in same row, column, 3x3). Alternative representation of the above constraints.
+        TileAssignment fullAssignment;                  // The assignment of every tile in the grid, searched by backTrackSearch.
+
+        // AC_3 Buffers: allocated once with the CSP, so that resetting and solving a puzzle allocates nothing.
+        int[] arcQueue;                                 // A circular queue of indices into allArcs. Each arc is queued at most once at a time, so it never overflows.
+        boolean[] arcQueued;
+
+        // All-different propagation: each unit (row, column or box) is a list of tile indices, with a matching of its tiles to its values kept
+        // between calls as the starting point of the next. Domain changes are recorded on a trail, so that backTrackSearch can undo them.
+        SudokuTile[] tiles;                             // The grid's tiles, by index.
+        int[][] units;                                  // Rows, then columns, then boxes (or regions), then the variant's extra units.
+        int[][] tileUnits;                              // The constraints of each tile: its units, then its cages (cage c is constraint units.length + c).
+        int[][] cages;                                  // Killer cages, with their sums and the sets of values with each sum (see SudokuVariant).
+        int[] cageSums;
+        int[][] cageCombinations;
+        int[][] unitTileValues;                         // Value matched to each tile of a unit, 0 if none.
+        int[][] unitValueTiles;                         // Position in the unit of the tile matched to each value, -1 if none.
+        int[] unitQueue;                                // A circular queue of units to propagate, each queued at most once at a time.
+        int unitQueueHead, unitQueueSize;
+        boolean[] unitQueued;
+        int[] trailTiles, trailDomains;                 // The tiles whose domains propagation reduced, with their previous domains.
+        int trailSize;
+        int visitedValues;                              // Values visited by the current augmenting path search.
+        int[] sccIndices, sccLowLinks, sccStack;        // Buffers of the strongly connected components search, by position in the unit.
+        int sccCounter, sccStackSize, sccOnStack;
+
+        // Deadline: backTrackSearch gives up once System.nanoTime() passes deadlineNanos, if hasDeadline is set.
+        static final int DEADLINE_CHECK_INTERVAL = 1024;  // Search nodes (or units propagated) between two reads of the clock.
+        long deadlineNanos;
+        boolean hasDeadline;
+        boolean timedOut;
+        int deadlineCountdown;
+        AtomicBoolean stopSignal;                       // In a parallel search, set once another task has finished it; checked with the deadline.
+        boolean stopped;
+
+        // Portfolio strategies (see SudokuPortfolio): how tiles are chosen, random tie-breaking and value order, and a restart once the backtracks pass a limit.
+        TileChoice tileChoice = TileChoice.FEWEST_VALUES;
+        SplittableRandom random;                        // Null for the deterministic order.
+        long backtrackLimit = Long.MAX_VALUE;
+        boolean restartDue;
+        SudokuPortfolio portfolio;                      // Set by setPortfolio; null to search with one strategy.
+        String winningStrategy;                         // The portfolio strategy that finished the last puzzle first, if any.
+
+        // Counters, reported by the Flight Recorder events of Solve. Plain increments, so they are cheap enough to always keep.
+        int givens;                                     // Tiles given a value by setGrid.
+        boolean domainsReduced;                         // Set when the domains were loaded already reduced by the givens (see reset(SudokuLiveGrid)), so AC_3 is skipped.
+        long arcsProcessed;                             // Arcs dequeued by AC_3.
+        long domainRevisions;                           // Arcs whose revision removed at least one value.
+        long domainValuesRemoved;                       // Values removed from domains by AC_3.
+        long assignments;                               // Values tried by backTrackSearch.
+        long backtracks;                                // Tiles for which backTrackSearch ran out of values.
+        long unitsPropagated;                           // Units made all-different consistent.
+        long propagatedValuesRemoved;                   // Values removed from domains by all-different propagation.
+        long parallelTasks;                             // Tasks run by a parallel search.
+        long restarts;                                  // Restarts of portfolio strategies.
 
         // Constructors
-        public SudokuCSP()
+        public SudokuCSP() { this(BOX_SIZE); }
+        public SudokuCSP(int boxSize) { this(SudokuVariant.classic(boxSize)); }
+        public SudokuCSP(SudokuVariant variant)
         {
+            this.variant = variant;
+            this.boxSize = variant.boxSize;
+            this.size = variant.size;
+            this.tileCount = variant.tileCount;
+            this.fullDomain = (1 << (size + 1)) - 2;
+            int idBase = (size <= 9 ? 10 : 100);                                    // Each part of a tile ID takes one decimal digit on grids up to 9x9, and two above.
+
             // Instantiate the Grid & Constraints list.
             grid = new ArrayList<>();                                               // Used for creation of constraints, but mostly for debugging & visualization.
             constraints = new HashMap<>();                                          // Used by both AC_3 & Backtracking
             allArcs = new ArrayList<>();                                            // Used primarily by AC_3
 
-            // Iterate over each row and column, creating a new tile, adding it to the grid
+            // Iterate over each row and column, creating a new tile, adding it to the grid. The tile IDs only label the tiles now: which tiles
+            // constrain each other comes from the variant's tables, since irregular regions, diagonals and cages have no digit in the ID.
             int _3x3_No;                                                            // Keeps track of which 3x3 box we are in. 6 7 8
-            for (int row = NUM_ROWS-1; row >= 0; row--)                                                                     // 3 4 5
-                for (int column = 0; column < NUM_COLUMNS; column++)                                                        // 0 1 2
-                  { _3x3_No = (column / 3) + (row / 3 * 3);                         // Somehow this formula works :D. Try it if you doubt it. I love integer division.
-                    int newTileID = (row * 100) + (_3x3_No * 10) + (column * 1);    // Parenthesis for clarity. See indexing approach above for explanation.
+            for (int row = size-1; row >= 0; row--)                                                                         // 3 4 5
+                for (int column = 0; column < size; column++)                                                               // 0 1 2
+                  { _3x3_No = (column / boxSize) + (row / boxSize * boxSize);       // Somehow this formula works :D. Try it if you doubt it. I love integer division.
+                    int newTileID = (row * idBase * idBase) + (_3x3_No * idBase) + (column * 1);    // Parenthesis for clarity. See indexing approach above for explanation.
                     SudokuTile newTile = new SudokuTile(newTileID);                 // Create the new tile.
+                    newTile.resetTileValue(fullDomain);
                     grid.add(newTile);                                              // Add the tile to the variables list.
                     constraints.put(newTile, new ArrayList<>()); }                  // Create a constraint entry to be edited below.
             
-            // For each tile in the grid, iterate over every other tile.
-            for (SudokuTile tileA : grid)
-              { List<SudokuTile> tileA_Constraints = constraints.get(tileA);
-                for (SudokuTile tileB : grid)
-                  { if (tileA.tileID == tileB.tileID)                               // Check if the "other tile" is the current tile.
-                        continue;                                                   // If so, skip (because we don't want to create a constraint against itself).
-                    
-                    // See indexing approach in problem notes above for in-depth explanation.
-                    if ((tileA.tileID / 100 % 10) == (tileB.tileID / 100 % 10) ||   // Check if rows are the same.
-                        (tileA.tileID / 10 % 10) == (tileB.tileID / 10 % 10) ||     // Check if 3x3 boxes are the same.
-                        (tileA.tileID % 10) == (tileB.tileID % 10))                 // Check if columns are the same.
-                      { tileA_Constraints.add(tileB);                               // If any are the same, add the constraint to the map and
-                        allArcs.add(new SudokuCSP_Arc(tileA, tileB)); }}}           // create a new arc representing this constraint.
+            // For each tile in the grid, add every peer the variant compiled for it (the other tiles of its rows, columns, boxes, extra units and cages).
+            for (int index = 0; index < tileCount; index++)
+              { SudokuTile tileA = grid.get(index);
+                List<SudokuTile> tileA_Constraints = constraints.get(tileA);
+                for (int peer : variant.peers[index])
+                  { SudokuTile tileB = grid.get(peer);
+                    tileA_Constraints.add(tileB);                                   // Add the constraint to the map and
+                    allArcs.add(new SudokuCSP_Arc(tileA, tileB)); }}                // create a new arc representing this constraint.
+
+            // Copy the constraints into plain arrays on each tile, which is what the solving methods iterate over.
+            for (SudokuTile tile : grid)
+              { tile.neighbors = constraints.get(tile).toArray(new SudokuTile[0]);
+                tile.incomingArcs = new int[tile.neighbors.length]; }
+            int[] incomingArcCounts = new int[grid.size()];
+            for (int arc = 0; arc < allArcs.size(); arc++)
+              { SudokuTile tileB = allArcs.get(arc).tileB;
+                tileB.incomingArcs[incomingArcCounts[grid.indexOf(tileB)]++] = arc; }
+
+            fullAssignment = new TileAssignment(grid);
+            arcQueue = new int[allArcs.size()];
+            arcQueued = new boolean[allArcs.size()];
+
+            // The units and cages, from the variant's tables: each tile's constraints are its units, then cage c as constraint units.length + c.
+            tiles = grid.toArray(new SudokuTile[0]);
+            units = variant.units;
+            cages = variant.cages;
+            cageSums = variant.cageSums;
+            cageCombinations = variant.cageCombinations;
+            tileUnits = new int[tileCount][];
+            for (int index = 0; index < tileCount; index++)
+              { tiles[index].tileIndex = index;
+                int[] tileCages = variant.tileCages[index];
+                tileUnits[index] = Arrays.copyOf(variant.tileUnits[index], variant.tileUnits[index].length + tileCages.length);
+                for (int i = 0; i < tileCages.length; i++)
+                    tileUnits[index][variant.tileUnits[index].length + i] = units.length + tileCages[i]; }
+            unitTileValues = new int[units.length][size];
+            unitValueTiles = new int[units.length][size + 1];
+            for (int[] valueTiles : unitValueTiles)
+                Arrays.fill(valueTiles, -1);
+            unitQueue = new int[units.length + cages.length];
+            unitQueued = new boolean[units.length + cages.length];
+            trailTiles = new int[tileCount * size];                                 // Each domain can only shrink size - 1 times along a branch.
+            trailDomains = new int[tileCount * size];
+            sccIndices = new int[size];
+            sccLowLinks = new int[size];
+            sccStack = new int[size];
         }  
 
         // #region CSP Primary Methods
 
-        public void setGrid(State state) {                                                                                                                        //   Row     Indices
-            for (int row = 0; row < NUM_ROWS; row++) {                                          // Iterate through the rows:                                           1       4 5 6 7
-                for (int column = 0; column < NUM_COLUMNS; column++) {                          // Iterate through the columns:                                        0       0 1 2 3
-                    int index = row * NUM_COLUMNS + column;                                     // This is a commonly used formula for indexing in this program: EX:   Column  0 1 2 3  NUM_COLUMNS = 4
-                    char currentCharacter = state.stringState.charAt(index);                    // Retrieve the character at the current index in the state string (which is constant-time run-time).
-                    if (currentCharacter != '_')                                                // If the input character is not "_", then update the grids value, otherwise leave it at 0.
-                        grid.get(index).setTileValue(Integer.parseInt(currentCharacter + ""));  // IMPORTANT NOTE: setting a tileValue auto-constrains the domain (see SudokuTile class).
+        // Returns every tile to unset with a full domain and clears the counters, ready for setGrid to load the next puzzle.
+        public void reset()
+        {
+            for (int i = 0; i < grid.size(); i++)
+                grid.get(i).resetTileValue(fullDomain);
+            trailSize = 0;
+            givens = 0;
+            domainsReduced = false;
+            arcsProcessed = 0;
+            domainRevisions = 0;
+            domainValuesRemoved = 0;
+            assignments = 0;
+            backtracks = 0;
+            unitsPropagated = 0;
+            propagatedValuesRemoved = 0;
+            parallelTasks = 0;
+            restarts = 0;
+            backtrackLimit = Long.MAX_VALUE;
+            restartDue = false;
+            winningStrategy = null;
+            timedOut = false;
+        }
+
+        public void setGrid(State state) { setGrid(state.stringState, 0); }
+
+        public void setGrid(CharSequence puzzle, int offset) {                                                                                                    //   Row     Indices
+            for (int row = 0; row < size; row++) {                                              // Iterate through the rows:                                           1       4 5 6 7
+                for (int column = 0; column < size; column++) {                                 // Iterate through the columns:                                        0       0 1 2 3
+                    int index = row * size + column;                                            // This is a commonly used formula for indexing in this program: EX:   Column  0 1 2 3  size = 4
+                    setTile(index, puzzle.charAt(offset + index));                              // Retrieve the character at the current index in the puzzle (which is constant-time run-time).
                 }   
             }
         }
 
+        public void setGrid(byte[] puzzle, int offset) {
+            for (int index = 0; index < tileCount; index++)                                     // Same as above, with the tiles read straight from an ASCII buffer.
+                setTile(index, (char) puzzle[offset + index]);
+        }
+
+        // Helper method for setGrid: a value's character (see tileValue) updates the grid's value, anything else (e.g. "_") leaves it at 0.
+        private void setTile(int index, char currentCharacter)
+        {
+            int value = tileValue(currentCharacter, size);
+            if (value != 0)
+              { grid.get(index).setTileValue(value);                                            // IMPORTANT NOTE: setting a tileValue auto-constrains the domain (see SudokuTile class).
+                givens++; }
+        }
+
         public String gridToStringState()
         {
-            String resultantStringState = "";
-            for (int row = 0; row < NUM_ROWS; row++) {                          // Iterate through the rows:
-                for (int column = 0; column < NUM_COLUMNS; column++) {          // Iterate through the rows:
-                    int index = row * NUM_COLUMNS + column;                     // See example in setGrid method comments.
-                    resultantStringState += grid.get(index).tileValue;          // Grab the appropriate value in the grid and append it to the resultant string.
+            char[] resultantStringState = new char[tileCount];
+            writeGrid(resultantStringState, 0);
+            return new String(resultantStringState);
+        }
+
+        // Writes each tile's value as a digit into the input buffer, starting at offset.
+        public void writeGrid(char[] buffer, int offset)
+        {
+            for (int row = 0; row < size; row++) {                              // Iterate through the rows:
+                for (int column = 0; column < size; column++) {                 // Iterate through the columns:
+                    int index = row * size + column;                            // See example in setGrid method comments.
+                    buffer[offset + index] = tileCharacter(grid.get(index).tileValue);  // Grab the appropriate value in the grid and write it to the buffer.
                 }   
             }
-            return resultantStringState;
+        }
+
+        public void writeGrid(byte[] buffer, int offset)
+        {
+            for (int index = 0; index < tileCount; index++)
+                buffer[offset + index] = (byte) tileCharacter(grid.get(index).tileValue);
         }
 
         // Enforces arc consistency between two tiles in the CSP (helper method for AC_3).
         private boolean reviseDomain(SudokuTile tileA, SudokuTile tileB)
         {
-            boolean tileA_DomainRevised = false;                    // Was the domain of tileA revised by this method?
-            
-            if (!constraints.get(tileA).contains(tileB))            // Check if there is any constraint between tileA and tileB.
-                return false;                                       // If there is no constraint, no change is necessary, thus return false.
-            
-            Set<Integer> domainValuesToRemove = new HashSet<>();    // This is necessary to circumvent a Concurrent_Modification_Exception (removing from a set while iterating over it).
-            
-            // If there is a constraint, check if at least one arrangement of values between the tiles is satisfactory.
-            for (Integer a : tileA.tileDomain)
-            { boolean satisfactoryArrangement = false;              // Until we find two possible values between the tiles that satisfy the constraint, this remains false.
-                for (Integer b : tileB.tileDomain)
-                { if (!Objects.equals(a, b))                        // Are there two different values in each domain?
-                    { satisfactoryArrangement = true;               // If so, YAY!, set the flag.
-                        break; }}                                   // No need to keep checking for this value (a) of tileA.
-                if (satisfactoryArrangement)                        // If the current value (a) satisfies the constraint,
-                    continue;                                       // skip the next steps...
-                
-                domainValuesToRemove.add(a);                        // Otherwise add the value to another set containing the value to remove and
-                tileA_DomainRevised = true; }                       // set the revised flag.
-                
-                // Remove the values previously marked to be removed from tileA's domain.
-                for (Integer valueToRemove : domainValuesToRemove)
-                    tileA.tileDomain.remove(valueToRemove);
+            // A value (a) of tileA only lacks a satisfactory arrangement if tileB has no value but a, i.e. tileB's domain is exactly {a} (or empty).
+            // Domains are bitmasks (see SudokuTile), so that is a single comparison.
+            int unsupportedValues = (Integer.bitCount(tileB.tileDomain) <= 1 ? tileA.tileDomain & (tileB.tileDomain == 0 ? ~0 : tileB.tileDomain) : 0);
+            if (unsupportedValues == 0)
+                return false;                                       // Every value of tileA is still possible, so the domain was not revised.
 
-            return tileA_DomainRevised;
+            tileA.tileDomain &= ~unsupportedValues;                 // Remove the unsupported values from tileA's domain.
+            domainValuesRemoved += Integer.bitCount(unsupportedValues);
+            return true;
         }
 
         // Enforces arc consistency across all tiles in the CSP.
         public boolean AC_3()
         {
-            Queue<SudokuCSP_Arc> arcQueue = new LinkedList<>(allArcs);                          // Copy & convert allArcs to a queue.
+            // Queue every arc, in the order of allArcs.
+            int queueHead = 0;
+            int queueSize = allArcs.size();
+            for (int arc = 0; arc < allArcs.size(); arc++)
+              { arcQueue[arc] = arc;
+                arcQueued[arc] = true; }
             
-            while(!arcQueue.isEmpty())                                                          // Iterate through all arcs.
-              { SudokuCSP_Arc currentArc = arcQueue.poll();                                     // Dequeue the current arc.
+            while (queueSize > 0)                                                               // Iterate through all arcs.
+              { int arc = arcQueue[queueHead];                                                  // Dequeue the current arc.
+                queueHead = (queueHead + 1) % arcQueue.length;
+                queueSize--;
+                arcQueued[arc] = false;
+                SudokuCSP_Arc currentArc = allArcs.get(arc);
+                arcsProcessed++;
                 
                 if (reviseDomain(currentArc.tileA, currentArc.tileB))                           // Revise the domain of the first tile in the arc, check if any revision was made.
-                  { if (currentArc.tileA.tileDomain.isEmpty())                                  // If after revision, there is nothing more in tileA's domain, then the problem is unsolvable.
-                        return false;                                                           
+                  { domainRevisions++;
+                    if (currentArc.tileA.tileDomain == 0)                                       // If after revision, there is nothing more in tileA's domain, then the problem is unsolvable.
+                      { drainArcQueue(queueHead, queueSize);
+                        return false; }
                     
-                    List<SudokuTile> tileA_Neigbors = new ArrayList<>(constraints.get(currentArc.tileA));   // Retrieve the neighbors of tileA (values that share a constraint).
-                    tileA_Neigbors.remove(currentArc.tileB);                                                // Disclude the other tile in the currently focused arc.
-                    
-                    for (SudokuTile tileC : tileA_Neigbors)                                     // Iterate through each of the neighbors, re-adding them to the queue
-                        arcQueue.add(new SudokuCSP_Arc(tileC, currentArc.tileA)); }}            // because changing tileA may have reprecussions on those too.
+                    // Re-add the arcs pointing at tileA from each of its neighbors, except the other tile in the currently focused arc,
+                    // because changing tileA may have reprecussions on those too. Arcs that are already queued are not added twice.
+                    for (int incomingArc : currentArc.tileA.incomingArcs)
+                        if (!arcQueued[incomingArc] && allArcs.get(incomingArc).tileA != currentArc.tileB)
+                          { arcQueue[(queueHead + queueSize) % arcQueue.length] = incomingArc;
+                            queueSize++;
+                            arcQueued[incomingArc] = true; }}}
 
             return true;                                                                        // AC_3 was successful in reducing domains.
         }
 
+        // Helper method for AC_3: unmarks the arcs left in the queue when it stops early.
+        private void drainArcQueue(int queueHead, int queueSize)
+        {
+            for (; queueSize > 0; queueSize--, queueHead = (queueHead + 1) % arcQueue.length)
+                arcQueued[arcQueue[queueHead]] = false;
+        }
+
         // Checks if a potential new tile assignment is consistent with all the constraints on the tile being assigned.
         public boolean isValidAssignment(SudokuTile potentialTileAssignment)
         {
-            List<SudokuTile> potentialTileConstraints = constraints.get(potentialTileAssignment);   // Retrieve all the constraints related to the new potentialTile that is to be assigned.
-            
-            for (SudokuTile tileConstraint : potentialTileConstraints)                              // Iterate through those constraints (which are essentially references to other tiles and their values)...
+            for (SudokuTile tileConstraint : potentialTileAssignment.neighbors)                     // Iterate through its constraints (which are essentially references to other tiles and their values)...
                 if (potentialTileAssignment.tileValue == tileConstraint.tileValue)                  // If any values match, then the assignment is invalid.
                     return false;
+            if (cages.length > 0)                                                                   // Killer cages also need their sums to stay reachable.
+                for (int constraint : tileUnits[potentialTileAssignment.tileIndex])
+                    if (constraint >= units.length && !isValidCageSum(constraint - units.length))
+                        return false;
             return true;                                                                            // Otherwise all good!
         }
 
+        // Helper method for isValidAssignment: the cage's assigned values add up to its sum once they are all assigned, and leave at least
+        // 1 for each unassigned tile before that.
+        private boolean isValidCageSum(int cage)
+        {
+            int sum = 0, unassigned = 0;
+            for (int index : cages[cage])
+              { sum += tiles[index].tileValue;
+                unassigned += (tiles[index].tileValue == 0 ? 1 : 0); }
+            return (unassigned == 0 ? sum == cageSums[cage] : sum + unassigned <= cageSums[cage]);
+        }
+
         // Traverses the CSP graph and assigns values to each variable.
         public TileAssignment backTrackSearch(TileAssignment assignment)
         {            
             // Check if every tile in the assignment is set (non-zero).
             if (assignment.isComplete())
                 return assignment;
+
+            // Check the deadline (and the stop signal) now and then; once it has passed, unwind without trying anything else.
+            // The same once the backtracks pass the limit of a restarting portfolio strategy (see SudokuPortfolio).
+            if ((hasDeadline || stopSignal != null) && --deadlineCountdown <= 0)
+              { deadlineCountdown = DEADLINE_CHECK_INTERVAL;
+                timedOut |= (hasDeadline && System.nanoTime() - deadlineNanos > 0);
+                stopped |= (stopSignal != null && stopSignal.get()); }
+            restartDue |= (backtracks > backtrackLimit);
+            if (timedOut || stopped || restartDue)
+                return TileAssignment.NULL_ASSIGNMENT;
             
-            SudokuTile currentTile = selectUnassignedTile(assignment);                                          // Choose any unnassigned tile... this could certainly be optimized, but its affect on 9x9 Sudoku is neglible.
+            SudokuTile currentTile = selectUnassignedTile(assignment);                                          // Choose an unassigned tile (see below).
+            int domain = currentTile.tileDomain;                                                                // Saved here (the call stack is the domain stack), so that it can be restored after trying each value.
+            int trailMark = trailSize;                                                                          // The other tiles' domains are restored from the trail.
             
-            for (Integer domainValue : domainValues(currentTile, assignment))                                   // Iterate through each of the possible values of the assignment...
-              { currentTile.setTileValue(domainValue);                                                          // Try each one!
-                if (isValidAssignment(currentTile))                                                             // Ensure this value is valid (doesn't violate any constraints with already assigned tiles).
+            for (int remaining = domain, value; remaining != 0; remaining &= ~(1 << value))                     // Iterate through each of the possible values of the assignment, in increasing order
+              { value = nextValue(remaining);                                                                   // (or a random order, see nextValue)...
+                currentTile.setTileValue(value);                                                                // Try each one!
+                assignments++;
+                if (isConsistentAssignment(currentTile))                                                        // Ensure this value is valid, see below.
                   { TileAssignment resultantAssignment = backTrackSearch(assignment);                           // If so, recursively continue searching until success,
                     if (resultantAssignment != TileAssignment.NULL_ASSIGNMENT)                                  // returning the final assignment if its not null (which is a static empty assignment list used to optimize memory usage)
                         return resultantAssignment; }                                                           //                                                  ... see the TileAssignment class attribute.
-                currentTile.resetTileValue(); }                                                                 // Restore the tile if the assignment did not work.
+                undoTrail(trailMark);
+                if (timedOut || stopped || restartDue)                                                          // Unwinding: the other values would not be searched anyway.
+                    break; }
+            currentTile.resetTileValue(domain);                                                                 // Restore the tile if no assignment worked.
             
+            backtracks++;
             return TileAssignment.NULL_ASSIGNMENT;                                                              // Return a special Tile Assignment object that can be compared against without creating a new object every time.
         }
 
-        // The following two functions can be optimizes for better backtracking performance, but its neglible for 9x9 Sudoku.
-        public List<Integer> domainValues(SudokuTile tile, TileAssignment assignment) 
-        { 
-            return List.copyOf(tile.tileDomain);
-        }
+        // Checks a tile's new value against its neighbors' values (doesn't violate any constraints with already assigned tiles), or, with
+        // propagation, removes it from the other tiles of its units and propagates the consequences.
+        public boolean isConsistentAssignment(SudokuTile tile) { return (propagation == Propagation.PAIRWISE ? isValidAssignment(tile) : propagateFrom(tile)); }
+
+        // With pairwise checks, the first unassigned tile. With propagation, the one with the fewest values left, whose choice is the most constrained:
+        // on 9x9 grids the order hardly matters, but on larger ones the first tile can have many values while another has one.
+        // Ties go to the first such tile, or with FEWEST_VALUES_MOST_PEERS the one with the most unassigned neighbors, or at random if random is set.
         public SudokuTile selectUnassignedTile(TileAssignment assignment) 
         {
-            for (SudokuTile tile : assignment.tiles)
-                if (tile.tileValue == 0)
+            SudokuTile selectedTile = null;
+            int fewestValues = Integer.MAX_VALUE, mostPeers = 0, ties = 0;
+            for (int i = 0; i < assignment.tiles.size(); i++)
+              { SudokuTile tile = assignment.tiles.get(i);
+                if (tile.tileValue != 0)
+                    continue;
+                if (propagation == Propagation.PAIRWISE)
                     return tile;
+                int values = Integer.bitCount(tile.tileDomain);
+                if (values > fewestValues)
+                    continue;
+                int peers = (tileChoice == TileChoice.FEWEST_VALUES_MOST_PEERS ? unassignedNeighbors(tile) : 0);
+                if (values < fewestValues || peers > mostPeers)
+                  { selectedTile = tile;
+                    fewestValues = values;
+                    mostPeers = peers;
+                    ties = 1; }
+                else if (peers == mostPeers && random != null && random.nextInt(++ties) == 0)
+                    selectedTile = tile;
+                if (values == 1)
+                    break; }
             
-            return null;
+            return selectedTile;
+        }
+
+        // Helper method for selectUnassignedTile: the tile's neighbors without a value, whose domains its choice will reduce.
+        private int unassignedNeighbors(SudokuTile tile)
+        {
+            int count = 0;
+            for (SudokuTile neighbor : tile.neighbors)
+                count += (neighbor.tileValue == 0 ? 1 : 0);
+            return count;
+        }
+
+        // Helper method for backTrackSearch: the next value to try from those remaining, the smallest, or a random one if random is set.
+        private int nextValue(int remaining)
+        {
+            if (random == null)
+                return Integer.numberOfTrailingZeros(remaining);
+            for (int skip = random.nextInt(Integer.bitCount(remaining)); skip > 0; skip--)
+                remaining &= remaining - 1;
+            return Integer.numberOfTrailingZeros(remaining);
+        }
+        // #endregion
+
+        // #region All-Different Propagation
+        /// <summary>
+        /// Makes every unit all-different consistent, e.g. once the givens are set: afterwards, every value left in a domain is part of some
+        /// assignment of distinct values to the tiles of each of its units. Cages are propagated too (see propagateCage). Domain changes are
+        /// trailed, see undoTrail.
+        /// </summary>
+        /// <return> Returns false if some unit can no longer be filled with distinct values. </return>
+        public boolean propagateAllUnits()
+        {
+            for (int unit = 0; unit < units.length + cages.length; unit++)
+                queueUnit(unit, -1);
+            return propagateQueue();
+        }
+
+        // The same after a tile has been assigned a value: only its units need propagating, and then those of any tile whose domain changes.
+        public boolean propagateFrom(SudokuTile tile)
+        {
+            for (int unit : tileUnits[tile.tileIndex])
+                queueUnit(unit, -1);
+            return propagateQueue();
+        }
+
+        // Restores the domains propagation reduced since the trail had the input size.
+        public void undoTrail(int trailMark)
+        {
+            while (trailSize > trailMark)
+              { trailSize--;
+                tiles[trailTiles[trailSize]].tileDomain = trailDomains[trailSize]; }
+        }
+
+        private void queueUnit(int unit, int excludedUnit)
+        {
+            if (unit == excludedUnit || unitQueued[unit])
+                return;
+            unitQueued[unit] = true;
+            unitQueue[(unitQueueHead + unitQueueSize++) % unitQueue.length] = unit;
+        }
+
+        private boolean propagateQueue()
+        {
+            while (unitQueueSize > 0)
+              { int unit = unitQueue[unitQueueHead];
+                unitQueueHead = (unitQueueHead + 1) % unitQueue.length;
+                unitQueueSize--;
+                unitQueued[unit] = false;
+                unitsPropagated++;
+                deadlineCountdown--;                                                // Propagation is most of the work of a search node, so it counts towards the deadline check too.
+                if (!(unit < units.length ? propagateUnit(unit) : propagateCage(unit - units.length)))
+                  { for (; unitQueueSize > 0; unitQueueSize--, unitQueueHead = (unitQueueHead + 1) % unitQueue.length)
+                        unitQueued[unitQueue[unitQueueHead]] = false;
+                    return false; }}
+            return true;
+        }
+
+        /// <summary>
+        /// Regin's filtering for one unit. Its tiles and values form a bipartite graph (a tile is joined to the values of its domain), and the
+        /// unit can be completed exactly when that graph has a perfect matching. Given one, a value can be removed from a tile's domain exactly when
+        /// the tile and the tile matched to the value lie in different strongly connected components of the graph on the unit's tiles with an
+        /// edge from each tile to the tiles matched to the other values of its domain: the value can then never be swapped in.
+        ///
+        /// The matching of the previous call is repaired rather than rebuilt, so that most calls only augment a tile or two.
+        /// </summary>
+        /// <return> Returns false if the unit has no perfect matching. </return>
+        private boolean propagateUnit(int unit)
+        {
+            int[] members = units[unit];
+            int[] tileValues = unitTileValues[unit];
+            int[] valueTiles = unitValueTiles[unit];
+
+            // Drop the matches whose value has been removed from the tile's domain, then match those tiles again.
+            for (int i = 0; i < size; i++)
+                if (tileValues[i] != 0 && (tiles[members[i]].tileDomain & (1 << tileValues[i])) == 0)
+                  { valueTiles[tileValues[i]] = -1;
+                    tileValues[i] = 0; }
+            for (int i = 0; i < size; i++)
+                if (tileValues[i] == 0)
+                  { visitedValues = 0;
+                    if (!augment(members, tileValues, valueTiles, i))
+                        return false; }
+
+            // Every value is now matched, so each tile keeps only the values matched within its component.
+            Arrays.fill(sccIndices, -1);
+            sccCounter = 0;
+            sccStackSize = 0;
+            sccOnStack = 0;
+            for (int i = 0; i < size; i++)
+                if (sccIndices[i] < 0)
+                    strongConnect(unit, i);
+            return true;
+        }
+
+        // Helper method for propagateUnit: Kuhn's augmenting path search, matching tile i (a position in the unit) to some value.
+        private boolean augment(int[] members, int[] tileValues, int[] valueTiles, int i)
+        {
+            for (int remaining = tiles[members[i]].tileDomain & ~visitedValues; remaining != 0; remaining &= remaining - 1)
+              { int value = Integer.numberOfTrailingZeros(remaining);
+                if ((visitedValues & (1 << value)) != 0)                                // Visited by a deeper call since remaining was read.
+                    continue;
+                visitedValues |= 1 << value;
+                if (valueTiles[value] < 0 || augment(members, tileValues, valueTiles, valueTiles[value]))
+                  { tileValues[i] = value;
+                    valueTiles[value] = i;
+                    return true; }}
+            return false;
+        }
+
+        // Helper method for propagateUnit: Tarjan's strongly connected components search from tile i, restricting each component as it is found.
+        private void strongConnect(int unit, int i)
+        {
+            int[] members = units[unit];
+            int[] tileValues = unitTileValues[unit];
+            int[] valueTiles = unitValueTiles[unit];
+            sccIndices[i] = sccLowLinks[i] = sccCounter++;
+            sccStack[sccStackSize++] = i;
+            sccOnStack |= 1 << i;
+            for (int remaining = tiles[members[i]].tileDomain & ~(1 << tileValues[i]); remaining != 0; remaining &= remaining - 1)
+              { int j = valueTiles[Integer.numberOfTrailingZeros(remaining)];
+                if (sccIndices[j] < 0)
+                  { strongConnect(unit, j);
+                    sccLowLinks[i] = Math.min(sccLowLinks[i], sccLowLinks[j]); }
+                else if ((sccOnStack & (1 << j)) != 0)
+                    sccLowLinks[i] = Math.min(sccLowLinks[i], sccIndices[j]); }
+
+            if (sccLowLinks[i] != sccIndices[i])
+                return;
+            int componentValues = 0;                                                    // i is the root of a component: the tiles above it on the stack.
+            for (int k = sccStackSize - 1; k >= 0; k--)
+              { componentValues |= 1 << tileValues[sccStack[k]];
+                if (sccStack[k] == i)
+                    break; }
+            int j;
+            do
+              { j = sccStack[--sccStackSize];
+                sccOnStack &= ~(1 << j);
+                restrictDomain(members[j], componentValues, unit); }
+            while (j != i);
+        }
+
+        /// <summary>
+        /// Filtering for one killer cage: its tiles take distinct values adding up to its sum, i.e. exactly one of its value sets (see
+        /// SudokuVariant). A set is still possible if it holds every value fixed in the cage (a domain of one value) and each of its values fits
+        /// some tile while each tile has one of its values; the tiles keep the values of the possible sets, and the unfixed tiles lose the fixed values.
+        /// </summary>
+        /// <return> Returns false if no set of values is possible. </return>
+        private boolean propagateCage(int cage)
+        {
+            int[] members = cages[cage];
+            int fixedValues = 0, fixedCount = 0;
+            for (int index : members)
+              { int domain = tiles[index].tileDomain;
+                if ((domain & (domain - 1)) == 0)
+                  { fixedValues |= domain;
+                    fixedCount++; }}
+            if (Integer.bitCount(fixedValues) < fixedCount)                        // Two tiles fixed to the same value, or an empty domain.
+                return false;
+
+            int possibleValues = 0;
+            for (int combination : cageCombinations[cage])
+              { if ((fixedValues & ~combination) != 0)
+                    continue;
+                int placeable = 0;
+                boolean fits = true;
+                for (int index : members)
+                  { int values = tiles[index].tileDomain & combination;
+                    fits &= (values != 0);
+                    placeable |= values; }
+                if (fits && placeable == combination)
+                    possibleValues |= combination; }
+
+            for (int index : members)
+              { int domain = tiles[index].tileDomain;
+                int mask = possibleValues & ((domain & (domain - 1)) == 0 ? domain : ~fixedValues);
+                if ((domain & mask) == 0)
+                    return false;
+                restrictDomain(index, mask, -1); }                                  // Losing fixed values can fix another tile, so the cage is queued again.
+            return true;
+        }
+
+        // Helper method for strongConnect: removes the values outside of the mask from a tile's domain, trailing the old domain and queueing
+        // the tile's other units if anything was removed. The tile's own matched value is always in the mask, so the domain never empties.
+        private void restrictDomain(int tileIndex, int mask, int unit)
+        {
+            SudokuTile tile = tiles[tileIndex];
+            int restricted = tile.tileDomain & mask;
+            if (restricted == tile.tileDomain)
+                return;
+            trailTiles[trailSize] = tileIndex;
+            trailDomains[trailSize++] = tile.tileDomain;
+            propagatedValuesRemoved += Integer.bitCount(tile.tileDomain & ~mask);
+            tile.tileDomain = restricted;
+            for (int otherUnit : tileUnits[tileIndex])
+                queueUnit(otherUnit, unit);
+        }
+        // #endregion
+
+        // #region State Snapshots
+        static final int ASSIGNED = 1 << 31;           // Set in a snapshot for the tiles the search has assigned, above any domain bit.
+
+        // A compact copy of the search state: each tile's domain, with ASSIGNED set if it has a value.
+        public int[] saveState()
+        {
+            int[] state = new int[tileCount];
+            for (int index = 0; index < tileCount; index++)
+                state[index] = tiles[index].tileDomain | (tiles[index].tileValue != 0 ? ASSIGNED : 0);
+            return state;
+        }
+
+        // Loads a state saved by saveState (possibly of another CSP of the same size) to search from, clearing the trail.
+        public void loadState(int[] state)
+        {
+            for (int index = 0; index < tileCount; index++)
+              { int domain = state[index] & ~ASSIGNED;
+                tiles[index].tileDomain = domain;
+                tiles[index].tileValue = (state[index] < 0 ? Integer.numberOfTrailingZeros(domain) : 0); }
+            trailSize = 0;
+            timedOut = false;
+            stopped = false;
+            restartDue = false;
+            deadlineCountdown = DEADLINE_CHECK_INTERVAL;
+        }
+        // #endregion
+
+        // #region SAT Encoding
+        public SudokuSatSolver getSatSolver()
+        {
+            if (satSolver == null)
+              { satSolver = new SudokuSatSolver();
+                int longestClause = size + 1;
+                for (int[] combinations : cageCombinations)
+                    longestClause = Math.max(longestClause, combinations.length);
+                clauseLiterals = new int[longestClause]; }
+            return satSolver;
+        }
+
+        // The variable for a tile (by index) having a value: tileIndex * size + value - 1.
+        private int variable(int tileIndex, int value) { return tileIndex * size + value - 1; }
+
+        /// <summary>
+        /// Encodes the CSP as CNF on the input SAT solver, with a variable for each tile and value, true if the tile has the value:
+        /// - Each tile has at least one of the values left in its domain, and at most one (a clause for each pair).
+        /// - Each value is in each unit at least once, on one of the tiles whose domain has it, and at most once (a clause for each pair).
+        /// - A value outside of a tile's domain is false.
+        /// Only "at least one value per tile" and "at most once per unit" are needed for correctness; the other two are implied by them but
+        /// let the SAT solver propagate as much as the all-different propagation does.
+        /// Each killer cage has a variable per set of values with its sum (see SudokuVariant), after the tiles': at least one set is chosen,
+        /// the cage's tiles take no value outside of a chosen set, and each of its values is on one of them, so the tiles hold exactly the set.
+        /// </summary>
+        /// <return> Returns false if the encoding is already unsatisfiable. </return>
+        public boolean encode(SudokuSatSolver satSolver)
+        {
+            int combinationCount = 0;
+            for (int[] combinations : cageCombinations)
+                combinationCount += combinations.length;
+            satSolver.reset(tileCount * size + combinationCount);
+            boolean satisfiable = true;
+            for (int index = 0; index < tileCount && satisfiable; index++)
+              { int domain = tiles[index].tileDomain, count = 0;
+                for (int value = 1; value <= size; value++)
+                    if ((domain & (1 << value)) != 0)
+                        clauseLiterals[count++] = SudokuSatSolver.literal(variable(index, value), true);
+                    else
+                        satisfiable &= satSolver.addClause(SudokuSatSolver.literal(variable(index, value), false));
+                satisfiable &= satSolver.addClause(clauseLiterals, count);
+                for (int i = 0; i < count; i++)
+                    for (int j = i + 1; j < count; j++)
+                        satisfiable &= satSolver.addClause(clauseLiterals[i] ^ 1, clauseLiterals[j] ^ 1); }
+
+            for (int unit = 0; unit < units.length && satisfiable; unit++)
+                for (int value = 1; value <= size; value++)
+                  { int count = 0;
+                    for (int index : units[unit])
+                        if ((tiles[index].tileDomain & (1 << value)) != 0)
+                            clauseLiterals[count++] = SudokuSatSolver.literal(variable(index, value), true);
+                    satisfiable &= satSolver.addClause(clauseLiterals, count);
+                    for (int i = 0; i < count; i++)
+                        for (int j = i + 1; j < count; j++)
+                            satisfiable &= satSolver.addClause(clauseLiterals[i] ^ 1, clauseLiterals[j] ^ 1); }
+
+            int combinationVariable = tileCount * size;
+            for (int cage = 0; cage < cages.length && satisfiable; cage++)
+              { int[] combinations = cageCombinations[cage];
+                for (int j = 0; j < combinations.length; j++)
+                    clauseLiterals[j] = SudokuSatSolver.literal(combinationVariable + j, true);
+                satisfiable &= satSolver.addClause(clauseLiterals, combinations.length);
+                for (int j = 0; j < combinations.length; j++)
+                  { int notChosen = SudokuSatSolver.literal(combinationVariable + j, false);
+                    for (int value = 1; value <= size; value++)
+                        if ((combinations[j] & (1 << value)) != 0)
+                          { int count = 0;
+                            clauseLiterals[count++] = notChosen;
+                            for (int index : cages[cage])
+                                clauseLiterals[count++] = SudokuSatSolver.literal(variable(index, value), true);
+                            satisfiable &= satSolver.addClause(clauseLiterals, count); }
+                        else
+                            for (int index : cages[cage])
+                                satisfiable &= satSolver.addClause(notChosen, SudokuSatSolver.literal(variable(index, value), false)); }
+                combinationVariable += combinations.length; }
+            return satisfiable;
+        }
+
+        // Sets each tile to the value the SAT solver's model gives it.
+        public void decode(SudokuSatSolver satSolver)
+        {
+            for (int index = 0; index < tileCount; index++)
+                for (int value = 1; value <= size; value++)
+                    if (satSolver.value(variable(index, value)))
+                      { tiles[index].setTileValue(value);
+                        break; }
         }
         // #endregion
 
         // #region Helper Methods
         public void printGrid() {
-            for (int row = 0; row < NUM_ROWS; row++)                                            // Iterate through the rows:
-              { if ((row-1) % 3 == 2 && row != 8) System.out.println("-".repeat(100));    // Print horizontal dividing lines.
-                for (int column = 0; column < NUM_COLUMNS; column++)                            // Iterate through the columns:
-                  { int index = row * NUM_COLUMNS + column;                                     // Calculate index in grid list.
+            for (int row = 0; row < size; row++)                                                // Iterate through the rows:
+              { if (row % boxSize == 0 && row != 0) System.out.println("-".repeat(11 * size + 3 * boxSize));   // Print horizontal dividing lines.
+                for (int column = 0; column < size; column++)                                   // Iterate through the columns:
+                  { int index = row * size + column;                                            // Calculate index in grid list.
                     System.out.print(String.format("%9s", grid.get(index)));             // Print each tile.
-                    if (column % 3 == 2) System.out.print(" | "); }                           // Print vertical dividing lines. 
+                    if (column % boxSize == boxSize - 1) System.out.print(" | "); }           // Print vertical dividing lines. 
                 System.out.println(); }                                                         // Print a new line after each row
         }
 
@@ -302,22 +1177,15 @@ public class SudokuSolver {
     public static class SudokuTile
     {
         // Class Attributes
-        public static Set<Integer> initialTileDomain = new HashSet<>() {{
-            add(1);
-            add(2);
-            add(3);
-            add(4);
-            add(5);
-            add(6);
-            add(7);
-            add(8);
-            add(9);
-        }};
+        public static final int FULL_DOMAIN = 0b11_1111_1110;     // Domains are bitmasks: bit v is set while v is a possible value. Initially all of 1 to 9.
         
         // Attributes
         public int tileID;
         public int tileValue;
-        public Set<Integer> tileDomain = new HashSet<>(SudokuTile.initialTileDomain);
+        public int tileDomain = FULL_DOMAIN;
+        SudokuTile[] neighbors;     // The tiles this tile cannot match, set up by SudokuCSP.
+        int[] incomingArcs;         // Indices (into SudokuCSP.allArcs) of the arcs from each neighbor to this tile.
+        int tileIndex;              // Position in SudokuCSP.tiles.
 
         // Constuctors
         public SudokuTile() {} // Default Constructor
@@ -327,20 +1195,21 @@ public class SudokuSolver {
             this.tileID = tileID;
             this.tileValue = tileValue;
             if (tileValue != 0)
-                this.tileDomain = new HashSet<>() {{ add(tileValue); }};
+                this.tileDomain = 1 << tileValue;
         }
 
         public SudokuTile setTileValue(int newTileValue)
         {
             this.tileValue = newTileValue;
-            this.tileDomain = new HashSet<>() {{ add(newTileValue); }};     // Auto-update the domain... the only possible value for this tile is its actual value. 
+            this.tileDomain = 1 << newTileValue;                            // Auto-update the domain... the only possible value for this tile is its actual value. 
             return this;                                                    // Makes it possible to chain if necessary.
         }
 
-        public SudokuTile resetTileValue()
+        public SudokuTile resetTileValue() { return resetTileValue(FULL_DOMAIN); }  // Reset the domain to all possible values.
+        public SudokuTile resetTileValue(int tileDomain)
         {
             this.tileValue = 0;                                             // Use 0 to represent unset.
-            this.tileDomain = new HashSet<>(SudokuTile.initialTileDomain);  // Reset the domain to all possible values.     ** Now realizing this is actually a flaw, but not dangerous to the program, just efficiency.
+            this.tileDomain = tileDomain;                                   // Restore the domain the tile had before it was assigned.
             return this;
         }
 
@@ -0,0 +1,129 @@
+// #region Required Libraries
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+// #endregion
+
+/// <summary>
+/// JDK Flight Recorder events for the phases of SudokuSolver.Solve, carrying the solver's counters for each phase.
+/// Record with e.g. java -XX:StartFlightRecording:filename=sudoku.jfr SudokuUI, and view them with jfr print --categories Sudoku sudoku.jfr.
+/// When recording is off (or these events are disabled), Solve only pays for a shouldCommit check per phase: the event objects never escape,
+/// so the JIT removes their allocation, and the counters are only copied into an event that is going to be committed.
+/// </summary>
+public final class SudokuSolverEvents {
+
+    private SudokuSolverEvents() {}     // Only a holder for the event classes.
+
+    // #region Events
+    @Name("sudoku.Solve")
+    @Label("Sudoku Solve")
+    @Description("One call to SudokuSolver.Solve, from CSP construction to the result string.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class SolveEvent extends Event
+    {
+        @Label("Puzzle") public String puzzle;
+        @Label("Solved") public boolean solved;
+    }
+
+    @Name("sudoku.CspConstruction")
+    @Label("CSP Construction")
+    @Description("Creation of the 81 tiles, their constraints and arcs.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class CspConstructionEvent extends Event
+    {
+        @Label("Tiles") public int tiles;
+        @Label("Arcs") public int arcs;
+        @Label("Variant") public String variant;
+    }
+
+    @Name("sudoku.SetGrid")
+    @Label("Set Grid")
+    @Description("Checking the puzzle and copying its given values into the CSP grid.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class SetGridEvent extends Event
+    {
+        @Label("Givens") public int givens;
+        @Label("Validation") public String validation;
+    }
+
+    @Name("sudoku.AC3")
+    @Label("AC-3")
+    @Description("Arc consistency over the initial domains.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class ArcConsistencyEvent extends Event
+    {
+        @Label("Arcs Processed") public long arcsProcessed;
+        @Label("Domain Revisions") public long revisions;
+        @Label("Domain Values Removed") public long valuesRemoved;
+        @Label("Consistent") public boolean consistent;
+    }
+
+    @Name("sudoku.BacktrackSearch")
+    @Label("Backtrack Search")
+    @Description("The backtracking search for a complete assignment.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class BacktrackSearchEvent extends Event
+    {
+        @Label("Assignments") public long assignments;
+        @Label("Backtracks") public long backtracks;
+        @Label("Units Propagated") public long unitsPropagated;
+        @Label("Values Pruned") public long valuesPruned;
+        @Label("Parallel Tasks") public long parallelTasks;
+        @Label("Solved") public boolean solved;
+        @Label("Timed Out") public boolean timedOut;
+    }
+
+    @Name("sudoku.SatSearch")
+    @Label("SAT Search")
+    @Description("Encoding the propagated puzzle as CNF and solving it with the CDCL SAT engine.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class SatSearchEvent extends Event
+    {
+        @Label("Variables") public int variables;
+        @Label("Clauses") public int clauses;
+        @Label("Decisions") public long decisions;
+        @Label("Conflicts") public long conflicts;
+        @Label("Propagations") public long propagations;
+        @Label("Restarts") public long restarts;
+        @Label("Learned Clauses") public int learnedClauses;
+        @Label("Deleted Clauses") public long deletedClauses;
+        @Label("Solved") public boolean solved;
+        @Label("Timed Out") public boolean timedOut;
+    }
+
+    @Name("sudoku.PortfolioSearch")
+    @Label("Portfolio Search")
+    @Description("Racing the portfolio's strategies on the puzzle; the first to finish wins and the others are stopped.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class PortfolioSearchEvent extends Event
+    {
+        @Label("Strategies") public int strategies;
+        @Label("Winner") public String winner;
+        @Label("Assignments") public long assignments;
+        @Label("Backtracks") public long backtracks;
+        @Label("Restarts") public long restarts;
+        @Label("Solved") public boolean solved;
+        @Label("Timed Out") public boolean timedOut;
+    }
+
+    @Name("sudoku.GridToStringState")
+    @Label("Grid To String State")
+    @Description("Writing the solved grid back into the caller's buffer.")
+    @Category("Sudoku")
+    @StackTrace(false)
+    public static class GridToStringStateEvent extends Event
+    {
+        @Label("Length") public int length;
+    }
+    // #endregion
+}
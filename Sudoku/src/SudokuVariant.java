@@ -0,0 +1,266 @@
+// #region Required Libraries
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+// #endregion
+
+/// <summary>
+/// The constraint layout of a Sudoku variant, compiled once into the flat tables SudokuCSP, SudokuValidator and SudokuLiveGrid work from:
+/// - units: the all-different groups of exactly size tiles (rows, columns, boxes or irregular regions, then any extra units such as diagonals);
+/// - cages: killer cages, smaller all-different groups whose values must also add up to a sum, with every set of values that does;
+/// - the units and cages of each tile, and its peers (the other tiles of its units and cages).
+/// A variant is immutable, so one instance is shared by every solver (and CSP) of that variant.
+///
+/// Variants are written one directive per line; '#' starts a comment, and tiles are indices (row by row from 0) or r1c1 to r9c9 style:
+///   name X-Sudoku                 a name, for messages
+///   box 3                         the box size, 3 (9x9) by default; must come before any tile
+///   regions AAABBBCCC...          boxSize^4 characters, one region per distinct character, which replace the boxes (jigsaw Sudoku)
+///   diagonals                     both main diagonals are units too (X-Sudoku)
+///   unit r1c1 r2c2 ...            any other unit, of size tiles
+///   cage 15 r1c1 r1c2 r2c1        a cage: its sum, then its tiles
+///
+/// Run with: java SudokuVariant variant.txt < puzzles.txt, one puzzle per line; each line of output is the solution, or the puzzle's validation.
+/// </summary>
+public final class SudokuVariant {
+
+    // #region Constants
+    private static final int MAX_CAGE_COMBINATIONS = 4096;         // Per cage; cages are meant to be small, as in killer Sudoku.
+    private static final SudokuVariant[] CLASSIC = new SudokuVariant[8];
+    // #endregion
+
+    // #region Attributes
+    final String name;
+    final int boxSize;
+    final int size;
+    final int tileCount;
+    final int[][] units;                // The tiles of each unit: rows, then columns, then boxes (or regions), then the extra units.
+    final int[][] tileUnits;            // The units of each tile.
+    final int[][] cages;                // The tiles of each cage.
+    final int[] cageSums;
+    final int[][] cageCombinations;     // For each cage, every set of distinct values (as a bitmask) with its size and sum.
+    final int[][] tileCages;            // The cages of each tile.
+    final int[][] peers;                // The other tiles of each tile's units and cages, in increasing order.
+    // #endregion
+
+    // #region Constructors
+    private SudokuVariant(String name, int boxSize, int[] regions, List<int[]> extraUnits, List<int[]> cageList, List<Integer> sums)
+    {
+        this.name = name;
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.tileCount = size * size;
+
+        // Rows, columns, and boxes or regions, numbered in the order of their first tile.
+        units = new int[3 * size + extraUnits.size()][];
+        int[] regionNumbers = new int[tileCount], regionSizes = new int[tileCount];
+        Arrays.fill(regionNumbers, -1);
+        int regionCount = 0;
+        for (int tile = 0; tile < tileCount; tile++)
+          { int region = (regions != null ? regions[tile] : tile / size / boxSize * boxSize + tile % size / boxSize);
+            if (regionNumbers[region] < 0)
+                regionNumbers[region] = regionCount++;
+            regionSizes[regionNumbers[region]]++; }
+        for (int region = 0; region < regionCount; region++)
+            if (regionSizes[region] != size)
+                throw new IllegalArgumentException(name + ": every region needs " + size + " tiles, region " + (region + 1) + " has " + regionSizes[region] + ".");
+        int[] unitSizes = new int[3 * size];
+        for (int unit = 0; unit < 3 * size; unit++)
+            units[unit] = new int[size];
+        for (int tile = 0; tile < tileCount; tile++)
+          { int region = regionNumbers[regions != null ? regions[tile] : tile / size / boxSize * boxSize + tile % size / boxSize];
+            for (int unit : new int[] { tile / size, size + tile % size, 2 * size + region })
+                units[unit][unitSizes[unit]++] = tile; }
+        for (int i = 0; i < extraUnits.size(); i++)
+            units[3 * size + i] = checkTiles(extraUnits.get(i), size, size, "unit " + (i + 1));
+
+        cages = new int[cageList.size()][];
+        cageSums = new int[cageList.size()];
+        cageCombinations = new int[cageList.size()][];
+        for (int cage = 0; cage < cages.length; cage++)
+          { cages[cage] = checkTiles(cageList.get(cage), 1, size, "cage " + (cage + 1));
+            cageSums[cage] = sums.get(cage);
+            List<Integer> combinations = new ArrayList<>();
+            addCombinations(combinations, cages[cage].length, cageSums[cage], 1, 0);
+            if (combinations.isEmpty())
+                throw new IllegalArgumentException(name + ": no " + cages[cage].length + " distinct values add up to " + cageSums[cage] + " (cage " + (cage + 1) + ").");
+            cageCombinations[cage] = combinations.stream().mapToInt(Integer::intValue).toArray(); }
+
+        tileUnits = invert(units);
+        tileCages = invert(cages);
+        peers = new int[tileCount][];
+        boolean[] isPeer = new boolean[tileCount];
+        for (int tile = 0; tile < tileCount; tile++)
+          { Arrays.fill(isPeer, false);
+            for (int unit : tileUnits[tile])
+                for (int other : units[unit])
+                    isPeer[other] = true;
+            for (int cage : tileCages[tile])
+                for (int other : cages[cage])
+                    isPeer[other] = true;
+            isPeer[tile] = false;
+            int peerCount = 0;
+            int[] tilePeers = new int[tileCount];
+            for (int other = 0; other < tileCount; other++)
+                if (isPeer[other])
+                    tilePeers[peerCount++] = other;
+            peers[tile] = Arrays.copyOf(tilePeers, peerCount); }
+    }
+
+    // The classic grid of boxSize^2 rows, columns and boxes. Shared, as are its solvers' tables.
+    public static SudokuVariant classic(int boxSize)
+    {
+        if (boxSize >= CLASSIC.length)
+            return new SudokuVariant("Sudoku", boxSize, null, List.of(), List.of(), List.of());
+        SudokuVariant variant = CLASSIC[boxSize];                    // Racing threads build equal variants, and its fields are final.
+        if (variant == null)
+            CLASSIC[boxSize] = variant = new SudokuVariant("Sudoku", boxSize, null, List.of(), List.of(), List.of());
+        return variant;
+    }
+
+    /// <summary>
+    /// Reads a variant definition in the format described above.
+    /// </summary>
+    /// <return> Returns the compiled variant, or throws an IllegalArgumentException naming the line at fault. </return>
+    public static SudokuVariant parse(CharSequence definition)
+    {
+        String name = "Sudoku";
+        int boxSize = SudokuSolver.BOX_SIZE;
+        int[] regions = null;
+        List<int[]> extraUnits = new ArrayList<>(), cageList = new ArrayList<>();
+        List<Integer> sums = new ArrayList<>();
+        boolean tilesSeen = false;
+
+        String[] lines = definition.toString().split("\\R");
+        for (int line = 0; line < lines.length; line++)
+          { String text = lines[line].replaceFirst("#.*", "").strip();
+            if (text.isEmpty())
+                continue;
+            String[] words = text.split("\\s+");
+            int size = boxSize * boxSize;
+            try
+              { switch (words[0])
+                  { case "name" -> name = text.substring(words[0].length()).strip();
+                    case "box" ->
+                      { if (tilesSeen)
+                            throw new IllegalArgumentException("the box size must come before any tile");
+                        boxSize = Integer.parseInt(words[1]);
+                        if (boxSize < 2 || boxSize > 5)
+                            throw new IllegalArgumentException("the box size must be 2 to 5"); }
+                    case "regions" ->
+                      { if (words.length != 2 || words[1].length() != size * size)
+                            throw new IllegalArgumentException("regions needs " + size * size + " characters");
+                        regions = new int[size * size];             // Numbered by first appearance.
+                        String regionCharacters = "";
+                        for (int tile = 0; tile < size * size; tile++)
+                          { char character = words[1].charAt(tile);
+                            if (regionCharacters.indexOf(character) < 0)
+                                regionCharacters += character;
+                            regions[tile] = Math.min(regionCharacters.indexOf(character), size); }}
+                    case "diagonals" ->
+                      { int[] diagonal = new int[size], antiDiagonal = new int[size];
+                        for (int i = 0; i < size; i++)
+                          { diagonal[i] = i * size + i;
+                            antiDiagonal[i] = i * size + size - 1 - i; }
+                        extraUnits.add(diagonal);
+                        extraUnits.add(antiDiagonal); }
+                    case "unit" -> extraUnits.add(parseTiles(words, 1, size));
+                    case "cage" ->
+                      { sums.add(Integer.parseInt(words[1]));
+                        cageList.add(parseTiles(words, 2, size)); }
+                    default -> throw new IllegalArgumentException("unknown directive " + words[0]); }
+                tilesSeen |= !words[0].equals("name") && !words[0].equals("box"); }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+              { throw new IllegalArgumentException(name + ", line " + (line + 1) + ": cannot read \"" + text + "\"."); }
+            catch (IllegalArgumentException e)
+              { throw new IllegalArgumentException(name + ", line " + (line + 1) + ": " + e.getMessage() + "."); }}
+        return new SudokuVariant(name, boxSize, regions, extraUnits, cageList, sums);
+    }
+    // #endregion
+
+    public static void main(String[] args) throws IOException
+    {
+        SudokuVariant variant = parse(Files.readString(Path.of(args[0])));
+        SudokuSolver solver = new SudokuSolver(variant);
+        char[] solution = new char[variant.tileCount];
+        try (Scanner input = new Scanner(System.in))
+          { while (input.hasNextLine())
+              { String puzzle = input.nextLine().strip();
+                if (puzzle.isEmpty())
+                    continue;
+                boolean solved = solver.solveInto(puzzle, 0, solution, 0);
+                System.out.println(solved || solver.getValidation().isValid() ? new String(solution) : solver.getValidation().toString()); }}
+    }
+
+    // #region Getter Methods
+    public String getName() { return name; }
+    public int getBoxSize() { return boxSize; }
+    public int getSize() { return size; }
+    public int getUnitCount() { return units.length; }
+    public int getCageCount() { return cages.length; }
+
+    @Override
+    public String toString() { return name; }
+    // #endregion
+
+    // #region Helper Methods
+    // The tiles of a unit or cage directive, from the input word on.
+    private static int[] parseTiles(String[] words, int first, int size)
+    {
+        int[] tiles = new int[words.length - first];
+        for (int i = first; i < words.length; i++)
+          { String word = words[i].toLowerCase();
+            int columnAt = word.indexOf('c');
+            tiles[i - first] = (word.startsWith("r") && columnAt > 1
+                                ? (Integer.parseInt(word.substring(1, columnAt)) - 1) * size + Integer.parseInt(word.substring(columnAt + 1)) - 1
+                                : Integer.parseInt(word)); }
+        return tiles;
+    }
+
+    // Checks that a unit or cage has between minimum and maximum distinct tiles of the grid, and returns them in increasing order.
+    private int[] checkTiles(int[] tiles, int minimum, int maximum, String what)
+    {
+        int[] sorted = tiles.clone();
+        Arrays.sort(sorted);
+        if (sorted.length < minimum || sorted.length > maximum)
+            throw new IllegalArgumentException(name + ": " + what + " needs " + (minimum == maximum ? "" : minimum + " to ") + maximum + " tiles, not " + sorted.length + ".");
+        for (int i = 0; i < sorted.length; i++)
+            if (sorted[i] < 0 || sorted[i] >= tileCount || (i > 0 && sorted[i] == sorted[i - 1]))
+                throw new IllegalArgumentException(name + ": " + what + " has tile " + sorted[i] + " " + (i > 0 && sorted[i] == sorted[i - 1] ? "twice." : "outside of the grid."));
+        return sorted;
+    }
+
+    // Adds every set of count distinct values from the input value on, as bitmasks added to the chosen ones, whose values add up to sum.
+    private void addCombinations(List<Integer> combinations, int count, int sum, int value, int chosen)
+    {
+        if (count == 0)
+          { if (sum == 0)
+                combinations.add(chosen);
+            return; }
+        if (combinations.size() > MAX_CAGE_COMBINATIONS)
+            throw new IllegalArgumentException(name + ": a cage has more than " + MAX_CAGE_COMBINATIONS + " sets of values; split it up.");
+        for (int next = value; next <= size && next * count <= sum; next++)      // The smallest of the remaining values is at most their mean.
+            addCombinations(combinations, count - 1, sum - next, next + 1, chosen | (1 << next));
+    }
+
+    // From the tiles of each group (unit or cage), the groups of each tile.
+    private int[][] invert(int[][] groups)
+    {
+        int[] counts = new int[tileCount];
+        for (int[] group : groups)
+            for (int tile : group)
+                counts[tile]++;
+        int[][] tileGroups = new int[tileCount][];
+        for (int tile = 0; tile < tileCount; tile++)
+            tileGroups[tile] = new int[counts[tile]];
+        Arrays.fill(counts, 0);
+        for (int group = 0; group < groups.length; group++)
+            for (int tile : groups[group])
+                tileGroups[tile][counts[tile]++] = group;
+        return tileGroups;
+    }
+    // #endregion
+}
@@ -0,0 +1,36 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The batch solver against solving the shared corpus (see SudokuCorpus) one puzzle at a time.
+/// </summary>
+class SudokuBatchSolverTest {
+
+    // The corpus is more than two batches of 64, the last one partial; whether singles finish a puzzle or it goes on to the search,
+    // it must be solved exactly when solveInto solves it, with a valid solution.
+    @Test
+    void agreesWithSolveInto()
+    {
+        int count = SudokuCorpus.PUZZLES.size();
+        byte[] puzzles = String.join("", SudokuCorpus.PUZZLES).getBytes(StandardCharsets.US_ASCII);
+        byte[] solutions = new byte[puzzles.length];
+        boolean[] solved = new boolean[count];
+        int solvedCount = new SudokuBatchSolver().solveBatch(puzzles, 0, count, solutions, 0, solved);
+
+        SudokuSolver solver = new SudokuSolver();
+        char[] expected = new char[81];
+        int expectedCount = 0;
+        for (int i = 0; i < count; i++)
+          { String puzzle = SudokuCorpus.PUZZLES.get(i);
+            boolean expectedSolved = solver.solveInto(puzzle, 0, expected, 0);
+            expectedCount += (expectedSolved ? 1 : 0);
+            assertEquals(expectedSolved, solved[i], puzzle);
+            if (solved[i])
+                assertTrue(SudokuCorpus.isSolution(puzzle, new String(solutions, i * 81, 81, StandardCharsets.US_ASCII).toCharArray()), puzzle); }
+        assertEquals(expectedCount, solvedCount);
+    }
+}
@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The canonical forms of the shared corpus (see SudokuCorpus): equivalent puzzles must share one, and solutions must map through it.
+/// </summary>
+class SudokuCanonicalizerTest {
+
+    @Test
+    void randomVariantsShareTheForm()
+    {
+        SudokuCanonicalizer canonicalizer = new SudokuCanonicalizer();
+        SplittableRandom random = new SplittableRandom(1);
+        for (String puzzle : SudokuCorpus.PUZZLES)
+          { if (puzzle.chars().filter(c -> c != '_').count() < 17)
+                continue;                                                               // Too few givens: the symmetries may exhaust the budget.
+            String form = canonicalizer.canonicalize(puzzle, 0);
+            assertNotNull(form, puzzle);
+            for (int i = 0; i < 3; i++)
+              { String variant = SudokuCanonicalizer.randomVariant(puzzle, random);
+                assertEquals(form, canonicalizer.canonicalize(variant, 0), variant); }}
+    }
+
+    // A solution of a puzzle, written in the canonical frame and back in the frame of an equivalent puzzle, must solve that puzzle:
+    // the mapping the result cache uses to answer equivalent puzzles from one cached solution.
+    @Test
+    void solutionsMapThroughTheForm()
+    {
+        SudokuCanonicalizer canonicalizer = new SudokuCanonicalizer();
+        SudokuSolver solver = new SudokuSolver();
+        SplittableRandom random = new SplittableRandom(2);
+        byte[] solution = new byte[81];
+        for (String puzzle : SudokuCorpus.PUZZLES)
+          { if (!solver.solveInto(puzzle.getBytes(StandardCharsets.US_ASCII), 0, solution, 0) || canonicalizer.canonicalize(puzzle, 0) == null)
+                continue;
+            byte[] canonicalSolution = canonicalizer.toCanonical(solution, 0);
+
+            String variant = SudokuCanonicalizer.randomVariant(puzzle, random);
+            assertNotNull(canonicalizer.canonicalize(variant, 0), variant);
+            byte[] variantSolution = new byte[81];
+            canonicalizer.fromCanonical(canonicalSolution, variantSolution, 0);
+            assertTrue(SudokuCorpus.isSolution(variant, new String(variantSolution, StandardCharsets.US_ASCII).toCharArray()), variant); }
+    }
+}
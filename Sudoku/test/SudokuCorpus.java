@@ -0,0 +1,53 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/// <summary>
+/// The puzzles the solver tests share: the fixed sets of SudokuPuzzles, an unsolvable puzzle the validator rejects, and corpus.txt,
+/// 200 seeded random puzzles (80 with 21 to 23 givens, 120 with 26 to 30) and 12 that pass validation but have no solution.
+/// </summary>
+final class SudokuCorpus {
+
+    // Constants
+    static final List<String> PUZZLES = load();
+
+    private SudokuCorpus() {}
+
+    // True if the solution keeps the puzzle's givens and gives each unit of the variant distinct values.
+    static boolean isSolution(CharSequence puzzle, char[] solution, SudokuVariant variant)
+    {
+        for (int tile = 0; tile < variant.tileCount; tile++)
+            if (SudokuSolver.tileValue(puzzle.charAt(tile), variant.size) > 0 && solution[tile] != puzzle.charAt(tile))
+                return false;
+        for (int[] unit : variant.units)
+          { long values = 0;
+            for (int tile : unit)
+              { int value = SudokuSolver.tileValue(solution[tile], variant.size);
+                if (value <= 0 || (values & (1L << value)) != 0)
+                    return false;
+                values |= 1L << value; }}
+        return true;
+    }
+    static boolean isSolution(CharSequence puzzle, char[] solution) { return isSolution(puzzle, solution, SudokuVariant.classic(3)); }
+
+    private static List<String> load()
+    {
+        List<String> puzzles = new ArrayList<>();
+        puzzles.addAll(List.of(SudokuPuzzles.EASY));
+        puzzles.addAll(List.of(SudokuPuzzles.HARD));
+        puzzles.addAll(List.of(SudokuPuzzles.PATHOLOGICAL));
+        puzzles.add("11" + "_".repeat(79));                                            // Unsolvable: two 1s in the first row.
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                 SudokuCorpus.class.getResourceAsStream("/corpus.txt"), StandardCharsets.US_ASCII)))
+          { for (String line; (line = reader.readLine()) != null; )
+                if (!line.isBlank() && !line.startsWith("#"))
+                    puzzles.add(line.strip()); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return Collections.unmodifiableList(puzzles);
+    }
+}
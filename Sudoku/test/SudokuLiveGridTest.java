@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The live grid's incremental updates against checking the edited puzzle from scratch: random edits of corpus puzzles (see SudokuCorpus)
+/// must leave the same validation as SudokuValidator gives, and the same candidates and conflicts as a grid built from the puzzle at once.
+/// </summary>
+class SudokuLiveGridTest {
+
+    @Test
+    void randomEditsMatchCheckingFromScratch()
+    {
+        Set<SudokuValidator.Reason> reasons = EnumSet.noneOf(SudokuValidator.Reason.class);
+        for (SudokuVariant variant : new SudokuVariant[] { SudokuVariant.classic(3), SudokuVariant.parse("name X-Sudoku\ndiagonals") })
+          { SplittableRandom random = new SplittableRandom(48);
+            SudokuLiveGrid grid = new SudokuLiveGrid(variant);
+            char[] puzzle = SudokuCorpus.PUZZLES.get(random.nextInt(SudokuCorpus.PUZZLES.size())).toCharArray();
+            for (int tile = 0; tile < puzzle.length; tile++)
+                grid.setTile(tile, puzzle[tile]);
+            assertMatchesScratch(grid, puzzle, variant);
+
+            // Mostly candidates, which fill the grid up to empty domains, and clears. Conflicting values and bad characters last until overwritten, so they are rare.
+            for (int edit = 0; edit < 5_000; edit++)
+              { int tile = random.nextInt(puzzle.length);
+                int kind = random.nextInt(100);
+                int candidates = grid.getCandidates(tile);
+                if (kind < 20)
+                  { grid.clearTile(tile);
+                    puzzle[tile] = '_'; }
+                else
+                  { if (kind < 97 && candidates != 0)
+                      { int[] values = new int[Integer.bitCount(candidates)];
+                        for (int i = 0, bits = candidates; bits != 0; i++, bits &= bits - 1)
+                            values[i] = Integer.numberOfTrailingZeros(bits);
+                        puzzle[tile] = SudokuSolver.tileCharacter(values[random.nextInt(values.length)]); }
+                    else
+                        puzzle[tile] = (kind == 99 ? 'x' : kind == 98 ? '.' : SudokuSolver.tileCharacter(1 + random.nextInt(variant.size)));
+                    grid.setTile(tile, puzzle[tile]); }
+                reasons.add(assertMatchesScratch(grid, puzzle, variant)); }}
+        assertEquals(EnumSet.complementOf(EnumSet.of(SudokuValidator.Reason.WRONG_LENGTH)), reasons);   // Every edit reached each outcome.
+    }
+
+    // The validator checks more than the counts answer: a value with no place in a unit is left to the solve, so the grid finds it valid.
+    // A bad character is written as an empty tile by toString, so the validator is given the edited characters themselves.
+    private static SudokuValidator.Reason assertMatchesScratch(SudokuLiveGrid grid, char[] puzzle, SudokuVariant variant)
+    {
+        String characters = new String(puzzle);
+        assertEquals(characters.replace('x', '_').replace('.', '_'), grid.toString());
+
+        SudokuValidator.Result expected = SudokuValidator.validate(characters, 0, variant);
+        SudokuValidator.Result actual = grid.getValidation();
+        if (expected.reason == SudokuValidator.Reason.VALUE_WITHOUT_PLACE)
+            assertEquals(SudokuValidator.VALID, actual, characters);
+        else
+            assertEquals(expected.toString(), actual.toString(), characters);
+
+        SudokuLiveGrid scratch = new SudokuLiveGrid(variant);
+        for (int tile = 0; tile < puzzle.length; tile++)
+            scratch.setTile(tile, puzzle[tile]);
+        for (int tile = 0; tile < puzzle.length; tile++)
+          { assertEquals(scratch.getCandidates(tile), grid.getCandidates(tile), characters + " " + tile);
+            assertEquals(scratch.isConflicting(tile), grid.isConflicting(tile), characters + " " + tile); }
+        assertEquals(scratch.hasConflicts(), grid.hasConflicts(), characters);
+        return expected.reason;
+    }
+}
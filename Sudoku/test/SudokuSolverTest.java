@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The backtracking search against the shared corpus (see SudokuCorpus), with each propagation and engine, and on larger grids and variants.
+/// </summary>
+class SudokuSolverTest {
+
+    // All-different propagation must agree with pairwise arc consistency on which puzzles are solvable, and both must solve them correctly.
+    @Test
+    void allDifferentAgreesWithPairwise()
+    {
+        SudokuSolver allDifferent = new SudokuSolver();
+        SudokuSolver pairwise = new SudokuSolver().setPropagation(SudokuSolver.Propagation.PAIRWISE);
+        char[] expected = new char[81], actual = new char[81];
+        for (String puzzle : SudokuCorpus.PUZZLES)
+          { boolean expectedSolved = pairwise.solveInto(puzzle, 0, expected, 0);
+            boolean actualSolved = allDifferent.solveInto(puzzle, 0, actual, 0);
+            assertEquals(expectedSolved, actualSolved, puzzle);
+            if (actualSolved)
+              { assertTrue(SudokuCorpus.isSolution(puzzle, expected), puzzle);
+                assertTrue(SudokuCorpus.isSolution(puzzle, actual), puzzle); }}
+    }
+
+    // The SAT engine must agree with backtracking on which puzzles are solvable, and its solutions must be valid and keep the givens.
+    @Test
+    void satEngineAgreesWithBacktracking()
+    {
+        SudokuSolver backtracking = new SudokuSolver();
+        SudokuSolver sat = new SudokuSolver().setEngine(SudokuSolver.Engine.SAT);
+        char[] expected = new char[81], actual = new char[81];
+        for (String puzzle : SudokuCorpus.PUZZLES)
+          { boolean expectedSolved = backtracking.solveInto(puzzle, 0, expected, 0);
+            boolean actualSolved = sat.solveInto(puzzle, 0, actual, 0);
+            assertEquals(expectedSolved, actualSolved, puzzle);
+            if (actualSolved)
+                assertTrue(SudokuCorpus.isSolution(puzzle, actual), puzzle); }
+    }
+
+    // Searching in parallel must agree with the sequential search on which puzzles are solvable, and solve them correctly.
+    @Test
+    void parallelSearchAgreesWithSequential()
+    {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+          { SudokuSolver sequential = new SudokuSolver();
+            SudokuSolver parallel = new SudokuSolver().setPool(pool);
+            char[] expected = new char[81], actual = new char[81];
+            for (String puzzle : SudokuCorpus.PUZZLES)
+              { boolean expectedSolved = sequential.solveInto(puzzle, 0, expected, 0);
+                boolean actualSolved = parallel.solveInto(puzzle, 0, actual, 0);
+                assertEquals(expectedSolved, actualSolved, puzzle);
+                if (actualSolved)
+                  { assertTrue(SudokuCorpus.isSolution(puzzle, expected), puzzle);
+                    assertTrue(SudokuCorpus.isSolution(puzzle, actual), puzzle); }}}
+        finally { pool.shutdown(); }
+    }
+
+    // The portfolio must agree with backtracking too. Every puzzle it searches has a winning strategy, and it counts each win once.
+    @Test
+    void portfolioAgreesWithBacktracking()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+          { SudokuSolver backtracking = new SudokuSolver();
+            SudokuSolver portfolio = new SudokuSolver().setPortfolio(executor);
+            char[] expected = new char[81], actual = new char[81];
+            long searched = 0;
+            for (String puzzle : SudokuCorpus.PUZZLES)
+              { boolean expectedSolved = backtracking.solveInto(puzzle, 0, expected, 0);
+                boolean actualSolved = portfolio.solveInto(puzzle, 0, actual, 0);
+                assertEquals(expectedSolved, actualSolved, puzzle);
+                if (actualSolved)
+                  { assertTrue(SudokuCorpus.isSolution(puzzle, actual), puzzle);
+                    assertNotNull(portfolio.getWinningStrategy(), puzzle); }
+                if (portfolio.getWinningStrategy() != null)
+                    searched++; }
+            assertEquals(searched, portfolio.getPortfolio().getWins().values().stream().mapToLong(Long::longValue).sum());
+            // Only unsolvable puzzles, the validator's and the corpus's 12, can be rejected before the search.
+            assertTrue(searched >= SudokuCorpus.PUZZLES.size() - 13, searched + " puzzles searched"); }
+        finally { executor.shutdown(); }
+    }
+
+    @Test
+    void solvesLargerGrids()
+    {
+        for (int boxSize = 4; boxSize <= 5; boxSize++)
+          { SudokuSolver backtracking = new SudokuSolver(boxSize);
+            SudokuSolver sat = new SudokuSolver(boxSize).setEngine(SudokuSolver.Engine.SAT);
+            char[] solution = new char[boxSize * boxSize * boxSize * boxSize];
+            for (long seed = 1; seed <= 3; seed++)
+              { String puzzle = SudokuPuzzles.patternPuzzle(boxSize, 0.35, seed);
+                assertTrue(backtracking.solveInto(puzzle, 0, solution, 0), puzzle);
+                assertTrue(SudokuCorpus.isSolution(puzzle, solution, SudokuVariant.classic(boxSize)), puzzle);
+                assertTrue(sat.solveInto(puzzle, 0, solution, 0), puzzle);
+                assertTrue(SudokuCorpus.isSolution(puzzle, solution, SudokuVariant.classic(boxSize)), puzzle); }}
+    }
+
+    @Test
+    void solvesVariants()
+    {
+        SudokuVariant xSudoku = SudokuVariant.parse("name X-Sudoku\ndiagonals");
+        SudokuSolver solver = new SudokuSolver(xSudoku);
+        char[] solution = new char[81];
+        for (long seed = 1; seed <= 3; seed++)
+          { String puzzle = SudokuPuzzles.variantPuzzle(xSudoku, 0.25, seed);
+            assertTrue(solver.solveInto(puzzle, 0, solution, 0), puzzle);
+            assertTrue(SudokuCorpus.isSolution(puzzle, solution, xSudoku), puzzle); }
+    }
+
+    // A puzzle the validator rejects is not searched: the reason is kept, and the buffer holds the givens.
+    @Test
+    void rejectsInvalidPuzzles()
+    {
+        SudokuSolver solver = new SudokuSolver();
+        char[] solution = new char[81];
+        assertFalse(solver.solveInto("11" + "_".repeat(79), 0, solution, 0));
+        assertEquals(SudokuValidator.Reason.DUPLICATE_GIVEN, solver.getValidation().reason);
+        assertEquals('1', solution[1]);
+        assertEquals('0', solution[2]);
+    }
+}
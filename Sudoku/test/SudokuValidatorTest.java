@@ -0,0 +1,48 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The validator's reasons, and that checking puzzle after puzzle with a Scratch allocates nothing until one is rejected.
+/// </summary>
+class SudokuValidatorTest {
+
+    @Test
+    void namesTheReasonAndTiles()
+    {
+        SudokuValidator.Scratch scratch = new SudokuValidator.Scratch(SudokuVariant.classic(3));
+        assertEquals("invalid wrong-length", SudokuValidator.validate("_".repeat(80), 0, scratch).toString());
+        assertEquals("invalid bad-character at 3", SudokuValidator.validate("___x" + "_".repeat(77), 0, scratch).toString());
+        assertEquals("unsolvable duplicate-given 1 at 0,1", SudokuValidator.validate("11" + "_".repeat(79), 0, scratch).toString());
+        SudokuValidator.Result emptyDomain = SudokuValidator.validate("12345678_" + "_".repeat(71) + "9", 0, scratch);
+        assertEquals(SudokuValidator.Reason.EMPTY_DOMAIN, emptyDomain.reason);
+        assertArrayEquals(new int[] { 8 }, emptyDomain.getCells());
+        // The same scratch, reused after the rejections.
+        for (String puzzle : SudokuCorpus.PUZZLES.subList(0, 7))
+            assertSame(SudokuValidator.VALID, SudokuValidator.validate(puzzle, 0, scratch), puzzle);
+    }
+
+    // Warmed up past C2 compilation first; the bound leaves room for the odd deoptimization or allocation counted to the thread by the JVM,
+    // far below the arrays of a check without a Scratch (over a kilobyte).
+    @Test
+    void validPuzzlesAllocateNothing()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        SudokuValidator.Scratch scratch = new SudokuValidator.Scratch(SudokuVariant.classic(3));
+        String[] puzzles = SudokuPuzzles.HARD;
+        for (int i = 0; i < 50_000; i++)
+            SudokuValidator.validate(puzzles[i % puzzles.length], 0, scratch);
+        long threadId = Thread.currentThread().threadId();
+        int checks = 10_000;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < checks; i++)
+            SudokuValidator.validate(puzzles[i % puzzles.length], 0, scratch);
+        double bytesPerCheck = (double) (threads.getThreadAllocatedBytes(threadId) - before) / checks;
+        assertTrue(bytesPerCheck < 16, bytesPerCheck + " bytes allocated per check");
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.concurrent.Callable;
+
+/// <summary>
+/// The workloads of the TicTacToe benchmarks (benchmarks.TicTacToeBenchmarks runs them under JMH): full moves on a fixed set of positions
+/// (including a 15x15 gomoku board in large board mode), and the utility and move generation methods on their own.
+/// </summary>
+public class TicTacToeBenchmark {
+
+    // Fixed 3x3 positions (top row first), each with O (the agent) to move.
+    private static final String FIRST_REPLY = "____X____";
+    private static final String MIDDLEGAME  = "X_O_X____";
+    private static final String ENDGAME     = "XOX_OX___";
+
+    /// <summary>
+    /// The named workload, with the agent it uses built once up front. Its result is consumed so the JIT cannot remove the work.
+    /// Each move starts from a fresh search: move forgets the previous one because the position does not continue it.
+    /// </summary>
+    public static Callable<Object> workload(String name)
+    {
+        return switch (name)
+          { case "move.firstReply" -> move(new minmaxag(3, 3, 3), FIRST_REPLY);
+            case "move.middlegame" -> move(new minmaxag(3, 3, 3), MIDDLEGAME);
+            case "move.endgame" -> move(new minmaxag(3, 3, 3), ENDGAME);
+            case "tableMove.middlegame" -> move(new minmaxag(3, 3, 3).setEngine(minmaxag.Engine.TABLE), MIDDLEGAME);
+            case "move.gomoku15x15" -> move(new minmaxag(15, 15, 5), gomokuPosition());
+            case "utility.middlegame" ->
+              { minmaxag agent = new minmaxag(3, 3, 3);
+                agent.loadBoard(MIDDLEGAME);
+                yield () -> agent.utility(); }
+            case "generateMoves.middlegame" ->
+              { minmaxag agent = new minmaxag(3, 3, 3);
+                agent.loadBoard(MIDDLEGAME);
+                int[] moveBuffer = new int[9];
+                yield () -> agent.generateMoves(moveBuffer); }
+            default -> throw new IllegalArgumentException("Unknown TicTacToe workload: " + name); };
+    }
+
+    private static Callable<Object> move(minmaxag agent, String position) { return () -> agent.move(position); }
+
+    // A 15x15 position after three moves each and X's fourth, around the center.
+    private static String gomokuPosition()
+    {
+        char[] tiles = "_".repeat(15 * 15).toCharArray();
+        int[] xTiles = { 112, 97, 126, 98 };
+        int[] oTiles = { 113, 111, 127 };
+        for (int tile : xTiles) tiles[tile] = 'X';
+        for (int tile : oTiles) tiles[tile] = 'O';
+        return new String(tiles);
+    }
+}
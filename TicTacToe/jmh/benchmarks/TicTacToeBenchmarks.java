@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/// <summary>
+/// Runs each workload of TicTacToeBenchmark under JMH, in throughput mode with the GC profiler (see build.gradle).
+/// JMH refuses benchmark classes in the default package, where the agent lives, so this class looks its workload up by name, once per trial.
+/// Run with: ./gradlew :TicTacToe:jmh [-Pworkload=move.middlegame]
+/// </summary>
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeBenchmarks {
+
+    @Param({ "move.firstReply", "move.middlegame", "move.endgame", "tableMove.middlegame", "move.gomoku15x15",
+             "utility.middlegame", "generateMoves.middlegame" })
+    public String workload;
+
+    private Callable<?> operation;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        operation = (Callable<?>) Class.forName("TicTacToeBenchmark").getMethod("workload", String.class).invoke(null, workload);
+    }
+
+    @Benchmark
+    public Object run() throws Exception { return operation.call(); }
+}
@@ -19,7 +19,7 @@ public class TicTacToe {
 	public static void main (String[] args)
 	{
         //create your minimax agent
-        Agent = new minmaxag(3,3,3);
+        Agent = new minmaxag(3,3,3).setEngine(minmaxag.Engine.TABLE); // Perfect play by table lookup.
 		gamePanel(); //launch game
         
 	}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/// <summary>
+/// The complete game-theoretic table of 3x3 TicTacToe: the value and a best move of every reachable position, so that choosing a move is a single array lookup.
+/// Positions are indexed by the base-3 number of their board: digit i (of weight 3^i) is tile i, 0 for empty, 1 for X and 2 for O.
+/// Only 5,478 of the 3^9 = 19,683 indices are reachable in play; the others are never read.
+/// The table is built once, the first time the class is used, by a memoized negamax over the whole game tree, which takes a few milliseconds.
+/// </summary>
+public final class TicTacToeTable {
+
+    // Constants
+    public static final int TILES = 9;
+    public static final int INDEX_COUNT = 19_683;   // 3^9
+    public static final int NO_MOVE = -1;           // The best move of a position where the game is over.
+    private static final byte UNREACHABLE = Byte.MIN_VALUE;
+    private static final int[] POWERS_OF_THREE = { 1, 3, 9, 27, 81, 243, 729, 2187, 6561 };
+    private static final int[][] LINES = {
+            {0, 1, 2}, {3, 4, 5}, {6, 7, 8},    // Rows.
+            {0, 3, 6}, {1, 4, 7}, {2, 5, 8},    // Columns.
+            {0, 4, 8}, {2, 4, 6} };             // Diagonals.
+
+    // Attributes
+    private static final byte[] values = new byte[INDEX_COUNT];     // See value.
+    private static final byte[] bestMoves = new byte[INDEX_COUNT];
+    private static int reachablePositions;
+
+    static
+    {
+        Arrays.fill(values, UNREACHABLE);
+        solve(new char[TILES], 0, 0);
+    }
+
+    private TicTacToeTable() {}     // Only static lookups.
+
+    // #region Lookup Methods
+    // The index of a state string in the format of minmaxag.move ('X', 'O' and '_' tiles, top row first).
+    public static int index(CharSequence stringState)
+    {
+        int index = 0;
+        for (int tile = 0; tile < TILES; tile++)
+            index += digit(stringState.charAt(tile)) * POWERS_OF_THREE[tile];
+        return index;
+    }
+
+    // The best move of the position, or NO_MOVE if the game is over. Among equally good moves, the smallest tile.
+    public static int bestMove(int index) { return bestMoves[index]; }
+
+    /// <summary>
+    /// The value of the position for the player to move: 0 for a draw, positive for a win and negative for a loss.
+    /// Its magnitude is 10 minus the number of pieces on the board when the game ends, so quicker wins (and slower losses) are worth more.
+    /// </summary>
+    public static int value(int index)
+    {
+        if (values[index] == UNREACHABLE)
+            throw new IllegalArgumentException("Position " + index + " cannot be reached in a game.");
+        return values[index];
+    }
+
+    public static boolean isReachable(int index) { return values[index] != UNREACHABLE; }
+    public static int getReachablePositions() { return reachablePositions; }
+
+    // The index of the position after the player to move (X on an even number of pieces) takes the tile.
+    public static int play(int index, int tile, int pieceCount) { return index + (pieceCount % 2 == 0 ? 1 : 2) * POWERS_OF_THREE[tile]; }
+    // #endregion
+
+    // #region Build Methods
+    /// <summary>
+    /// Negamax over the game tree from the input board, filling in the value and best move of every position it reaches.
+    /// Transpositions are only solved once: a position whose value is already known is not searched again.
+    /// </summary>
+    /// <return> Returns the value of the board for the player to move. </return>
+    private static int solve(char[] board, int index, int pieceCount)
+    {
+        if (values[index] != UNREACHABLE)
+            return values[index];
+        reachablePositions++;
+
+        // The previous move may have ended the game.
+        if (pieceCount > 0 && hasLine(board))
+            return store(index, -(10 - pieceCount), NO_MOVE);
+        if (pieceCount == TILES)
+            return store(index, 0, NO_MOVE);
+
+        char player = (pieceCount % 2 == 0 ? 'X' : 'O');
+        int bestValue = Integer.MIN_VALUE;
+        int bestMove = NO_MOVE;
+        for (int tile = 0; tile < TILES; tile++)
+          { if (board[tile] != 0)
+                continue;
+            board[tile] = player;
+            int value = -solve(board, play(index, tile, pieceCount), pieceCount + 1);
+            board[tile] = 0;
+            if (value > bestValue)
+              { bestValue = value;
+                bestMove = tile; }}
+        return store(index, bestValue, bestMove);
+    }
+
+    private static int store(int index, int value, int bestMove)
+    {
+        values[index] = (byte) value;
+        bestMoves[index] = (byte) bestMove;
+        return value;
+    }
+
+    private static boolean hasLine(char[] board)
+    {
+        for (int[] line : LINES)
+            if (board[line[0]] != 0 && board[line[0]] == board[line[1]] && board[line[1]] == board[line[2]])
+                return true;
+        return false;
+    }
+
+    private static int digit(char tile) { return (tile == 'X' ? 1 : tile == 'O' ? 2 : 0); }
+    // #endregion
+}
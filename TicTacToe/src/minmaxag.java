@@ -1,59 +1,203 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 
 public class minmaxag {
 
+    // Constants
+    private static final int DEFAULT_SEARCH_DEPTH = 7;  // Number of moves searched ahead of the root before falling back to the utility estimate, unless set otherwise.
+    private static final char EMPTY_TILE = '_';
+    private static final int WIN_SCORE = Integer.MAX_VALUE - 1;    // The utility of a won board; see utility.
+    private static final long ZOBRIST_SEED = 0x6D696E6D61786167L;  // Fixed so that agents for the same board size hash positions identically.
+
+    // Large Board Constants
+    private static final int LARGE_BOARD_THRESHOLD = 25;    // Boards with more tiles than this (i.e. bigger than 5x5) use the large board mode by default.
+    private static final int CANDIDATE_RADIUS = 2;          // Only empty tiles within this many rows/columns of an existing stone are considered as actions.
+    private static final int CANDIDATE_LIMIT = 8;           // At most this many of the best-ordered candidates are searched at each ply.
+    private static final int THREAT_SEARCH_DEPTH = 8;       // Maximum number of attacking moves in a forcing sequence.
+
     // Attributes
     private int numRows;
     private int numCols;
     private int winSequenceLength;
+    private int[] lineStarts;       // Every row, column and diagonal of the board, for the utility method. See buildLines.
+    private int[] lineSteps;
+    private int[] lineLengths;
+
+    // Search Buffers: allocated once per agent and reused by every search, so no node of the search tree allocates.
+    private char[] board;           // The board being searched. Actions are made and undone in place rather than copied into successor states.
+    private int pieceCount;         // Number of occupied tiles, kept up to date by makeMove/undoMove for the O(1) board-full check.
+    private int[][] moveStacks;     // One preallocated move buffer per ply. generateMoves fills the buffer belonging to the current depth.
+    private int[][] orderingScores; // One preallocated score buffer per ply, used by orderMoves.
+    private int iterationDepth;     // The depth limit of the current iterative deepening iteration.
+    private SearchStatistics statistics = new SearchStatistics();  // A new instance per search, written only by the thread running it.
+
+    // Search Knowledge: kept between consecutive moves of the same game, and forgotten when move is called on an unrelated position.
+    private TranspositionTable transpositionTable;  // Values and best actions of positions searched before, keyed by the canonical board hash.
+    private long[][] zobristKeys;                   // A random key per player and tile. The board hash is the XOR of the keys of all placed tiles.
+    private int[][] symmetries;                     // Tile maps of the board's symmetries (symmetries[0] is the identity), and their inverses.
+    private int[][] inverseSymmetries;
+    private long[] boardHashes;                     // The board hash under each symmetry, kept up to date by makeMove/undoMove. boardHashes[0] is the board's own.
+    private int[][] historyScores;                  // Per player and tile, how often (weighted by depth) the action caused a cutoff.
+    private int[][] principalVariation;             // Triangular table: row d holds the best line found from depth d.
+    private int[] principalVariationLength;
+    private char[] previousBoard;                   // The root board of the previous move, used to recognize a continuing game.
+    private int previousAction = -1;                // The action returned by the previous move.
+    private int expectedAction = -1;                // The principal variation's reply to the opponent's move, tried first at the next root.
+
+    // Engine Attributes
+    public enum Engine { ALPHA_BETA, MONTE_CARLO, TABLE }      // TABLE looks moves up in TicTacToeTable, for the 3x3 game only.
+    private Engine engine = Engine.ALPHA_BETA;
+    public enum Heuristic { CONSECUTIVE_TILES, WIN_ONLY }   // WIN_ONLY scores every leaf that is not won as 0, e.g. to measure what the heuristic is worth.
+    private Heuristic heuristic = Heuristic.CONSECUTIVE_TILES;
+    private int searchDepth = DEFAULT_SEARCH_DEPTH;
+    private MonteCarloSearch monteCarloSearch;     // Created on first use, and kept so that its tree is reused between moves of the same game.
+
+    // Time Budget Attributes: a search stops once its budget is used up, returning the action of the deepest completed iteration.
+    private long timeBudgetMillis;              // Zero for no budget: every move is searched searchDepth moves deep.
+    private long searchDeadline;                // System.nanoTime() at which the running search runs out of time, or zero for none.
+    private boolean outOfTime;
+
+    // Large Board Attributes: every length-k line (window) on the board, with per-player stone counts kept incrementally by makeMove/undoMove.
+    private boolean largeBoardMode;
+    private int[] windowCells;          // The tiles of window w are windowCells[w * winSequenceLength ... (w + 1) * winSequenceLength - 1].
+    private int[][] cellWindows;        // For each tile, the windows passing through it.
+    private int[] windowXCount;         // Number of X stones in each window.
+    private int[] windowOCount;         // Number of O stones in each window.
+    private long[] windowWeights;       // Desirability of a window holding n stones of only one player (10^(n-1), mirroring the consecutive-tile heuristic).
+    private long lineEvaluation;        // Sum of the weights of all windows, positive for O and negative for X.
+    private int completedWindows;       // Number of windows filled entirely by one player, i.e. winning lines.
+    private int[] neighborCounts;       // Number of stones within CANDIDATE_RADIUS of each tile.
+    private int[] candidateScores;      // Scratch buffer used to order candidates inside generateMoves.
+    private int[][] threatStacks;       // One preallocated move buffer per attacking move of the threat-space search.
 
     // Constructors
-    public minmaxag(){} // Default Constructor
-    public minmaxag(int numRows, int numCols, int winSequenceLength)
+    public minmaxag() { this(3, 3, 3); } // Default Constructor: the standard 3x3 board, three in a row to win.
+    public minmaxag(int numRows, int numCols, int winSequenceLength) { this(numRows, numCols, winSequenceLength, numRows * numCols > LARGE_BOARD_THRESHOLD); }
+    public minmaxag(int numRows, int numCols, int winSequenceLength, boolean largeBoardMode)
     {
         this.numRows = numRows;
         this.numCols = numCols;
         this.winSequenceLength = winSequenceLength;
+        this.largeBoardMode = largeBoardMode;
+
+        this.board = new char[numRows * numCols];
+
+        this.transpositionTable = new TranspositionTable();
+        this.zobristKeys = new long[2][board.length];
+        Random zobristRandom = new Random(ZOBRIST_SEED);
+        for (long[] playerKeys : zobristKeys)
+            for (int tile = 0; tile < board.length; tile++)
+                playerKeys[tile] = zobristRandom.nextLong();
+        this.historyScores = new int[2][board.length];
+        allocateSearchBuffers();
+        this.previousBoard = new char[board.length];
+        buildLines();
+        buildSymmetries();
+        if (largeBoardMode)
+            buildWindowTables();
+    }
+
+    // Helper method: sizes the per-ply buffers for searchDepth plies.
+    private void allocateSearchBuffers()
+    {
+        this.moveStacks = new int[searchDepth + 1][numRows * numCols];
+        this.orderingScores = new int[searchDepth + 1][numRows * numCols];
+        this.principalVariation = new int[searchDepth + 2][searchDepth + 2];
+        this.principalVariationLength = new int[searchDepth + 2];
+    }
+
+    // Engine methods. setEngine returns the agent, making it possible to chain if necessary.
+    public minmaxag setEngine(Engine engine)
+    {
+        if (engine == Engine.TABLE && (numRows != 3 || numCols != 3 || winSequenceLength != 3))
+            throw new IllegalArgumentException("The table engine only plays 3x3 boards with a win length of 3.");
+        this.engine = engine;
+        return this;
+    }
+    public minmaxag setHeuristic(Heuristic heuristic) { this.heuristic = heuristic; return this; }
+    public minmaxag setTimeBudgetMillis(long timeBudgetMillis) { this.timeBudgetMillis = timeBudgetMillis; return this; }
+    public minmaxag setSearchDepth(int searchDepth) { this.searchDepth = Math.max(1, searchDepth); allocateSearchBuffers(); return this; }
+    public MonteCarloSearch getMonteCarloSearch()
+    {
+        if (monteCarloSearch == null)
+            monteCarloSearch = new MonteCarloSearch(numRows, numCols, winSequenceLength, false);
+        return monteCarloSearch;
     }
 
     // #region State Methods
     /// <summary>
-    /// Given a current state, determines whose turn it is.
+    /// Determines whose turn it is on the board being searched.
+    /// Since 'X' always begins the game, an even number of pieces on the board means it must be 'X's turn.
     /// </summary>
     /// <return> A single character denoting the player whose turn it is: X or Y </return>
-    private char getPlayerTurn(State state)
+    private char getPlayerTurn() { return (pieceCount % 2 == 0 ? 'X' : 'O'); }
+
+    // Helper method: the index of a player's row in the zobristKeys and historyScores tables.
+    private static int playerIndex(char player) { return (player == 'X' ? 0 : 1); }
+
+    /// <summary>
+    /// Copies the input state string into the search board, counting the pieces already played.
+    /// Package-private, as are utility and generateMoves, so that the benchmarks can call them directly.
+    /// </summary>
+    void loadBoard(String stringState)
     {
-        int xCount = 0;
-        int oCount = 0;
-        
-        // Iterate through each board position, tracking the total occurences of each player.
-        for (char boardPosition : state.stringState.toCharArray())
-            switch (boardPosition) 
-              { case 'X' -> xCount++;
-                case 'O' -> oCount++; }
+        stringState.getChars(0, board.length, board, 0);
+
+        pieceCount = 0;
+        Arrays.fill(boardHashes, 0);
+        for (int tile = 0; tile < board.length; tile++)
+            if (board[tile] != EMPTY_TILE)
+              { pieceCount++;
+                toggleTileHash(tile, board[tile]); }
 
-        // Since 'X' always begins the game, if the totals are equal, it must be 'X's turn.
-        return (xCount == oCount ? 'X' : 'O');
+        // Rebuild the incremental line counts from scratch for the newly loaded board.
+        if (largeBoardMode)
+          { Arrays.fill(windowXCount, 0);
+            Arrays.fill(windowOCount, 0);
+            Arrays.fill(neighborCounts, 0);
+            lineEvaluation = 0;
+            completedWindows = 0;
+            for (int tile = 0; tile < board.length; tile++)
+                if (board[tile] != EMPTY_TILE)
+                    updateLineCounts(tile, board[tile], 1); }
+    }
+
+    /// <summary>
+    /// Takes the input action on the search board, placing the tile of the player whose turn it is.
+    /// Every makeMove is paired with an undoMove once the resulting subtree has been searched.
+    /// </summary>
+    private void makeMove(int actionNo)
+    {
+        board[actionNo] = getPlayerTurn();
+        toggleTileHash(actionNo, board[actionNo]);
+        pieceCount++;
+        if (largeBoardMode)
+            updateLineCounts(actionNo, board[actionNo], 1);
     }
 
     /// <summary>
-    /// Given a state and corresponding action, determine the resultant state if that action were taken.
+    /// Reverts an action previously taken by makeMove.
     /// </summary>
-    /// <return> Returns the successor state </return>
-    private State getSuccessorState(State state, Action action)
+    private void undoMove(int actionNo)
     {
-        char[] result = state.stringState.toCharArray(); // Decompose the input state string into a character array,
-        result[action.actionNo] = getPlayerTurn(state);  // Determine the player whose turn it would be, and given the input action, set the corresponding tile to that player.
-        return new State(new String(result));   // Recompose the character array as a string and output as a state.
+        if (largeBoardMode)
+            updateLineCounts(actionNo, board[actionNo], -1);
+        toggleTileHash(actionNo, board[actionNo]);
+        board[actionNo] = EMPTY_TILE;
+        pieceCount--;
     }
 
     /// <summary>
-    /// Determines if the input state is terminal, i.e. the game has been one by either player, or there are no more possible actions.
+    /// Determines if the search board has no empty tiles left. Every empty tile is eventually playable, so this is equivalent to there being no possible actions.
+    /// </summary>
+    private boolean isBoardFull() { return pieceCount >= board.length; }
+
+    /// <summary>
+    /// Determines if the search board is terminal, i.e. the game has been one by either player, or there are no more possible actions.
     /// Note: Inside the utility function, the terminalStateCheck flag is set so that it does not return a state desirability score if there is not absolute winner.
     /// </summary>
-    /// <return> A boolean (True/False) if the state is terminal. </return>
-    private boolean isTerminalState(State state) { return utility(state, true) != 0 || getAllActions(state).size() <= 0;}
+    /// <return> A boolean (True/False) if the search board is terminal. </return>
+    private boolean isTerminalState() { return (largeBoardMode ? completedWindows > 0 : utility(true) != 0) || isBoardFull(); }
 
     // Helper method for the utility method (SEE BELOW).
     private int updateCheckSum(int checkSum, char current_character)
@@ -72,81 +216,20 @@ public class minmaxag {
     /// <summary>
     /// Determines the desirability of a given state, based on a consecutive-tile heuristic.
     /// </summary>
-    /// <return> Returns the desirability score of the input state. </return>
-    private int utility(State state) {return utility(state, false);}
-    private int utility(State state, boolean terminalStateCheck)
-    {
-        int totalUtilityEvaluation = 0;  // Holds the desirability score for the input state.
-        int checkSum = 0;   // An intermediate value that is used for each row, column, and diagonal.
-
-        // Check each row for a winning/patterned sequence.
-        for (int row = 0; row < numRows; row ++, checkSum = 0)
-            for(int column = 0; column < numCols; column++)
-            {   // See above helper function for explanation.
-                int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt(Coordinate.flattenCoordinates(column, row, numCols)));
-                
-                // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                    totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                checkSum = updatedCheckSum;
-
-                // Check if there is an absolute win.
-                if (Math.abs(checkSum) >= winSequenceLength) 
-                    return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-            }
-        
-        // Check each column for a winning sequence.
-        checkSum = 0;
-        for (int column = 0; column < numCols; column++, checkSum = 0)
-            for(int row = 0; row < numRows; row++)
-            {   // See above helper function for explanation.
-                int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt(Coordinate.flattenCoordinates(column, row, numCols)));
-                
-                // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                    totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                checkSum = updatedCheckSum;
-
-                // Check if there is an absolute win.
-                if (Math.abs(checkSum) >= winSequenceLength) 
-                    return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-            }
-
-        // Check each top-left to bottom-right diagonal for a winning sequence.
-        checkSum = 0;
-        for (int row = 0; row < numRows; row++)
-            for (int column = 0; column < numCols; column++, checkSum = 0)
-                for (int diagonalStep = 0; diagonalStep + row < numRows && diagonalStep + column < numCols; diagonalStep++)
-                  { // See above helper function for explanation. With each diagonal step iteration, move down and right once.
-                    int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt((row + diagonalStep) * numCols + column + diagonalStep));
-                    
-                    // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                    if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                        totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                    checkSum = updatedCheckSum;
-
-                    // Check if there is an absolute win.
-                    if (Math.abs(checkSum) >= winSequenceLength) 
-                        return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-                    }
-        
-        // Check the bottom-left to top-right diagonal for a winning sequence.
-        checkSum = 0;
-        for (int row = numRows - 1; row >= 0; row--)
-            for (int column = 0; column < numCols; column++, checkSum = 0)
-                for (int diagonalStep = 0; row - diagonalStep >= 0 && diagonalStep + column < numCols; diagonalStep++)
-                  { // See above helper function for explanation. With each diagonal step iteration, move up and right once.
-                    int updatedCheckSum = updateCheckSum(checkSum, state.stringState.charAt((row - diagonalStep) * numCols + column + diagonalStep));
-                    
-                    // If the new checksum's sign is different from the previous, if there is a pattern of 2 or more consecutive same-type tiles, add that to the desirability score.
-                    if (Math.signum(updatedCheckSum) != Math.signum(checkSum) && Math.abs(checkSum) != 1)
-                        totalUtilityEvaluation += Math.signum(checkSum) * Math.pow(10, (Math.abs(checkSum)-1));
-                    checkSum = updatedCheckSum;
-
-                    // Check if there is an absolute win.
-                    if (Math.abs(checkSum) >= winSequenceLength) 
-                        return (int) Math.signum(checkSum) * (Integer.MAX_VALUE-1); // If so, return immediate the largest possible desirability score.
-                    }
+    /// <return> Returns the desirability score of the search board. </return>
+    int utility() {return largeBoardMode ? lineUtility() : utility(false);}
+    private int utility(boolean terminalStateCheck)
+    {
+        int totalUtilityEvaluation = 0;  // Holds the desirability score for the search board.
+
+        // Check each row, column, and diagonal for a winning/patterned sequence.
+        for (int line = 0; line < lineStarts.length; line++)
+          { int lineScore = scanLine(lineStarts[line], lineSteps[line], lineLengths[line]);
+
+            // Check if there is an absolute win. If so, return immediately the largest possible desirability score.
+            if (Math.abs(lineScore) == WIN_SCORE)
+                return lineScore;
+            totalUtilityEvaluation += lineScore; }
 
         // If no winning sequence found & terminalStateCheck is set, return 0, which means draw or game is not over yet.
         if (terminalStateCheck)
@@ -154,107 +237,745 @@ public class minmaxag {
         return totalUtilityEvaluation;  // Otherwise return the calculated desirability score.
     }
 
+    /// <summary>
+    /// Helper method for the utility method: scans the tiles of one row, column or diagonal, from start in steps of step.
+    /// </summary>
+    /// <return> Returns the desirability score of the line's patterns, or the win score (positive for O) if it holds a winning sequence. </return>
+    private int scanLine(int start, int step, int length)
+    {
+        int lineScore = 0;
+        int checkSum = 0;   // An intermediate value that is used for the line.
+        for (int i = 0, tile = start; i < length; i++, tile += step)
+          { // See above helper function for explanation.
+            int updatedCheckSum = updateCheckSum(checkSum, board[tile]);
+
+            // If the new checksum's sign is different from the previous, a pattern of consecutive same-type tiles has ended: add it to the desirability score.
+            if (Math.signum(updatedCheckSum) != Math.signum(checkSum))
+                lineScore += patternValue(checkSum);
+            checkSum = updatedCheckSum;
+
+            if (Math.abs(checkSum) >= winSequenceLength)
+                return (int) Math.signum(checkSum) * WIN_SCORE; }
+        return lineScore + patternValue(checkSum);  // A pattern reaching the edge of the board counts as well.
+    }
+
+    // Helper method: the desirability of a pattern of 2 or more consecutive same-type tiles (10^(n-1), positive for O and negative for X), 0 for a single tile.
+    private static int patternValue(int checkSum) { return (Math.abs(checkSum) < 2 ? 0 : (int) Math.signum(checkSum) * (int) Math.pow(10, Math.abs(checkSum) - 1)); }
+
+    /// <summary>
+    /// Lists every row, column and diagonal of the board as a start tile, step and length, for the utility method.
+    /// Each line is listed once, starting from the edge of the board, so that mirrored or rotated boards have equal utilities.
+    /// </summary>
+    private void buildLines()
+    {
+        int lineCount = numRows + numCols + 2 * (numRows + numCols - 1);
+        lineStarts = new int[lineCount];
+        lineSteps = new int[lineCount];
+        lineLengths = new int[lineCount];
+        int line = 0;
+        for (int row = 0; row < numRows; row++, line++)
+          { lineStarts[line] = row * numCols;  lineSteps[line] = 1;  lineLengths[line] = numCols; }
+        for (int column = 0; column < numCols; column++, line++)
+          { lineStarts[line] = column;  lineSteps[line] = numCols;  lineLengths[line] = numRows; }
+
+        // Top-left to bottom-right diagonals start on the top row or the left column; bottom-left to top-right diagonals on the bottom row or the left column.
+        for (int row = numRows - 1, column = 0; column < numCols; line++)
+          { lineStarts[line] = row * numCols + column;  lineSteps[line] = numCols + 1;  lineLengths[line] = Math.min(numRows - row, numCols - column);
+            if (row > 0) row--; else column++; }
+        for (int row = 0, column = 0; column < numCols; line++)
+          { lineStarts[line] = row * numCols + column;  lineSteps[line] = 1 - numCols;  lineLengths[line] = Math.min(row + 1, numCols - column);
+            if (row < numRows - 1) row++; else column++; }
+    }
+
+    // Helper method: the value of a leaf under the selected heuristic. Without the heuristic, only won boards score.
+    private int evaluate() { return (heuristic == Heuristic.CONSECUTIVE_TILES ? utility() : (largeBoardMode ? (completedWindows > 0 ? lineUtility() : 0) : utility(true))); }
+
+    /// <summary>
+    /// Lists the board's symmetries as tile maps: symmetries[s][tile] is where symmetry s moves the tile. Symmetry 0 is the identity.
+    /// A square board has the 8 symmetries of a square (rotations and reflections); other boards only the 4 that keep their shape.
+    /// </summary>
+    private void buildSymmetries()
+    {
+        symmetries = new int[numRows == numCols ? 8 : 4][board.length];
+        int lastRow = numRows - 1, lastColumn = numCols - 1;
+        for (int tile = 0; tile < board.length; tile++)
+          { int row = tile / numCols, column = tile % numCols;
+            symmetries[0][tile] = tile;
+            symmetries[1][tile] = row * numCols + (lastColumn - column);                 // Left-right mirror.
+            symmetries[2][tile] = (lastRow - row) * numCols + column;                    // Top-bottom mirror.
+            symmetries[3][tile] = (lastRow - row) * numCols + (lastColumn - column);     // Half turn.
+            if (symmetries.length == 8)
+              { symmetries[4][tile] = column * numCols + row;                             // Mirror about the main diagonal.
+                symmetries[5][tile] = (lastColumn - column) * numCols + (lastRow - row);  // Mirror about the anti-diagonal.
+                symmetries[6][tile] = column * numCols + (lastRow - row);                 // Quarter turn clockwise.
+                symmetries[7][tile] = (lastColumn - column) * numCols + row; }}           // Quarter turn counterclockwise.
+
+        inverseSymmetries = new int[symmetries.length][board.length];
+        for (int s = 0; s < symmetries.length; s++)
+            for (int tile = 0; tile < board.length; tile++)
+                inverseSymmetries[s][symmetries[s][tile]] = tile;
+        boardHashes = new long[symmetries.length];
+    }
+
+    // Helper method: places or removes (XOR is its own inverse) a player's tile in the board hash under every symmetry.
+    private void toggleTileHash(int tile, char player)
+    {
+        long[] playerKeys = zobristKeys[playerIndex(player)];
+        for (int s = 0; s < symmetries.length; s++)
+            boardHashes[s] ^= playerKeys[symmetries[s][tile]];
+    }
+
+    /// <summary>
+    /// Picks the symmetry whose board hash is the smallest. All symmetric equivalents of a position pick the same mapped board,
+    /// its canonical form, so they share a single transposition table entry.
+    /// </summary>
+    /// <return> Returns the index of the canonical symmetry. </return>
+    private int canonicalSymmetry()
+    {
+        int canonical = 0;
+        for (int s = 1; s < boardHashes.length; s++)
+            if (boardHashes[s] < boardHashes[canonical])
+                canonical = s;
+        return canonical;
+    }
+
+    /// <summary>
+    /// Removes the root actions that a symmetry of the board maps onto another action: while the board is symmetric, such actions lead to
+    /// equivalent positions. Of each group of equivalent actions, only the smallest tile is kept.
+    /// </summary>
+    /// <return> Returns the number of actions kept at the front of the buffer. </return>
+    private int pruneSymmetricActions(int[] moveBuffer, int moveCount)
+    {
+        // The symmetries leaving the board unchanged, as a bit set. The boards are compared directly rather than trusting the hashes.
+        int boardSymmetries = 0;
+        for (int s = 1; s < symmetries.length; s++)
+          { boolean symmetric = true;
+            for (int tile = 0; tile < board.length && symmetric; tile++)
+                symmetric = (board[symmetries[s][tile]] == board[tile]);
+            if (symmetric)
+                boardSymmetries |= 1 << s; }
+        if (boardSymmetries == 0)
+            return moveCount;
+
+        int keptCount = 0;
+        for (int i = 0; i < moveCount; i++)
+          { int action = moveBuffer[i];
+            boolean smallest = true;
+            for (int s = 1; s < symmetries.length && smallest; s++)
+                smallest = ((boardSymmetries & (1 << s)) == 0 || symmetries[s][action] >= action);
+            if (smallest)
+                moveBuffer[keptCount++] = action; }
+        return keptCount;
+    }
+
     // #region Action Methods
     /// <summary>
-    /// Determines all of the possible actions given the input state.
+    /// Determines all of the possible actions on the search board, writing them into the input move buffer.
     /// </summary>
-    /// <return> Returns a list of actions to take. </return>
-    private List<Action> getAllActions(State state)
+    /// <return> Returns the number of actions written to the buffer. </return>
+    int generateMoves(int[] moveBuffer)
     {
-         List<Action> result = new ArrayList<>();
+         if (largeBoardMode)
+             return generateCandidateMoves(moveBuffer);
+
+         int moveCount = 0;
          
-         // Iterate through each tile in the state. Any empty tile is a potential move.
-         int elemNum = 0;
-         for (char element : state.stringState.toCharArray())
-             { if (element == '_')
-                   result.add(new Action(elemNum));
-               elemNum++; }
+         // Iterate through each tile on the board. Any empty tile is a potential move.
+         for (int elemNum = 0; elemNum < board.length; elemNum++)
+             if (board[elemNum] == EMPTY_TILE)
+                 moveBuffer[moveCount++] = elemNum;
           
-          // Return the list of actions.
-          return result;
+          // Return the number of actions found.
+          return moveCount;
+    }
+
+    /// <summary>
+    /// Orders the actions in a move buffer for alpha-beta: the input first action (the best action known from the transposition table
+    /// or the previous iteration) comes first, followed by the others in order of their history scores.
+    /// </summary>
+    private void orderMoves(int[] moveBuffer, int moveCount, int firstAction, int depth)
+    {
+        int[] scores = orderingScores[depth];
+        int[] playerHistory = historyScores[playerIndex(getPlayerTurn())];
+        for (int i = 0; i < moveCount; i++)
+            scores[i] = (moveBuffer[i] == firstAction ? Integer.MAX_VALUE : largeBoardMode ? -i : playerHistory[moveBuffer[i]]);  // Large board candidates arrive already ordered.
+
+        // Insertion sort by descending score; move buffers hold a handful of actions.
+        for (int i = 1; i < moveCount; i++)
+          { int action = moveBuffer[i];
+            int score = scores[i];
+            int position = i;
+            for (; position > 0 && scores[position - 1] < score; position--)
+              { moveBuffer[position] = moveBuffer[position - 1];
+                scores[position] = scores[position - 1]; }
+            moveBuffer[position] = action;
+            scores[position] = score; }
+    }
+
+    // Helper method: credits an action that caused a cutoff, halving every score once they grow large.
+    private void recordCutoff(int actionNo, int remainingDepth)
+    {
+        int[] playerHistory = historyScores[playerIndex(getPlayerTurn())];
+        playerHistory[actionNo] += remainingDepth * remainingDepth;
+        if (playerHistory[actionNo] > (1 << 28))
+            ageHistory();
+    }
+
+    private void ageHistory()
+    {
+        for (int[] playerHistory : historyScores)
+            for (int tile = 0; tile < playerHistory.length; tile++)
+                playerHistory[tile] /= 2;
+    }
+
+    // Helper method: the best line from depth is the input action followed by the best line from depth + 1.
+    private void updatePrincipalVariation(int depth, int actionNo)
+    {
+        principalVariation[depth][depth] = actionNo;
+        for (int next = depth + 1; next < principalVariationLength[depth + 1]; next++)
+            principalVariation[depth][next] = principalVariation[depth + 1][next];
+        principalVariationLength[depth] = Math.max(depth + 1, principalVariationLength[depth + 1]);
     }
 
     // #region Minimax Methods
     /// <summary>
     /// A helper method for the minimax method that is recursively called. Flip-flops between max & min appropriately to capture both the AI & opponent player's perspective.
+    /// Positions already searched deeply enough are answered from the transposition table; otherwise its best action is tried first.
     /// </summary>
     /// <return> Returns the best utility value for the initial potential action. </return>
-    private int minimaxValue(State state, boolean minToggle, int alpha, int beta, int depth)
+    private int minimaxValue(boolean minToggle, int alpha, int beta, int depth)
     {
-        // Base case: After searching 7 moves ahead or reaching a terminal state, return the state's utility value.
-        if (depth > 7 || isTerminalState(state))
-            return utility(state);  // If cut off by depth, utility provides an estimated desirability score.
+        principalVariationLength[depth] = depth;
+        statistics.nodes++;
+        if (depth > statistics.maxDepth)
+            statistics.maxDepth = depth;
+        if (searchStopped())
+            return 0;   // The search is being abandoned, so the value no longer matters.
+
+        // Base case: After searching iterationDepth moves ahead or reaching a terminal state, return the board's utility value.
+        if (depth > iterationDepth || isTerminalState())
+          { statistics.leafNodes++;
+            return evaluate(); } // If cut off by depth, the heuristic provides an estimated desirability score.
+
+        // Check the transposition table. A stored bound only answers the node if it falls outside the alpha-beta window.
+        // Entries are stored for the canonical form of the board, so the stored best action is mapped back from it.
+        int remainingDepth = iterationDepth - depth + 1;
+        int tableAction = -1;
+        int symmetry = canonicalSymmetry();
+        long entry = transpositionTable.probe(boardHashes[symmetry]);
+        statistics.tableProbes++;
+        if (entry != TranspositionTable.NO_ENTRY)
+          { statistics.tableHits++;
+            int canonicalAction = TranspositionTable.bestMoveOf(entry);
+            tableAction = (canonicalAction < 0 ? -1 : inverseSymmetries[symmetry][canonicalAction]);
+            int tableScore = TranspositionTable.scoreOf(entry);
+            if (TranspositionTable.depthOf(entry) >= remainingDepth)
+                switch (TranspositionTable.boundOf(entry))
+                  { case TranspositionTable.EXACT -> { return tableScore; }
+                    case TranspositionTable.LOWER_BOUND -> { if (tableScore >= beta) return tableScore; }
+                    case TranspositionTable.UPPER_BOUND -> { if (tableScore <= alpha) return tableScore; } }}
+        int alphaOriginal = alpha;
+        int betaOriginal = beta;
     
-        // Determine all possible actions from this state.
-        List<Action> possibleActions = getAllActions(state);
+        // Determine all possible actions from this board, using the move buffer reserved for this depth.
+        int[] possibleActions = moveStacks[depth];
+        int actionCount = generateMoves(possibleActions);
+        orderMoves(possibleActions, actionCount, tableAction, depth);
+        int bestValue;
+        int bestAction = -1;
         
         // If in the minimizing stage, attempt to find the lowest possible value.
         if (minToggle)
-          { int minValue = Integer.MAX_VALUE;   // Start with the highest possible value to ensure minimization.
+          { bestValue = Integer.MAX_VALUE;   // Start with the highest possible value to ensure minimization.
             
             // Iterate over each possible action.
-            for (Action action : possibleActions)
-              { // Recursively evaluate the resulting state, switching to the maximizing stage.
-                minValue = Math.min(minValue, minimaxValue(getSuccessorState(state, action), false, alpha, beta, depth + 1));
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board, switching to the maximizing stage.
+                makeMove(possibleActions[i]);
+                int value = minimaxValue(false, alpha, beta, depth + 1);
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                    return 0;   // Never store the value of an abandoned search.
+                if (value < bestValue)
+                  { bestValue = value;
+                    bestAction = possibleActions[i];
+                    updatePrincipalVariation(depth, bestAction); }
                 
                 // Alpha-beta pruning: If the value is less than or equal to alpha, prune this branch.
-                if (minValue <= alpha)
-                    return minValue;
+                if (bestValue <= alpha)
+                  { recordCutoff(possibleActions[i], remainingDepth);
+                    statistics.recordCutoff(i);
+                    break; }
                 
                 // Update beta to track the best minimum value found so far.
-                beta = Math.min(beta, minValue); }
-            
-            return minValue; 
+                beta = Math.min(beta, bestValue); }
           }
         
         // Otherwise, in the maximizing stage, attempt to find the highest possible value.
         else
-          { int maxValue = Integer.MIN_VALUE;   // Start with the lowest possible value to ensure maximization.
+          { bestValue = Integer.MIN_VALUE;   // Start with the lowest possible value to ensure maximization.
             
             // Iterate over each possible action.
-            for (Action action : possibleActions)
-              { // Recursively evaluate the resulting state, switching to the minimizing stage.
-                maxValue = Math.max(maxValue, minimaxValue(getSuccessorState(state, action), true, alpha, beta, depth + 1));
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board, switching to the minimizing stage.
+                makeMove(possibleActions[i]);
+                int value = minimaxValue(true, alpha, beta, depth + 1);
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                    return 0;   // Never store the value of an abandoned search.
+                if (value > bestValue)
+                  { bestValue = value;
+                    bestAction = possibleActions[i];
+                    updatePrincipalVariation(depth, bestAction); }
                 
                 // Alpha-beta pruning: If the value is greater than or equal to beta, prune this branch.
-                if (maxValue >= beta)
-                    return maxValue;
+                if (bestValue >= beta)
+                  { recordCutoff(possibleActions[i], remainingDepth);
+                    statistics.recordCutoff(i);
+                    break; }
                 
                 // Update alpha to track the best maximum value found so far.
-                alpha = Math.max(alpha, maxValue); }
-            
-            return maxValue; 
+                alpha = Math.max(alpha, bestValue); }
           }
+
+        // A value outside the original window is only a bound on the node's true value.
+        int bound = (bestValue >= betaOriginal ? TranspositionTable.LOWER_BOUND : bestValue <= alphaOriginal ? TranspositionTable.UPPER_BOUND : TranspositionTable.EXACT);
+        transpositionTable.store(boardHashes[symmetry], bestValue, remainingDepth, bound, (bestAction < 0 ? -1 : symmetries[symmetry][bestAction]));
+        return bestValue;
     }
 
     /// <summary>
-    /// The primary minimax function. Given the initial state, determine the optimal action to take.
+    /// The primary minimax function. Given the loaded search board, determine the optimal action to take.
+    /// The search is iteratively deepened: each iteration searches one move deeper than the last, trying the previous iteration's
+    /// best action first and reusing the transposition table and history scores it filled.
+    /// If the search runs out of time, the action chosen by the last completed iteration is returned.
     /// </summary>
     /// <return> Returns the optimal action to take (as opposed to a utility value the helper function returns). </return>
-    private Action minimax(State state)
+    private int minimax()
     {
-        // Determine all possible actions from this state.
-        List<Action> possibleActions = getAllActions(state);
+        // On large boards, play immediate wins, forced blocks and forcing sequences without a full search.
+        if (largeBoardMode)
+          { int forcedAction = findForcedAction();
+            if (forcedAction >= 0)
+              { principalVariation[0][0] = forcedAction;
+                principalVariationLength[0] = 1;
+                return forcedAction; }}
+
+        // Determine all possible actions from the root board, leaving out those equivalent to another by symmetry.
+        int[] possibleActions = moveStacks[0];
+        int actionCount = pruneSymmetricActions(possibleActions, generateMoves(possibleActions));
 
-        // Create an action that will store the to-be-chosen action.
-        Action choiceAction = new Action();
+        // Holds the to-be-chosen action. Before the first iteration, that is the reply the previous principal variation expected.
+        int choiceAction = expectedAction;
+
+        // Utilities are scored for 'O', so the root maximizes when it is 'O's turn and minimizes when it is 'X's, letting the agent play either side.
+        boolean maximizing = (getPlayerTurn() == 'O');
         
-        // Iterate through each possible action:
-        int maximumDesirability = Integer.MIN_VALUE;
-        for (Action action : possibleActions)
-          { // Recursively evaluate the resulting state of the current state and action.
-            action.desirability = minimaxValue(getSuccessorState(state, action), true, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
-            
-            // If the value is larger than any seen thus far, set it to the maximum and its corresponding action to the choice action.
-            if (action.desirability > maximumDesirability)
-              { maximumDesirability = action.desirability;
-                choiceAction = action; } }
+        for (iterationDepth = 1; iterationDepth <= searchDepth; iterationDepth++)
+          { orderMoves(possibleActions, actionCount, choiceAction, 0);
+            principalVariationLength[0] = 0;
+            statistics.startIteration();
+            statistics.nodes++;     // The root.
+
+            // Iterate through each possible action:
+            int bestDesirability = (maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+            int iterationAction = -1;
+            for (int i = 0; i < actionCount; i++)
+              { // Recursively evaluate the resulting board of the current board and action. Actions that cannot beat the best so far are only bounded.
+                makeMove(possibleActions[i]);
+                int desirability = (maximizing ? minimaxValue(true, bestDesirability, Integer.MAX_VALUE, 1)
+                                               : minimaxValue(false, Integer.MIN_VALUE, bestDesirability, 1));
+                undoMove(possibleActions[i]);
+                if (searchStopped())
+                    return choiceAction;
+                
+                // If the value is better for the player on turn than any seen thus far, keep it and its corresponding action as the choice action.
+                if (maximizing ? desirability > bestDesirability : desirability < bestDesirability)
+                  { bestDesirability = desirability;
+                    iterationAction = possibleActions[i];
+                    updatePrincipalVariation(0, iterationAction); } }
+            choiceAction = iterationAction;
+
+            statistics.completeIteration(iterationDepth);
+
+            // A forced win cannot be improved on by searching deeper.
+            if (maximizing ? bestDesirability >= WIN_SCORE : bestDesirability <= -WIN_SCORE)
+                break; }
 
         return choiceAction;
     }
 
+    /// <summary>
+    /// Checks if the running search has run out of time.
+    /// The clock is only read every 1024 nodes, and never during the first iteration, so that there is always an action to return.
+    /// </summary>
+    private boolean searchStopped()
+    {
+        if (searchDeadline != 0 && iterationDepth > 1 && (statistics.nodes & 1023) == 0 && System.nanoTime() - searchDeadline > 0)
+            outOfTime = true;
+        return outOfTime;
+    }
+
     // The main method called by the referencing program.
-    public int move(String stringState) { return minimax(new State(stringState)).actionNo; }
+    public int move(String stringState) { return search(stringState).action; }
+
+    /// <summary>
+    /// Chooses an action for the input state string exactly like move, additionally reporting how the search went.
+    /// </summary>
+    /// <return> Returns the chosen action with its principal variation and search statistics. </return>
+    public SearchResult search(String stringState)
+    {
+        if (engine == Engine.MONTE_CARLO)
+          { int choiceAction = getMonteCarloSearch().move(stringState);
+            return new SearchResult(choiceAction, new int[0], monteCarloSearch.getStatistics()); }
+        if (engine == Engine.TABLE)
+            return tableSearch(stringState);
+
+        loadBoard(stringState);
+        if (!continuesPreviousMove())
+            newGame();
+
+        // A new statistics instance per search, so that earlier results are left untouched.
+        statistics = new SearchStatistics();
+        statistics.start();
+        searchDeadline = (timeBudgetMillis > 0 ? Math.max(1, System.nanoTime() + timeBudgetMillis * 1_000_000L) : 0);
+        outOfTime = false;
+        int choiceAction = minimax();
+        searchDeadline = 0;
+        statistics.stop();
+
+        System.arraycopy(board, 0, previousBoard, 0, board.length);
+        previousAction = choiceAction;
+        return new SearchResult(choiceAction, getPrincipalVariation(), statistics);
+    }
+
+    /// <summary>
+    /// The table engine's search: the best move is looked up in TicTacToeTable, and the principal variation follows the table's best moves to the end of the game.
+    /// </summary>
+    private SearchResult tableSearch(String stringState)
+    {
+        SearchStatistics tableStatistics = new SearchStatistics();
+        tableStatistics.start();
+        int index = TicTacToeTable.index(stringState);
+        int choiceAction = TicTacToeTable.bestMove(index);
+        tableStatistics.nodes = 1;
+        tableStatistics.stop();
+
+        int pieceCount = 0;
+        for (int tile = 0; tile < TicTacToeTable.TILES; tile++)
+            if (stringState.charAt(tile) != EMPTY_TILE)
+                pieceCount++;
+        int[] line = new int[TicTacToeTable.TILES - pieceCount];
+        int lineLength = 0;
+        for (int action = choiceAction; action != TicTacToeTable.NO_MOVE; action = TicTacToeTable.bestMove(index))
+          { line[lineLength++] = action;
+            index = TicTacToeTable.play(index, action, pieceCount++); }
+        return new SearchResult((choiceAction == TicTacToeTable.NO_MOVE ? -1 : choiceAction), Arrays.copyOf(line, lineLength), tableStatistics);
+    }
+
+    /// <summary>
+    /// Forgets everything learned in previous moves: the transposition table, history scores, principal variation and Monte Carlo tree.
+    /// move calls this itself whenever the board it receives does not continue the previous one.
+    /// </summary>
+    public minmaxag newGame()
+    {
+        transpositionTable.clear();
+        for (int[] playerHistory : historyScores)
+            Arrays.fill(playerHistory, 0);
+        principalVariationLength[0] = 0;
+        previousAction = -1;
+        expectedAction = -1;
+        if (monteCarloSearch != null)
+            monteCarloSearch.clearTree();
+        return this;
+    }
+
+    /// <summary>
+    /// Checks if the loaded board is the previous root board plus the previously returned action and one reply by the opponent.
+    /// If so, the search knowledge is kept, and if the reply is the one the principal variation predicted, its next action is tried first.
+    /// </summary>
+    private boolean continuesPreviousMove()
+    {
+        expectedAction = -1;
+        if (previousAction < 0 || board[previousAction] == EMPTY_TILE || previousBoard[previousAction] != EMPTY_TILE)
+            return false;
+
+        int replyAction = -1;
+        for (int tile = 0; tile < board.length; tile++)
+          { if (board[tile] == previousBoard[tile] || tile == previousAction)
+                continue;
+            if (previousBoard[tile] != EMPTY_TILE || replyAction >= 0 || board[tile] == board[previousAction])
+                return false;
+            replyAction = tile; }
+        if (replyAction < 0)
+            return false;
+
+        if (principalVariationLength[0] > 2 && principalVariation[0][0] == previousAction && principalVariation[0][1] == replyAction)
+            expectedAction = principalVariation[0][2];
+        ageHistory();
+        return true;
+    }
+
+    // Returns the best line of play found by the last move, starting with the chosen action.
+    public int[] getPrincipalVariation() { return Arrays.copyOf(principalVariation[0], principalVariationLength[0]); }
+
+    // #region Large Board Methods
+    /*
+     * The large board mode makes m,n,k-games such as 15x15 gomoku playable at the usual search depth:
+     *  - Every length-k window is enumerated once, and each window's stone counts are updated incrementally by makeMove/undoMove,
+     *    so the evaluation and win detection cost O(windows through the last tile) instead of a full board scan.
+     *  - Only empty tiles near existing stones are generated, ordered by how many live windows they extend, and capped at CANDIDATE_LIMIT.
+     *  - Before searching, the root looks for a threat-space win: a sequence of moves that each leave a one-move win (a "four"),
+     *    forcing the opponent to block every time, until a double threat cannot be blocked.
+     */
+
+    /// <summary>
+    /// Enumerates every horizontal, vertical and diagonal window of winSequenceLength tiles, and allocates the incremental counters.
+    /// </summary>
+    private void buildWindowTables()
+    {
+        int[][] directions = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };  // Row & column steps: right, down, down-right, down-left.
+        int lastStep = winSequenceLength - 1;
+
+        // Count the windows first so that the tables can be sized exactly.
+        int windowCount = 0;
+        int[] cellWindowCounts = new int[board.length];
+        for (int pass = 0; pass < 2; pass++)
+          { int window = 0;
+            for (int row = 0; row < numRows; row++)
+                for (int column = 0; column < numCols; column++)
+                    for (int[] direction : directions)
+                      { int endRow = row + lastStep * direction[0];
+                        int endColumn = column + lastStep * direction[1];
+                        if (endRow < 0 || endRow >= numRows || endColumn < 0 || endColumn >= numCols)
+                            continue;
+
+                        for (int step = 0; step <= lastStep; step++)
+                          { int tile = Coordinate.flattenCoordinates(column + step * direction[1], row + step * direction[0], numCols);
+                            if (pass == 0)
+                                cellWindowCounts[tile]++;
+                            else
+                              { windowCells[window * winSequenceLength + step] = tile;
+                                cellWindows[tile][--cellWindowCounts[tile]] = window; }}
+                        window++; }
+
+            // After the counting pass, size the tables.
+            if (pass == 0)
+              { windowCount = window;
+                windowCells = new int[windowCount * winSequenceLength];
+                cellWindows = new int[board.length][];
+                for (int tile = 0; tile < board.length; tile++)
+                    cellWindows[tile] = new int[cellWindowCounts[tile]]; }}
+
+        windowXCount = new int[windowCount];
+        windowOCount = new int[windowCount];
+        windowWeights = new long[winSequenceLength + 1];
+        for (int stones = 1; stones <= winSequenceLength; stones++)
+            windowWeights[stones] = (long) Math.pow(10, stones - 1);
+
+        neighborCounts = new int[board.length];
+        candidateScores = new int[board.length];
+        threatStacks = new int[THREAT_SEARCH_DEPTH][board.length];
+    }
+
+    // Helper method for updateLineCounts: the signed weight of a window given its stone counts (only windows holding a single player's stones count).
+    private long windowValue(int xCount, int oCount)
+    {
+        if (xCount == 0)
+            return windowWeights[oCount];
+        if (oCount == 0)
+            return -windowWeights[xCount];
+        return 0;
+    }
+
+    /// <summary>
+    /// Adds (delta = 1) or removes (delta = -1) a player's stone on a tile, updating the counts of every window through it,
+    /// the running line evaluation, the number of completed windows and the candidate neighborhood.
+    /// </summary>
+    private void updateLineCounts(int tile, char player, int delta)
+    {
+        for (int window : cellWindows[tile])
+          { int xCount = windowXCount[window];
+            int oCount = windowOCount[window];
+            lineEvaluation -= windowValue(xCount, oCount);
+            if (xCount == winSequenceLength || oCount == winSequenceLength)
+                completedWindows--;
+
+            if (player == 'X') xCount += delta;
+            else oCount += delta;
+
+            lineEvaluation += windowValue(xCount, oCount);
+            if (xCount == winSequenceLength || oCount == winSequenceLength)
+                completedWindows++;
+            windowXCount[window] = xCount;
+            windowOCount[window] = oCount; }
+
+        int tileRow = tile / numCols;
+        int tileColumn = tile % numCols;
+        for (int row = Math.max(0, tileRow - CANDIDATE_RADIUS); row <= Math.min(numRows - 1, tileRow + CANDIDATE_RADIUS); row++)
+            for (int column = Math.max(0, tileColumn - CANDIDATE_RADIUS); column <= Math.min(numCols - 1, tileColumn + CANDIDATE_RADIUS); column++)
+                neighborCounts[Coordinate.flattenCoordinates(column, row, numCols)] += delta;
+    }
+
+    /// <summary>
+    /// The large board counterpart of utility: a completed window is an absolute win for the player who just moved, otherwise the running line evaluation.
+    /// </summary>
+    /// <return> Returns the desirability score of the search board. </return>
+    private int lineUtility()
+    {
+        if (completedWindows > 0)
+            return getPlayerTurn() == 'X' ? (Integer.MAX_VALUE-1) : -(Integer.MAX_VALUE-1);   // The player who is not on turn completed the window.
+        return (int) Math.max(-(Integer.MAX_VALUE-2), Math.min(Integer.MAX_VALUE-2, lineEvaluation));
+    }
+
+    // Helper method for ordering candidates: how much the player on turn (and the opponent, by blocking) gains from a tile.
+    private int candidateScore(int tile)
+    {
+        long score = 0;
+        for (int window : cellWindows[tile])
+          { int xCount = windowXCount[window];
+            int oCount = windowOCount[window];
+            if (oCount == 0) score += windowWeights[xCount + 1];
+            if (xCount == 0) score += windowWeights[oCount + 1]; }
+        return (int) Math.min(Integer.MAX_VALUE, score);
+    }
+
+    /// <summary>
+    /// Determines the candidate actions on a large board: empty tiles near existing stones, best first, capped at CANDIDATE_LIMIT.
+    /// An empty board has the single candidate of the center tile.
+    /// </summary>
+    /// <return> Returns the number of actions written to the buffer. </return>
+    private int generateCandidateMoves(int[] moveBuffer)
+    {
+        if (pieceCount == 0)
+          { moveBuffer[0] = Coordinate.flattenCoordinates(numCols / 2, numRows / 2, numCols);
+            return 1; }
+
+        // Insertion sort each candidate into the buffer by descending score.
+        int moveCount = 0;
+        for (int tile = 0; tile < board.length; tile++)
+          { if (board[tile] != EMPTY_TILE || neighborCounts[tile] == 0)
+                continue;
+
+            int score = candidateScore(tile);
+            int position = moveCount++;
+            while (position > 0 && candidateScores[position - 1] < score)
+              { moveBuffer[position] = moveBuffer[position - 1];
+                candidateScores[position] = candidateScores[position - 1];
+                position--; }
+            moveBuffer[position] = tile;
+            candidateScores[position] = score; }
+
+        return Math.min(moveCount, CANDIDATE_LIMIT);
+    }
+
+    // Helper method: the number of the given player's stones in a window.
+    private int windowCount(int window, char player) { return player == 'X' ? windowXCount[window] : windowOCount[window]; }
+
+    // Helper method: the first empty tile of a window, or -1 if it is full.
+    private int windowEmptyTile(int window)
+    {
+        for (int step = 0; step < winSequenceLength; step++)
+            if (board[windowCells[window * winSequenceLength + step]] == EMPTY_TILE)
+                return windowCells[window * winSequenceLength + step];
+        return -1;
+    }
+
+    /// <summary>
+    /// Finds a tile that completes a window for the given player, i.e. an immediate win.
+    /// </summary>
+    /// <return> Returns the winning tile, or -1 if there is none. </return>
+    private int findCompletingTile(char player)
+    {
+        char opponent = (player == 'X' ? 'O' : 'X');
+        for (int window = 0; window < windowXCount.length; window++)
+            if (windowCount(window, player) == winSequenceLength - 1 && windowCount(window, opponent) == 0)
+                return windowEmptyTile(window);
+        return -1;
+    }
+
+    /// <summary>
+    /// Checks the root for actions that need no search: an immediate win, a block of the opponent's immediate win, or the start of a forcing win.
+    /// </summary>
+    /// <return> Returns the forced action, or -1 if the position has to be searched. </return>
+    private int findForcedAction()
+    {
+        char player = getPlayerTurn();
+        char opponent = (player == 'X' ? 'O' : 'X');
+
+        int winningTile = findCompletingTile(player);
+        if (winningTile >= 0)
+            return winningTile;
+
+        int blockingTile = findCompletingTile(opponent);
+        if (blockingTile >= 0)
+            return blockingTile;
+
+        // Deepen the threat-space search one attacking move at a time, so the shortest forcing win is found first.
+        for (int threatDepthLimit = 1; threatDepthLimit <= THREAT_SEARCH_DEPTH; threatDepthLimit++)
+          { int threat = threatSpaceSearch(0, threatDepthLimit);
+            if (threat >= 0)
+                return threat; }
+        return -1;
+    }
+
+    /// <summary>
+    /// Threat-space search for a victory by continuous fours. The player on turn (the attacker) only plays moves that leave a one-move win,
+    /// so the defender's reply is forced to the single blocking tile. The attacker wins once a move leaves two different winning tiles,
+    /// unless the defender can win immediately instead.
+    /// </summary>
+    /// <return> Returns the first attacking move of a forcing win, or -1 if none is found within threatDepthLimit attacking moves. </return>
+    private int threatSpaceSearch(int threatDepth, int threatDepthLimit)
+    {
+        if (threatDepth >= threatDepthLimit)
+            return -1;
+
+        char attacker = getPlayerTurn();
+        char defender = (attacker == 'X' ? 'O' : 'X');
+
+        // Collect the attacking moves: empty tiles that raise some window free of defender stones to one short of a win.
+        int[] threats = threatStacks[threatDepth];
+        int threatCount = 0;
+        for (int tile = 0; tile < board.length; tile++)
+          { if (board[tile] != EMPTY_TILE || neighborCounts[tile] == 0)
+                continue;
+            for (int window : cellWindows[tile])
+                if (windowCount(window, attacker) == winSequenceLength - 2 && windowCount(window, defender) == 0)
+                  { threats[threatCount++] = tile;
+                    break; }}
+
+        for (int i = 0; i < threatCount; i++)
+          { int threat = threats[i];
+            makeMove(threat);
+            statistics.nodes++;
+
+            // Find the tiles that now win for the attacker; more than one distinct tile cannot be blocked.
+            int blockingTile = -1;
+            boolean doubleThreat = false;
+            for (int window : cellWindows[threat])
+                if (windowCount(window, attacker) == winSequenceLength - 1 && windowCount(window, defender) == 0)
+                  { int winningTile = windowEmptyTile(window);
+                    if (blockingTile < 0)
+                        blockingTile = winningTile;
+                    else if (winningTile != blockingTile)
+                        doubleThreat = true; }
+
+            // The sequence only continues if the defender cannot win first.
+            boolean forcedWin = false;
+            if (blockingTile >= 0 && findCompletingTile(defender) < 0)
+              { if (doubleThreat)
+                    forcedWin = true;
+                else
+                  { makeMove(blockingTile);
+                    forcedWin = threatSpaceSearch(threatDepth + 1, threatDepthLimit) >= 0;
+                    undoMove(blockingTile); }}
+
+            undoMove(threat);
+            if (forcedWin)
+                return threat; }
+
+        return -1;
+    }
 
     //#region Helper Classes
 
@@ -286,6 +1007,22 @@ public class minmaxag {
         }
     }
 
+    public static class SearchResult
+    {
+        // Attributes
+        public int action;                      // The chosen action, or -1 if there is none.
+        public int[] principalVariation;        // The best line of play found, starting with the chosen action (empty for Monte Carlo search).
+        public SearchStatistics statistics;
+
+        // Constructors
+        public SearchResult(int action, int[] principalVariation, SearchStatistics statistics)
+        {
+            this.action = action;
+            this.principalVariation = principalVariation;
+            this.statistics = statistics;
+        }
+    }
+
     public static class Action
     {
         // Single attribute.
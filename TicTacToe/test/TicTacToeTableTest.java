@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The table against minmaxag's alpha-beta search on every reachable position where the game is not over.
+/// </summary>
+class TicTacToeTableTest {
+
+    @Test
+    void reachesEveryPositionOfTheGame() { assertEquals(5_478, TicTacToeTable.getReachablePositions()); }
+
+    // The search, deep enough to reach the end of the game, must choose a move with the value the table gives the position
+    // (a win, draw or loss for the player to move), and the table engine must play the table's best move.
+    @Test
+    void agreesWithTheSearch()
+    {
+        minmaxag searchAgent = new minmaxag(3, 3, 3).setSearchDepth(TicTacToeTable.TILES);
+        minmaxag tableAgent = new minmaxag(3, 3, 3).setEngine(minmaxag.Engine.TABLE);
+        char[] board = new char[TicTacToeTable.TILES];
+        for (int index = 0; index < TicTacToeTable.INDEX_COUNT; index++)
+          { if (!TicTacToeTable.isReachable(index) || TicTacToeTable.bestMove(index) == TicTacToeTable.NO_MOVE)
+                continue;
+            int pieceCount = 0;
+            for (int tile = 0, rest = index; tile < TicTacToeTable.TILES; tile++, rest /= 3)
+              { board[tile] = "_XO".charAt(rest % 3);
+                if (board[tile] != '_')
+                    pieceCount++; }
+            String stringState = new String(board);
+
+            int searchMove = searchAgent.move(stringState);
+            assertTrue(searchMove >= 0 && searchMove < TicTacToeTable.TILES && board[searchMove] == '_', stringState);
+            // The value of a move, for the player making it, is minus the value of the position it leads to.
+            assertEquals(Integer.signum(TicTacToeTable.value(index)),
+                         Integer.signum(-TicTacToeTable.value(TicTacToeTable.play(index, searchMove, pieceCount))), stringState);
+            assertEquals(TicTacToeTable.bestMove(index), tableAgent.move(stringState), stringState); }
+    }
+}
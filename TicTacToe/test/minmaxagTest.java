@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/// <summary>
+/// The large board mode on 15x15 with five in a row to win: the root's immediate wins and blocks, and the threat-space search's forced wins.
+/// </summary>
+class minmaxagTest {
+
+    private static final int SIZE = 15;
+
+    private static int tile(int row, int column) { return row * SIZE + column; }
+
+    // The board with X's and O's stones on the input tiles.
+    private static String board(int[] xTiles, int[] oTiles)
+    {
+        char[] board = new char[SIZE * SIZE];
+        Arrays.fill(board, '_');
+        for (int tile : xTiles)
+            board[tile] = 'X';
+        for (int tile : oTiles)
+            board[tile] = 'O';
+        return new String(board);
+    }
+
+    private static final int[] CORNERS = { tile(0, 0), tile(0, 14), tile(14, 0), tile(14, 14) };
+
+    @Test
+    void completesAnOpenFour()
+    {
+        // X to move with an open four in row 7, while O has an open three of its own in row 12.
+        String state = board(new int[] { tile(7, 5), tile(7, 6), tile(7, 7), tile(7, 8) },
+                             new int[] { tile(12, 3), tile(12, 4), tile(12, 5), tile(0, 0) });
+        int action = new minmaxag(SIZE, SIZE, 5).move(state);
+        assertTrue(Set.of(tile(7, 4), tile(7, 9)).contains(action), "played " + action);
+    }
+
+    @Test
+    void blocksTheOpponentsFour()
+    {
+        // X to move against O's four in row 7, closed on the left by X: only one tile blocks it.
+        String closed = board(new int[] { tile(7, 4), CORNERS[0], CORNERS[1], CORNERS[2] },
+                              new int[] { tile(7, 5), tile(7, 6), tile(7, 7), tile(7, 8) });
+        assertEquals(tile(7, 9), new minmaxag(SIZE, SIZE, 5).move(closed));
+        // An open four cannot be stopped, but one of its ends is still blocked.
+        String open = board(CORNERS, new int[] { tile(7, 5), tile(7, 6), tile(7, 7), tile(7, 8) });
+        int action = new minmaxag(SIZE, SIZE, 5).move(open);
+        assertTrue(Set.of(tile(7, 4), tile(7, 9)).contains(action), "played " + action);
+    }
+
+    // X wins by continuous fours: (10,5) completes a four in row 10 that O must block at (10,6), after which (9,5) makes an open four
+    // in column 5. No single move wins or makes two fours at once, so only the threat-space search, two attacking moves deep, finds it;
+    // and the agent, playing both sides from then on, must carry the win out.
+    @Test
+    void findsAForcedWinByThreatSpaceSearch()
+    {
+        String state = board(new int[] { tile(10, 2), tile(10, 3), tile(10, 4), tile(7, 5), tile(8, 5) },
+                             new int[] { tile(10, 1), CORNERS[0], CORNERS[1], CORNERS[2], CORNERS[3] });
+        minmaxag xAgent = new minmaxag(SIZE, SIZE, 5).setSearchDepth(1);     // Too shallow for the alpha-beta search to see the win.
+        minmaxag oAgent = new minmaxag(SIZE, SIZE, 5);
+        int action = xAgent.move(state);
+        assertEquals(tile(10, 5), action);
+
+        char[] board = state.toCharArray();
+        board[action] = 'X';
+        for (int xMoves = 1; xMoves < 3; xMoves++)
+          { int reply = oAgent.move(new String(board));
+            if (xMoves == 1)
+                assertEquals(tile(10, 6), reply);
+            board[reply] = 'O';
+            board[xAgent.move(new String(board))] = 'X'; }
+        assertTrue(wins(board, 'X'), new String(board));
+    }
+
+    // True if the player has five in a row.
+    private static boolean wins(char[] board, char player)
+    {
+        for (int row = 0; row < SIZE; row++)
+            for (int column = 0; column < SIZE; column++)
+                for (int[] step : new int[][] { {0, 1}, {1, 0}, {1, 1}, {1, -1} })
+                  { int length = 0;
+                    for (int r = row, c = column; r >= 0 && r < SIZE && c >= 0 && c < SIZE && board[tile(r, c)] == player; r += step[0], c += step[1])
+                        length++;
+                    if (length >= 5)
+                        return true; }
+        return false;
+    }
+}